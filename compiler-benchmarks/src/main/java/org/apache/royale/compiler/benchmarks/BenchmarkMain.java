@@ -0,0 +1,77 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.compiler.benchmarks;
+
+import java.io.File;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+
+import org.apache.royale.compiler.common.VersionInfo;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks. Takes the options of the JMH command line, with two
+ * defaults that make the results of two compiler versions comparable:
+ * <ul>
+ * <li>the GC profiler, which reports the allocation rate and the bytes
+ * allocated per operation, is used if no profiler is specified;</li>
+ * <li>the results are written as JSON, to
+ * {@code royale-benchmarks-<version>-<time>.json} if no result file is
+ * specified.</li>
+ * </ul>
+ * For example, to run only the parser benchmarks:
+ * <pre>
+ * java -jar compiler-benchmarks/target/benchmarks.jar Parser
+ * </pre>
+ */
+public class BenchmarkMain
+{
+    public static void main(String[] args) throws Exception
+    {
+        final CommandLineOptions commandLine = new CommandLineOptions(args);
+        if (commandLine.shouldHelp() || commandLine.shouldList() ||
+            commandLine.shouldListWithParams() || commandLine.shouldListProfilers() ||
+            commandLine.shouldListResultFormats())
+        {
+            org.openjdk.jmh.Main.main(args);
+            return;
+        }
+
+        final ChainedOptionsBuilder options = new OptionsBuilder().parent(commandLine);
+        if (commandLine.getProfilers().isEmpty())
+            options.addProfiler(GCProfiler.class);
+        final ResultFormatType format = commandLine.getResultFormat().orElse(ResultFormatType.JSON);
+        options.resultFormat(format);
+        if (!commandLine.getResult().hasValue())
+        {
+            final String time = new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date());
+            final String version = VersionInfo.getCompilerVersion();
+            options.result(new File("royale-benchmarks-" + version + "-" + time + "." +
+                                    format.toString().toLowerCase(Locale.ROOT)).getAbsolutePath());
+        }
+        new Runner(options.build()).run();
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.compiler.benchmarks;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.royale.compiler.driver.IBackend;
+import org.apache.royale.compiler.internal.driver.mxml.royale.MXMLRoyaleBackend;
+import org.apache.royale.compiler.internal.projects.RoyaleJSProject;
+import org.apache.royale.compiler.internal.projects.RoyaleProject;
+import org.apache.royale.compiler.internal.projects.RoyaleProjectConfigurator;
+import org.apache.royale.compiler.internal.workspaces.Workspace;
+import org.apache.royale.compiler.problems.ICompilerProblem;
+import org.apache.royale.compiler.units.ICompilationUnit;
+import org.apache.royale.utils.FilenameNormalization;
+
+/**
+ * A workspace with a project of the corpus. Compilation units cache the
+ * results of their requests, so benchmarks that measure a request create a
+ * new project for every invocation.
+ */
+final class BenchmarkProject
+{
+    /**
+     * Create a project for the SWF back end.
+     */
+    static BenchmarkProject createSWFProject(Corpus corpus)
+    {
+        final Workspace workspace = new Workspace();
+        final RoyaleProject project = new RoyaleProject(workspace);
+        return new BenchmarkProject(workspace, project, corpus);
+    }
+
+    /**
+     * Create a project for the JavaScript back end.
+     */
+    static BenchmarkProject createJSProject(Corpus corpus)
+    {
+        final Workspace workspace = new Workspace();
+        final IBackend backend = new MXMLRoyaleBackend();
+        final RoyaleJSProject project = new RoyaleJSProject(workspace, backend);
+        final BenchmarkProject result = new BenchmarkProject(workspace, project, corpus);
+        project.setTargetSettings(backend.createConfigurator().getTargetSettings(null));
+        return result;
+    }
+
+    private BenchmarkProject(Workspace workspace, RoyaleProject project, Corpus corpus)
+    {
+        this.workspace = workspace;
+        this.project = project;
+        this.corpus = corpus;
+        project.setProblems(problems);
+        RoyaleProjectConfigurator.configure(project);
+        project.setSourcePath(Collections.singletonList(corpus.getSourcePath()));
+        project.setLibraries(Corpus.getLibraries());
+    }
+
+    final Workspace workspace;
+    final RoyaleProject project;
+    final List<ICompilerProblem> problems = new ArrayList<ICompilerProblem>();
+    private final Corpus corpus;
+
+    /**
+     * @return The compilation units of the corpus files with the extension.
+     */
+    List<ICompilationUnit> getCompilationUnits(String extension)
+    {
+        final List<ICompilationUnit> units = new ArrayList<ICompilationUnit>();
+        for (File file : corpus.getFiles(extension))
+        {
+            final String path = FilenameNormalization.normalize(file.getAbsolutePath());
+            units.addAll(workspace.getCompilationUnits(path, project));
+        }
+        return units;
+    }
+
+    /**
+     * Run the requests that precede code generation, so that benchmarks of
+     * the back ends measure only the code generation.
+     */
+    static void analyze(List<ICompilationUnit> units) throws InterruptedException
+    {
+        for (ICompilationUnit unit : units)
+        {
+            unit.getSyntaxTreeRequest().get();
+            unit.getFileScopeRequest().get();
+        }
+        for (ICompilationUnit unit : units)
+            unit.getOutgoingDependenciesRequest().get();
+    }
+
+    void dispose()
+    {
+        project.delete();
+        workspace.close();
+    }
+}
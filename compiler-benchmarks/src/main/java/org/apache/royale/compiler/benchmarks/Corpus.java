@@ -0,0 +1,153 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.compiler.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+
+/**
+ * The sources the benchmarks compile. They are resources of this module,
+ * listed in {@code corpus/files.txt}, and are extracted to a temporary
+ * directory because the compiler reads sources from files.
+ * <p>
+ * The ActionScript sources are under {@code src}, which is the source path
+ * of the projects the benchmarks create. Libraries to compile against, for
+ * example the framework SWCs, can be added with the
+ * {@code royale.benchmark.libraries} system property, a list of SWCs
+ * separated by the path separator. Without libraries the semantic analysis
+ * only finds the definitions of the corpus.
+ */
+public final class Corpus
+{
+    private static final String ROOT = "corpus/";
+
+    /**
+     * Extract the corpus to a new temporary directory, which is deleted when
+     * the JVM exits.
+     */
+    public static Corpus extract() throws IOException
+    {
+        final File directory = File.createTempFile("royale-benchmark", "");
+        if (!directory.delete() || !directory.mkdirs())
+            throw new IOException("can't create " + directory);
+        Runtime.getRuntime().addShutdownHook(new Thread()
+        {
+            @Override
+            public void run()
+            {
+                FileUtils.deleteQuietly(directory);
+            }
+        });
+
+        final Map<String, String> texts = new LinkedHashMap<String, String>();
+        for (String name : IOUtils.readLines(openResource("files.txt"), StandardCharsets.UTF_8))
+        {
+            name = name.trim();
+            if (name.isEmpty())
+                continue;
+            final String text = IOUtils.toString(openResource(name), StandardCharsets.UTF_8);
+            FileUtils.writeStringToFile(new File(directory, name), text, StandardCharsets.UTF_8);
+            texts.put(name, text);
+        }
+        return new Corpus(directory, texts);
+    }
+
+    private static InputStream openResource(String name) throws IOException
+    {
+        final InputStream in = Corpus.class.getClassLoader().getResourceAsStream(ROOT + name);
+        if (in == null)
+            throw new IOException("missing corpus resource " + ROOT + name);
+        return in;
+    }
+
+    private Corpus(File directory, Map<String, String> texts)
+    {
+        this.directory = directory;
+        this.texts = texts;
+    }
+
+    private final File directory;
+    private final Map<String, String> texts;
+
+    /**
+     * @return The source path of the corpus.
+     */
+    public File getSourcePath()
+    {
+        return new File(directory, "src");
+    }
+
+    /**
+     * @return The extracted files with the extension, in the order of
+     * {@code files.txt}.
+     */
+    public List<File> getFiles(String extension)
+    {
+        final List<File> files = new ArrayList<File>();
+        for (String name : texts.keySet())
+        {
+            if (name.endsWith(extension))
+                files.add(new File(directory, name));
+        }
+        return files;
+    }
+
+    /**
+     * @return The text of the files with the extension, by name.
+     */
+    public Map<String, String> getTexts(String extension)
+    {
+        final Map<String, String> result = new LinkedHashMap<String, String>();
+        for (Map.Entry<String, String> entry : texts.entrySet())
+        {
+            if (entry.getKey().endsWith(extension))
+                result.put(entry.getKey(), entry.getValue());
+        }
+        return result;
+    }
+
+    /**
+     * @return The SWCs of the {@code royale.benchmark.libraries} system
+     * property.
+     */
+    public static List<File> getLibraries()
+    {
+        final String libraries = System.getProperty("royale.benchmark.libraries");
+        if (libraries == null || libraries.isEmpty())
+            return Collections.emptyList();
+        final List<File> files = new ArrayList<File>();
+        for (String path : libraries.split(File.pathSeparator))
+        {
+            if (!path.isEmpty())
+                files.add(new File(path).getAbsoluteFile());
+        }
+        return files;
+    }
+}
@@ -0,0 +1,260 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.compiler.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.royale.compiler.common.SourceLocation;
+import org.apache.royale.compiler.filespecs.FileSpecification;
+import org.apache.royale.compiler.internal.parsing.as.BaseASParser;
+import org.apache.royale.compiler.internal.tree.as.PackedExpressionTree;
+import org.apache.royale.compiler.internal.workspaces.Workspace;
+import org.apache.royale.compiler.problems.ICompilerProblem;
+import org.apache.royale.compiler.tree.as.IASNode;
+import org.apache.royale.compiler.tree.as.IExpressionNode;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The expression trees of the corpus as node objects and as
+ * {@link PackedExpressionTree}s: the time to parse them, the time to walk
+ * them, and the heap they retain.
+ * <p>
+ * The expressions are the outermost expressions of the ActionScript files,
+ * parsed one by one with {@link BaseASParser#parseExpression}. The retained
+ * heap is measured after a full collection and reported per node by the
+ * {@code bytesPerNode} counter of the {@code retain} benchmarks.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class ExpressionTreeBenchmark
+{
+    /**
+     * The heap retained by the trees of a {@code retain} benchmark.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class RetainedSize
+    {
+        public long bytesPerNode;
+
+        @Setup(Level.Iteration)
+        public void reset()
+        {
+            bytesPerNode = 0;
+        }
+    }
+
+    private static final int RETAINED_COPIES = 50;
+
+    private Workspace workspace;
+    private List<String> expressions;
+    private List<IExpressionNode> objectTrees;
+    private List<PackedExpressionTree> packedTrees;
+    private int nodeCount;
+
+    @Setup
+    public void setUp() throws IOException
+    {
+        workspace = new Workspace();
+        expressions = new ArrayList<String>();
+        for (File file : Corpus.extract().getFiles(".as"))
+        {
+            final String text = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+            final IASNode fileNode = BaseASParser.parseFile(new FileSpecification(file.getAbsolutePath()), workspace);
+            collectExpressions(fileNode, text);
+        }
+        objectTrees = parseExpressions();
+        packedTrees = new ArrayList<PackedExpressionTree>();
+        for (IExpressionNode tree : objectTrees)
+        {
+            packedTrees.add(PackedExpressionTree.pack(tree));
+            nodeCount += packedTrees.get(packedTrees.size() - 1).getNodeCount();
+        }
+
+        // Both walks must visit the same nodes and read the same offsets,
+        // or they don't measure the same work.
+        final long objectSum = walkObjects();
+        final long packedSum = walkPacked();
+        if (objectSum != packedSum)
+            throw new IllegalStateException("walkObjects() is " + objectSum + " but walkPacked() is " + packedSum);
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        workspace.close();
+    }
+
+    private void collectExpressions(IASNode root, String text)
+    {
+        final ArrayDeque<IASNode> stack = new ArrayDeque<IASNode>();
+        stack.push(root);
+        while (!stack.isEmpty())
+        {
+            final IASNode node = stack.pop();
+            if (node instanceof IExpressionNode && !(node.getParent() instanceof IExpressionNode) &&
+                node.getAbsoluteStart() >= 0 && node.getAbsoluteEnd() > node.getAbsoluteStart() &&
+                node.getAbsoluteEnd() <= text.length())
+            {
+                expressions.add(text.substring(node.getAbsoluteStart(), node.getAbsoluteEnd()));
+                continue;
+            }
+            for (int i = 0; i < node.getChildCount(); i++)
+            {
+                final IASNode child = node.getChild(i);
+                if (child != null)
+                    stack.push(child);
+            }
+        }
+    }
+
+    private List<IExpressionNode> parseExpressions()
+    {
+        final List<IExpressionNode> trees = new ArrayList<IExpressionNode>(expressions.size());
+        final List<ICompilerProblem> problems = new ArrayList<ICompilerProblem>();
+        final SourceLocation location = new SourceLocation("expression", 0, 0, 0, 0);
+        for (String expression : expressions)
+        {
+            final IExpressionNode tree = BaseASParser.parseExpression(workspace, new StringReader(expression),
+                    problems, BaseASParser.EMPTY_CONFIGURATION, location);
+            if (tree != null)
+                trees.add(tree);
+        }
+        return trees;
+    }
+
+    private List<PackedExpressionTree> parseAndPackExpressions()
+    {
+        final List<PackedExpressionTree> trees = new ArrayList<PackedExpressionTree>(expressions.size());
+        for (IExpressionNode tree : parseExpressions())
+            trees.add(PackedExpressionTree.pack(tree));
+        return trees;
+    }
+
+    @Benchmark
+    public List<IExpressionNode> parseObjects()
+    {
+        return parseExpressions();
+    }
+
+    @Benchmark
+    public List<PackedExpressionTree> parseAndPack()
+    {
+        return parseAndPackExpressions();
+    }
+
+    @Benchmark
+    public long walkObjects()
+    {
+        long result = 0;
+        final ArrayDeque<IASNode> stack = new ArrayDeque<IASNode>();
+        for (IExpressionNode tree : objectTrees)
+        {
+            stack.push(tree);
+            while (!stack.isEmpty())
+            {
+                final IASNode node = stack.pop();
+                result += node.getNodeID().ordinal() + node.getAbsoluteStart();
+                for (int i = 0, count = node.getChildCount(); i < count; i++)
+                {
+                    final IASNode child = node.getChild(i);
+                    if (child != null)
+                        stack.push(child);
+                }
+            }
+        }
+        return result;
+    }
+
+    @Benchmark
+    public long walkPacked()
+    {
+        long result = 0;
+        for (PackedExpressionTree tree : packedTrees)
+        {
+            // Breadth-first order, so all nodes are visited by index.
+            for (int node = 0, count = tree.getNodeCount(); node < count; node++)
+                result += tree.getNodeID(node).ordinal() + tree.getAbsoluteStart(node);
+        }
+        return result;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 2)
+    @Measurement(iterations = 5)
+    public Object retainObjects(RetainedSize size)
+    {
+        final long before = getUsedHeap();
+        final List<List<IExpressionNode>> copies = new ArrayList<List<IExpressionNode>>();
+        for (int i = 0; i < RETAINED_COPIES; i++)
+            copies.add(parseExpressions());
+        size.bytesPerNode = (getUsedHeap() - before) / ((long)nodeCount * RETAINED_COPIES);
+        return copies;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 2)
+    @Measurement(iterations = 5)
+    public Object retainPacked(RetainedSize size)
+    {
+        final long before = getUsedHeap();
+        final List<List<PackedExpressionTree>> copies = new ArrayList<List<PackedExpressionTree>>();
+        for (int i = 0; i < RETAINED_COPIES; i++)
+            copies.add(parseAndPackExpressions());
+        size.bytesPerNode = (getUsedHeap() - before) / ((long)nodeCount * RETAINED_COPIES);
+        return copies;
+    }
+
+    private static long getUsedHeap()
+    {
+        final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        for (int i = 0; i < 3; i++)
+            System.gc();
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+}
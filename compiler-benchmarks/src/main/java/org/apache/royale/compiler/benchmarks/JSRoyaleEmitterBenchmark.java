@@ -0,0 +1,113 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.compiler.benchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.royale.compiler.codegen.js.IJSWriter;
+import org.apache.royale.compiler.driver.IBackend;
+import org.apache.royale.compiler.internal.projects.RoyaleJSProject;
+import org.apache.royale.compiler.units.ICompilationUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Emitting the JavaScript of the corpus, ActionScript and MXML, with the
+ * writers of the Royale back end, as
+ * {@link org.apache.royale.compiler.internal.targets.JSTarget} does. The
+ * syntax trees, scopes and dependencies are built before the measurement.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 10, time = 2)
+@Fork(1)
+public class JSRoyaleEmitterBenchmark
+{
+    private Corpus corpus;
+
+    @Setup
+    public void setUp() throws IOException
+    {
+        corpus = Corpus.extract();
+    }
+
+    @State(Scope.Thread)
+    public static class Invocation
+    {
+        BenchmarkProject project;
+        List<ICompilationUnit> units;
+
+        @Setup(Level.Invocation)
+        public void setUp(JSRoyaleEmitterBenchmark benchmark) throws InterruptedException
+        {
+            project = BenchmarkProject.createJSProject(benchmark.corpus);
+            units = project.getCompilationUnits(".as");
+            units.addAll(project.getCompilationUnits(".mxml"));
+            BenchmarkProject.analyze(units);
+        }
+
+        @TearDown(Level.Invocation)
+        public void tearDown()
+        {
+            project.dispose();
+        }
+    }
+
+    @Benchmark
+    public void emit(Invocation invocation, Blackhole blackhole) throws IOException
+    {
+        final RoyaleJSProject project = (RoyaleJSProject)invocation.project.project;
+        final IBackend backend = project.getBackend();
+        for (ICompilationUnit unit : invocation.units)
+        {
+            final IJSWriter writer;
+            if (unit.getCompilationUnitType() == ICompilationUnit.UnitType.MXML_UNIT)
+                writer = (IJSWriter)backend.createMXMLWriter(project, invocation.project.problems, unit, false);
+            else
+                writer = (IJSWriter)backend.createWriter(project, invocation.project.problems, unit, false);
+            try
+            {
+                final ByteArrayOutputStream out = new ByteArrayOutputStream();
+                writer.writeTo(out, null, null);
+                blackhole.consume(out.toByteArray());
+            }
+            finally
+            {
+                writer.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.compiler.benchmarks;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.royale.compiler.units.ICompilationUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Building the MXML syntax trees of the corpus, which includes tokenizing
+ * and parsing the MXML and the ActionScript embedded in it, and resolving
+ * the tags to definitions. Every invocation uses a new project, as the
+ * compilation units keep their syntax trees.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 10, time = 2)
+@Fork(1)
+public class MXMLTreeBuilderBenchmark
+{
+    private Corpus corpus;
+
+    @Setup
+    public void setUp() throws IOException
+    {
+        corpus = Corpus.extract();
+    }
+
+    @State(Scope.Thread)
+    public static class Invocation
+    {
+        BenchmarkProject project;
+        List<ICompilationUnit> units;
+
+        @Setup(Level.Invocation)
+        public void setUp(MXMLTreeBuilderBenchmark benchmark)
+        {
+            project = BenchmarkProject.createSWFProject(benchmark.corpus);
+            units = project.getCompilationUnits(".mxml");
+        }
+
+        @TearDown(Level.Invocation)
+        public void tearDown()
+        {
+            project.dispose();
+        }
+    }
+
+    @Benchmark
+    public void buildTrees(Invocation invocation, Blackhole blackhole) throws InterruptedException
+    {
+        for (ICompilationUnit unit : invocation.units)
+            blackhole.consume(unit.getSyntaxTreeRequest().get().getAST());
+    }
+}
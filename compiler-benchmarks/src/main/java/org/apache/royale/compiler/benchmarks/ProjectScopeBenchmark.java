@@ -0,0 +1,121 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.compiler.benchmarks;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.royale.compiler.definitions.IDefinition;
+import org.apache.royale.compiler.internal.scopes.ASProjectScope;
+import org.apache.royale.compiler.scopes.IDefinitionSet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.infra.ThreadParams;
+
+/**
+ * Many threads looking up names in the same {@link ASProjectScope}, the way
+ * parallel semantic analysis and code generation do: the definitions of a
+ * base name, then the compilation unit of each definition.
+ * <p>
+ * The names are those of the corpus and of the libraries, so run it with
+ * {@code -Droyale.benchmark.libraries} set to playerglobal.swc or js.swc.
+ * All definition promises are resolved before the measurement. The number
+ * of threads can be changed with {@code -t}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Threads(8)
+@Fork(1)
+public class ProjectScopeBenchmark
+{
+    private static final int NAMES_PER_OPERATION = 64;
+
+    private BenchmarkProject project;
+    private ASProjectScope scope;
+    private String[] baseNames;
+
+    @Setup
+    public void setUp() throws IOException
+    {
+        project = BenchmarkProject.createSWFProject(Corpus.extract());
+        scope = project.project.getScope();
+        final Set<String> names = new LinkedHashSet<String>();
+        for (IDefinition definition : scope.getAllLocalDefinitions())
+            names.add(definition.getBaseName());
+        baseNames = names.toArray(new String[names.size()]);
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        project.dispose();
+    }
+
+    /**
+     * Every thread starts at a different name.
+     */
+    @State(Scope.Thread)
+    public static class Cursor
+    {
+        int next;
+
+        @Setup
+        public void setUp(ProjectScopeBenchmark benchmark, ThreadParams threads)
+        {
+            next = (int)((long)benchmark.baseNames.length * threads.getThreadIndex() / threads.getThreadCount());
+        }
+    }
+
+    @Benchmark
+    public void lookup(Cursor cursor, Blackhole blackhole)
+    {
+        final List<Object> results = new ArrayList<Object>(NAMES_PER_OPERATION);
+        for (int i = 0; i < NAMES_PER_OPERATION; i++)
+        {
+            final String baseName = baseNames[cursor.next];
+            cursor.next = (cursor.next + 1) % baseNames.length;
+
+            final IDefinitionSet definitionSet = scope.getLocalDefinitionSetByName(baseName);
+            if (definitionSet == null)
+                continue;
+            for (int j = 0, n = definitionSet.getSize(); j < n; j++)
+                results.add(scope.getCompilationUnitForDefinition(definitionSet.getDefinition(j)));
+        }
+        blackhole.consume(results);
+    }
+}
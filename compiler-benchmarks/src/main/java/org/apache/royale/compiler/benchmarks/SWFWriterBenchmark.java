@@ -0,0 +1,96 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.compiler.benchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.royale.compiler.units.ICompilationUnit;
+import org.apache.royale.swf.Header;
+import org.apache.royale.swf.SWF;
+import org.apache.royale.swf.SWFFrame;
+import org.apache.royale.swf.io.SWFWriter;
+import org.apache.royale.swf.tags.DoABCTag;
+import org.apache.royale.swf.types.Rect;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Writing a SWF of the ABC of the corpus with {@link SWFWriter}, with and
+ * without compression. The ABC is generated once, before the measurement.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class SWFWriterBenchmark
+{
+    @Param({"NONE", "ZLIB"})
+    public Header.Compression compression;
+
+    private SWF swf;
+
+    @Setup
+    public void setUp() throws IOException, InterruptedException
+    {
+        final BenchmarkProject project = BenchmarkProject.createSWFProject(Corpus.extract());
+        try
+        {
+            final List<ICompilationUnit> units = project.getCompilationUnits(".as");
+            units.addAll(project.getCompilationUnits(".mxml"));
+
+            final SWFFrame frame = new SWFFrame();
+            for (ICompilationUnit unit : units)
+            {
+                final byte[] abc = unit.getABCBytesRequest().get().getABCBytes();
+                frame.addTag(new DoABCTag(1, unit.getName(), abc));
+            }
+            swf = new SWF();
+            swf.setVersion(14);
+            swf.setFrameSize(new Rect(500 * 20, 375 * 20));
+            swf.addFrame(frame);
+        }
+        finally
+        {
+            project.dispose();
+        }
+    }
+
+    @Benchmark
+    public byte[] write()
+    {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new SWFWriter(swf, compression).writeTo(out);
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package benchmark
+{
+    /**
+     * Base class of the models, which keeps the items and notifies
+     * listeners of changes.
+     */
+    public class AbstractModel implements IModel
+    {
+        public static const CHANGE:String = "change";
+
+        public function AbstractModel(source:Array = null)
+        {
+            _source = source != null ? source.concat() : [];
+        }
+
+        protected var _source:Array;
+
+        private var listeners:Vector.<Function> = new Vector.<Function>();
+
+        private var _updating:int = 0;
+
+        public function get length():int
+        {
+            return _source.length;
+        }
+
+        public function get source():Array
+        {
+            return _source;
+        }
+
+        public function set source(value:Array):void
+        {
+            if (value == _source)
+                return;
+            _source = value != null ? value : [];
+            dispatchChange("reset", -1);
+        }
+
+        public function getItemAt(index:int):Object
+        {
+            if (index < 0 || index >= _source.length)
+                throw new RangeError("Index " + index + " is out of range [0, " + _source.length + ")");
+            return _source[index];
+        }
+
+        public function addItem(item:Object):void
+        {
+            addItemAt(item, _source.length);
+        }
+
+        public function addItemAt(item:Object, index:int):void
+        {
+            _source.splice(index, 0, item);
+            dispatchChange("add", index);
+        }
+
+        public function removeItemAt(index:int):Object
+        {
+            var item:Object = getItemAt(index);
+            _source.splice(index, 1);
+            dispatchChange("remove", index);
+            return item;
+        }
+
+        public function addChangeListener(listener:Function):void
+        {
+            if (listeners.indexOf(listener) == -1)
+                listeners.push(listener);
+        }
+
+        public function removeChangeListener(listener:Function):void
+        {
+            var i:int = listeners.indexOf(listener);
+            if (i != -1)
+                listeners.splice(i, 1);
+        }
+
+        public function beginUpdate():void
+        {
+            _updating++;
+        }
+
+        public function endUpdate():void
+        {
+            if (--_updating == 0)
+                dispatchChange("reset", -1);
+        }
+
+        protected function dispatchChange(kind:String, index:int):void
+        {
+            if (_updating > 0)
+                return;
+            var event:Object = { type: CHANGE, kind: kind, index: index, target: this };
+            for each (var listener:Function in listeners.concat())
+            {
+                listener(event);
+            }
+        }
+
+        public function toString():String
+        {
+            return "[AbstractModel length=" + length + "]";
+        }
+    }
+}
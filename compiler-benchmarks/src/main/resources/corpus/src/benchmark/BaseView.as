@@ -0,0 +1,79 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package benchmark
+{
+    /**
+     * Base class of the MXML views of the corpus.
+     */
+    public class BaseView
+    {
+        public function BaseView()
+        {
+        }
+
+        public var id:String;
+
+        public var title:String;
+
+        public var children:Array = [];
+
+        private var _model:IModel;
+
+        [Bindable]
+        public function get model():IModel
+        {
+            return _model;
+        }
+
+        public function set model(value:IModel):void
+        {
+            if (_model == value)
+                return;
+            _model = value;
+            if (_model != null)
+                _model.addChangeListener(modelChanged);
+            invalidate();
+        }
+
+        private var invalid:Boolean;
+
+        public function invalidate():void
+        {
+            invalid = true;
+        }
+
+        public function validate():void
+        {
+            if (!invalid)
+                return;
+            invalid = false;
+            update();
+        }
+
+        protected function update():void
+        {
+        }
+
+        protected function modelChanged(event:Object):void
+        {
+            invalidate();
+        }
+    }
+}
@@ -0,0 +1,45 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package benchmark
+{
+    /**
+     * A column of a grid view.
+     */
+    public class Column
+    {
+        public var dataField:String;
+
+        public var headerText:String;
+
+        public var width:Number = 100;
+
+        public var sortable:Boolean = true;
+
+        public var labelFunction:Function;
+
+        public function itemToLabel(item:Object):String
+        {
+            if (labelFunction != null)
+                return labelFunction(item, this);
+            var value:* = item != null ? item[dataField] : null;
+            return value != null ? String(value) : "";
+        }
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package benchmark
+{
+    /**
+     * A model of rows with named columns that can be sorted, filtered and
+     * summarized.
+     */
+    public class GridModel extends AbstractModel
+    {
+        public function GridModel(columns:Array, rows:Array = null)
+        {
+            super(rows);
+            this.columns = columns;
+        }
+
+        public var columns:Array;
+
+        private var _filterFunction:Function;
+
+        private var _sortColumn:String;
+
+        private var _sortDescending:Boolean = false;
+
+        private var view:Array;
+
+        [Bindable("change")]
+        public function get filterFunction():Function
+        {
+            return _filterFunction;
+        }
+
+        public function set filterFunction(value:Function):void
+        {
+            _filterFunction = value;
+            refresh();
+        }
+
+        public function sortOn(column:String, descending:Boolean = false):void
+        {
+            _sortColumn = column;
+            _sortDescending = descending;
+            refresh();
+        }
+
+        public function refresh():void
+        {
+            view = [];
+            var n:int = _source.length;
+            for (var i:int = 0; i < n; i++)
+            {
+                var row:Object = _source[i];
+                if (_filterFunction == null || _filterFunction(row))
+                    view.push(row);
+            }
+            if (_sortColumn != null)
+            {
+                var column:String = _sortColumn;
+                var direction:int = _sortDescending ? -1 : 1;
+                view.sort(function(a:Object, b:Object):int
+                {
+                    return compareValues(a[column], b[column]) * direction;
+                });
+            }
+            dispatchChange("refresh", -1);
+        }
+
+        public function get viewLength():int
+        {
+            return view != null ? view.length : _source.length;
+        }
+
+        public function getViewItemAt(index:int):Object
+        {
+            return view != null ? view[index] : _source[index];
+        }
+
+        public static function compareValues(a:*, b:*):int
+        {
+            if (a === b)
+                return 0;
+            if (a == null)
+                return -1;
+            if (b == null)
+                return 1;
+            if (a is Number && b is Number)
+                return a < b ? -1 : 1;
+            if (a is Date && b is Date)
+                return Date(a).time < Date(b).time ? -1 : 1;
+            var s1:String = String(a).toLowerCase();
+            var s2:String = String(b).toLowerCase();
+            return s1 < s2 ? -1 : s1 > s2 ? 1 : 0;
+        }
+
+        public function summarize(column:String, operation:String = "sum"):Number
+        {
+            var result:Number = 0;
+            var count:int = 0;
+            var min:Number = Number.POSITIVE_INFINITY;
+            var max:Number = Number.NEGATIVE_INFINITY;
+            for (var i:int = 0; i < viewLength; i++)
+            {
+                var value:Number = Number(getViewItemAt(i)[column]);
+                if (isNaN(value))
+                    continue;
+                count++;
+                result += value;
+                if (value < min)
+                    min = value;
+                if (value > max)
+                    max = value;
+            }
+            switch (operation)
+            {
+                case "sum":
+                    return result;
+                case "average":
+                    return count > 0 ? result / count : NaN;
+                case "min":
+                    return min;
+                case "max":
+                    return max;
+                case "count":
+                    return count;
+                default:
+                    throw new ArgumentError("Unknown operation: " + operation);
+            }
+        }
+
+        public function toCSV(separator:String = ","):String
+        {
+            var lines:Array = [columns.join(separator)];
+            for (var i:int = 0; i < viewLength; i++)
+            {
+                var row:Object = getViewItemAt(i);
+                var values:Array = [];
+                for each (var column:String in columns)
+                {
+                    values.push(StringUtils.escapeCSV(String(row[column]), separator));
+                }
+                lines.push(values.join(separator));
+            }
+            return lines.join("\n");
+        }
+
+        public static function fromCSV(text:String, separator:String = ","):GridModel
+        {
+            var lines:Array = text.split(/\r?\n/);
+            var columns:Array = StringUtils.splitCSV(lines.shift(), separator);
+            var rows:Array = [];
+            for each (var line:String in lines)
+            {
+                if (StringUtils.trim(line).length == 0)
+                    continue;
+                var values:Array = StringUtils.splitCSV(line, separator);
+                var row:Object = {};
+                for (var i:int = 0; i < columns.length; i++)
+                {
+                    row[columns[i]] = i < values.length ? values[i] : null;
+                }
+                rows.push(row);
+            }
+            return new GridModel(columns, rows);
+        }
+    }
+}
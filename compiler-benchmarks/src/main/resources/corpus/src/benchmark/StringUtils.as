@@ -0,0 +1,122 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package benchmark
+{
+    /**
+     * String helpers.
+     */
+    public final class StringUtils
+    {
+        private static const WHITESPACE:RegExp = /^\s+|\s+$/g;
+
+        private static const TOKEN:RegExp = /\{(\w+)\}/g;
+
+        public static function trim(s:String):String
+        {
+            return s == null ? "" : s.replace(WHITESPACE, "");
+        }
+
+        public static function substitute(template:String, values:Object):String
+        {
+            return template.replace(TOKEN, function(match:String, name:String, ...rest):String
+            {
+                return values.hasOwnProperty(name) ? String(values[name]) : match;
+            });
+        }
+
+        public static function repeat(s:String, count:uint):String
+        {
+            var result:String = "";
+            while (count-- > 0)
+                result += s;
+            return result;
+        }
+
+        public static function padLeft(s:String, length:int, pad:String = " "):String
+        {
+            return s.length >= length ? s : repeat(pad, length - s.length) + s;
+        }
+
+        public static function escapeCSV(s:String, separator:String):String
+        {
+            if (s.indexOf(separator) == -1 && s.indexOf("\"") == -1 && s.indexOf("\n") == -1)
+                return s;
+            return "\"" + s.split("\"").join("\"\"") + "\"";
+        }
+
+        public static function splitCSV(line:String, separator:String):Array
+        {
+            var result:Array = [];
+            var current:String = "";
+            var quoted:Boolean = false;
+            for (var i:int = 0; i < line.length; i++)
+            {
+                var c:String = line.charAt(i);
+                if (quoted)
+                {
+                    if (c == "\"" && line.charAt(i + 1) == "\"")
+                    {
+                        current += "\"";
+                        i++;
+                    }
+                    else if (c == "\"")
+                    {
+                        quoted = false;
+                    }
+                    else
+                    {
+                        current += c;
+                    }
+                }
+                else if (c == "\"")
+                {
+                    quoted = true;
+                }
+                else if (c == separator)
+                {
+                    result.push(current);
+                    current = "";
+                }
+                else
+                {
+                    current += c;
+                }
+            }
+            result.push(current);
+            return result;
+        }
+
+        public static function formatNumber(value:Number, fractionDigits:int = 2, groupSeparator:String = ","):String
+        {
+            var negative:Boolean = value < 0;
+            var fixed:String = Math.abs(value).toFixed(fractionDigits);
+            var parts:Array = fixed.split(".");
+            var integer:String = parts[0];
+            var grouped:String = "";
+            while (integer.length > 3)
+            {
+                grouped = groupSeparator + integer.substr(-3) + grouped;
+                integer = integer.substr(0, integer.length - 3);
+            }
+            grouped = integer + grouped;
+            return (negative ? "-" : "") + grouped + (parts.length > 1 ? "." + parts[1] : "");
+        }
+    }
+}
@@ -1615,6 +1615,54 @@ public class Configuration
         this.strictIdentifierNames = strict;
     }
 
+    //
+    // 'compiler.parse-function-bodies-on-demand' option
+    //
+
+    private boolean parseFunctionBodiesOnDemand = false;
+
+    public boolean getCompilerParseFunctionBodiesOnDemand()
+    {
+        return parseFunctionBodiesOnDemand;
+    }
+
+    /**
+     * Whether function bodies are only parsed when they are needed. If
+     * enabled, the compiler does not keep the text of the function bodies
+     * while parsing source files, and reads a body from its file again when
+     * code generation or semantic analysis needs it. This reduces the memory
+     * used for files whose definitions are only referenced.
+     */
+    @Config(advanced = true)
+    @Mapping({ "compiler", "parse-function-bodies-on-demand" })
+    public void setCompilerParseFunctionBodiesOnDemand(ConfigurationValue cv, boolean onDemand)
+    {
+        this.parseFunctionBodiesOnDemand = onDemand;
+    }
+
+    //
+    // 'compiler.parallel-mxml-tree-building' option
+    //
+
+    private boolean parallelMXMLTreeBuilding = false;
+
+    public boolean getCompilerParallelMXMLTreeBuilding()
+    {
+        return parallelMXMLTreeBuilding;
+    }
+
+    /**
+     * Whether the databinding expressions of an MXML document are parsed in
+     * parallel while its tree is built. The tree and the problems are the
+     * same as when the expressions are parsed one after the other.
+     */
+    @Config(advanced = true)
+    @Mapping({ "compiler", "parallel-mxml-tree-building" })
+    public void setCompilerParallelMXMLTreeBuilding(ConfigurationValue cv, boolean parallel)
+    {
+        this.parallelMXMLTreeBuilding = parallel;
+    }
+
     //
     // 'compiler.actionscript-file-encoding' option
     //
@@ -6198,6 +6246,350 @@ public class Configuration
         this.removeDeadCode = b;
     }
 
+    //
+    // 'compiler.optimize-data-flow' option
+    //
+    private boolean optimizeDataFlow = false;
+
+    /**
+     * @return true if the data flow optimizations of local registers are
+     * enabled.
+     */
+    public boolean getOptimizeDataFlow()
+    {
+        return this.optimizeDataFlow;
+    }
+
+    /**
+     * Enable or disable the data flow optimizations of optimized builds: copy
+     * propagation, dead store elimination, removal of redundant conversions
+     * and allocation of local registers.
+     * 
+     * @param cfgval the configuration value context.
+     * @param b true to enable the optimizations, false to disable.
+     */
+    @Config(advanced = true)
+    @Mapping({ "compiler", "optimize-data-flow" })
+    public void setOptimizeDataFlow(ConfigurationValue cfgval, boolean b)
+    {
+        this.optimizeDataFlow = b;
+    }
+
+    //
+    // 'compiler.streaming-link' option
+    //
+    private boolean streamingLink = false;
+
+    /**
+     * @return true if unoptimized ABCs may be linked without parsing their
+     * method bodies.
+     */
+    public boolean getStreamingLink()
+    {
+        return this.streamingLink;
+    }
+
+    /**
+     * Link the ABCs of a SWF by rewriting their bytes instead of parsing
+     * them into instruction lists and emitting them again. This only applies
+     * when the SWF is not optimized, and neither inlining nor dead code
+     * removal is enabled. The default is false.
+     * 
+     * @param cfgval the configuration value context.
+     * @param b true to link the ABCs without parsing them.
+     */
+    @Config(advanced = true)
+    @Mapping({ "compiler", "streaming-link" })
+    public void setStreamingLink(ConfigurationValue cfgval, boolean b)
+    {
+        this.streamingLink = b;
+    }
+
+    //
+    // 'compilation-cache-dir' option
+    //
+
+    private String compilationCacheDirectory = null;
+
+    /**
+     * @return the directory of the persistent compilation cache, or null if
+     * the cache is disabled.
+     */
+    public File getCompilationCacheDirectory()
+    {
+        return compilationCacheDirectory != null ? new File(compilationCacheDirectory) : null;
+    }
+
+    /**
+     * Keeps the ABC generated for each source file in the specified
+     * directory, so later builds can reuse it for files that did not change.
+     * Entries are validated against the content of the source file and its
+     * dependencies, the compiler version and the effective configuration.
+     * 
+     * @param cv the configuration value context.
+     * @param directory the cache directory.
+     */
+    @Config(advanced = true)
+    @Mapping("compilation-cache-dir")
+    @Arguments("directory")
+    public void setCompilationCacheDirectory(ConfigurationValue cv, String directory)
+    {
+        this.compilationCacheDirectory = getOutputPath(cv, directory);
+    }
+
+    //
+    // 'definition-index-dir' option
+    //
+
+    private String definitionIndexDirectory = null;
+
+    /**
+     * @return the directory of the SWC definition indexes, or null if the
+     * indexes are disabled.
+     */
+    public File getDefinitionIndexDirectory()
+    {
+        return definitionIndexDirectory != null ? new File(definitionIndexDirectory) : null;
+    }
+
+    /**
+     * Keeps an index of the definitions in each library SWC in the specified
+     * directory, so the library SWFs do not have to be read again to resolve
+     * definitions. The parsed CSS of the SWCs and of theme CSS files is kept
+     * there too, so it does not have to be parsed again. The directory can be
+     * shared by concurrent builds. Entries are validated against the path,
+     * size and time stamp of the SWC or CSS file and the compiler version.
+     * 
+     * @param cv the configuration value context.
+     * @param directory the index directory.
+     */
+    @Config(advanced = true)
+    @Mapping("definition-index-dir")
+    @Arguments("directory")
+    public void setDefinitionIndexDirectory(ConfigurationValue cv, String directory)
+    {
+        this.definitionIndexDirectory = getOutputPath(cv, directory);
+    }
+
+    //
+    // 'embed-cache-dir' option
+    //
+
+    private String embedCacheDirectory = null;
+
+    /**
+     * @return the directory of the transcoded embedded assets, or null if
+     * the cache is disabled.
+     */
+    public File getEmbedCacheDirectory()
+    {
+        return embedCacheDirectory != null ? new File(embedCacheDirectory) : null;
+    }
+
+    /**
+     * Keeps the SWF tags of transcoded embedded images and sounds in the
+     * specified directory, so later builds and other projects do not have to
+     * decode and encode them again. Entries are keyed by the content of the
+     * asset, the embed attributes and the compiler version. The directory can
+     * be shared by concurrent builds.
+     * 
+     * @param cv the configuration value context.
+     * @param directory the cache directory.
+     */
+    @Config(advanced = true)
+    @Mapping("embed-cache-dir")
+    @Arguments("directory")
+    public void setEmbedCacheDirectory(ConfigurationValue cv, String directory)
+    {
+        this.embedCacheDirectory = getOutputPath(cv, directory);
+    }
+
+    //
+    // 'profile-report-dir' option
+    //
+
+    private String profileReportDirectory = null;
+
+    /**
+     * @return the directory of the compilation profile reports, or null if
+     * profiling is disabled.
+     */
+    public File getProfileReportDirectory()
+    {
+        return profileReportDirectory != null ? new File(profileReportDirectory) : null;
+    }
+
+    /**
+     * Profiles the compilation and writes a Chrome trace event file and a
+     * summary of the slowest compilation units to the specified directory.
+     * The files are named after the target type, for example
+     * {@code swf.trace.json} and {@code swf.summary.txt}.
+     * 
+     * @param cv the configuration value context.
+     * @param directory the report directory.
+     */
+    @Config(advanced = true)
+    @Mapping("profile-report-dir")
+    @Arguments("directory")
+    public void setProfileReportDirectory(ConfigurationValue cv, String directory)
+    {
+        this.profileReportDirectory = getOutputPath(cv, directory);
+    }
+
+    //
+    // 'profile-report-top' option
+    //
+
+    private int profileReportTop = 20;
+
+    /**
+     * @return the number of compilation units listed in the profile summary.
+     */
+    public int getProfileReportTop()
+    {
+        return profileReportTop;
+    }
+
+    /**
+     * The number of slowest compilation units listed in the profile summary.
+     * The default is 20.
+     * 
+     * @param cv the configuration value context.
+     * @param count the number of compilation units.
+     */
+    @Config(advanced = true)
+    @Mapping("profile-report-top")
+    @Arguments("count")
+    public void setProfileReportTop(ConfigurationValue cv, int count)
+    {
+        this.profileReportTop = count;
+    }
+
+    //
+    // 'syntax-tree-budget' option
+    //
+
+    private int syntaxTreeBudget = -1;
+
+    /**
+     * @return the memory budget of the retained syntax trees in megabytes,
+     * or -1 if the syntax trees are not bounded.
+     */
+    public int getSyntaxTreeBudget()
+    {
+        return syntaxTreeBudget;
+    }
+
+    /**
+     * The memory, in megabytes, that the syntax trees of ActionScript files
+     * may keep after their code is generated. Beyond the budget, the oldest
+     * trees are dropped and parsed again if they are needed later. The
+     * default is -1, which keeps all trees.
+     * 
+     * @param cv the configuration value context.
+     * @param megabytes the budget in megabytes.
+     */
+    @Config(advanced = true)
+    @Mapping("syntax-tree-budget")
+    @Arguments("megabytes")
+    public void setSyntaxTreeBudget(ConfigurationValue cv, int megabytes)
+    {
+        this.syntaxTreeBudget = megabytes;
+    }
+
+    //
+    // 'scope-cache-size' option
+    //
+
+    private int scopeCacheSize = 10000;
+
+    /**
+     * @return the maximum number of cached name lookups of each kind in a
+     * scope.
+     */
+    public int getScopeCacheSize()
+    {
+        return scopeCacheSize;
+    }
+
+    /**
+     * The maximum number of results of each kind of name lookup, and of
+     * constant values, that a project caches for each of its scopes. Beyond
+     * that, the least recently used results of the scope are dropped and
+     * resolved again if they are needed later. The default is 10000.
+     * 
+     * @param cv the configuration value context.
+     * @param entries the maximum number of entries of each kind.
+     */
+    @Config(advanced = true)
+    @Mapping("scope-cache-size")
+    @Arguments("entries")
+    public void setScopeCacheSize(ConfigurationValue cv, int entries)
+    {
+        this.scopeCacheSize = entries;
+    }
+
+    //
+    // 'scope-cache-scopes' option
+    //
+
+    private int scopeCacheScopes = 50000;
+
+    /**
+     * @return the maximum number of scopes with cached name lookups.
+     */
+    public int getScopeCacheScopes()
+    {
+        return scopeCacheScopes;
+    }
+
+    /**
+     * The maximum number of scopes for which a project caches name lookups
+     * and constant values. Beyond that, the caches of the least recently used
+     * scopes are dropped and filled again if they are needed later. Together
+     * with scope-cache-size, this bounds the memory used by the caches of a
+     * project. The default is 50000.
+     * 
+     * @param cv the configuration value context.
+     * @param scopes the maximum number of scopes.
+     */
+    @Config(advanced = true)
+    @Mapping("scope-cache-scopes")
+    @Arguments("scopes")
+    public void setScopeCacheScopes(ConfigurationValue cv, int scopes)
+    {
+        this.scopeCacheScopes = scopes;
+    }
+
+    //
+    // 'parallel-code-generation' option
+    //
+
+    private boolean parallelCodeGeneration = false;
+
+    /**
+     * @return true if method bodies are generated on several threads.
+     */
+    public boolean getParallelCodeGeneration()
+    {
+        return parallelCodeGeneration;
+    }
+
+    /**
+     * Generate the bodies of the functions and methods of a compilation unit
+     * on the threads of the workspace. The ABC is the same as when they are
+     * generated one after the other. The default is false.
+     * 
+     * @param cv the configuration value context.
+     * @param b true to generate method bodies in parallel.
+     */
+    @Config(advanced = true)
+    @Mapping("parallel-code-generation")
+    public void setParallelCodeGeneration(ConfigurationValue cv, boolean b)
+    {
+        this.parallelCodeGeneration = b;
+    }
+
     //
     // Validation methods from ToolsConfiguration
     //
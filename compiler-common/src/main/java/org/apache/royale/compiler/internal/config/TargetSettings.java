@@ -595,6 +595,18 @@ public class TargetSettings implements ITargetSettings
         return configuration.getRemoveDeadCode();
     }
 
+    @Override
+    public boolean getOptimizeDataFlow()
+    {
+        return configuration.getOptimizeDataFlow();
+    }
+
+    @Override
+    public boolean getStreamingLink()
+    {
+        return configuration.getStreamingLink();
+    }
+
 	@Override
 	public String getSWFMetadataDate() {
 		return configuration.getMetadataDate();
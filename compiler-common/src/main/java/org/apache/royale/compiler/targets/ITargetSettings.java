@@ -494,6 +494,17 @@ public interface ITargetSettings
      */
     boolean getRemoveDeadCode();
 
+    /**
+     * @return true if the data flow optimization step is enabled.
+     */
+    boolean getOptimizeDataFlow();
+
+    /**
+     * @return true if unoptimized ABCs may be linked without parsing their
+     * method bodies.
+     */
+    boolean getStreamingLink();
+
     /**
      * Gets the implicit imports for MXML.
      * 
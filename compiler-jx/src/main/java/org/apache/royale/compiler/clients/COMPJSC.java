@@ -58,6 +58,7 @@ import org.apache.royale.compiler.internal.projects.CompilerProject;
 import org.apache.royale.compiler.internal.targets.RoyaleSWCTarget;
 import org.apache.royale.compiler.internal.units.SWCCompilationUnit;
 import org.apache.royale.compiler.internal.targets.JSTarget;
+import org.apache.royale.compiler.internal.workspaces.Workspace;
 import org.apache.royale.compiler.problems.ICompilerProblem;
 import org.apache.royale.compiler.problems.InternalCompilerProblem;
 import org.apache.royale.compiler.problems.LibraryNotFoundProblem;
@@ -68,6 +69,7 @@ import org.apache.royale.compiler.targets.ITargetSettings;
 import org.apache.royale.compiler.units.ICompilationUnit;
 import org.apache.royale.compiler.utils.SourceMapUtils;
 import org.apache.royale.swc.ISWCFileEntry;
+import org.apache.royale.swc.io.SWCArchive;
 import org.apache.royale.swc.io.SWCReader;
 import org.apache.royale.utils.ArgumentUtil;
 
@@ -205,7 +207,7 @@ public class COMPJSC extends MXMLJSC
 	                {
 	                case SWF:
                         System.out.println("COMPC");
-	                    COMPC compc = new COMPC();
+	                    COMPC compc = ownsWorkspace ? new COMPC() : new COMPC(workspace);
 	                    mxmlc = compc;
 	                    compc.configurationClass = JSGoogCompcConfiguration.class;
 	                    result = compc.mainNoExit(removeJSArgs(args));
@@ -217,7 +219,7 @@ public class COMPJSC extends MXMLJSC
 	                    break;
 	                case JS_ROYALE:
                         System.out.println("COMPCJSCRoyale");
-	                	COMPJSCRoyale royale = new COMPJSCRoyale();
+	                	COMPJSCRoyale royale = ownsWorkspace ? new COMPJSCRoyale() : new COMPJSCRoyale(workspace);
 	                	lastCompiler = royale;
 	                    result = royale.mainNoExit(removeASArgs(args), problems.getProblems(), false);
 	                    if (result != 0)
@@ -288,6 +290,16 @@ public class COMPJSC extends MXMLJSC
         super();
     }
 
+    /**
+     * Create a compiler that builds in an existing {@link Workspace}.
+     * 
+     * @param workspace The shared workspace.
+     */
+    public COMPJSC(Workspace workspace)
+    {
+        super(workspace);
+    }
+
     /**
      * Main body of this program. This method is called from the public static
      * method's for this program.
@@ -667,6 +679,7 @@ public class COMPJSC extends MXMLJSC
                     zipOutputStream.closeEntry();
                     zipOutputStream.flush();
                 	zipOutputStream.close();
+                	SWCArchive.release(swcFile);
                 	swcFile.delete();
                 	File newSWCFile = new File(outputFolderName + ".new");
                 	newSWCFile.renameTo(swcFile);
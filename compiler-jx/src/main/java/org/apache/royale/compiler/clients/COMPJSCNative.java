@@ -77,6 +77,7 @@ import org.apache.royale.compiler.targets.ITargetSettings;
 import org.apache.royale.compiler.units.ICompilationUnit;
 import org.apache.royale.compiler.utils.SourceMapUtils;
 import org.apache.royale.swc.ISWCFileEntry;
+import org.apache.royale.swc.io.SWCArchive;
 import org.apache.royale.swc.io.SWCReader;
 
 /**
@@ -464,6 +465,7 @@ public class COMPJSCNative extends MXMLJSCNative
                     zipOutputStream.closeEntry();
                     zipOutputStream.flush();
                 	zipOutputStream.close();
+                	SWCArchive.release(swcFile);
                 	swcFile.delete();
                 	File newSWCFile = new File(outputFolderName + ".new");
                 	newSWCFile.renameTo(swcFile);
@@ -43,19 +43,16 @@ import com.google.debugging.sourcemap.SourceMapConsumerV3;
 import com.google.debugging.sourcemap.SourceMapGeneratorV3;
 import com.google.debugging.sourcemap.SourceMapParseException;
 
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.io.IOUtils;
-import org.apache.royale.compiler.clients.problems.ProblemQuery;
-import org.apache.royale.compiler.codegen.js.IJSWriter;
-import org.apache.royale.compiler.driver.IBackend;
 import org.apache.royale.compiler.driver.js.IJSApplication;
 import org.apache.royale.compiler.exceptions.ConfigurationException;
 import org.apache.royale.compiler.exceptions.ConfigurationException.IOError;
 import org.apache.royale.compiler.exceptions.ConfigurationException.MustSpecifyTarget;
 import org.apache.royale.compiler.internal.driver.mxml.royale.MXMLRoyaleSWCBackend;
-import org.apache.royale.compiler.internal.parsing.as.RoyaleASDocDelegate;
+import org.apache.royale.compiler.internal.graph.GoogDepsIndex;
 import org.apache.royale.compiler.internal.projects.CompilerProject;
-import org.apache.royale.compiler.internal.projects.RoyaleJSProject;
 import org.apache.royale.compiler.internal.targets.RoyaleSWCTarget;
 import org.apache.royale.compiler.internal.units.SWCCompilationUnit;
 import org.apache.royale.compiler.internal.targets.JSTarget;
@@ -70,6 +67,7 @@ import org.apache.royale.compiler.units.ICompilationUnit;
 import org.apache.royale.compiler.units.ICompilationUnit.UnitType;
 import org.apache.royale.compiler.utils.SourceMapUtils;
 import org.apache.royale.swc.ISWCFileEntry;
+import org.apache.royale.swc.io.SWCArchive;
 import org.apache.royale.swc.io.SWCReader;
 
 /**
@@ -142,13 +140,17 @@ public class COMPJSCRoyale extends MXMLJSCRoyale
 
     public COMPJSCRoyale()
     {
-        IBackend backend = new MXMLRoyaleSWCBackend();
+        super(new Workspace(), new MXMLRoyaleSWCBackend(), true);
+    }
 
-        workspace = new Workspace();
-        workspace.setASDocDelegate(new RoyaleASDocDelegate());
-        project = new RoyaleJSProject(workspace, backend);
-        problems = new ProblemQuery(); // this gets replaced in configure().  Do we need it here?
-        asFileHandler = backend.getSourceFileHandlerInstance();
+    /**
+     * Create a compiler that builds in an existing {@link Workspace}.
+     * 
+     * @param workspace The shared workspace.
+     */
+    public COMPJSCRoyale(Workspace workspace)
+    {
+        super(workspace, new MXMLRoyaleSWCBackend(), false);
     }
 
     /**
@@ -169,7 +171,17 @@ public class COMPJSCRoyale extends MXMLJSCRoyale
             project.getSourceCompilationUnitFactory().addHandler(asFileHandler);
 
             if (setupTargetFile())
-                buildArtifact();
+            {
+                profilePhaseStarted("buildArtifact");
+                try
+                {
+                    buildArtifact();
+                }
+                finally
+                {
+                    profilePhaseCompleted("buildArtifact");
+                }
+            }
 
             if (jsTarget != null)
             {
@@ -281,109 +293,83 @@ public class COMPJSCRoyale extends MXMLJSCRoyale
                 if (!packingSWC) 
                 	outputFolder = new File(outputFolderName);
 
-                Set<String> externs = config.getExterns();
+                final Set<String> externs = config.getExterns();
                 Collection<ICompilationUnit> roots = ((RoyaleSWCTarget)target).getReachableCompilationUnits(errors);
                 Collection<ICompilationUnit> reachableCompilationUnits = project.getReachableCompilationUnitsInSWFOrder(roots);
+                final ArrayList<ICompilationUnit> emittedCompilationUnits = new ArrayList<ICompilationUnit>();
+                final HashMap<ICompilationUnit, File> sourceMapFiles = new HashMap<ICompilationUnit, File>();
                 for (final ICompilationUnit cu : reachableCompilationUnits)
                 {
                     ICompilationUnit.UnitType cuType = cu.getCompilationUnitType();
 
                     if (cuType == ICompilationUnit.UnitType.AS_UNIT
-                            || cuType == ICompilationUnit.UnitType.MXML_UNIT)
+                            || cuType == ICompilationUnit.UnitType.MXML_UNIT
+                            || (cuType == ICompilationUnit.UnitType.SWC_UNIT && packingSWC))
                     {
                     	String symbol = cu.getQualifiedNames().get(0);
                     	if (externs.contains(symbol)) continue;
                     	
                     	if (project.isExternalLinkage(cu)) continue;
-                    	
-                    	if (!packingSWC)
+
+                    	emittedCompilationUnits.add(cu);
+                    	if (!packingSWC && project.config.getSourceMap())
                     	{
+                            sourceMapFiles.put(cu, getOutputSourceMapFile(
+                                    symbol, outputFolder, true));
+                    	}
+                    }
+                }
+
+                final File jsOutputFolder = outputFolder;
+                final ZipOutputStream swcOutputStream = zipOutputStream;
+                final boolean writeToSWC = packingSWC;
+                // the dependencies of the files in js/out, for GoogDepsWriter
+                final GoogDepsIndex swcIndex = new GoogDepsIndex();
+                // the emitter walks run in parallel, the files are written in order
+                ((JSTarget)target).emitCompilationUnits(emittedCompilationUnits,
+                        project.config.getSourceMap(), sourceMapFiles, problems.getProblems(),
+                        new JSTarget.IEmittedCompilationUnitHandler()
+                {
+                    @Override
+                    public void emitted(JSTarget.EmittedCompilationUnit emitted) throws IOException
+                    {
+                        ICompilationUnit cu = emitted.getCompilationUnit();
+                        String symbol = cu.getQualifiedNames().get(0);
+                        if (emitted.getCode() == null)
+                        {
+                            writeSWCUnitToZip((SWCCompilationUnit) cu, swcOutputStream, jsOut, fileList, swcIndex);
+                        }
+                        else if (!writeToSWC)
+                        {
 	                        final File outputClassFile = getOutputClassFile(
-	                                cu.getQualifiedNames().get(0), outputFolder, true);
+	                                symbol, jsOutputFolder, true);
 	
                             if (config.isVerbose())
                             {
                                 System.out.println("Compiling file: " + outputClassFile);
                             }
-	
-	                        ICompilationUnit unit = cu;
-	
-	                        IJSWriter writer;
-	                        if (cuType == ICompilationUnit.UnitType.AS_UNIT)
-	                        {
-	                            writer = (IJSWriter) project.getBackend().createWriter(project,
-	                                    (List<ICompilerProblem>) problems.getProblems(), unit,
-	                                    false);
-	                        }
-	                        else
-	                        {
-	                            writer = (IJSWriter) project.getBackend().createMXMLWriter(
-	                                    project, (List<ICompilerProblem>) problems.getProblems(),
-	                                    unit, false);
-	                        }
-
-                            BufferedOutputStream out = new BufferedOutputStream(
-	                                new FileOutputStream(outputClassFile));
-                            BufferedOutputStream sourceMapOut = null;
-	                        File outputSourceMapFile = null;
-                            if (project.config.getSourceMap())
-                            {
-	                            outputSourceMapFile = getOutputSourceMapFile(
-                                        cu.getQualifiedNames().get(0), outputFolder, true);
-                                sourceMapOut = new BufferedOutputStream(
-                                    new FileOutputStream(outputSourceMapFile));
-                            }
-	                        writer.writeTo(out, sourceMapOut, outputSourceMapFile);
-                            out.flush();
-	                        out.close();
-                            if (sourceMapOut != null)
+
+                            FileUtils.writeByteArrayToFile(outputClassFile, emitted.getCode());
+                            if (emitted.getSourceMap() != null)
                             {
-                                sourceMapOut.flush();
-                                sourceMapOut.close();
+                                FileUtils.writeByteArrayToFile(sourceMapFiles.get(cu), emitted.getSourceMap());
                             }
-                            writer.close();
-                    	}
-                    	else
-                    	{
+                        }
+                        else
+                        {
 	                        if (config.isVerbose())
                             {
-                                System.out.println("Compiling file: " + cu.getQualifiedNames().get(0));
+                                System.out.println("Compiling file: " + symbol);
                             }
-	                    	
-	                        ICompilationUnit unit = cu;
-	
-	                        IJSWriter writer;
-	                        if (cuType == ICompilationUnit.UnitType.AS_UNIT)
-	                        {
-	                            writer = (IJSWriter) project.getBackend().createWriter(project,
-	                                    (List<ICompilerProblem>) problems.getProblems(), unit,
-	                                    false);
-	                        }
-	                        else
-	                        {
-	                            writer = (IJSWriter) project.getBackend().createMXMLWriter(
-	                                    project, (List<ICompilerProblem>) problems.getProblems(),
-	                                    unit, false);
-	                        }
-
-                            ByteArrayOutputStream temp = new ByteArrayOutputStream();
-                            ByteArrayOutputStream sourceMapTemp = null;
-                            
+
                             boolean isExterns = false;
                             if(cu.getDefinitionPromises().size() > 0)
                             {
                                 isExterns = project.isExterns(cu.getDefinitionPromises().get(0).getQualifiedName());
                             }
-	                        
-                            // if the file is @externs DON'T create source map file
-                            if (project.config.getSourceMap() && !isExterns)
-	                        {
-                                sourceMapTemp = new ByteArrayOutputStream();
-	                        }
-                            writer.writeTo(temp, sourceMapTemp, null);
 
                     		File outputClassFile = getOutputClassFile(
-                                    cu.getQualifiedNames().get(0),
+                                    symbol,
                                     isExterns ? externsOut : jsOut,
                                     false);
                             String outputClassFilePath = outputClassFile.getPath();
@@ -393,13 +379,19 @@ public class COMPJSCRoyale extends MXMLJSCRoyale
                                 System.out.println("Writing file: " + outputClassFilePath);     	
                             }
 	                        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-                            temp.writeTo(baos);
-                            writeFileToZip(zipOutputStream, outputClassFilePath, baos, fileList);
+                            baos.write(emitted.getCode());
+                            writeFileToZip(swcOutputStream, outputClassFilePath, baos, fileList);
+                            GoogDepsIndex.FileInfo fileInfo = project.getGoogDepsIndex().get(symbol);
+                            if (fileInfo != null && !isExterns)
+                            {
+                                swcIndex.put(symbol, fileInfo);
+                            }
                             
-                            if(sourceMapTemp != null)
+                            // if the file is @externs DON'T create source map file
+                            if (emitted.getSourceMap() != null && !isExterns)
                             {
                                 String sourceMapFilePath = getOutputSourceMapFile(
-                                    cu.getQualifiedNames().get(0),
+                                    symbol,
                                     isExterns ? externsOut : jsOut,
                                     false).getPath();
                                 sourceMapFilePath = sourceMapFilePath.replace('\\', '/');
@@ -407,72 +399,15 @@ public class COMPJSCRoyale extends MXMLJSCRoyale
                                 {
                                     System.out.println("Writing file: " + sourceMapFilePath);
                                 }
+                                ByteArrayOutputStream sourceMapTemp = new ByteArrayOutputStream();
+                                sourceMapTemp.write(emitted.getSourceMap());
                                 baos = new ByteArrayOutputStream();
                                 processSourceMap(sourceMapTemp, baos, outputClassFile, symbol);
-                                writeFileToZip(zipOutputStream, sourceMapFilePath, baos, fileList);
+                                writeFileToZip(swcOutputStream, sourceMapFilePath, baos, fileList);
                             }
-	                        writer.close();
-                    	}
-                    }
-                    else if (cuType == ICompilationUnit.UnitType.SWC_UNIT)
-                    {
-                    	String symbol = cu.getQualifiedNames().get(0);
-                    	if (externs.contains(symbol)) continue;
-                    	if (project.isExternalLinkage(cu)) continue;
-                    	if (!packingSWC)
-                    	{
-                            // we probably shouldn't skip this -JT
-                            continue;
-                        }
-
-                        // if another .swc file is on our library-path, we must
-                        // include the .js (and .js.map) files because the
-                        // bytecode will also be included. if we have the
-                        // bytecode, but not the .js files, the compiler won't
-                        // know where to find the .js files. that's really bad.
-
-                        // if the bytecode and .js files should not be included,
-                        // then the developer is expected to use
-                        // external-library-path instead of library-path.
-
-                        SWCCompilationUnit swcCU = (SWCCompilationUnit) cu;
-                        String outputClassFile = getOutputClassFile(
-                                cu.getQualifiedNames().get(0),
-                                jsOut,
-                                false).getPath();
-                        outputClassFile = outputClassFile.replace('\\', '/');
-                        ISWCFileEntry fileEntry = swcCU.getSWC().getFile(outputClassFile);
-                        if (fileEntry == null)
-                        {
-                            continue;
-                        }
-                        if (config.isVerbose())
-                        {
-                            System.out.println("Writing file: " + outputClassFile + " from SWC: " + swcCU.getAbsoluteFilename());
-                        }
-                        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-                        InputStream fileStream = fileEntry.createInputStream();
-                        IOUtils.copy(fileStream, baos);
-                        fileStream.close();
-                        writeFileToZip(zipOutputStream, outputClassFile, baos, fileList);
-
-                        String outputMapFile = outputClassFile + ".map";
-                        fileEntry = swcCU.getSWC().getFile(outputMapFile);
-                        if (fileEntry == null)
-                        {
-                            continue;
-                        }
-                        if (config.isVerbose())
-                        {
-                            System.out.println("Writing file: " + outputMapFile + " from SWC: " + swcCU.getAbsoluteFilename());
                         }
-                        baos = new ByteArrayOutputStream();
-                        fileStream = fileEntry.createInputStream();
-                        IOUtils.copy(fileStream, baos);
-                        fileStream.close();
-                        writeFileToZip(zipOutputStream, outputMapFile, baos, fileList);
                     }
-                }
+                });
                 if (!config.getCreateTargetWithErrors())
                 {
                 	errors.clear();
@@ -483,6 +418,12 @@ public class COMPJSCRoyale extends MXMLJSCRoyale
                 }
                 if (packingSWC)
                 {
+                	if (!swcIndex.isEmpty())
+                	{
+                        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+                        swcIndex.write(baos);
+                        writeFileToZip(zipOutputStream, GoogDepsIndex.SWC_ENTRY_PATH, baos, fileList);
+                	}
                 	zipFile.close();
                     long fileDate = System.currentTimeMillis();
                     long zipFileDate = fileDate;
@@ -531,6 +472,7 @@ public class COMPJSCRoyale extends MXMLJSCRoyale
                     zipOutputStream.closeEntry();
                     zipOutputStream.flush();
                 	zipOutputStream.close();
+                	SWCArchive.release(swcFile);
                 	swcFile.delete();
                 	File newSWCFile = new File(outputFolderName + ".new");
                 	newSWCFile.renameTo(swcFile);
@@ -642,6 +584,61 @@ public class COMPJSCRoyale extends MXMLJSCRoyale
         fileList.append("        <file path=\"" + entryFilePath + "\" mod=\"" + fileDate + "\"/>\n");
     }
 
+    /**
+     * Copies the .js and .js.map files of a class from another SWC on the
+     * library-path into the SWC being built.
+     */
+    private void writeSWCUnitToZip(SWCCompilationUnit swcCU, ZipOutputStream zipOutputStream, File jsOut, StringBuilder fileList,
+                                   GoogDepsIndex swcIndex) throws IOException
+    {
+        // if another .swc file is on our library-path, we must
+        // include the .js (and .js.map) files because the
+        // bytecode will also be included. if we have the
+        // bytecode, but not the .js files, the compiler won't
+        // know where to find the .js files. that's really bad.
+
+        // if the bytecode and .js files should not be included,
+        // then the developer is expected to use
+        // external-library-path instead of library-path.
+
+        String outputClassFile = getOutputClassFile(
+                swcCU.getQualifiedNames().get(0),
+                jsOut,
+                false).getPath();
+        outputClassFile = outputClassFile.replace('\\', '/');
+        ISWCFileEntry fileEntry = swcCU.getSWC().getFile(outputClassFile);
+        if (fileEntry == null)
+        {
+            return;
+        }
+        if (config.isVerbose())
+        {
+            System.out.println("Writing file: " + outputClassFile + " from SWC: " + swcCU.getAbsoluteFilename());
+        }
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        InputStream fileStream = fileEntry.createInputStream();
+        IOUtils.copy(fileStream, baos);
+        fileStream.close();
+        writeFileToZip(zipOutputStream, outputClassFile, baos, fileList);
+        swcIndex.add(swcCU.getQualifiedNames().get(0), baos.toString("utf8"));
+
+        String outputMapFile = outputClassFile + ".map";
+        fileEntry = swcCU.getSWC().getFile(outputMapFile);
+        if (fileEntry == null)
+        {
+            return;
+        }
+        if (config.isVerbose())
+        {
+            System.out.println("Writing file: " + outputMapFile + " from SWC: " + swcCU.getAbsoluteFilename());
+        }
+        baos = new ByteArrayOutputStream();
+        fileStream = fileEntry.createInputStream();
+        IOUtils.copy(fileStream, baos);
+        fileStream.close();
+        writeFileToZip(zipOutputStream, outputMapFile, baos, fileList);
+    }
+
     /**
      * Build target artifact.
      * 
@@ -0,0 +1,459 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.compiler.clients;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.flex.tools.FlexTool;
+import org.apache.royale.compiler.filespecs.FileSpecification;
+import org.apache.royale.compiler.internal.driver.js.goog.JSGoogCompcConfiguration;
+import org.apache.royale.compiler.internal.workspaces.Workspace;
+import org.apache.royale.compiler.problems.ICompilerProblem;
+import org.apache.royale.compiler.projects.ICompilerProject;
+import org.apache.royale.compiler.workspaces.IInvalidationListener;
+import org.apache.royale.utils.FilenameNormalization;
+
+/**
+ * A resident compiler that keeps one {@link Workspace} alive across builds and
+ * accepts {@code mxmlc} and {@code compc} requests on a loopback socket.
+ * <p>
+ * The workspace owns the {@code SWCManager} caches (parsed library SWFs, the
+ * file scopes built from their ABC, CSS and asset tags) and the
+ * {@code MXMLData} cache, so only the first build pays for loading the
+ * library path. Each build still gets a fresh project, because the project
+ * configurators only support configuring a project once. Before every build
+ * the server compares the time stamps of all the files the workspace knows
+ * about with the ones recorded after the previous build, and reports the
+ * changed files through {@link Workspace#fileChanged} and
+ * {@link Workspace#fileRemoved}, which drop the stale cache entries and
+ * notify the registered {@link IInvalidationListener}s.
+ * <p>
+ * Builds are run one at a time. Relative paths in compiler arguments are
+ * resolved against the working directory of the server, so requests from a
+ * client in a different working directory are rejected and the client is
+ * expected to compile in-process instead.
+ * <p>
+ * Any local process can connect to the loopback socket, so every request
+ * has to present a token. The server generates a random token at startup and
+ * writes it to a file only the current user can read, by default
+ * {@link #getDefaultTokenFile(int)}, and deletes the file when it stops.
+ * Requests with a missing or wrong token are rejected before they are read
+ * any further.
+ * <p>
+ * Wire protocol, using {@link DataOutputStream} encoding:
+ * <pre>
+ * request:  int version, UTF token, UTF workingDirectory, UTF tool, int argc, UTF[argc] args
+ * response: int status (0 = accepted, 1 = rejected)
+ *           accepted: int exitCode, int outputLength, byte[outputLength] UTF-8 output
+ *           rejected: UTF reason
+ * </pre>
+ * The tool is {@code "mxmlc"} or {@code "compc"}, as in the {@code Royale}
+ * tool group, or {@code "shutdown"} to stop the server.
+ */
+public class CompileServer
+{
+    public static final int PROTOCOL_VERSION = 2;
+    public static final int DEFAULT_PORT = 9050;
+    public static final String SHUTDOWN = "shutdown";
+
+    public static final int STATUS_ACCEPTED = 0;
+    public static final int STATUS_REJECTED = 1;
+
+    private static final int TOKEN_LENGTH = 32;
+
+    /**
+     * Get the file the server listening on a port writes its token to, unless
+     * it is started with {@code -token-file}.
+     *
+     * @param port the port the server listens on.
+     * @return {@code compile-server-<port>.token} in the {@code .royale}
+     * directory of the user's home directory.
+     */
+    public static File getDefaultTokenFile(int port)
+    {
+        return new File(new File(System.getProperty("user.home"), ".royale"),
+                        "compile-server-" + port + ".token");
+    }
+
+    /**
+     * Java program entry point.
+     * <p>
+     * Options: {@code -port=<port>}, {@code -idle-timeout=<minutes>} and
+     * {@code -token-file=<path>}.
+     * With a timeout of 0, the default, the server runs until it receives a
+     * {@code shutdown} request.
+     *
+     * @param args command line arguments
+     */
+    public static void main(final String[] args)
+    {
+        int port = DEFAULT_PORT;
+        int idleTimeoutMinutes = 0;
+        File tokenFile = null;
+        for (String arg : args)
+        {
+            if (arg.startsWith("-port="))
+                port = Integer.parseInt(arg.substring("-port=".length()));
+            else if (arg.startsWith("-idle-timeout="))
+                idleTimeoutMinutes = Integer.parseInt(arg.substring("-idle-timeout=".length()));
+            else if (arg.startsWith("-token-file="))
+                tokenFile = new File(arg.substring("-token-file=".length()));
+            else
+            {
+                System.err.println("unknown option: " + arg);
+                System.exit(1);
+            }
+        }
+
+        if (tokenFile == null)
+            tokenFile = getDefaultTokenFile(port);
+
+        final CompileServer server = new CompileServer(port, idleTimeoutMinutes * 60 * 1000, tokenFile);
+        try
+        {
+            server.run();
+        }
+        catch (IOException e)
+        {
+            System.err.println(e.toString());
+            System.exit(1);
+        }
+        System.exit(0);
+    }
+
+    public CompileServer(int port, int idleTimeout, File tokenFile)
+    {
+        this.port = port;
+        this.idleTimeout = idleTimeout;
+        this.tokenFile = tokenFile;
+        this.token = generateToken();
+        this.workingDirectory = FilenameNormalization.normalize(new File("").getAbsolutePath());
+        this.workspace = new Workspace();
+        this.lastModifiedTimes = new HashMap<String, Long>();
+        this.invalidatedDefinitionCount = new AtomicInteger();
+        this.workspace.addInvalidationListener(new IInvalidationListener()
+        {
+            @Override
+            public void definitionsChanged(Map<ICompilerProject, Collection<InvalidatedDefinition>> changedDefinitions)
+            {
+                for (Collection<InvalidatedDefinition> definitions : changedDefinitions.values())
+                    invalidatedDefinitionCount.addAndGet(definitions.size());
+            }
+        });
+    }
+
+    private final int port;
+    private final int idleTimeout;
+    private final File tokenFile;
+    private final String token;
+    private final String workingDirectory;
+    private final Workspace workspace;
+    private final Map<String, Long> lastModifiedTimes;
+    private final AtomicInteger invalidatedDefinitionCount;
+    private int buildCount;
+
+    /**
+     * Accept and run requests until a shutdown request is received or the
+     * idle timeout expires.
+     *
+     * @throws IOException if the server socket can not be opened or the
+     * token file can not be written.
+     */
+    public void run() throws IOException
+    {
+        final ServerSocket serverSocket = new ServerSocket(port, 0, InetAddress.getLoopbackAddress());
+        try
+        {
+            writeTokenFile();
+            serverSocket.setSoTimeout(idleTimeout);
+            System.out.println("Compile server listening on port " + serverSocket.getLocalPort() +
+                               " in " + workingDirectory + ", token in " + tokenFile.getPath());
+            boolean running = true;
+            while (running)
+            {
+                final Socket socket;
+                try
+                {
+                    socket = serverSocket.accept();
+                }
+                catch (SocketTimeoutException e)
+                {
+                    System.out.println("Compile server idle, shutting down");
+                    break;
+                }
+                try
+                {
+                    running = handleRequest(socket);
+                }
+                catch (IOException e)
+                {
+                    System.err.println("Compile server request failed: " + e.toString());
+                }
+                finally
+                {
+                    socket.close();
+                }
+            }
+        }
+        finally
+        {
+            tokenFile.delete();
+            serverSocket.close();
+            workspace.close();
+        }
+    }
+
+    private static String generateToken()
+    {
+        final byte[] bytes = new byte[TOKEN_LENGTH];
+        new SecureRandom().nextBytes(bytes);
+        final StringBuilder builder = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes)
+            builder.append(String.format("%02x", b & 0xFF));
+        return builder.toString();
+    }
+
+    /**
+     * Write the token to a new file that only the current user can read. A
+     * file left behind by a server that did not shut down cleanly is
+     * replaced, so that its permissions are never reused.
+     */
+    private void writeTokenFile() throws IOException
+    {
+        final File directory = tokenFile.getAbsoluteFile().getParentFile();
+        directory.mkdirs();
+        tokenFile.delete();
+
+        final Path path = tokenFile.toPath();
+        try
+        {
+            if (Files.getFileStore(directory.toPath()).supportsFileAttributeView("posix"))
+            {
+                final Set<PosixFilePermission> permissions = PosixFilePermissions.fromString("rw-------");
+                Files.createFile(path, PosixFilePermissions.asFileAttribute(permissions));
+            }
+            else
+            {
+                Files.createFile(path);
+                tokenFile.setReadable(false, false);
+                tokenFile.setWritable(false, false);
+                tokenFile.setReadable(true, true);
+                tokenFile.setWritable(true, true);
+            }
+        }
+        catch (FileAlreadyExistsException e)
+        {
+            throw new IOException("can not replace token file " + tokenFile.getPath(), e);
+        }
+        Files.write(path, token.getBytes("UTF-8"));
+    }
+
+    private boolean isValidToken(String requestToken) throws UnsupportedEncodingException
+    {
+        // Compare in constant time so the token can not be guessed byte by
+        // byte from the response times.
+        return MessageDigest.isEqual(token.getBytes("UTF-8"), requestToken.getBytes("UTF-8"));
+    }
+
+    /**
+     * @return false if the server should stop.
+     */
+    private boolean handleRequest(Socket socket) throws IOException
+    {
+        final DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+        final int version = in.readInt();
+        if (version != PROTOCOL_VERSION)
+        {
+            reject(out, "unsupported protocol version " + version);
+            return true;
+        }
+        if (!isValidToken(in.readUTF()))
+        {
+            reject(out, "invalid token");
+            return true;
+        }
+
+        final String clientDirectory = in.readUTF();
+        final String tool = in.readUTF();
+        final String[] args = new String[in.readInt()];
+        for (int i = 0; i < args.length; i++)
+            args[i] = in.readUTF();
+
+        if (SHUTDOWN.equals(tool))
+        {
+            out.writeInt(STATUS_ACCEPTED);
+            writeOutput(out, 0, "Compile server shutting down");
+            return false;
+        }
+        if (!FlexTool.FLEX_TOOL_MXMLC.equals(tool) && !FlexTool.FLEX_TOOL_COMPC.equals(tool))
+        {
+            reject(out, "unsupported tool " + tool);
+            return true;
+        }
+        if (!workingDirectory.equals(FilenameNormalization.normalize(clientDirectory)))
+        {
+            reject(out, "server working directory is " + workingDirectory);
+            return true;
+        }
+
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        final int exitCode = build(tool, args, output);
+        out.writeInt(STATUS_ACCEPTED);
+        writeOutput(out, exitCode, output.toString("UTF-8"));
+        return true;
+    }
+
+    private int build(String tool, String[] args, ByteArrayOutputStream output) throws UnsupportedEncodingException
+    {
+        final PrintStream oldOut = System.out;
+        final PrintStream oldErr = System.err;
+        final PrintStream capture = new PrintStream(output, true, "UTF-8");
+        System.setOut(capture);
+        System.setErr(capture);
+        try
+        {
+            final long startTime = System.nanoTime();
+            invalidatedDefinitionCount.set(0);
+            final int changedFileCount = invalidateChangedFiles();
+            if (buildCount > 0)
+            {
+                System.out.println("Compile server build " + (buildCount + 1) + ": " +
+                                   changedFileCount + " changed files, " +
+                                   invalidatedDefinitionCount.get() + " invalidated definitions");
+            }
+
+            int exitCode;
+            try
+            {
+                if (FlexTool.FLEX_TOOL_COMPC.equals(tool))
+                {
+                    final COMPJSC compc = new COMPJSC(workspace);
+                    compc.configurationClass = JSGoogCompcConfiguration.class;
+                    final List<ICompilerProblem> problems = new ArrayList<ICompilerProblem>();
+                    exitCode = compc.mainNoExit(args, problems, true);
+                }
+                else
+                {
+                    exitCode = new MXMLJSC(workspace).execute(args);
+                }
+            }
+            finally
+            {
+                // Projects are not reused across builds, but the caches
+                // they populated in the workspace are.
+                workspace.deleteAllProjects();
+                recordLastModifiedTimes();
+                buildCount++;
+            }
+
+            final long endTime = System.nanoTime();
+            System.out.println((endTime - startTime) / 1e9 + " seconds");
+            return exitCode;
+        }
+        finally
+        {
+            capture.flush();
+            System.setOut(oldOut);
+            System.setErr(oldErr);
+        }
+    }
+
+    /**
+     * Notify the workspace of every known file that changed or was removed
+     * since the previous build.
+     *
+     * @return the number of changed or removed files.
+     */
+    private int invalidateChangedFiles()
+    {
+        int changed = 0;
+        for (Map.Entry<String, Long> entry : lastModifiedTimes.entrySet())
+        {
+            final String path = entry.getKey();
+            final File file = new File(path);
+            if (!file.exists())
+            {
+                workspace.fileRemoved(new FileSpecification(path));
+                changed++;
+            }
+            else if (file.lastModified() != entry.getValue())
+            {
+                workspace.fileChanged(new FileSpecification(path));
+                changed++;
+            }
+        }
+        return changed;
+    }
+
+    private void recordLastModifiedTimes()
+    {
+        lastModifiedTimes.clear();
+        for (String path : workspace.getKnownFilePaths())
+        {
+            final File file = new File(path);
+            if (file.exists())
+                lastModifiedTimes.put(path, file.lastModified());
+        }
+    }
+
+    private static void reject(DataOutputStream out, String reason) throws IOException
+    {
+        out.writeInt(STATUS_REJECTED);
+        out.writeUTF(reason);
+        out.flush();
+    }
+
+    private static void writeOutput(DataOutputStream out, int exitCode, String output) throws IOException
+    {
+        final byte[] bytes = output.getBytes("UTF-8");
+        out.writeInt(exitCode);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+        out.flush();
+    }
+}
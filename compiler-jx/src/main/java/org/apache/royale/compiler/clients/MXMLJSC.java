@@ -55,6 +55,7 @@ import org.apache.royale.compiler.internal.config.FlashBuilderConfigurator;
 import org.apache.royale.compiler.internal.config.localization.LocalizationManager;
 import org.apache.royale.compiler.internal.definitions.DefinitionBase;
 import org.apache.royale.compiler.internal.driver.js.goog.JSGoogConfiguration;
+import org.apache.royale.compiler.internal.driver.mxml.royale.MXMLRoyaleBackend;
 import org.apache.royale.compiler.internal.parsing.as.RoyaleASDocDelegate;
 import org.apache.royale.compiler.internal.projects.CompilerProject;
 import org.apache.royale.compiler.internal.projects.RoyaleJSProject;
@@ -262,6 +263,11 @@ public class MXMLJSC implements JSCompilerEntryPoint, ProblemQueryProvider,
     }
 
     protected Workspace workspace;
+    /**
+     * True if the workspace was created by, and should be closed by, this
+     * compiler.
+     */
+    protected final boolean ownsWorkspace;
     protected RoyaleJSProject project;
 
     protected ProblemQuery problems;
@@ -281,9 +287,29 @@ public class MXMLJSC implements JSCompilerEntryPoint, ProblemQueryProvider,
 	public Class<? extends Configuration> configurationClass = JSGoogConfiguration.class;
     
     public MXMLJSC()
+    {
+        this(new Workspace(), true);
+    }
+
+    /**
+     * Create a compiler that builds in an existing {@link Workspace}, such
+     * as one kept alive by {@link CompileServer}. The workspace, and the SWC
+     * caches it owns, are shared with the compilers this class delegates to
+     * for the SWF and JS_ROYALE targets, and it is not closed when
+     * compilation finishes.
+     * 
+     * @param workspace The shared workspace.
+     */
+    public MXMLJSC(Workspace workspace)
+    {
+        this(workspace, false);
+    }
+
+    private MXMLJSC(Workspace workspace, boolean ownsWorkspace)
     {
         DefinitionBase.setPerformanceCachingEnabled(true);
-        workspace = new Workspace();
+        this.workspace = workspace;
+        this.ownsWorkspace = ownsWorkspace;
         workspace.setASDocDelegate(new RoyaleASDocDelegate());
         project = new RoyaleJSProject(workspace, null);
     }
@@ -345,7 +371,7 @@ public class MXMLJSC implements JSCompilerEntryPoint, ProblemQueryProvider,
             		switch (JSTargetType.fromString(target))
 	                {
 	                case SWF:
-	                    mxmlc = new MXMLC();
+	                    mxmlc = ownsWorkspace ? new MXMLC() : new MXMLC(workspace);
 	                    mxmlc.configurationClass = configurationClass;
 	                    if (noLink)
 	                    	result = mxmlc.mainCompileOnly(removeJSArgs(args), err);
@@ -358,7 +384,8 @@ public class MXMLJSC implements JSCompilerEntryPoint, ProblemQueryProvider,
 	                    }
 	                    break;
 	                case JS_ROYALE:
-	                	MXMLJSCRoyale royale = new MXMLJSCRoyale();
+	                	MXMLJSCRoyale royale = ownsWorkspace ? new MXMLJSCRoyale() :
+	                		new MXMLJSCRoyale(workspace, new MXMLRoyaleBackend());
 	                	lastCompiler = royale;
 	                    result = royale.mainNoExit(removeASArgs(args), problems.getProblems(), false);
 	                    if (result != 0 && result != 2)
@@ -1044,7 +1071,8 @@ public class MXMLJSC implements JSCompilerEntryPoint, ProblemQueryProvider,
         workspace.startIdleState();
         try
         {
-            workspace.close();
+            if (ownsWorkspace)
+                workspace.close();
         }
         finally
         {
@@ -1057,7 +1085,8 @@ public class MXMLJSC implements JSCompilerEntryPoint, ProblemQueryProvider,
      */
     protected void close()
     {
-        workspace.close();
+        if (ownsWorkspace)
+            workspace.close();
     }
     
     public List<String> getSourceList()
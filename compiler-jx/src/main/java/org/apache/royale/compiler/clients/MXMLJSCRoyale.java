@@ -19,12 +19,10 @@
 
 package org.apache.royale.compiler.clients;
 
-import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStream;
@@ -33,12 +31,12 @@ import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.*;
 
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
 import org.apache.royale.compiler.clients.problems.ProblemPrinter;
 import org.apache.royale.compiler.clients.problems.ProblemQuery;
 import org.apache.royale.compiler.clients.problems.ProblemQueryProvider;
 import org.apache.royale.compiler.clients.problems.WorkspaceProblemFormatter;
-import org.apache.royale.compiler.codegen.js.IJSWriter;
 import org.apache.royale.compiler.codegen.js.goog.IJSGoogPublisher;
 import org.apache.royale.compiler.config.Configuration;
 import org.apache.royale.compiler.config.ConfigurationBuffer;
@@ -52,7 +50,9 @@ import org.apache.royale.compiler.exceptions.ConfigurationException.IOError;
 import org.apache.royale.compiler.exceptions.ConfigurationException.MustSpecifyTarget;
 import org.apache.royale.compiler.exceptions.ConfigurationException.OnlyOneSource;
 import org.apache.royale.compiler.internal.codegen.as.ASEmitterTokens;
+import org.apache.royale.compiler.internal.codegen.js.goog.PublishManifest;
 import org.apache.royale.compiler.internal.codegen.js.goog.JSGoogDocEmitter;
+import org.apache.royale.compiler.internal.codegen.mxml.royale.MXMLRoyalePublisher;
 import org.apache.royale.compiler.internal.config.FlashBuilderConfigurator;
 import org.apache.royale.compiler.internal.definitions.AccessorDefinition;
 import org.apache.royale.compiler.internal.definitions.ClassDefinition;
@@ -62,6 +62,7 @@ import org.apache.royale.compiler.internal.definitions.InterfaceDefinition;
 import org.apache.royale.compiler.internal.definitions.ParameterDefinition;
 import org.apache.royale.compiler.internal.driver.js.goog.JSGoogConfiguration;
 import org.apache.royale.compiler.internal.driver.mxml.royale.MXMLRoyaleBackend;
+import org.apache.royale.compiler.internal.graph.GoogDepsIndex;
 import org.apache.royale.compiler.internal.parsing.as.RoyaleASDocDelegate;
 import org.apache.royale.compiler.internal.projects.CompilerProject;
 import org.apache.royale.compiler.internal.projects.RoyaleJSProject;
@@ -73,8 +74,10 @@ import org.apache.royale.compiler.internal.targets.JSTarget;
 import org.apache.royale.compiler.internal.units.ResourceBundleCompilationUnit;
 import org.apache.royale.compiler.internal.units.ResourceModuleCompilationUnit;
 import org.apache.royale.compiler.internal.units.SourceCompilationUnitFactory;
+import org.apache.royale.compiler.internal.workspaces.CompilationProfiler;
 import org.apache.royale.compiler.internal.workspaces.Workspace;
 import org.apache.royale.compiler.problems.ConfigurationProblem;
+import org.apache.royale.compiler.problems.FileIOProblem;
 import org.apache.royale.compiler.problems.ICompilerProblem;
 import org.apache.royale.compiler.problems.InternalCompilerProblem;
 import org.apache.royale.compiler.problems.UnableToBuildSWFProblem;
@@ -178,6 +181,12 @@ public class MXMLJSCRoyale implements JSCompilerEntryPoint, ProblemQueryProvider
     }
 
     protected Workspace workspace;
+    /**
+     * True if the workspace was created by, and should be closed by, this
+     * compiler.
+     */
+    protected final boolean ownsWorkspace;
+    private CompilationProfiler profiler;
     protected RoyaleJSProject project;
 
     protected ProblemQuery problems;
@@ -197,9 +206,28 @@ public class MXMLJSCRoyale implements JSCompilerEntryPoint, ProblemQueryProvider
     }
     
     public MXMLJSCRoyale(IBackend backend)
+    {
+        this(new Workspace(), backend, true);
+    }
+
+    /**
+     * Create a compiler that builds in an existing {@link Workspace}, such
+     * as one kept alive by a resident compile server. The workspace is not
+     * closed when compilation finishes.
+     * 
+     * @param workspace The shared workspace.
+     * @param backend The backend.
+     */
+    public MXMLJSCRoyale(Workspace workspace, IBackend backend)
+    {
+        this(workspace, backend, false);
+    }
+
+    protected MXMLJSCRoyale(Workspace workspace, IBackend backend, boolean ownsWorkspace)
     {
         DefinitionBase.setPerformanceCachingEnabled(true);
-        workspace = new Workspace();
+        this.workspace = workspace;
+        this.ownsWorkspace = ownsWorkspace;
         workspace.setASDocDelegate(new RoyaleASDocDelegate());
         project = new RoyaleJSProject(workspace, backend);
         problems = new ProblemQuery(); // this gets replaced in configure().  Do we need it here?
@@ -256,7 +284,9 @@ public class MXMLJSCRoyale implements JSCompilerEntryPoint, ProblemQueryProvider
             if (continueCompilation)
             {
                 project.setProblems(problems.getProblems());
+                startProfiling();
                	compile();
+                stopProfiling();
                 if (problems.hasFilteredProblems())
                 {
                     if (problems.hasErrors())
@@ -288,6 +318,7 @@ public class MXMLJSCRoyale implements JSCompilerEntryPoint, ProblemQueryProvider
         }
         finally
         {
+            stopProfiling();
             waitAndClose();
 
             if (outProblems != null && problems.hasFilteredProblems())
@@ -324,7 +355,15 @@ public class MXMLJSCRoyale implements JSCompilerEntryPoint, ProblemQueryProvider
                     return false;
                 }
 
-	            buildArtifact();
+	            profilePhaseStarted("buildArtifact");
+	            try
+	            {
+	                buildArtifact();
+	            }
+	            finally
+	            {
+	                profilePhaseCompleted("buildArtifact");
+	            }
             }
             if (jsTarget != null || googConfiguration.getSkipTranspile())
             {
@@ -366,6 +405,8 @@ public class MXMLJSCRoyale implements JSCompilerEntryPoint, ProblemQueryProvider
 	                    	outputResourceBundle((ResourceBundleCompilationUnit)cu, outputFolder);
 	                    }
 	                }
+	                final ArrayList<ICompilationUnit> emittedCompilationUnits = new ArrayList<ICompilationUnit>();
+	                final HashMap<ICompilationUnit, File> sourceMapFiles = new HashMap<ICompilationUnit, File>();
 	                for (final ICompilationUnit cu : reachableCompilationUnits)
 	                {
 	                    ICompilationUnit.UnitType cuType = cu.getCompilationUnitType();
@@ -373,54 +414,53 @@ public class MXMLJSCRoyale implements JSCompilerEntryPoint, ProblemQueryProvider
 	                    if (cuType == ICompilationUnit.UnitType.AS_UNIT
 	                            || cuType == ICompilationUnit.UnitType.MXML_UNIT)
 	                    {
+	                        emittedCompilationUnits.add(cu);
+	                        if (project.config.getSourceMap())
+	                        {
+	                            sourceMapFiles.put(cu, getOutputSourceMapFile(
+                                        cu.getQualifiedNames().get(0), outputFolder));
+	                        }
+	                    }
+                        ClosureUtils.collectPropertyNamesToKeep(cu, project, closurePropNamesToKeep);
+                        ClosureUtils.collectSymbolNamesToExport(cu, project, closureSymbolNamesToExport);
+	                }
+	                final File jsOutputFolder = outputFolder;
+	                final PublishManifest manifest = jsPublisher instanceof MXMLRoyalePublisher ?
+	                        ((MXMLRoyalePublisher) jsPublisher).getPublishManifest() : null;
+	                final ArrayList<JSTarget.EmittedCompilationUnit> heldCompilationUnits =
+	                        new ArrayList<JSTarget.EmittedCompilationUnit>();
+	                // the emitter walks run in parallel, the files are written in order
+	                ((JSTarget)target).emitCompilationUnits(emittedCompilationUnits,
+	                        project.config.getSourceMap(), sourceMapFiles, problems.getProblems(),
+	                        new JSTarget.IEmittedCompilationUnitHandler()
+	                {
+	                    @Override
+	                    public void emitted(JSTarget.EmittedCompilationUnit emitted) throws IOException
+	                    {
+	                        ICompilationUnit cu = emitted.getCompilationUnit();
 	                        final File outputClassFile = getOutputClassFile(
-	                                cu.getQualifiedNames().get(0), outputFolder);
+	                                cu.getQualifiedNames().get(0), jsOutputFolder);
     
                             if (config.isVerbose())
                             {
                                 System.out.println("Compiling file: " + outputClassFile);
                             }
-	
-	                        ICompilationUnit unit = cu;
-	
-	                        IJSWriter writer;
-	                        if (cuType == ICompilationUnit.UnitType.AS_UNIT)
+
+	                        if (manifest != null)
 	                        {
-	                            writer = (IJSWriter) project.getBackend().createWriter(project,
-	                                    problems.getProblems(), unit, false);
+	                            // whether a file can be kept depends on the requires of all files
+	                            heldCompilationUnits.add(emitted);
+	                            return;
 	                        }
-	                        else
+	                        FileUtils.writeByteArrayToFile(outputClassFile, emitted.getCode());
+	                        if (emitted.getSourceMap() != null)
 	                        {
-	                            writer = (IJSWriter) project.getBackend().createMXMLWriter(
-	                                    project, problems.getProblems(), unit, false);
+	                            FileUtils.writeByteArrayToFile(sourceMapFiles.get(cu), emitted.getSourceMap());
 	                        }
-	
-	                        BufferedOutputStream out = new BufferedOutputStream(
-	                                new FileOutputStream(outputClassFile));
-
-                            BufferedOutputStream sourceMapOut = null;
-	                        File outputSourceMapFile = null;
-	                        if (project.config.getSourceMap())
-	                        {
-	                            outputSourceMapFile = getOutputSourceMapFile(
-                                        cu.getQualifiedNames().get(0), outputFolder);
-                                sourceMapOut = new BufferedOutputStream(
-	                                    new FileOutputStream(outputSourceMapFile));
-	                        }
-	                        
-	                        writer.writeTo(out, sourceMapOut, outputSourceMapFile);
-	                        out.flush();
-	                        out.close();
-                            if (sourceMapOut != null)
-                            {
-                                sourceMapOut.flush();
-                                sourceMapOut.close();
-                            }
-	                        writer.close();
 	                    }
-                        ClosureUtils.collectPropertyNamesToKeep(cu, project, closurePropNamesToKeep);
-                        ClosureUtils.collectSymbolNamesToExport(cu, project, closureSymbolNamesToExport);
-	                }
+	                });
+	                if (manifest != null)
+	                    writeChangedCompilationUnits(heldCompilationUnits, jsOutputFolder, sourceMapFiles, manifest);
 	                File externsReportFile = googConfiguration.getExternsReport();
 	                if (externsReportFile != null)
 	                	generateExternsReport(externsReportFile, reachableCompilationUnits, problems);
@@ -439,7 +479,15 @@ public class MXMLJSCRoyale implements JSCompilerEntryPoint, ProblemQueryProvider
                 {
                     jsPublisher.setClosurePropertyNamesToKeep(closurePropNamesToKeep);
                     jsPublisher.setClosureSymbolNamesToExport(closureSymbolNamesToExport);
-                    compilationSuccess = jsPublisher.publish(problems);
+                    profilePhaseStarted("publish");
+                    try
+                    {
+                        compilationSuccess = jsPublisher.publish(problems);
+                    }
+                    finally
+                    {
+                        profilePhaseCompleted("publish");
+                    }
                 }
                 else
                 {
@@ -709,7 +757,11 @@ public class MXMLJSCRoyale implements JSCompilerEntryPoint, ProblemQueryProvider
 							try {
 								is = fileEntry.createInputStream();
 								BufferedReader br = new BufferedReader(new InputStreamReader(is));
-			                	writeResourceBundle(br, bundleClassName, outputFolder);
+								try {
+									writeResourceBundle(br, bundleClassName, outputFolder);
+								} finally {
+									br.close();
+								}
 							} catch (IOException e) {
 								// TODO Auto-generated catch block
 								e.printStackTrace();
@@ -902,6 +954,47 @@ public class MXMLJSCRoyale implements JSCompilerEntryPoint, ProblemQueryProvider
             return config.getOutput();
     }
 
+    /**
+     * Write the emitted files that differ from the ones left by the previous
+     * publish. GoogDepsWriter removes requires from every file, based on the
+     * dependency graph of all files, so a file can only be kept if its own
+     * code and the requires of all files are unchanged. The main file is
+     * always written, because GoogDepsWriter appends to it.
+     */
+    private void writeChangedCompilationUnits(List<JSTarget.EmittedCompilationUnit> emittedCompilationUnits,
+            File outputFolder, Map<ICompilationUnit, File> sourceMapFiles, PublishManifest manifest)
+            throws IOException
+    {
+        List<Object> graph = new ArrayList<Object>();
+        for (JSTarget.EmittedCompilationUnit emitted : emittedCompilationUnits)
+        {
+            String qname = emitted.getCompilationUnit().getQualifiedNames().get(0);
+            graph.add(qname);
+            GoogDepsIndex.FileInfo fileInfo = project.getGoogDepsIndex().get(qname);
+            if (fileInfo != null && fileInfo.deps != null)
+                graph.addAll(fileInfo.deps);
+        }
+        String graphKey = PublishManifest.computeKey(graph.toArray());
+
+        for (JSTarget.EmittedCompilationUnit emitted : emittedCompilationUnits)
+        {
+            ICompilationUnit cu = emitted.getCompilationUnit();
+            File outputClassFile = getOutputClassFile(cu.getQualifiedNames().get(0), outputFolder);
+            File sourceMapFile = sourceMapFiles.get(cu);
+            String key = PublishManifest.computeKey(emitted.getCode(), emitted.getSourceMap(), graphKey);
+            if (cu != mainCU && manifest.keepIfUpToDate(outputClassFile, key)
+                    && (emitted.getSourceMap() == null || manifest.keepIfUpToDate(sourceMapFile, key)))
+                continue;
+            FileUtils.writeByteArrayToFile(outputClassFile, emitted.getCode());
+            manifest.record(outputClassFile, key);
+            if (emitted.getSourceMap() != null)
+            {
+                FileUtils.writeByteArrayToFile(sourceMapFile, emitted.getSourceMap());
+                manifest.record(sourceMapFile, key);
+            }
+        }
+    }
+
     /**
      * @author Erik de Bruin
      * 
@@ -1156,7 +1249,8 @@ public class MXMLJSCRoyale implements JSCompilerEntryPoint, ProblemQueryProvider
         workspace.startIdleState();
         try
         {
-            workspace.close();
+            if (ownsWorkspace)
+                workspace.close();
         }
         finally
         {
@@ -1164,12 +1258,57 @@ public class MXMLJSCRoyale implements JSCompilerEntryPoint, ProblemQueryProvider
         }
     }
 
+    /**
+     * Start profiling the compilation if a profile report directory is
+     * configured.
+     */
+    protected void startProfiling()
+    {
+        if (config.getProfileReportDirectory() != null && profiler == null)
+            profiler = CompilationProfiler.install(workspace);
+    }
+
+    /**
+     * Stop profiling and write the profile reports. Does nothing if the
+     * compilation is not profiled, or profiling was already stopped.
+     */
+    protected void stopProfiling()
+    {
+        if (profiler == null)
+            return;
+        profiler.uninstall();
+        try
+        {
+            final String summary = profiler.writeReports(config.getProfileReportDirectory(),
+                    "js-" + getTargetType().getExtension(), config.getProfileReportTop());
+            System.out.println(summary);
+        }
+        catch (IOException e)
+        {
+            problems.add(new FileIOProblem(e));
+        }
+        profiler = null;
+    }
+
+    protected void profilePhaseStarted(String phase)
+    {
+        if (profiler != null)
+            profiler.phaseStarted(null, phase);
+    }
+
+    protected void profilePhaseCompleted(String phase)
+    {
+        if (profiler != null)
+            profiler.phaseCompleted(null, phase);
+    }
+
     /**
      * Force terminate the compilation process.
      */
     protected void close()
     {
-        workspace.close();
+        if (ownsWorkspace)
+            workspace.close();
     }
     
     public List<String> getSourceList()
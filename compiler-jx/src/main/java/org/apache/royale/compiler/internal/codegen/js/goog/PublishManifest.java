@@ -0,0 +1,260 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.royale.compiler.internal.codegen.js.goog;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.io.FileUtils;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+/**
+ * Records the files written to the js-debug folder by the previous publish,
+ * so that an incremental publish can leave files alone when their source did
+ * not change.
+ * <p>
+ * Every entry maps an output file to a key describing where its content came
+ * from (a hash of the emitted code, or the path and time stamp of the SWC or
+ * file it was copied from) and to the length and time stamp the output file
+ * had at the end of the previous publish. An output file is up to date if its
+ * key is unchanged and the file was not touched since. Because the recorded
+ * time stamps are taken after the dependency writer post-processed the
+ * files, a file that is left alone is also known to be post-processed.
+ * <p>
+ * Entries are only valid for the build key they were recorded with. The
+ * build key covers the settings and libraries the post-processing depends
+ * on; when it changes, every file is written again.
+ */
+public class PublishManifest
+{
+    public static final String FILE_NAME = ".royale-publish-manifest";
+
+    private static final String HEADER = "royale-publish-manifest 1";
+
+    private static class Entry
+    {
+        Entry(String key, long length, long lastModified)
+        {
+            this.key = key;
+            this.length = length;
+            this.lastModified = lastModified;
+        }
+
+        final String key;
+        final long length;
+        final long lastModified;
+    }
+
+    /**
+     * Load the manifest of an output folder.
+     *
+     * @param outputFolder The js-debug folder.
+     * @param buildKey The key of the current build. If it does not match the
+     * key the manifest was saved with, the manifest starts out empty.
+     * @return The manifest, never null.
+     */
+    public static PublishManifest load(File outputFolder, String buildKey)
+    {
+        final PublishManifest manifest = new PublishManifest(new File(outputFolder, FILE_NAME), buildKey);
+        if (manifest.file.isFile())
+        {
+            try
+            {
+                final List<String> lines = FileUtils.readLines(manifest.file, StandardCharsets.UTF_8);
+                if (lines.size() >= 2 && HEADER.equals(lines.get(0)) && buildKey.equals(lines.get(1)))
+                {
+                    for (String line : lines.subList(2, lines.size()))
+                    {
+                        final String[] fields = line.split("\t");
+                        if (fields.length != 4)
+                            continue;
+                        manifest.previous.put(fields[0],
+                                new Entry(fields[1], Long.parseLong(fields[2]), Long.parseLong(fields[3])));
+                    }
+                }
+            }
+            catch (IOException e)
+            {
+                manifest.previous.clear();
+            }
+            catch (NumberFormatException e)
+            {
+                manifest.previous.clear();
+            }
+        }
+        return manifest;
+    }
+
+    /**
+     * Computes a key from strings or bytes, e.g. emitted code.
+     *
+     * @param parts {@code String} or {@code byte[]} values, nulls are allowed.
+     * @return A hex encoded hash.
+     */
+    public static String computeKey(Object... parts)
+    {
+        final Hasher hasher = Hashing.sha256().newHasher();
+        for (Object part : parts)
+        {
+            if (part instanceof byte[])
+            {
+                hasher.putInt(((byte[])part).length);
+                hasher.putBytes((byte[])part);
+            }
+            else if (part != null)
+            {
+                hasher.putString(part.toString(), StandardCharsets.UTF_8);
+            }
+            hasher.putByte((byte)0);
+        }
+        return hasher.hash().toString();
+    }
+
+    /**
+     * Computes the key of a file copied from another file.
+     */
+    public static String computeKey(File source)
+    {
+        return source.getAbsolutePath() + ":" + source.length() + "@" + source.lastModified();
+    }
+
+    /**
+     * Computes the key of a file extracted from an entry of a SWC.
+     */
+    public static String computeKey(File swcFile, String entryPath)
+    {
+        return computeKey(swcFile) + "!" + entryPath;
+    }
+
+    private PublishManifest(File file, String buildKey)
+    {
+        this.file = file;
+        this.buildKey = buildKey;
+        previous = new HashMap<String, Entry>();
+        current = new HashMap<String, String>();
+        kept = new HashSet<String>();
+    }
+
+    private final File file;
+    private final String buildKey;
+    private final Map<String, Entry> previous;
+    private final Map<String, String> current;
+    private final Set<String> kept;
+    private int writtenCount;
+
+    /**
+     * @return true if the file was published from the same source by the
+     * previous publish and has not been touched since.
+     */
+    public synchronized boolean isUpToDate(File outputFile, String key)
+    {
+        final Entry entry = previous.get(outputFile.getAbsolutePath());
+        return entry != null && entry.key.equals(key) &&
+               outputFile.length() == entry.length &&
+               outputFile.lastModified() == entry.lastModified;
+    }
+
+    /**
+     * Keep an up to date file, instead of writing it again.
+     */
+    public synchronized void keep(File outputFile)
+    {
+        final String path = outputFile.getAbsolutePath();
+        final Entry entry = previous.get(path);
+        assert entry != null : "Only up to date files can be kept";
+        current.put(path, entry.key);
+        kept.add(path);
+    }
+
+    /**
+     * Keep the file if it is up to date.
+     *
+     * @return true if the file was kept, or was already written from the
+     * same source by this publish, and does not need to be written.
+     */
+    public synchronized boolean keepIfUpToDate(File outputFile, String key)
+    {
+        if (key.equals(current.get(outputFile.getAbsolutePath())))
+            return true;
+        if (!isUpToDate(outputFile, key))
+            return false;
+        keep(outputFile);
+        return true;
+    }
+
+    /**
+     * Record that the file was written from the source with the given key.
+     */
+    public synchronized void record(File outputFile, String key)
+    {
+        final String path = outputFile.getAbsolutePath();
+        current.put(path, key);
+        kept.remove(path);
+        writtenCount++;
+    }
+
+    /**
+     * @return true if the file was kept by this publish, and so is still
+     * exactly as the previous publish left it.
+     */
+    public synchronized boolean isKept(File outputFile)
+    {
+        return kept.contains(outputFile.getAbsolutePath());
+    }
+
+    public synchronized int getKeptCount()
+    {
+        return kept.size();
+    }
+
+    public synchronized int getWrittenCount()
+    {
+        return writtenCount;
+    }
+
+    /**
+     * Save the manifest. Must be called after all output files have been
+     * post-processed, so the recorded time stamps are the final ones.
+     * Files that were neither kept nor written by this publish are dropped.
+     */
+    public synchronized void save() throws IOException
+    {
+        final List<String> lines = new ArrayList<String>();
+        lines.add(HEADER);
+        lines.add(buildKey);
+        for (Map.Entry<String, String> entry : current.entrySet())
+        {
+            final File outputFile = new File(entry.getKey());
+            if (!outputFile.isFile())
+                continue;
+            lines.add(entry.getKey() + "\t" + entry.getValue() + "\t" +
+                      outputFile.length() + "\t" + outputFile.lastModified());
+        }
+        FileUtils.writeLines(file, "utf8", lines);
+    }
+}
@@ -27,8 +27,10 @@ import org.apache.commons.io.filefilter.DirectoryFileFilter;
 import org.apache.commons.io.filefilter.FileFileFilter;
 import org.apache.commons.io.filefilter.FileFilterUtils;
 import org.apache.commons.io.filefilter.IOFileFilter;
+import org.apache.commons.io.filefilter.TrueFileFilter;
 import org.apache.royale.compiler.clients.problems.ProblemQuery;
 import org.apache.royale.compiler.codegen.js.goog.IJSGoogPublisher;
+import org.apache.royale.compiler.common.VersionInfo;
 import org.apache.royale.compiler.config.Configuration;
 import org.apache.royale.compiler.css.ICSSPropertyValue;
 import org.apache.royale.compiler.definitions.IClassDefinition;
@@ -37,6 +39,7 @@ import org.apache.royale.compiler.definitions.metadata.IMetaTag;
 import org.apache.royale.compiler.filespecs.IFileSpecification;
 import org.apache.royale.compiler.internal.codegen.js.goog.JSGoogPublisher;
 import org.apache.royale.compiler.internal.codegen.js.goog.JarSourceFile;
+import org.apache.royale.compiler.internal.codegen.js.goog.PublishManifest;
 import org.apache.royale.compiler.internal.css.CSSArrayPropertyValue;
 import org.apache.royale.compiler.internal.css.CSSFontFace;
 import org.apache.royale.compiler.internal.css.CSSFunctionCallPropertyValue;
@@ -105,13 +108,47 @@ public class MXMLRoyalePublisher extends JSGoogPublisher implements IJSGoogPubli
     private List<String> additionalHTML = new ArrayList<String>();
     private Set<String> closurePropertyNamesToKeep;
     private Set<String> closureSymbolNamesToExport;
+    private PublishManifest publishManifest;
 
     private GoogDepsWriter getGoogDepsWriter(File intermediateDir, 
     										String mainClassQName, 
     										JSGoogConfiguration googConfiguration, 
     										List<ISWC> swcs)
     {
-    	return new GoogDepsWriter(intermediateDir, mainClassQName, googConfiguration, swcs);
+    	GoogDepsWriter gdw = new GoogDepsWriter(intermediateDir, mainClassQName, googConfiguration, swcs);
+    	gdw.setPublishManifest(getPublishManifest());
+    	return gdw;
+    }
+
+    /**
+     * Gets the manifest of the files in the intermediate directory, loading it
+     * on first use. Must not be called before {@link #getOutputFolder()}.
+     * 
+     * @return The manifest, or null if incremental publishing is off.
+     */
+    public PublishManifest getPublishManifest()
+    {
+        if (publishManifest == null && googConfiguration.getIncrementalPublish())
+        {
+            // Everything the post-processing of the files depends on, other
+            // than the files themselves.
+            List<Object> buildKey = new ArrayList<Object>();
+            buildKey.add(VersionInfo.buildMessage());
+            buildKey.add(String.valueOf(googConfiguration.getSourceMap()));
+            buildKey.add(googConfiguration.getSourceMapSourceRoot());
+            buildKey.add(String.valueOf(googConfiguration.getRemoveCirculars()));
+            buildKey.addAll(googConfiguration.getSDKJSLib());
+            for (ISWC swc : project.getLibraries())
+            {
+                buildKey.add(PublishManifest.computeKey(swc.getSWCFile()));
+            }
+            for (IFileSpecification themeFile : project.getThemeFiles())
+            {
+                buildKey.add(PublishManifest.computeKey(new File(themeFile.getPath())));
+            }
+            publishManifest = PublishManifest.load(outputFolder, PublishManifest.computeKey(buildKey.toArray()));
+        }
+        return publishManifest;
     }
 
     @Override
@@ -279,7 +316,11 @@ public class MXMLRoyalePublisher extends JSGoogPublisher implements IJSGoogPubli
                 jsonSuffixFilter);
         IOFileFilter resourceFilter = FileFilterUtils.or(DirectoryFileFilter.DIRECTORY, assetFiles);
         // FIXME: All images need to be located relative to the Main class ... for Maven this is a problem.
-        FileUtils.copyDirectory(imageSrcDir, intermediateDir, resourceFilter);
+        final PublishManifest manifest = getPublishManifest();
+        if (manifest != null)
+            copyResources(imageSrcDir, intermediateDir, assetFiles, manifest);
+        else
+            FileUtils.copyDirectory(imageSrcDir, intermediateDir, resourceFilter);
         // Iterate over all themes SWCs and add the contents of any included files in
         // an assets folder to an assets folder in the destination folder.
         final ISWCManager swcManager = project.getWorkspace().getSWCManager();
@@ -300,6 +341,11 @@ public class MXMLRoyalePublisher extends JSGoogPublisher implements IJSGoogPubli
 	                    ISWCFileEntry fileEntry = swc.getFile(key);
 	                    if (fileEntry != null)
 	                    {
+	                        File assetFile = new File(intermediateDir, key);
+	                        String assetKey = PublishManifest.computeKey(swc.getSWCFile(), key);
+	                        boolean upToDate = manifest != null && manifest.keepIfUpToDate(assetFile, assetKey);
+	                        if (upToDate && !configuration.release())
+	                            continue;
 	                        InputStream is = fileEntry.createInputStream();
 	                        int n = is.available();
 	                        int total = 0;
@@ -308,7 +354,13 @@ public class MXMLRoyalePublisher extends JSGoogPublisher implements IJSGoogPubli
 	                        {
 	                        	total += is.read(data, total, n - total);
 	                        }
-	                        FileUtils.writeByteArrayToFile(new File(intermediateDir, key), data);
+	                        is.close();
+	                        if (!upToDate)
+	                        {
+	                            FileUtils.writeByteArrayToFile(assetFile, data);
+	                            if (manifest != null)
+	                                manifest.record(assetFile, assetKey);
+	                        }
                             if (configuration.release())
                             {
 	                            FileUtils.writeByteArrayToFile(new File(releaseDir, key), data);
@@ -379,8 +431,17 @@ public class MXMLRoyalePublisher extends JSGoogPublisher implements IJSGoogPubli
         // Dump a copy of the closure lib files to the intermediate directory. Without this
         // the application will not be able to run.
         for(SourceFile closureSourceFile : closureSourceFiles) {
-            FileUtils.write(new File(new File(intermediateDir, "library/closure"),
-                    closureSourceFile.getName()), closureSourceFile.getCode(), Charset.forName("utf8"));
+            File closureFile = new File(new File(intermediateDir, "library/closure"),
+                    closureSourceFile.getName());
+            String closureFileKey = null;
+            if (manifest != null) {
+                closureFileKey = PublishManifest.computeKey(closureSourceFile.getCode());
+                if (manifest.keepIfUpToDate(closureFile, closureFileKey))
+                    continue;
+            }
+            FileUtils.write(closureFile, closureSourceFile.getCode(), Charset.forName("utf8"));
+            if (manifest != null)
+                manifest.record(closureFile, closureFileKey);
         }
         closureSourceFiles = closureFilesInOrder(intermediateDir + "/library/closure/", closureSourceFiles, "goog.events.EventTarget");
 
@@ -575,6 +636,16 @@ public class MXMLRoyalePublisher extends JSGoogPublisher implements IJSGoogPubli
         }
 
 
+        // All files in the intermediate directory have been post-processed.
+        if (manifest != null) {
+            manifest.save();
+            if (googConfiguration.isVerbose())
+            {
+                System.out.println("Incremental publish: " + manifest.getKeptCount() + " files unchanged, " +
+                        manifest.getWrittenCount() + " files written");
+            }
+        }
+
         /////////////////////////////////////////////////////////////////////////////////
         // If we are doing a release build, let the closure compiler do it's job.
         /////////////////////////////////////////////////////////////////////////////////
@@ -1092,6 +1163,30 @@ public class MXMLRoyalePublisher extends JSGoogPublisher implements IJSGoogPubli
         }
     }
 
+    /**
+     * Copies the files accepted by the filter from a directory tree, like
+     * FileUtils.copyDirectory(), but leaves alone the files the manifest
+     * knows to be up to date.
+     */
+    protected void copyResources(File srcDir, File destDir, IOFileFilter fileFilter, PublishManifest manifest) throws IOException {
+        if (!srcDir.isDirectory()) {
+            return;
+        }
+        // The destination may be inside the source directory.
+        String destPath = destDir.getAbsolutePath() + File.separator;
+        for (File file : FileUtils.listFiles(srcDir, fileFilter, TrueFileFilter.INSTANCE)) {
+            if (file.getAbsolutePath().startsWith(destPath)) {
+                continue;
+            }
+            File destFile = new File(destDir, srcDir.toURI().relativize(file.toURI()).getPath());
+            String key = PublishManifest.computeKey(file);
+            if (!manifest.keepIfUpToDate(destFile, key)) {
+                FileUtils.copyFile(file, destFile);
+                manifest.record(destFile, key);
+            }
+        }
+    }
+
     protected void clearEmptyDirectoryTrees(File baseDirectory) {
         File[] files = baseDirectory.listFiles();
         if(files != null) {
@@ -989,4 +989,28 @@ public class JSGoogConfiguration extends JSConfiguration
     	inlineConstants = value;
     }
 
+    //
+    // 'incremental-publish'
+    //
+
+    private boolean incrementalPublish = false;
+
+    /**
+     * Keep a manifest of the files published to the js-debug folder, and
+     * leave files alone whose content did not change since the previous
+     * build, instead of writing and post-processing all of them again.
+     */
+    public boolean getIncrementalPublish()
+    {
+        return incrementalPublish;
+    }
+
+    @Config(advanced = true)
+    @Mapping("incremental-publish")
+    public void setIncrementalPublish(ConfigurationValue cv, boolean value)
+            throws ConfigurationException
+    {
+        incrementalPublish = value;
+    }
+
 }
@@ -0,0 +1,456 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.royale.compiler.internal.graph;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringReader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.royale.compiler.internal.codegen.js.goog.JSGoogEmitterTokens;
+
+import com.google.common.base.Joiner;
+
+/**
+ * The goog.provide, goog.require, @extends and @implements information of
+ * JavaScript files, by class name, as used by {@link GoogDepsWriter} to sort
+ * the files.
+ * <p>
+ * The information is collected once, from the code in memory, when a file
+ * is emitted, and is stored in a sidecar entry of a SWC for the files in its
+ * js/out folder, so the files do not have to be read back and scanned when
+ * an application is published.
+ */
+public class GoogDepsIndex
+{
+	/**
+	 * The path of the index in a SWC. It is in the js/out folder, so it is
+	 * replaced together with the JavaScript files when a SWC is rebuilt.
+	 */
+	public static final String SWC_ENTRY_PATH = "js/out/royale-goog-deps.txt";
+
+	private static final String HEADER = "royale-goog-deps 1";
+
+	/**
+	 * Dependency information for one file. The line numbers are those of the
+	 * file as it was emitted.
+	 */
+	public static class FileInfo
+	{
+		public ArrayList<String> impls;
+		public ArrayList<String> deps;
+		public ArrayList<String> staticDeps;
+		public ArrayList<String> provides;
+		/**
+		 * The classes listed as static dependencies, in the order they were
+		 * listed, excluding the class itself.
+		 */
+		public ArrayList<String> staticInitializers;
+		/**
+		 * The lines of the inject_script blocks.
+		 */
+		public ArrayList<String> injectedHTML;
+		public int constructorLine;
+		public int suppressLine;
+		public int fileoverviewLine;
+		public int googProvideLine;
+		public boolean isExtern;
+
+		/**
+		 * @return A copy that can be modified without changing this one.
+		 */
+		public FileInfo copy()
+		{
+			FileInfo fi = new FileInfo();
+			fi.impls = copy(impls);
+			fi.deps = copy(deps);
+			fi.staticDeps = copy(staticDeps);
+			fi.provides = copy(provides);
+			fi.staticInitializers = copy(staticInitializers);
+			fi.injectedHTML = copy(injectedHTML);
+			fi.constructorLine = constructorLine;
+			fi.suppressLine = suppressLine;
+			fi.fileoverviewLine = fileoverviewLine;
+			fi.googProvideLine = googProvideLine;
+			fi.isExtern = isExtern;
+			return fi;
+		}
+
+		private static ArrayList<String> copy(ArrayList<String> list)
+		{
+			return list != null ? new ArrayList<String>(list) : null;
+		}
+	}
+
+	private final Map<String, FileInfo> fileInfos = new ConcurrentHashMap<String, FileInfo>();
+
+	/**
+	 * @return The information for the file of a class, or null if the class
+	 * is not in the index. Callers must not modify it.
+	 */
+	public FileInfo get(String className)
+	{
+		return fileInfos.get(className);
+	}
+
+	public void put(String className, FileInfo fileInfo)
+	{
+		fileInfos.put(className, fileInfo);
+	}
+
+	/**
+	 * Scan the code emitted for a class and add it to the index.
+	 */
+	public FileInfo add(String className, String code)
+	{
+		FileInfo fi = scan(code, className);
+		fileInfos.put(className, fi);
+		return fi;
+	}
+
+	public boolean isEmpty()
+	{
+		return fileInfos.isEmpty();
+	}
+
+	public static FileInfo scan(String code, String className)
+	{
+		ArrayList<String> lines = new ArrayList<String>();
+		BufferedReader reader = new BufferedReader(new StringReader(code));
+		try
+		{
+			String line;
+			while ((line = reader.readLine()) != null)
+				lines.add(line);
+		}
+		catch (IOException e)
+		{
+			// can't happen with a StringReader
+			throw new IllegalStateException(e);
+		}
+		return scan(lines, className);
+	}
+
+	public static FileInfo scan(List<String> lines, String className)
+	{
+		FileInfo fi = new FileInfo();
+
+		int numProvides = 0;
+		int constructorCount = 0;
+	    int n = lines.size();
+	    fi.constructorLine = -1;
+	    fi.suppressLine = -1;
+	    fi.fileoverviewLine = -1;
+		fi.googProvideLine = -1;
+		boolean inInjectScript = false;
+	    for (int i = 0; i < n; i++)
+	    {
+	        String line = lines.get(i);
+	        int c2;
+	        int c = line.indexOf("*/");
+	        if (c > -1 && constructorCount > 0 && constructorCount == numProvides)
+	        {
+                break;
+	        }
+	        else
+	        {
+		        if (inInjectScript)
+	            {
+	                if (line.indexOf("</inject_script>") > -1)
+	                {
+	                    inInjectScript = false;
+	                    continue;
+	                }
+	            	line = line.trim();
+	            	if (line.startsWith("*"))
+	            		line = line.substring(1);
+	            	if (fi.injectedHTML == null)
+	            		fi.injectedHTML = new ArrayList<String>();
+				    fi.injectedHTML.add(line);
+				    continue;
+	            }
+                c = line.indexOf("<inject_script>");
+                if (c > -1)
+                {
+                    inInjectScript = true;
+                }
+		        c = line.indexOf("@constructor");
+		        if (c > -1)
+		        {
+		        	if (fi.constructorLine == -1)
+		        		fi.constructorLine = i;
+		        	constructorCount++;
+
+		        }
+		        else
+		        {
+			        c = line.indexOf("@interface");
+			        if (c > -1)
+			        	fi.constructorLine = i;
+			        else
+			        {
+			        	c = line.indexOf("@suppress");
+			        	if (c > -1)
+			        		fi.suppressLine = i;
+			        	else
+			        	{
+				        	c = line.indexOf("@fileoverview");
+				        	if (c > -1)
+				        		fi.fileoverviewLine = i;
+				        	else
+				        	{
+					        	c = line.indexOf("goog.provide");
+					        	if (c > -1)
+					        	{
+					        		if (fi.googProvideLine == -1)
+					        			fi.googProvideLine = i;
+					        		if (numProvides > 0)
+					        		{
+					        			if (fi.provides == null)
+					        				fi.provides = new ArrayList<String>();
+					        			c2 = line.indexOf(")", c);
+					        			String provide = line.substring(c + 14, c2 - 1);
+					        			fi.provides.add(provide);
+					        		}
+					        		numProvides++;
+					        	}
+					        	else
+					        	{
+					        		c = line.indexOf("@implements");
+					        		if (c > -1)
+					        		{
+					        			if (fi.impls == null)
+					        				fi.impls = new ArrayList<String>();
+					        			c2 = line.indexOf("}", c);
+					        			String impl = line.substring(c + 13, c2);
+					        			if (!fi.impls.contains(impl) && !impl.contentEquals(className))
+					        				fi.impls.add(impl);
+					        		}
+					        		else
+					        		{
+						        		c = line.indexOf("@extends");
+						        		if (c > -1)
+						        		{
+						        			if (fi.impls == null)
+						        				fi.impls = new ArrayList<String>();
+						        			c2 = line.indexOf("}", c);
+						        			String impl = line.substring(c + 10, c2);
+						        			if (!fi.impls.contains(impl) && !impl.contentEquals(className))
+						        				fi.impls.add(impl);
+						        		}
+						        		else
+						        		{
+						        			String token = JSGoogEmitterTokens.ROYALE_STATIC_DEPENDENCY_LIST.getToken();
+						    				c = line.indexOf(token);
+						    				if (c > -1)
+						    				{
+						    					c2 = line.indexOf("*/");
+						    					line = line.substring(c + token.length(), c2);
+						    					List<String> staticDeps = Arrays.asList(line.split(","));
+							        			fi.staticDeps = new ArrayList<String>();
+						    					fi.staticDeps.addAll(staticDeps);
+						    					fi.staticInitializers = new ArrayList<String>();
+						    					for (String staticDep : staticDeps)
+						    					{
+						    						if (staticDep.equals(className))
+						    							continue;
+						    						fi.staticInitializers.add(staticDep);
+						    					}
+						    				}
+						    				else
+						    				{
+						    					c = line.indexOf("@externs");
+						    					if (c > -1)
+						    					{
+						    						fi.isExtern = true;
+						    					}
+						    					else
+						    					{
+								        			token = JSGoogEmitterTokens.ROYALE_DEPENDENCY_LIST.getToken();
+								    				c = line.indexOf(token);
+								    				if (c > -1)
+								    				{
+								    					c2 = line.indexOf("*/");
+								    					line = line.substring(c + token.length(), c2);
+									        			fi.deps = new ArrayList<String>();
+									        			if (line.length() > 2) // don't add blank or space if no deps
+									        				fi.deps.addAll(Arrays.asList(line.split(",")));
+								    				}
+								    				else
+								    				{
+								    					token = JSGoogEmitterTokens.GOOG_REQUIRE.getToken();
+								    					c = line.indexOf(token);
+								    					if (c > -1)
+								    					{
+								                            c2 = line.indexOf(")");
+								                            String s = line.substring(c + 14, c2 - 1);
+								                            if (fi.deps == null)
+								                            	fi.deps = new ArrayList<String>();
+								                            fi.deps.add(s);
+								    					}
+								    				}
+						    					}
+							        		}
+						        		}
+					        		}
+					        	}
+				        	}
+			        	}
+			        }
+		        }
+	        }
+	    }
+	    if (fi.deps != null)
+	    {
+	    	Collections.sort(fi.deps);
+	    }
+	    if (fi.staticDeps != null)
+	    {
+	    	Collections.sort(fi.staticDeps);
+	    }
+	    return fi;
+	}
+
+	/**
+	 * Write the index, e.g. to a SWC entry.
+	 */
+	public void write(OutputStream out) throws IOException
+	{
+		Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+		writer.write(HEADER);
+		writer.write('\n');
+		ArrayList<String> classNames = new ArrayList<String>(fileInfos.keySet());
+		Collections.sort(classNames);
+		for (String className : classNames)
+		{
+			FileInfo fi = fileInfos.get(className);
+			writer.write("class " + className + "\n");
+			writer.write("lines " + fi.constructorLine + " " + fi.suppressLine + " " +
+					fi.fileoverviewLine + " " + fi.googProvideLine + "\n");
+			if (fi.isExtern)
+				writer.write("extern\n");
+			writeList(writer, "impls", fi.impls);
+			writeList(writer, "deps", fi.deps);
+			writeList(writer, "staticDeps", fi.staticDeps);
+			writeList(writer, "staticInitializers", fi.staticInitializers);
+			writeList(writer, "provides", fi.provides);
+			if (fi.injectedHTML != null)
+			{
+				for (String line : fi.injectedHTML)
+					writer.write("html " + line + "\n");
+			}
+		}
+		writer.flush();
+	}
+
+	private static void writeList(Writer writer, String key, List<String> list) throws IOException
+	{
+		if (list == null)
+			return;
+		writer.write(key);
+		if (!list.isEmpty())
+			writer.write(" " + Joiner.on(',').join(list));
+		writer.write('\n');
+	}
+
+	/**
+	 * Read an index written by {@link #write}.
+	 *
+	 * @return The index, or null if the stream does not contain an index
+	 * in a known format.
+	 */
+	public static GoogDepsIndex read(InputStream in) throws IOException
+	{
+		BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+		if (!HEADER.equals(reader.readLine()))
+			return null;
+		GoogDepsIndex index = new GoogDepsIndex();
+		FileInfo fi = null;
+		String line;
+		while ((line = reader.readLine()) != null)
+		{
+			int c = line.indexOf(' ');
+			String key = c > -1 ? line.substring(0, c) : line;
+			String value = c > -1 ? line.substring(c + 1) : null;
+			if (key.equals("class"))
+			{
+				fi = new FileInfo();
+				index.put(value, fi);
+				continue;
+			}
+			if (fi == null)
+				return null;
+			if (key.equals("lines"))
+			{
+				String[] numbers = value.split(" ");
+				if (numbers.length != 4)
+					return null;
+				try
+				{
+					fi.constructorLine = Integer.parseInt(numbers[0]);
+					fi.suppressLine = Integer.parseInt(numbers[1]);
+					fi.fileoverviewLine = Integer.parseInt(numbers[2]);
+					fi.googProvideLine = Integer.parseInt(numbers[3]);
+				}
+				catch (NumberFormatException e)
+				{
+					return null;
+				}
+			}
+			else if (key.equals("extern"))
+				fi.isExtern = true;
+			else if (key.equals("impls"))
+				fi.impls = readList(value);
+			else if (key.equals("deps"))
+				fi.deps = readList(value);
+			else if (key.equals("staticDeps"))
+				fi.staticDeps = readList(value);
+			else if (key.equals("staticInitializers"))
+				fi.staticInitializers = readList(value);
+			else if (key.equals("provides"))
+				fi.provides = readList(value);
+			else if (key.equals("html"))
+			{
+				if (fi.injectedHTML == null)
+					fi.injectedHTML = new ArrayList<String>();
+				fi.injectedHTML.add(value != null ? value : "");
+			}
+		}
+		return index;
+	}
+
+	private static ArrayList<String> readList(String value)
+	{
+		ArrayList<String> list = new ArrayList<String>();
+		if (value != null)
+			list.addAll(Arrays.asList(value.split(",", -1)));
+		return list;
+	}
+}
@@ -25,9 +25,7 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -40,8 +38,10 @@ import org.apache.royale.compiler.common.DependencyType;
 import org.apache.royale.compiler.common.DependencyTypeSet;
 import org.apache.royale.compiler.config.CompilerDiagnosticsConstants;
 import org.apache.royale.compiler.internal.codegen.js.goog.JSGoogEmitterTokens;
+import org.apache.royale.compiler.internal.codegen.js.goog.PublishManifest;
 import org.apache.royale.compiler.internal.driver.js.JSCompilationUnit;
 import org.apache.royale.compiler.internal.driver.js.goog.JSGoogConfiguration;
+import org.apache.royale.compiler.internal.graph.GoogDepsIndex.FileInfo;
 import org.apache.royale.compiler.internal.projects.CompilerProject;
 import org.apache.royale.compiler.internal.projects.DefinitionPriority;
 import org.apache.royale.compiler.internal.projects.DependencyGraph;
@@ -102,8 +102,28 @@ public class GoogDepsWriter {
 	private HashMap<String, GoogDep> depMap = new HashMap<String,GoogDep>();
 	private HashMap<String, ICompilationUnit> requireMap = new HashMap<String, ICompilationUnit>();
 	private HashMap<ICompilationUnit, String> requireMap2 = new HashMap<ICompilationUnit, String>();
+	private HashMap<String, ISWC> swcSources = new HashMap<String, ISWC>();
+	private HashMap<ISWC, GoogDepsIndex> swcIndexes = new HashMap<ISWC, GoogDepsIndex>();
 	
 	public boolean needCSS = false;
+
+	private PublishManifest publishManifest;
+
+	/**
+	 * Set the manifest of an incremental publish. Files the manifest kept
+	 * from the previous publish are already post-processed, and are not
+	 * rewritten. Files copied from SWCs and the SDK JS paths are only copied
+	 * if they changed.
+	 */
+	public void setPublishManifest(PublishManifest publishManifest)
+	{
+		this.publishManifest = publishManifest;
+	}
+
+	private boolean isKept(String filePath)
+	{
+		return publishManifest != null && publishManifest.isKept(new File(filePath));
+	}
 	
 	public ArrayList<String> getListOfFiles(CompilerProject project, List<String> sourceExternFiles, ProblemQuery problems)
 	{
@@ -159,6 +179,11 @@ public class GoogDepsWriter {
 
 	private void rewriteSourceMapSourceRootForFramework(GoogDep gd)
 	{
+		if (isKept(gd.filePath + ".map"))
+		{
+			// already rewritten by the previous publish
+			return;
+		}
 		if (!sourceMaps)
 		{
 			return;
@@ -238,6 +263,11 @@ public class GoogDepsWriter {
 		{
 			return;
 		}
+		if (isKept(gd.filePath + ".map"))
+		{
+			// already rewritten by the previous publish
+			return;
+		}
 		File sourceMapFile = new File(gd.filePath + ".map");
 		if (!sourceMapFile.exists())
 		{
@@ -779,11 +809,8 @@ public class GoogDepsWriter {
 			throw new RuntimeException("Unable to find JavaScript filePath for class: " + className);
 		}
 		depMap.put(gd.className, gd);
-        List<String> fileLines;
 		try {
-			fileLines = Files.readLines(new File(gd.filePath), Charset.forName("utf8"));
-            FileInfo fi = getFileInfo(fileLines, className);
-			gd.fileInfo = fi;
+			gd.fileInfo = getFileInfo(gd.filePath, className);
 		} catch (IOException e) {
 			// TODO Auto-generated catch block
 			e.printStackTrace();
@@ -827,6 +854,12 @@ public class GoogDepsWriter {
 	{
 		String className = gd.className;
 		
+		if (isKept(depMap.get(className).filePath))
+		{
+			// already processed by the previous publish
+			return;
+		}
+
 	    // remove requires that are not base classes and interfaces
 	    try
         {
@@ -1030,183 +1063,85 @@ public class GoogDepsWriter {
 		
 	FileInfo getFileInfo(List<String> lines, String className)
 	{
-		FileInfo fi = new FileInfo();
-		
-		int numProvides = 0;
-		int constructorCount = 0;
-	    int n = lines.size();
-	    fi.constructorLine = -1;
-	    fi.suppressLine = -1;
-	    fi.fileoverviewLine = -1;
-		fi.googProvideLine = -1;
-		boolean inInjectScript = false;
-	    for (int i = 0; i < n; i++)
-	    {
-	        String line = lines.get(i);
-	        int c2;
-	        int c = line.indexOf("*/");
-	        if (c > -1 && constructorCount > 0 && constructorCount == numProvides)
-	        {
-                break;
-	        }
-	        else
-	        {
-		        if (inInjectScript)
-	            {
-	                if (line.indexOf("</inject_script>") > -1)
-	                {
-	                    inInjectScript = false;
-	                    continue;
-	                }
-	            	line = line.trim();
-	            	if (line.startsWith("*"))
-	            		line = line.substring(1);
-				    additionalHTML.add(line);
-				    continue;
-	            }
-                c = line.indexOf("<inject_script>");
-                if (c > -1)
-                {
-                    inInjectScript = true;
-                }
-		        c = line.indexOf("@constructor");
-		        if (c > -1)
-		        {
-		        	if (fi.constructorLine == -1)
-		        		fi.constructorLine = i;
-		        	constructorCount++;
-		        		
-		        }
-		        else
-		        {
-			        c = line.indexOf("@interface");
-			        if (c > -1)
-			        	fi.constructorLine = i;
-			        else
-			        {
-			        	c = line.indexOf("@suppress");
-			        	if (c > -1)
-			        		fi.suppressLine = i;
-			        	else
-			        	{
-				        	c = line.indexOf("@fileoverview");
-				        	if (c > -1)
-				        		fi.fileoverviewLine = i;
-				        	else
-				        	{
-					        	c = line.indexOf("goog.provide");
-					        	if (c > -1)
-					        	{
-					        		if (fi.googProvideLine == -1)
-					        			fi.googProvideLine = i;
-					        		if (numProvides > 0)
-					        		{
-					        			if (fi.provides == null)
-					        				fi.provides = new ArrayList<String>();
-					        			c2 = line.indexOf(")", c);
-					        			String provide = line.substring(c + 14, c2 - 1);
-					        			fi.provides.add(provide);
-					        		}
-					        		numProvides++;
-					        	}
-					        	else
-					        	{
-					        		c = line.indexOf("@implements");
-					        		if (c > -1)
-					        		{
-					        			if (fi.impls == null)
-					        				fi.impls = new ArrayList<String>();
-					        			c2 = line.indexOf("}", c);
-					        			String impl = line.substring(c + 13, c2);
-					        			if (!fi.impls.contains(impl) && !impl.contentEquals(className))
-					        				fi.impls.add(impl);
-					        			if (impl.equals("org.apache.royale.core.ICSSImpl"))
-					        				needCSS = true;
-					        		}
-					        		else
-					        		{
-						        		c = line.indexOf("@extends");
-						        		if (c > -1)
-						        		{
-						        			if (fi.impls == null)
-						        				fi.impls = new ArrayList<String>();
-						        			c2 = line.indexOf("}", c);
-						        			String impl = line.substring(c + 10, c2);
-						        			if (!fi.impls.contains(impl) && !impl.contentEquals(className))
-						        				fi.impls.add(impl);
-						        		}
-						        		else
-						        		{
-						        			String token = JSGoogEmitterTokens.ROYALE_STATIC_DEPENDENCY_LIST.getToken();
-						    				c = line.indexOf(token);
-						    				if (c > -1)
-						    				{
-						    					c2 = line.indexOf("*/");
-						    					line = line.substring(c + token.length(), c2);
-						    					List<String> staticDeps = Arrays.asList(line.split(","));
-							        			fi.staticDeps = new ArrayList<String>();
-						    					fi.staticDeps.addAll(staticDeps);
-						    					for (String staticDep : staticDeps)
-						    					{
-						    						if (staticDep.equals(className))
-						    							continue;
-						    						staticInitializers.add(staticDep);
-						    						staticInitializerOwners.add(className);
-						    					}
-						    				}
-						    				else
-						    				{
-						    					c = line.indexOf("@externs");
-						    					if (c > -1)
-						    					{
-						    						fi.isExtern = true;
-						    					}
-						    					else
-						    					{
-								        			token = JSGoogEmitterTokens.ROYALE_DEPENDENCY_LIST.getToken();
-								    				c = line.indexOf(token);
-								    				if (c > -1)
-								    				{
-								    					c2 = line.indexOf("*/");
-								    					line = line.substring(c + token.length(), c2);
-									        			fi.deps = new ArrayList<String>();
-									        			if (line.length() > 2) // don't add blank or space if no deps
-									        				fi.deps.addAll(Arrays.asList(line.split(",")));
-//								    					fi.depsLine = i;
-								    				}
-								    				else /* if (fi.depsLine == 0) */
-								    				{
-								    					token = JSGoogEmitterTokens.GOOG_REQUIRE.getToken();
-								    					c = line.indexOf(token);
-								    					if (c > -1)
-								    					{
-								                            c2 = line.indexOf(")");
-								                            String s = line.substring(c + 14, c2 - 1);
-								                            if (fi.deps == null)
-								                            	fi.deps = new ArrayList<String>();
-								                            fi.deps.add(s);
-								    					}
-								    				}
-						    					}
-							        		}
-						        		}
-					        		}
-					        	}
-				        	}
-			        	}
-			        }
-		        }
-	        }
-	    }
-	    if (fi.deps != null)
-	    {
-	    	Collections.sort(fi.deps);
-	    }
-	    if (fi.staticDeps != null)
-	    {
-	    	Collections.sort(fi.staticDeps);
-	    }
-	    return fi;
+		FileInfo fi = GoogDepsIndex.scan(lines, className);
+		addFileInfo(fi, className);
+		return fi;
+	}
+
+	/**
+	 * Find the dependency information of a file, preferably in the index
+	 * recorded when the file was emitted, or in the index of the SWC it was
+	 * copied from, and only scan the file if it is in neither.
+	 */
+	private FileInfo getFileInfo(String filePath, String className) throws IOException
+	{
+		FileInfo fi = ((RoyaleJSProject)project).getGoogDepsIndex().get(className);
+		if (fi == null)
+		{
+			ISWC swc = swcSources.get(className);
+			if (swc != null)
+				fi = getSWCIndex(swc).get(className);
+		}
+		if (fi == null)
+		{
+			List<String> fileLines = Files.readLines(new File(filePath), Charset.forName("utf8"));
+			return getFileInfo(fileLines, className);
+		}
+		// sort() adds to the static dependencies
+		fi = fi.copy();
+		addFileInfo(fi, className);
+		return fi;
+	}
+
+	private void addFileInfo(FileInfo fi, String className)
+	{
+		if (fi.injectedHTML != null)
+			additionalHTML.addAll(fi.injectedHTML);
+		if (fi.impls != null && fi.impls.contains("org.apache.royale.core.ICSSImpl"))
+			needCSS = true;
+		if (fi.staticInitializers != null)
+		{
+			for (String staticDep : fi.staticInitializers)
+			{
+				staticInitializers.add(staticDep);
+				staticInitializerOwners.add(className);
+			}
+		}
+	}
+
+	private GoogDepsIndex getSWCIndex(ISWC swc)
+	{
+		GoogDepsIndex index = swcIndexes.get(swc);
+		if (index == null)
+		{
+			ISWCFileEntry fileEntry = swc.getFile(GoogDepsIndex.SWC_ENTRY_PATH);
+			if (fileEntry != null)
+			{
+				try
+				{
+					InputStream inStream = fileEntry.createInputStream();
+					try
+					{
+						index = GoogDepsIndex.read(inStream);
+					}
+					finally
+					{
+						inStream.close();
+					}
+				}
+				catch (IOException e)
+				{
+					index = null;
+				}
+			}
+			if (index == null)
+			{
+				// SWCs built by older compilers have no index
+				index = new GoogDepsIndex();
+			}
+			swcIndexes.put(swc, index);
+		}
+		return index;
 	}
 	
 	String getFilePath(String className)
@@ -1232,9 +1167,17 @@ public class GoogDepsWriter {
     		{
     			fn = outputFolderPath + File.separator + classPath + ".js";
     			destFile = new File(fn);
+    			String key = PublishManifest.computeKey(f);
+    			if (publishManifest != null && publishManifest.keepIfUpToDate(destFile, key))
+    			{
+    				// the class and its assets were copied by the previous publish
+    				return fn;
+    			}
     			// copy source to output
     			try {
     				FileUtils.copyFile(f, destFile);
+    				if (publishManifest != null)
+    					publishManifest.record(destFile, key);
     				
     				// (erikdebruin) copy class assets files
     				if (className.contains("org.apache.royale"))
@@ -1288,6 +1231,15 @@ public class GoogDepsWriter {
     		{
     			fn = outputFolderPath + File.separator + classPath + ".js";
     			destFile = new File(fn);
+    			String key = PublishManifest.computeKey(swc.getSWCFile(), fileEntry.getPath());
+    			if (publishManifest != null && publishManifest.keepIfUpToDate(destFile, key))
+    			{
+    				// the class and its assets were copied by the previous publish
+    				keepIfUpToDate(swc, outputFolderPath + File.separator + classPath + ".js.map",
+    						getFileEntry(swc, className, ".js.map"));
+    				swcSources.put(className, swc);
+    				return fn;
+    			}
     			// copy source to output
     			try {
     				InputStream inStream = fileEntry.createInputStream();
@@ -1301,6 +1253,9 @@ public class GoogDepsWriter {
     				outStream.flush();
     				outStream.close();    					
 					inStream.close();
+					if (publishManifest != null)
+						publishManifest.record(destFile, key);
+					swcSources.put(className, swc);
 					
 					//if source maps requested, copy from the swc, if available
 					if (sourceMaps)
@@ -1312,7 +1267,11 @@ public class GoogDepsWriter {
 							File sourceMapDestFile = new File(sourceMapFn);
 							inStream = sourceMapFileEntry.createInputStream();
 							String sourceMapContents = IOUtils.toString(inStream, Charset.forName("utf8"));
+							inStream.close();
 							FileUtils.writeStringToFile(sourceMapDestFile, sourceMapContents, Charset.forName("utf8"));
+							if (publishManifest != null)
+								publishManifest.record(sourceMapDestFile,
+										PublishManifest.computeKey(swc.getSWCFile(), sourceMapFileEntry.getPath()));
 						}
 					}
 
@@ -1333,6 +1292,9 @@ public class GoogDepsWriter {
     							fileEntry = includedfiles.get(included);
     			    			String assetName = outputFolderPath + File.separator + included;
     			    			File assetFile = new File(assetName);
+    			    			String assetKey = PublishManifest.computeKey(swc.getSWCFile(), included);
+    			    			if (publishManifest != null && publishManifest.keepIfUpToDate(assetFile, assetKey))
+    			    				continue;
     		    				inStream = fileEntry.createInputStream();
     		    				outStream = FileUtils.openOutputStream(assetFile);
     		    				b = new byte[inStream.available()];
@@ -1341,6 +1303,8 @@ public class GoogDepsWriter {
     		    				inStream.close();
     		    				outStream.flush();
     		    				outStream.close();
+    			    			if (publishManifest != null)
+    			    				publishManifest.record(assetFile, assetKey);
 						        if (verbose)
 								{
 									System.out.println("Copied asset " + assetName);
@@ -1360,6 +1324,13 @@ public class GoogDepsWriter {
 		return "";
 	}
 
+	private void keepIfUpToDate(ISWC swc, String filePath, ISWCFileEntry fileEntry)
+	{
+		if (fileEntry != null)
+			publishManifest.keepIfUpToDate(new File(filePath),
+					PublishManifest.computeKey(swc.getSWCFile(), fileEntry.getPath()));
+	}
+
 	private ISWCFileEntry getFileEntry(ISWC swc, String className)
 	{
 		return getFileEntry(swc, className, ".js");
@@ -1523,18 +1494,4 @@ public class GoogDepsWriter {
 		public FileInfo fileInfo;
 		
 	}
-	
-	private class FileInfo
-	{
-		public ArrayList<String> impls;
-		public ArrayList<String> deps;
-		public ArrayList<String> staticDeps;
-		public ArrayList<String> provides;
-		public int constructorLine;
-//		public int depsLine;
-		public int suppressLine;
-		public int fileoverviewLine;
-		public int googProvideLine;
-		public boolean isExtern;
-	}
 }
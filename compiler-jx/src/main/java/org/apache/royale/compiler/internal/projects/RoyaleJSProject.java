@@ -56,6 +56,7 @@ import org.apache.royale.compiler.internal.css.codegen.CSSCompilationSession;
 import org.apache.royale.compiler.internal.definitions.InterfaceDefinition;
 import org.apache.royale.compiler.internal.driver.js.royale.JSCSSCompilationSession;
 import org.apache.royale.compiler.internal.driver.js.goog.JSGoogConfiguration;
+import org.apache.royale.compiler.internal.graph.GoogDepsIndex;
 import org.apache.royale.compiler.internal.mxml.MXMLNamespaceMapping;
 import org.apache.royale.compiler.internal.scopes.ASProjectScope.DefinitionPromise;
 import org.apache.royale.compiler.internal.targets.ITargetAttributes;
@@ -290,9 +291,9 @@ public class RoyaleJSProject extends RoyaleProject
         }
     }
 
-    public boolean needLanguage;
-    public boolean needCSS;
-    public boolean needXML;
+    public volatile boolean needLanguage;
+    public volatile boolean needCSS;
+    public volatile boolean needXML;
 
     private LinkageChecker linkageChecker;
     private ITargetSettings ts;
@@ -436,7 +437,7 @@ public class RoyaleJSProject extends RoyaleProject
         return false;
     }
 
-    public ArrayList<String> getInterfaces(ICompilationUnit from)
+    public synchronized ArrayList<String> getInterfaces(ICompilationUnit from)
     {
         if (interfaces.containsKey(from))
         {
@@ -450,7 +451,7 @@ public class RoyaleJSProject extends RoyaleProject
         return null;
     }
 
-    public ArrayList<String> getRequires(ICompilationUnit from)
+    public synchronized ArrayList<String> getRequires(ICompilationUnit from)
     {
         if (requires.containsKey(from))
         {
@@ -464,7 +465,7 @@ public class RoyaleJSProject extends RoyaleProject
         return null;
     }
 
-    public ArrayList<JSModuleRequireDescription> getExternalRequires(ICompilationUnit from)
+    public synchronized ArrayList<JSModuleRequireDescription> getExternalRequires(ICompilationUnit from)
     {
         if (jsModules.containsKey(from))
         {
@@ -505,9 +506,19 @@ public class RoyaleJSProject extends RoyaleProject
     private HashMap<IASNode, String> astCache = new HashMap<IASNode, String>();
 
     @Override
-    public void addToASTCache(IASNode ast)
+    public synchronized void addToASTCache(IASNode ast)
     {
-        astCache.put(ast, "");
+        // With a syntax tree budget, the compilation units and the budget
+        // hold the trees until the JavaScript is emitted.
+        if (getSyntaxTreeBudget() == null)
+            astCache.put(ast, "");
+    }
+
+    @Override
+    public void codeGenerationCompleted(ICompilationUnit unit)
+    {
+        // The trees are still needed to emit JavaScript. JSTarget releases
+        // them when a compilation unit has been emitted.
     }
 
     @Override
@@ -615,12 +626,23 @@ public class RoyaleJSProject extends RoyaleProject
 		return true;
 	}
 
+	private GoogDepsIndex googDepsIndex = new GoogDepsIndex();
+
+	/**
+	 * @return The dependency information of the JavaScript files emitted
+	 * for this project, by class name.
+	 */
+	public GoogDepsIndex getGoogDepsIndex()
+	{
+		return googDepsIndex;
+	}
+
 	private HashSet<String> exportedNames = new HashSet<String>();
 	
 	public List<String> compiledResourceBundleNames = new ArrayList<String>();
 	public List<String> compiledResourceBundleClasses = new ArrayList<String>();
 	
-	public void addExportedName(String name)
+	public synchronized void addExportedName(String name)
 	{
 		exportedNames.add(name);
 	}
@@ -19,28 +19,109 @@
 
 package org.apache.royale.compiler.internal.targets;
 
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
+import org.apache.royale.compiler.codegen.js.IJSWriter;
 import org.apache.royale.compiler.driver.js.IJSApplication;
 import org.apache.royale.compiler.exceptions.BuildCanceledException;
 import org.apache.royale.compiler.internal.driver.js.JSApplication;
 import org.apache.royale.compiler.internal.projects.RoyaleJSProject;
+import org.apache.royale.compiler.internal.projects.SyntaxTreeBudget;
+import org.apache.royale.compiler.internal.workspaces.CompilationProfiler;
 import org.apache.royale.compiler.problems.ICompilerProblem;
 import org.apache.royale.compiler.targets.IJSTarget;
 import org.apache.royale.compiler.targets.ITargetProgressMonitor;
 import org.apache.royale.compiler.targets.ITargetReport;
 import org.apache.royale.compiler.targets.ITargetSettings;
 import org.apache.royale.compiler.units.ICompilationUnit;
+import org.apache.royale.compiler.workspaces.IWorkspaceProfilingDelegate;
 
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
+import com.google.common.util.concurrent.Futures;
 
 public class JSTarget extends Target implements IJSTarget
 {
+    /**
+     * Maximum number of compilation units that are emitted ahead of the one
+     * being handled by {@link #emitCompilationUnits}. Bounds the memory used
+     * by emitted code that is waiting to be written.
+     */
+    private static final int EMIT_WINDOW = 64;
+
+    /**
+     * The JavaScript emitted for one compilation unit by
+     * {@link JSTarget#emitCompilationUnits}.
+     */
+    public static class EmittedCompilationUnit
+    {
+        EmittedCompilationUnit(ICompilationUnit compilationUnit, byte[] code, byte[] sourceMap,
+                               List<ICompilerProblem> problems)
+        {
+            this.compilationUnit = compilationUnit;
+            this.code = code;
+            this.sourceMap = sourceMap;
+            this.problems = problems;
+        }
+
+        private final ICompilationUnit compilationUnit;
+        private final byte[] code;
+        private final byte[] sourceMap;
+        private final List<ICompilerProblem> problems;
+
+        public ICompilationUnit getCompilationUnit()
+        {
+            return compilationUnit;
+        }
+
+        /**
+         * @return The UTF-8 encoded JavaScript, or null if the compilation
+         * unit is not an AS or MXML compilation unit.
+         */
+        public byte[] getCode()
+        {
+            return code;
+        }
+
+        /**
+         * @return The source map, or null if no source map was requested.
+         */
+        public byte[] getSourceMap()
+        {
+            return sourceMap;
+        }
+
+        /**
+         * @return The problems found while emitting the compilation unit.
+         */
+        public List<ICompilerProblem> getProblems()
+        {
+            return problems;
+        }
+    }
+
+    /**
+     * Receives the output of {@link JSTarget#emitCompilationUnits}.
+     */
+    public interface IEmittedCompilationUnitHandler
+    {
+        void emitted(EmittedCompilationUnit emitted) throws IOException;
+    }
+
     protected ICompilationUnit mainCU;
     protected RootedCompilationUnits rootedCompilationUnits;
 
@@ -226,4 +307,153 @@ public class JSTarget extends Target implements IJSTarget
         return build(problems);
     }
 
+    /**
+     * Emits the JavaScript for AS and MXML compilation units. The AST walks
+     * run concurrently on the workspace's executor, while the handler is
+     * called on the calling thread, once per compilation unit, in the order of
+     * {@code compilationUnits}, so the output does not depend on thread
+     * scheduling. The problems found while emitting a compilation unit are
+     * added to {@code problems} just before the handler is called for it.
+     * <p>
+     * Compilation units of other types are not emitted, but are still passed
+     * to the handler, in order and without code, so the caller can interleave
+     * its own output for them.
+     * 
+     * @param compilationUnits The compilation units to emit.
+     * @param sourceMap true to also emit source maps.
+     * @param sourceMapFiles The files the source maps will be written to, used
+     * to make the paths in the source maps relative. Compilation units without
+     * an entry get source maps with absolute paths.
+     * @param problems Collection the emitter problems are added to.
+     * @param handler Receives the emitted code.
+     * @throws IOException If the handler failed.
+     * @throws InterruptedException If the build was interrupted.
+     */
+    public void emitCompilationUnits(final List<ICompilationUnit> compilationUnits,
+            final boolean sourceMap, final Map<ICompilationUnit, File> sourceMapFiles,
+            final Collection<ICompilerProblem> problems,
+            final IEmittedCompilationUnitHandler handler)
+            throws IOException, InterruptedException
+    {
+        final RoyaleJSProject royaleProject = (RoyaleJSProject)project;
+        final ExecutorService executor = royaleProject.getWorkspace().getExecutorService();
+        final ArrayDeque<Future<EmittedCompilationUnit>> pending =
+                new ArrayDeque<Future<EmittedCompilationUnit>>();
+        int next = 0;
+        try
+        {
+            while (next < compilationUnits.size() || !pending.isEmpty())
+            {
+                while (next < compilationUnits.size() && pending.size() < EMIT_WINDOW)
+                {
+                    final ICompilationUnit cu = compilationUnits.get(next++);
+                    final ICompilationUnit.UnitType cuType = cu.getCompilationUnitType();
+                    if (cuType != ICompilationUnit.UnitType.AS_UNIT
+                            && cuType != ICompilationUnit.UnitType.MXML_UNIT)
+                    {
+                        pending.add(Futures.immediateFuture(new EmittedCompilationUnit(cu,
+                                null, null, Collections.<ICompilerProblem>emptyList())));
+                        continue;
+                    }
+                    pending.add(executor.submit(new Callable<EmittedCompilationUnit>()
+                    {
+                        @Override
+                        public EmittedCompilationUnit call() throws Exception
+                        {
+                            return emitCompilationUnit(royaleProject, cu, sourceMap,
+                                    sourceMapFiles.get(cu));
+                        }
+                    }));
+                }
+
+                final EmittedCompilationUnit emitted = getEmitted(pending.remove());
+                problems.addAll(emitted.getProblems());
+                handler.emitted(emitted);
+            }
+        }
+        finally
+        {
+            for (Future<EmittedCompilationUnit> future : pending)
+                future.cancel(false);
+        }
+    }
+
+    private static EmittedCompilationUnit emitCompilationUnit(RoyaleJSProject royaleProject,
+            ICompilationUnit cu, boolean sourceMap, File sourceMapFile) throws IOException, InterruptedException
+    {
+        final IWorkspaceProfilingDelegate profilingDelegate = royaleProject.getWorkspace().getProfilingDelegate();
+        final CompilationProfiler profiler = profilingDelegate instanceof CompilationProfiler ?
+                (CompilationProfiler)profilingDelegate : null;
+        if (profiler != null)
+            profiler.phaseStarted(cu, "EMIT_JS");
+        try
+        {
+            return writeCompilationUnit(royaleProject, cu, sourceMap, sourceMapFile);
+        }
+        finally
+        {
+            if (profiler != null)
+                profiler.phaseCompleted(cu, "EMIT_JS");
+        }
+    }
+
+    private static EmittedCompilationUnit writeCompilationUnit(RoyaleJSProject royaleProject,
+            ICompilationUnit cu, boolean sourceMap, File sourceMapFile) throws IOException, InterruptedException
+    {
+        // Every compilation unit gets its own problem list, as the
+        // lists the writers add to are not thread safe.
+        final List<ICompilerProblem> problems = new ArrayList<ICompilerProblem>();
+        final IJSWriter writer;
+        if (cu.getCompilationUnitType() == ICompilationUnit.UnitType.MXML_UNIT)
+        {
+            writer = (IJSWriter)royaleProject.getBackend().createMXMLWriter(
+                    royaleProject, problems, cu, false);
+        }
+        else
+        {
+            writer = (IJSWriter)royaleProject.getBackend().createWriter(
+                    royaleProject, problems, cu, false);
+        }
+        try
+        {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            final ByteArrayOutputStream sourceMapOut = sourceMap ? new ByteArrayOutputStream() : null;
+            writer.writeTo(out, sourceMapOut, sourceMapFile);
+            // record the dependencies while the code is at hand, so
+            // GoogDepsWriter does not have to read the file back
+            royaleProject.getGoogDepsIndex().add(cu.getQualifiedNames().get(0),
+                    out.toString("utf8"));
+            // the emitted code is all that is needed from the tree now
+            final SyntaxTreeBudget syntaxTreeBudget = royaleProject.getSyntaxTreeBudget();
+            if (syntaxTreeBudget != null)
+                syntaxTreeBudget.release(cu);
+            return new EmittedCompilationUnit(cu, out.toByteArray(),
+                    sourceMapOut != null ? sourceMapOut.toByteArray() : null, problems);
+        }
+        finally
+        {
+            writer.close();
+        }
+    }
+
+    private static EmittedCompilationUnit getEmitted(Future<EmittedCompilationUnit> future)
+            throws IOException, InterruptedException
+    {
+        try
+        {
+            return future.get();
+        }
+        catch (ExecutionException e)
+        {
+            final Throwable cause = e.getCause();
+            if (cause instanceof IOException)
+                throw (IOException)cause;
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException)cause;
+            if (cause instanceof Error)
+                throw (Error)cause;
+            throw new RuntimeException(cause);
+        }
+    }
+
 }
@@ -194,17 +194,17 @@ public final class ABCEmitter implements IABCVisitor
     /**
      * int pool, has default zero entry.
      */
-    final Pool<Integer> intPool = new Pool<Integer>(Pool.DefaultType.HasDefaultZero);
+    final IntPool intPool = new IntPool();
     
     /**
      * uint pool, has default zero entry.
      */
-    final Pool<Long> uintPool = new Pool<Long>(Pool.DefaultType.HasDefaultZero);
+    final LongPool uintPool = new LongPool();
     
     /**
      * double pool, has default zero entry.
      */
-    final Pool<Double> doublePool = new Pool<Double>(Pool.DefaultType.HasDefaultZero);
+    final DoublePool doublePool = new DoublePool();
     
     /**
      * namespace pool, has default zero entry.
@@ -226,6 +226,23 @@ public final class ABCEmitter implements IABCVisitor
      */
     final Pool<Metadata> metadataPool = new Pool<Metadata>(Pool.DefaultType.NoDefaultZero);
 
+    /**
+     * Make room in the constant pools for the entries of the ABC blocks that
+     * will be visited, so that they don't grow while the blocks are visited.
+     * 
+     * @param sizes - the expected number of entries of each pool.
+     */
+    public void ensurePoolCapacity(ABCParser.PoolSizes sizes)
+    {
+        intPool.ensureCapacity(sizes.ints);
+        uintPool.ensureCapacity(sizes.uints);
+        doublePool.ensureCapacity(sizes.doubles);
+        stringPool.ensureCapacity(sizes.strings);
+        nsPool.ensureCapacity(sizes.namespaces);
+        nssetPool.ensureCapacity(sizes.namespaceSets);
+        namePool.ensureCapacity(sizes.names);
+    }
+
     /**
      * Visitors of classes defined in this ABC.
      */
@@ -299,6 +316,14 @@ public final class ABCEmitter implements IABCVisitor
      */
     private boolean visitEndCalled;
 
+    /**
+     * Run before the emitter changes on the thread that called
+     * {@link #visit(int, int)}.
+     * 
+     * @see #setBeforeUpdateCallback(Runnable)
+     */
+    private Runnable beforeUpdateCallback;
+
     private final IDiagnosticsVisitor diagnosticsVisitor;
 
     /**
@@ -312,84 +337,159 @@ public final class ABCEmitter implements IABCVisitor
         if (getMajorVersion() == VERSION_NONE || getMinorVersion() == VERSION_NONE)
             throw new IllegalStateException("No abc version specified");
 
+        beforeUpdate();
+
         //  First sort the classes into dependency order.
         this.definedClasses = ClassDependencySort.getSorted(this.definedClasses);
 
         w.writeU16(getMinorVersion());
         w.writeU16(getMajorVersion());
 
-        w.writeU30(this.intPool.getNominalSize());
+        emitConstantPools(w);
+
+        // See the comment in EmitterMethodInfoVisitor.visit
+        // to understand why we have this lock here.
+        // The short answer is because multiple threads
+        // need to simultaneously add method infos to the method
+        // info pool.
+        final Lock methodInfosReadLock = methodInfosLock.readLock();
+        methodInfosReadLock.lock();
+        try
+        {
+            w.writeU30(this.methodInfos.size());
+
+            for (MethodInfo mi : this.methodInfos)
+                emitMethodInfo(mi);
+        }
+        finally
+        {
+            methodInfosReadLock.unlock();
+        }
+
+        emitMetadataPool(w);
+
+        w.writeU30(this.definedClasses.size());
+        for (EmitterClassVisitor clz : this.definedClasses)
+        {
+            InstanceInfo ii = clz.instanceInfo;
+
+            w.writeU30(namePool.id(ii.name));
+            w.writeU30(namePool.id(ii.superName));
+            w.write(ii.flags);
+
+            if (ii.hasProtectedNs())
+                w.writeU30(this.nsPool.id(ii.protectedNs));
+            w.writeU30(ii.interfaceNames.length);
+
+            for (Name i : ii.interfaceNames)
+                w.writeU30(this.namePool.id(i));
+            w.writeU30(getMethodId(ii.iInit));
+
+            emitTraits(clz.instanceTraits);
+        }
+
+        for (EmitterClassVisitor clz : this.definedClasses)
+        {
+            w.writeU30(getMethodId(clz.classInfo.cInit));
+            emitTraits(clz.classTraits);
+        }
+
+        w.writeU30(this.scriptInfos.size());
+        for (ScriptInfo s : this.scriptInfos)
+        {
+            emitScriptInfo(s);
+        }
+
+        w.writeU30(this.methodBodies.size());
+        for (MethodBodyInfo mb : this.methodBodies)
+        {
+            emitMethodBody(mb);
+        }
+
+        return w.getDirectByteArray();
+    }
+
+    /**
+     * Write the int, uint, double, string, namespace, namespace set and name
+     * pools.
+     * 
+     * @param out - the writer of the ABC.
+     * @throws Exception if a string can't be encoded.
+     */
+    void emitConstantPools(ABCWriter out) throws Exception
+    {
+        out.writeU30(this.intPool.getNominalSize());
         for (int x : this.intPool.getValues())
         {
-            w.writeU30(x);
+            out.writeU30(x);
         }
 
-        w.writeU30(this.uintPool.getNominalSize());
+        out.writeU30(this.uintPool.getNominalSize());
         for (long x : this.uintPool.getValues())
         {
-            w.writeU30((int)x);
+            out.writeU30((int)x);
         }
 
-        w.writeU30(this.doublePool.getNominalSize());
+        out.writeU30(this.doublePool.getNominalSize());
         for (double x : this.doublePool.getValues())
         {
-            w.write64(Double.doubleToLongBits(x));
+            out.write64(Double.doubleToLongBits(x));
         }
 
-        w.writeU30(this.stringPool.getNominalSize());
+        out.writeU30(this.stringPool.getNominalSize());
         for (String s : this.stringPool.getValues())
         {
             byte[] stringBytes = s.getBytes("UTF-8");
-            w.writeU30(stringBytes.length);
-            w.write(stringBytes);
+            out.writeU30(stringBytes.length);
+            out.write(stringBytes);
         }
 
-        w.writeU30(this.nsPool.getNominalSize());
+        out.writeU30(this.nsPool.getNominalSize());
         for (Namespace ns : this.nsPool.getValues())
         {
-            emitNamespace(ns);
+            emitNamespace(out, ns);
         }
 
-        w.writeU30(this.nssetPool.getNominalSize());
+        out.writeU30(this.nssetPool.getNominalSize());
         for (Nsset nsset : this.nssetPool.getValues())
         {
-            w.writeU30(nsset.length());
+            out.writeU30(nsset.length());
             for (Namespace ns : nsset)
             {
-                w.writeU30(this.nsPool.id(ns));
+                out.writeU30(this.nsPool.id(ns));
             }
         }
 
-        w.writeU30(this.namePool.getNominalSize());
+        out.writeU30(this.namePool.getNominalSize());
         for (Name n : this.namePool.getValues())
         {
-            w.write(n.getKind());
+            out.write(n.getKind());
             switch (n.getKind())
             {
                 case CONSTANT_Qname:
                 case CONSTANT_QnameA:
                 {
-                    w.writeU30(this.nsPool.id(n.getSingleQualifier()));
-                    w.writeU30(this.stringPool.id(n.getBaseName()));
+                    out.writeU30(this.nsPool.id(n.getSingleQualifier()));
+                    out.writeU30(this.stringPool.id(n.getBaseName()));
                     break;
                 }
                 case CONSTANT_Multiname:
                 case CONSTANT_MultinameA:
                 {
-                    w.writeU30(this.stringPool.id(n.getBaseName()));
-                    w.writeU30(this.nssetPool.id(n.getQualifiers()));
+                    out.writeU30(this.stringPool.id(n.getBaseName()));
+                    out.writeU30(this.nssetPool.id(n.getQualifiers()));
                     break;
                 }
                 case CONSTANT_RTQname:
                 case CONSTANT_RTQnameA:
                 {
-                    w.writeU30(this.stringPool.id(n.getBaseName()));
+                    out.writeU30(this.stringPool.id(n.getBaseName()));
                     break;
                 }
                 case CONSTANT_MultinameL:
                 case CONSTANT_MultinameLA:
                 {
-                    w.writeU30(this.nssetPool.id(n.getQualifiers()));
+                    out.writeU30(this.nssetPool.id(n.getQualifiers()));
                     break;
                 }
                 case CONSTANT_RTQnameL:
@@ -399,9 +499,9 @@ public final class ABCEmitter implements IABCVisitor
                 }
                 case CONSTANT_TypeName:
                 {
-                    w.writeU30(this.namePool.id(n.getTypeNameBase()));
-                    w.writeU30(1); // only 1 type parameter is currently supposed in AVM2
-                    w.writeU30(this.namePool.id(n.getTypeNameParameter()));
+                    out.writeU30(this.namePool.id(n.getTypeNameBase()));
+                    out.writeU30(1); // only 1 type parameter is currently supposed in AVM2
+                    out.writeU30(this.namePool.id(n.getTypeNameParameter()));
                     break;
                 }
                 default:
@@ -411,90 +511,39 @@ public final class ABCEmitter implements IABCVisitor
                 }
             }
         }
+    }
 
-        // See the comment in EmitterMethodInfoVisitor.visit
-        // to understand why we have this lock here.
-        // The short answer is because multiple threads
-        // need to simultaneously add method infos to the method
-        // info pool.
-        final Lock methodInfosReadLock = methodInfosLock.readLock();
-        methodInfosReadLock.lock();
-        try
-        {
-            w.writeU30(this.methodInfos.size());
-
-            for (MethodInfo mi : this.methodInfos)
-                emitMethodInfo(mi);
-        }
-        finally
-        {
-            methodInfosReadLock.unlock();
-        }
-
-        w.writeU30(this.metadataPool.getNominalSize());
+    /**
+     * Write the metadata pool.
+     * 
+     * @param out - the writer of the ABC.
+     */
+    void emitMetadataPool(ABCWriter out)
+    {
+        out.writeU30(this.metadataPool.getNominalSize());
         for (Metadata md : this.metadataPool.values)
         {
             // name
-            w.writeU30(this.stringPool.id(md.getName()));
+            out.writeU30(this.stringPool.id(md.getName()));
 
             // items count
             assert md.getKeys().length == md.getValues().length;
-            w.writeU30(md.getKeys().length);
+            out.writeU30(md.getKeys().length);
 
             // metadata keys
             for (final String key : md.getKeys())
             {
                 final int string_index = stringPool.id(key);
-                w.writeU30(string_index);
+                out.writeU30(string_index);
             }
 
             // metadata values
             for (final String value : md.getValues())
             {
                 final int string_index = stringPool.id(value);
-                w.writeU30(string_index);
+                out.writeU30(string_index);
             }
         }
-
-        w.writeU30(this.definedClasses.size());
-        for (EmitterClassVisitor clz : this.definedClasses)
-        {
-            InstanceInfo ii = clz.instanceInfo;
-
-            w.writeU30(namePool.id(ii.name));
-            w.writeU30(namePool.id(ii.superName));
-            w.write(ii.flags);
-
-            if (ii.hasProtectedNs())
-                w.writeU30(this.nsPool.id(ii.protectedNs));
-            w.writeU30(ii.interfaceNames.length);
-
-            for (Name i : ii.interfaceNames)
-                w.writeU30(this.namePool.id(i));
-            w.writeU30(getMethodId(ii.iInit));
-
-            emitTraits(clz.instanceTraits);
-        }
-
-        for (EmitterClassVisitor clz : this.definedClasses)
-        {
-            w.writeU30(getMethodId(clz.classInfo.cInit));
-            emitTraits(clz.classTraits);
-        }
-
-        w.writeU30(this.scriptInfos.size());
-        for (ScriptInfo s : this.scriptInfos)
-        {
-            emitScriptInfo(s);
-        }
-
-        w.writeU30(this.methodBodies.size());
-        for (MethodBodyInfo mb : this.methodBodies)
-        {
-            emitMethodBody(mb);
-        }
-
-        return w.getDirectByteArray();
     }
 
     private int getMajorVersion()
@@ -981,10 +1030,10 @@ public final class ABCEmitter implements IABCVisitor
         }
     }
 
-    private void emitNamespace(Namespace ns)
+    private void emitNamespace(ABCWriter out, Namespace ns)
     {
-        w.write(ns.getKind());
-        w.writeU30(stringPool.id(ns.getVersionedName()));
+        out.write(ns.getKind());
+        out.writeU30(stringPool.id(ns.getVersionedName()));
     }
 
     private void emitExceptionInfo(MethodBodyInfo f, ABCWriter w, Map<IBasicBlock, Integer> pos)
@@ -1047,6 +1096,24 @@ public final class ABCEmitter implements IABCVisitor
             write(i >> 16);
         }
 
+        /**
+         * Overwrite an S24 written earlier.
+         */
+        void patchS24(int pos, int i)
+        {
+            buf[pos] = (byte)i;
+            buf[pos + 1] = (byte)(i >> 8);
+            buf[pos + 2] = (byte)(i >> 16);
+        }
+
+        /**
+         * Overwrite a byte written earlier.
+         */
+        void patchU8(int pos, int b)
+        {
+            buf[pos] = (byte)b;
+        }
+
         void write64(long i)
         {
             writeS24((int)i);
@@ -1308,6 +1375,7 @@ public final class ABCEmitter implements IABCVisitor
     {
         verifyEmitterStatus();
         assertLockHeld();
+        beforeUpdate();
 
         this.visitEndCalled = true;
     }
@@ -1335,29 +1403,34 @@ public final class ABCEmitter implements IABCVisitor
     {
         verifyEmitterStatus();
 
-        return new EmitterMethodInfoVisitor(minfo);
+        return new EmitterMethodInfoVisitor(minfo, null);
     }
 
     @Override
     public void visitPooledDouble(Double d)
     {
         verifyEmitterStatus();
+        beforeUpdate();
 
-        this.doublePool.add(d);
+        if (d != null)
+            this.doublePool.add(d);
     }
 
     @Override
     public void visitPooledInt(Integer i)
     {
         verifyEmitterStatus();
+        beforeUpdate();
 
-        this.intPool.add(i);
+        if (i != null)
+            this.intPool.add(i);
     }
 
     @Override
     public void visitPooledMetadata(Metadata md)
     {
         verifyEmitterStatus();
+        beforeUpdate();
 
         this.metadataPool.add(md);
 
@@ -1374,6 +1447,7 @@ public final class ABCEmitter implements IABCVisitor
     public void visitPooledName(Name n)
     {
         verifyEmitterStatus();
+        beforeUpdate();
 
         if (null == n)
             return;
@@ -1402,6 +1476,7 @@ public final class ABCEmitter implements IABCVisitor
     public void visitPooledNamespace(Namespace ns)
     {
         verifyEmitterStatus();
+        beforeUpdate();
 
         this.nsPool.add(ns);
 
@@ -1413,6 +1488,7 @@ public final class ABCEmitter implements IABCVisitor
     public void visitPooledNsSet(Nsset nss)
     {
         verifyEmitterStatus();
+        beforeUpdate();
 
         this.nssetPool.add(nss);
 
@@ -1429,6 +1505,7 @@ public final class ABCEmitter implements IABCVisitor
     public void visitPooledString(String s)
     {
         verifyEmitterStatus();
+        beforeUpdate();
 
         this.stringPool.add(s);
     }
@@ -1437,8 +1514,10 @@ public final class ABCEmitter implements IABCVisitor
     public void visitPooledUInt(Long l)
     {
         verifyEmitterStatus();
+        beforeUpdate();
 
-        this.uintPool.add(l);
+        if (l != null)
+            this.uintPool.add(l);
     }
 
     public static int sizeOfU30(int v)
@@ -1509,6 +1588,7 @@ public final class ABCEmitter implements IABCVisitor
             verifyEmitterStatus();
 
             assertLockHeld();
+            beforeUpdate();
             definedClasses.add(this);
             if (null == classInfo.cInit)
             {
@@ -1575,12 +1655,24 @@ public final class ABCEmitter implements IABCVisitor
     private class EmitterTraitsVisitor implements ITraitsVisitor
     {
         EmitterTraitsVisitor(Traits traits)
+        {
+            this(traits, null);
+        }
+
+        EmitterTraitsVisitor(Traits traits, DeferringVisitor deferringVisitor)
         {
             this.traits = traits;
+            this.deferringVisitor = deferringVisitor;
         }
 
         Traits traits;
 
+        /**
+         * The visitor of the method body the traits belong to, if it is
+         * generated on another thread.
+         */
+        final DeferringVisitor deferringVisitor;
+
         @Override
         public ITraitVisitor visitClassTrait(int kind, Name name, int slot_id, ClassInfo clazz)
         {
@@ -1616,7 +1708,12 @@ public final class ABCEmitter implements IABCVisitor
             t.addAttr(Trait.TRAIT_TYPE, slotType);
             t.addAttr(Trait.SLOT_VALUE, slotValue);
             if (slotType != null)
-                visitPooledName(slotType);
+            {
+                if (deferringVisitor != null)
+                    deferringVisitor.visitPooledName(slotType);
+                else
+                    visitPooledName(slotType);
+            }
             return new EmitterTraitVisitor(t);
         }
 
@@ -1707,13 +1804,20 @@ public final class ABCEmitter implements IABCVisitor
 
     private class EmitterMethodBodyInfo implements IMethodBodyVisitor
     {
-        EmitterMethodBodyInfo(MethodBodyInfo mbinfo)
+        EmitterMethodBodyInfo(MethodBodyInfo mbinfo, DeferringVisitor deferringVisitor)
         {
             this.mbi = mbinfo;
+            this.deferringVisitor = deferringVisitor;
         }
 
         MethodBodyInfo mbi;
 
+        /**
+         * The visitor the method body is generated with, if it is generated
+         * on another thread.
+         */
+        final DeferringVisitor deferringVisitor;
+
         @Override
         public void visit()
         {
@@ -1727,6 +1831,7 @@ public final class ABCEmitter implements IABCVisitor
             verifyEmitterStatus();
 
             assertLockHeld();
+            beforeUpdate();
             poolOperands(mbi);
             methodBodies.add(mbi);
 
@@ -1782,7 +1887,7 @@ public final class ABCEmitter implements IABCVisitor
         {
             verifyEmitterStatus();
 
-            return new EmitterTraitsVisitor(this.mbi.getTraits());
+            return new EmitterTraitsVisitor(this.mbi.getTraits(), deferringVisitor);
         }
 
         @Override
@@ -1834,6 +1939,7 @@ public final class ABCEmitter implements IABCVisitor
         {
             verifyEmitterStatus();
             assertLockHeld();
+            beforeUpdate();
             scriptInfos.add(this.si);
         }
 
@@ -1856,13 +1962,20 @@ public final class ABCEmitter implements IABCVisitor
 
     private class EmitterMethodInfoVisitor implements IMethodVisitor
     {
-        EmitterMethodInfoVisitor(MethodInfo mi)
+        EmitterMethodInfoVisitor(MethodInfo mi, DeferringVisitor deferringVisitor)
         {
             assert (mi != null);
             this.mi = mi;
+            this.deferringVisitor = deferringVisitor;
         }
 
         final MethodInfo mi;
+
+        /**
+         * The visitor the method is generated with, if it is generated on
+         * another thread.
+         */
+        final DeferringVisitor deferringVisitor;
         
         MethodBodyInfo mbi;
 
@@ -1882,15 +1995,18 @@ public final class ABCEmitter implements IABCVisitor
             // methods can compute a method id for the method info
             // associated with this EmitterMethodInfoVisitor before
             // visitEnd has been called on this EmitterMethodInfoVisitor.
-            final Lock methodInfosWriteLock = methodInfosLock.writeLock();
-            methodInfosWriteLock.lock();
-            try
+            //
+            // A method generated with a DeferringVisitor is added when the
+            // visitor is committed, so the order of the method infos
+            // doesn't depend on the timing of the threads.
+            if (deferringVisitor != null)
             {
-                methodInfos.add(mi);
+                deferringVisitor.addMethodInfo(mi);
             }
-            finally
+            else
             {
-                methodInfosWriteLock.unlock();
+                beforeUpdate();
+                addMethodInfo(mi);
             }
         }
 
@@ -1900,7 +2016,7 @@ public final class ABCEmitter implements IABCVisitor
             verifyEmitterStatus();
 
             this.mbi = mbi;
-            return new EmitterMethodBodyInfo(mbi);
+            return new EmitterMethodBodyInfo(mbi, deferringVisitor);
         }
 
         @Override
@@ -1909,6 +2025,7 @@ public final class ABCEmitter implements IABCVisitor
             verifyEmitterStatus();
 
             assertLockHeld();
+            beforeUpdate();
 
             for (Name param_type_name : mi.getParamTypes())
                 visitPooledName(param_type_name);
@@ -2075,6 +2192,252 @@ public final class ABCEmitter implements IABCVisitor
         lock.unlock();
     }
 
+    /**
+     * Add a method info to the method info pool.
+     */
+    private void addMethodInfo(MethodInfo mi)
+    {
+        final Lock methodInfosWriteLock = methodInfosLock.writeLock();
+        methodInfosWriteLock.lock();
+        try
+        {
+            methodInfos.add(mi);
+        }
+        finally
+        {
+            methodInfosWriteLock.unlock();
+        }
+    }
+
+    /**
+     * Set a callback that is run before the pools, the method info pool or
+     * the lists of method bodies, classes and scripts change, on the thread
+     * that called {@link #visit(int, int)}. Code generators that generate
+     * methods with {@link DeferringVisitor}s use it to commit the visitors,
+     * and run their visitEnd calls, before the other changes.
+     * 
+     * @param callback - the callback, or null.
+     */
+    public void setBeforeUpdateCallback(Runnable callback)
+    {
+        this.beforeUpdateCallback = callback;
+    }
+
+    private void beforeUpdate()
+    {
+        if (beforeUpdateCallback != null && lock.isHeldByCurrentThread())
+            beforeUpdateCallback.run();
+    }
+
+    /**
+     * Create a visitor for generating methods on a thread other than the one
+     * that called {@link #visit(int, int)}.
+     * 
+     * @return a new {@link DeferringVisitor}.
+     */
+    public DeferringVisitor createDeferringVisitor()
+    {
+        verifyEmitterStatus();
+
+        return new DeferringVisitor();
+    }
+
+    /**
+     * Visitor for generating methods on a thread other than the one that
+     * called {@link #visit(int, int)}.
+     * <p>
+     * The method visitors it creates don't change the emitter. The method
+     * infos and the pooled values they would add are recorded, in order, and
+     * added by {@link #commit()}. The visitEnd calls of the method visitors
+     * must still be made on the thread that called {@link #visit(int, int)},
+     * after the commit. The emitter is then changed in the same order as if
+     * the methods had been generated on that thread, so the ABC doesn't
+     * depend on the timing of the threads.
+     */
+    public final class DeferringVisitor implements IABCVisitor
+    {
+        private DeferringVisitor()
+        {
+        }
+
+        /**
+         * The changes to the emitter, in the order they were made.
+         */
+        private final List<Runnable> changes = new ArrayList<Runnable>();
+
+        /**
+         * Record a change to make when the visitor is committed, in order
+         * with the changes to the emitter. Code generators use it for state
+         * of their own that has to change in the same order.
+         * 
+         * @param change - the change.
+         */
+        public void defer(Runnable change)
+        {
+            changes.add(change);
+        }
+
+        /**
+         * Make the recorded changes. This must be called on the thread that
+         * called {@link ABCEmitter#visit(int, int)}.
+         */
+        public void commit()
+        {
+            assertLockHeld();
+            for (Runnable change : changes)
+                change.run();
+            changes.clear();
+        }
+
+        void addMethodInfo(final MethodInfo mi)
+        {
+            defer(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    ABCEmitter.this.addMethodInfo(mi);
+                }
+            });
+        }
+
+        @Override
+        public void visit(int major_version, int minor_version)
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void visitEnd()
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public IScriptVisitor visitScript()
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public IClassVisitor visitClass(InstanceInfo iinfo, ClassInfo cinfo)
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public IMethodVisitor visitMethod(MethodInfo minfo)
+        {
+            verifyEmitterStatus();
+
+            return new EmitterMethodInfoVisitor(minfo, this);
+        }
+
+        @Override
+        public void visitPooledInt(final Integer i)
+        {
+            defer(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    ABCEmitter.this.visitPooledInt(i);
+                }
+            });
+        }
+
+        @Override
+        public void visitPooledUInt(final Long l)
+        {
+            defer(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    ABCEmitter.this.visitPooledUInt(l);
+                }
+            });
+        }
+
+        @Override
+        public void visitPooledDouble(final Double d)
+        {
+            defer(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    ABCEmitter.this.visitPooledDouble(d);
+                }
+            });
+        }
+
+        @Override
+        public void visitPooledString(final String s)
+        {
+            defer(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    ABCEmitter.this.visitPooledString(s);
+                }
+            });
+        }
+
+        @Override
+        public void visitPooledNamespace(final Namespace ns)
+        {
+            defer(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    ABCEmitter.this.visitPooledNamespace(ns);
+                }
+            });
+        }
+
+        @Override
+        public void visitPooledNsSet(final Nsset nss)
+        {
+            defer(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    ABCEmitter.this.visitPooledNsSet(nss);
+                }
+            });
+        }
+
+        @Override
+        public void visitPooledName(final Name n)
+        {
+            defer(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    ABCEmitter.this.visitPooledName(n);
+                }
+            });
+        }
+
+        @Override
+        public void visitPooledMetadata(final Metadata md)
+        {
+            defer(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    ABCEmitter.this.visitPooledMetadata(md);
+                }
+            });
+        }
+    }
+
     /**
      * verifyEmitterStatus() verifies that the emitter has not seen a visitEnd()
      * call.
@@ -23,6 +23,7 @@ import org.apache.royale.abc.diagnostics.AbstractDiagnosticVisitor;
 import org.apache.royale.abc.graph.IFlowgraph;
 import org.apache.royale.abc.graph.IBasicBlock;
 import org.apache.royale.abc.instructionlist.InstructionList;
+import org.apache.royale.abc.optimize.DataFlowOptimizer;
 import org.apache.royale.abc.optimize.DeadCodeFilter;
 import org.apache.royale.abc.optimize.PeepholeOptimizerMethodBodyVisitor;
 import org.apache.royale.abc.semantics.ClassInfo;
@@ -65,11 +66,31 @@ public class ABCLinker
 {
     public static byte[] linkABC(Iterable<byte[]> inputABCs, int majorVersion, int minorVersion, ABCLinkerSettings settings) throws Exception
     {
+        // Without the optimizer, the ABCs don't have to be turned into
+        // instruction lists and emitted again, their bytes are rewritten.
+        if (settings.streaming && !settings.optimize && !settings.enableInlining && !settings.removeDeadCode)
+        {
+            final StreamingABCLinker linker = new StreamingABCLinker(majorVersion, minorVersion,
+                    settings.stripDebug, settings.shouldStripMetadata(), settings.meta_names,
+                    settings.stripGotoDefinitionHelp, settings.stripFileAttributeFromGotoDefinitionHelp);
+            final byte[] result = linker.link(inputABCs);
+            if (result != null)
+                return result;
+        }
+
         ABCEmitter emitter = new ABCEmitter();
         // ABCs from 4.5 may have non-sensical jumps past the end of a method
         // so allow those, instead of throwin java exceptions
         emitter.setAllowBadJumps(true);
         emitter.visit(majorVersion, minorVersion);
+        // Size the constant pools for the largest pools of the ABCs up front,
+        // so that they grow less while the ABCs are merged. Most entries
+        // are common to many ABCs, so the sum of the pool sizes would
+        // allocate many times the size of the merged pools.
+        final ABCParser.PoolSizes poolSizes = new ABCParser.PoolSizes();
+        for (byte[] inputABC : inputABCs)
+            poolSizes.max(ABCParser.readPoolSizes(inputABC));
+        emitter.ensurePoolCapacity(poolSizes);
         for (byte[] inputABC : inputABCs)
         {
             ABCParser abcParser = new ABCParser(inputABC);
@@ -87,6 +108,8 @@ public class ABCLinker
         private boolean stripFileAttributeFromGotoDefinitionHelp = false;
         private boolean stripGotoDefinitionHelp = false;
         private boolean removeDeadCode = false;
+        private boolean optimizeDataFlow = false;
+        private boolean streaming = false;
         private Collection<String> meta_names = null;
         @SuppressWarnings("unused")
         private int minorVersion = ABCConstants.VERSION_ABC_MINOR_FP10;
@@ -187,6 +210,29 @@ public class ABCLinker
             this.removeDeadCode = removeDeadCode;
         }
 
+        /**
+         * Enable or disable the DataFlowOptimizer optimization step. Only
+         * used if the ABCs are optimized.
+         * @param optimizeDataFlow true if the DataFlowOptimizer should be run.
+         */
+        public void setOptimizeDataFlow(final boolean optimizeDataFlow)
+        {
+            this.optimizeDataFlow = optimizeDataFlow;
+        }
+
+        /**
+         * Tell the linker whether it may rewrite the bytes of the ABCs
+         * instead of parsing them into instruction lists, when the ABCs are
+         * not optimized. Defaults to false.
+         * 
+         * @param b true if the ABCs may be linked without parsing the
+         * method bodies.
+         */
+        public void setStreaming(boolean b)
+        {
+            streaming = b;
+        }
+
         /**
          * Set a problems collection for errors or warnings during link.
          * @param problems the problems collection to receive errors or warnings.
@@ -334,11 +380,13 @@ public class ABCLinker
      */
     private static class OptimizingMethodVisitor extends DelegatingMethodVisitor
     {
-        public OptimizingMethodVisitor(IMethodVisitor delegate, Collection<ICompilerProblem> problems, final boolean removeDeadCode)
+        public OptimizingMethodVisitor(IMethodVisitor delegate, Collection<ICompilerProblem> problems, final boolean removeDeadCode,
+                                       final boolean optimizeDataFlow)
         {
             super(delegate);
             this.problems = problems;
             this.removeDeadCode = removeDeadCode;
+            this.optimizeDataFlow = optimizeDataFlow;
         }
 
         /**
@@ -351,12 +399,22 @@ public class ABCLinker
          */
         final boolean removeDeadCode;
 
+        /**
+         * When true, run a DataFlowOptimizer as part of the optimization pipeline.
+         */
+        final boolean optimizeDataFlow;
+
         @Override
         public IMethodBodyVisitor visitBody(MethodBodyInfo mbi)
         {
             //  Set up the optimizer pipeline.
             IMethodBodyVisitor delegate = super.visitBody(mbi);
 
+            //  The DeadCodeFilter's visitEnd() runs first, so
+            //  unreachable blocks don't keep registers live.
+            if ( optimizeDataFlow )
+                delegate = new DataFlowOptimizer(mbi, delegate);
+
             if ( removeDeadCode )
             {
                 IDiagnosticsVisitor diagnostics = new AbstractDiagnosticVisitor()
@@ -481,7 +539,7 @@ public class ABCLinker
      * the rest of the metadata. If no metadata is supposed to be stripped, then
      * you shouldn't create one of these
      */
-    private static class MetadataStrippingVisitor extends DelegatingMetadataVisitor
+    static class MetadataStrippingVisitor extends DelegatingMetadataVisitor
     {
 
         /**
@@ -584,16 +642,30 @@ public class ABCLinker
         @Override
         public void visit(Metadata md)
         {
-            if (shouldKeep(md))
-            {
-                if (!stripGotoDefinitionHelp && stripFileAttribute)
-                    md = stripFileAttributeFromGotoDefinitionHelp(md);
+            md = filter(md, metaNames, stripGotoDefinitionHelp, stripFileAttribute);
+            if (md != null)
                 super.visit(md);
-            }
             return;
         }
 
-        boolean shouldKeep(Metadata md)
+        /**
+         * Apply the settings of a MetadataStrippingVisitor to metadata.
+         * 
+         * @return the metadata to emit, or null if the metadata is stripped.
+         */
+        static Metadata filter(Metadata md, Collection<String> metaNames,
+                               boolean stripGotoDefinitionHelp,
+                               boolean stripFileAttribute)
+        {
+            if (!shouldKeep(md, metaNames, stripGotoDefinitionHelp))
+                return null;
+            if (!stripGotoDefinitionHelp && stripFileAttribute)
+                md = stripFileAttributeFromGotoDefinitionHelp(md);
+            return md;
+        }
+
+        static boolean shouldKeep(Metadata md, Collection<String> metaNames,
+                                  boolean stripGotoDefinitionHelp)
         {
             if (metaNames == null)
             {
@@ -715,7 +787,7 @@ public class ABCLinker
         {
             IMethodVisitor mv = delegate.visitMethod(minfo);
             if (settings.optimize)
-                mv = new OptimizingMethodVisitor(mv, settings.problems, settings.removeDeadCode);
+                mv = new OptimizingMethodVisitor(mv, settings.problems, settings.removeDeadCode, settings.optimizeDataFlow);
 
             // Run the debug stripping visitor first, so the debug
             // instructions won't confuse the peephole optimizer
@@ -53,43 +53,43 @@ public class ABCParser
      * Local copies of the pool data are maintained because the core's pools may
      * contain data from several ABCs, and so the constant pool indices
      * contained in this ABC won't necessarily match the indices in the core
-     * pools.
+     * pools. The StreamingABCLinker reads the constant pools directly.
      */
 
     /**
      * Names defined by this ABC.
      */
-    private Name[] names;
+    Name[] names;
     
     /**
      * Strings defined by this ABC.
      */
-    private String[] strings;
+    String[] strings;
     
     /**
      * Namespaces defined by this ABC.
      */
-    private Namespace[] namespaces;
+    Namespace[] namespaces;
     
     /**
      * Namespace sets defined by this ABC.
      */
-    private Nsset[] namespace_sets;
+    Nsset[] namespace_sets;
     
     /** 
      * Integer values defined by this ABC.
      */
-    private int[] ints;
+    int[] ints;
     
     /**
      * Unsigned integer values defined by this ABC.
      */
-    private long[] uints;
+    long[] uints;
     
     /**
      * Floating-point values defined by this ABC.
      */
-    private double[] doubles;
+    double[] doubles;
 
     /**
      * Metdata defined by this ABC.
@@ -116,6 +116,11 @@ public class ABCParser
      */
     private InstanceInfo[] instanceInfos;
 
+    /**
+     * Offset of the method bodies pool, set by {@link #parseABC}.
+     */
+    private int methodBodiesOffset = -1;
+
     /**
      * Construct a new ABC parser from a byte array.
      * 
@@ -162,6 +167,134 @@ public class ABCParser
 
         vabc.visit(major, minor);
 
+        readConstantPools(p, vabc);
+
+        if (verbose)
+        	output.println("parsing method pool");
+        
+        int n_methods = p.readU30();
+        this.methodInfos = new MethodInfo[n_methods];
+        this.methodVisitors = new IMethodVisitor[n_methods];
+        for (int i = 0, n = n_methods; i < n; i++)
+        {
+            this.methodInfos[i] = readMethodInfo(p);
+            this.methodVisitors[i] = vabc.visitMethod(this.methodInfos[i]);
+            if (this.methodVisitors[i] != null)
+                this.methodVisitors[i].visit();
+        }
+
+        if (verbose)
+        	output.println("parsing metadata pool");
+        
+        pool_size = p.readU30();
+        metadata = new Metadata[pool_size];
+        for (int i = 0; i < pool_size; i++)
+        {
+            metadata[i] = readMetadata(p);
+            vabc.visitPooledMetadata(metadata[i]);
+        }
+
+        if (verbose)
+        	output.println("parsing instances pool");
+        
+        //  InstanceInfos and ClassInfos are stored in
+        //  homogenous arrays in the ABC, but their
+        //  IClassVisitor needs both in its constructor; so
+        //  we read the arrays, remembering the position of
+        //  the class and instance traits, and re-read the
+        //  traits with the IClassVisitor's traits visitors.
+        int n_instances = p.readU30();
+        this.instanceInfos = new InstanceInfo[n_instances];
+        this.classInfos = new ClassInfo[n_instances];
+
+        for (int i = 0, n = n_instances; i < n; i++)
+        {
+            this.instanceInfos[i] = readInstanceInfo(p);
+        }
+
+        for (int i = 0, n = n_instances; i < n; i++)
+        {
+            this.classInfos[i] = readClassInfo(p);
+        }
+
+        for (int i = 0, n = n_instances; i < n; i++)
+        {
+            IClassVisitor cv = vabc.visitClass(this.instanceInfos[i], this.classInfos[i]);
+
+            if (cv != null)
+            {
+                ITraitsVisitor tv = cv.visitClassTraits();
+                readTraits(p, tv, this.classInfoToTraits.get(this.classInfos[i]));
+                tv.visitEnd();
+
+                tv = cv.visitInstanceTraits();
+                readTraits(p, tv, this.instanceInfoToTraits.get(this.instanceInfos[i]));
+                tv.visitEnd();
+                cv.visitEnd();
+            }
+        }
+
+        if (verbose)
+        	output.println("parsing scripts pool");
+        
+        int n_scripts = p.readU30();
+        for (int i = 0; i < n_scripts; i++)
+        {
+            IScriptVisitor sv = vabc.visitScript();
+
+            if (sv != null)
+            {
+                readScript(p, sv);
+            }
+            else
+            {
+                p.readU30();
+                readTraits(p, NilVisitors.NIL_TRAITS_VISITOR);
+            }
+        }
+
+        if (verbose)
+        	output.println("parsing method bodies pool");
+        
+        methodBodiesOffset = p.pos;
+        int n_method_bodies = p.readU30();
+        for (int i = 0; i < n_method_bodies; i++)
+        {
+            readBody(vabc, p);
+        }
+
+        for (int i = 0; i < n_methods; ++i)
+        {
+            if (this.methodVisitors[i] != null)
+                this.methodVisitors[i].visitEnd();
+        }
+
+        vabc.visitEnd();
+    }
+
+    /**
+     * Parse only the version and the constant pools of the ABC, and send the
+     * pooled values to the visitor. The pools are then available in
+     * {@link #ints}, {@link #strings}, {@link #names} etc.
+     * 
+     * @param vabc - the visitor of the pooled values.
+     * @return the offset of the method infos, which follow the constant pools.
+     */
+    int parseConstantPools(IABCVisitor vabc)
+    {
+        ABCReader p = new ABCReader(0, abc);
+        int minor = p.readU16();
+        int major = p.readU16();
+
+        vabc.visit(major, minor);
+        readConstantPools(p, vabc);
+        return p.pos;
+    }
+
+    private void readConstantPools(ABCReader p, IABCVisitor vabc)
+    {
+        int pool_size;
+
         if (verbose)
         	output.println("parsing int pool");
         	
@@ -290,107 +423,107 @@ public class ABCParser
             // restore after we're done
             p.pos = orig_pos;
         }
+    }
 
-        if (verbose)
-        	output.println("parsing method pool");
-        
-        int n_methods = p.readU30();
-        this.methodInfos = new MethodInfo[n_methods];
-        this.methodVisitors = new IMethodVisitor[n_methods];
-        for (int i = 0, n = n_methods; i < n; i++)
-        {
-            this.methodInfos[i] = readMethodInfo(p);
-            this.methodVisitors[i] = vabc.visitMethod(this.methodInfos[i]);
-            if (this.methodVisitors[i] != null)
-                this.methodVisitors[i].visit();
-        }
-
-        if (verbose)
-        	output.println("parsing metadata pool");
-        
-        pool_size = p.readU30();
-        metadata = new Metadata[pool_size];
-        for (int i = 0; i < pool_size; i++)
-        {
-            metadata[i] = readMetadata(p);
-            vabc.visitPooledMetadata(metadata[i]);
-        }
-
-        if (verbose)
-        	output.println("parsing instances pool");
-        
-        //  InstanceInfos and ClassInfos are stored in
-        //  homogenous arrays in the ABC, but their
-        //  IClassVisitor needs both in its constructor; so
-        //  we read the arrays, remembering the position of
-        //  the class and instance traits, and re-read the
-        //  traits with the IClassVisitor's traits visitors.
-        int n_instances = p.readU30();
-        this.instanceInfos = new InstanceInfo[n_instances];
-        this.classInfos = new ClassInfo[n_instances];
+    /**
+     * Get the offset of the method bodies pool, which is the last part of
+     * an ABC. Everything before it describes the declarations.
+     * 
+     * @return the offset, or -1 if the ABC has not been parsed.
+     */
+    public int getMethodBodiesOffset()
+    {
+        return methodBodiesOffset;
+    }
 
-        for (int i = 0, n = n_instances; i < n; i++)
+    /**
+     * The number of entries of the constant pools of one or more ABC blocks,
+     * not counting the default zero entries.
+     */
+    public static final class PoolSizes
+    {
+        public int ints;
+        public int uints;
+        public int doubles;
+        public int strings;
+        public int namespaces;
+        public int namespaceSets;
+        public int names;
+
+        /**
+         * Raise these sizes to the sizes of the pools of another ABC block,
+         * where those are larger.
+         * 
+         * @param other - the sizes to compare with.
+         */
+        public void max(PoolSizes other)
         {
-            this.instanceInfos[i] = readInstanceInfo(p);
+            ints = Math.max(ints, other.ints);
+            uints = Math.max(uints, other.uints);
+            doubles = Math.max(doubles, other.doubles);
+            strings = Math.max(strings, other.strings);
+            namespaces = Math.max(namespaces, other.namespaces);
+            namespaceSets = Math.max(namespaceSets, other.namespaceSets);
+            names = Math.max(names, other.names);
         }
+    }
 
-        for (int i = 0, n = n_instances; i < n; i++)
-        {
-            this.classInfos[i] = readClassInfo(p);
-        }
+    /**
+     * Read the sizes of the constant pools of an ABC, without parsing their
+     * entries. This is much cheaper than parsing the ABC, and lets an
+     * {@link ABCEmitter} that links many ABC blocks size its pools up front.
+     * 
+     * @param abc - the ABC in byte array form.
+     * @return the sizes of the pools.
+     */
+    public static PoolSizes readPoolSizes(byte[] abc)
+    {
+        final PoolSizes result = new PoolSizes();
+        final ABCReader p = new ABCReader(4, abc);
 
-        for (int i = 0, n = n_instances; i < n; i++)
-        {
-            IClassVisitor cv = vabc.visitClass(this.instanceInfos[i], this.classInfos[i]);
+        result.ints = countOf(p.readU30());
+        for (int i = 0; i < result.ints; i++)
+            p.readU30();
 
-            if (cv != null)
-            {
-                ITraitsVisitor tv = cv.visitClassTraits();
-                readTraits(p, tv, this.classInfoToTraits.get(this.classInfos[i]));
-                tv.visitEnd();
+        result.uints = countOf(p.readU30());
+        for (int i = 0; i < result.uints; i++)
+            p.readU30();
 
-                tv = cv.visitInstanceTraits();
-                readTraits(p, tv, this.instanceInfoToTraits.get(this.instanceInfos[i]));
-                tv.visitEnd();
-                cv.visitEnd();
-            }
-        }
+        result.doubles = countOf(p.readU30());
+        p.pos += 8 * result.doubles;
 
-        if (verbose)
-        	output.println("parsing scripts pool");
-        
-        int n_scripts = p.readU30();
-        for (int i = 0; i < n_scripts; i++)
+        result.strings = countOf(p.readU30());
+        for (int i = 0; i < result.strings; i++)
         {
-            IScriptVisitor sv = vabc.visitScript();
-
-            if (sv != null)
-            {
-                readScript(p, sv);
-            }
-            else
-            {
-                p.readU30();
-                readTraits(p, NilVisitors.NIL_TRAITS_VISITOR);
-            }
+            final int len = p.readU30();
+            p.pos += len;
         }
 
-        if (verbose)
-        	output.println("parsing method bodies pool");
-        
-        int n_method_bodies = p.readU30();
-        for (int i = 0; i < n_method_bodies; i++)
+        result.namespaces = countOf(p.readU30());
+        for (int i = 0; i < result.namespaces; i++)
         {
-            readBody(vabc, p);
+            p.readU8();
+            p.readU30();
         }
 
-        for (int i = 0; i < n_methods; ++i)
+        result.namespaceSets = countOf(p.readU30());
+        for (int i = 0; i < result.namespaceSets; i++)
         {
-            if (this.methodVisitors[i] != null)
-                this.methodVisitors[i].visitEnd();
+            final int nsset_size = p.readU30();
+            for (int j = 0; j < nsset_size; j++)
+                p.readU30();
         }
 
-        vabc.visitEnd();
+        result.names = countOf(p.readU30());
+        return result;
+    }
+
+    /**
+     * @return the number of entries of a pool with a default zero entry.
+     */
+    private static int countOf(int pool_size)
+    {
+        return Math.max(pool_size - 1, 0);
     }
 
     private boolean usesForwardReference(Name name)
@@ -0,0 +1,115 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.abc;
+
+/**
+ * The double pool of an ABC. Like a {@link Pool} of Doubles with a default
+ * zero entry, but the values are kept unboxed. Values are the same if they
+ * have the same bits, as with {@link Double#equals(Object)}, so NaN is pooled
+ * once and 0.0 and -0.0 are different entries.
+ */
+public final class DoublePool
+{
+    /**
+     * Construct a new, empty pool.
+     */
+    public DoublePool()
+    {
+        this(0);
+    }
+
+    /**
+     * Construct a new pool sized for a number of values.
+     * 
+     * @param expectedSize - the number of values the pool can hold without
+     * growing.
+     */
+    public DoublePool(int expectedSize)
+    {
+        bits = new LongPool(expectedSize);
+    }
+
+    /**
+     * The bits of the pool's values.
+     */
+    private final LongPool bits;
+
+    /**
+     * Add a value to the pool if it's not already present.
+     * 
+     * @param value - the value to add.
+     * @return the value's position in the pool.
+     */
+    public int add(double value)
+    {
+        return bits.add(Double.doubleToLongBits(value));
+    }
+
+    /**
+     * Make room for a number of values, so the pool doesn't grow while they
+     * are added.
+     * 
+     * @param expectedSize - the number of values.
+     */
+    public void ensureCapacity(int expectedSize)
+    {
+        bits.ensureCapacity(expectedSize);
+    }
+
+    /**
+     * @param value - the value of interest.
+     * @return the value's position in the pool.
+     * @throws IllegalArgumentException if the value isn't in the pool.
+     */
+    public int id(double value)
+    {
+        return bits.id(Double.doubleToLongBits(value));
+    }
+
+    /**
+     * @return a copy of the pool's values in entry order, without the default
+     * zero entry.
+     */
+    public double[] getValues()
+    {
+        final long[] values = bits.getValues();
+        final double[] result = new double[values.length];
+        for (int i = 0; i < values.length; i++)
+            result[i] = Double.longBitsToDouble(values[i]);
+        return result;
+    }
+
+    /**
+     * @return the size of the pool, including the default zero entry.
+     */
+    public int size()
+    {
+        return bits.size();
+    }
+
+    /**
+     * @return the pool size to write into the ABC: 0 if the pool has only the
+     * default zero entry, otherwise its size.
+     */
+    public int getNominalSize()
+    {
+        return bits.getNominalSize();
+    }
+}
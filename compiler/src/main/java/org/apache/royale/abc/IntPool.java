@@ -0,0 +1,121 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.abc;
+
+import java.util.Arrays;
+
+/**
+ * The int pool of an ABC. Like a {@link Pool} of Integers with a default zero
+ * entry, but the values are kept unboxed in a {@link LongPool}.
+ */
+public final class IntPool
+{
+    /**
+     * Construct a new, empty pool.
+     */
+    public IntPool()
+    {
+        this(0);
+    }
+
+    /**
+     * Construct a new pool sized for a number of values.
+     * 
+     * @param expectedSize - the number of values the pool can hold without
+     * growing.
+     */
+    public IntPool(int expectedSize)
+    {
+        values = new LongPool(expectedSize);
+    }
+
+    /**
+     * The pool's values, widened to longs.
+     */
+    private final LongPool values;
+
+    /**
+     * Add a value to the pool if it's not already present.
+     * 
+     * @param value - the value to add.
+     * @return the value's position in the pool.
+     */
+    public int add(int value)
+    {
+        return values.add(value);
+    }
+
+    /**
+     * Make room for a number of values, so the pool doesn't grow while they
+     * are added.
+     * 
+     * @param expectedSize - the number of values.
+     */
+    public void ensureCapacity(int expectedSize)
+    {
+        values.ensureCapacity(expectedSize);
+    }
+
+    /**
+     * @param value - the value of interest.
+     * @return the value's position in the pool.
+     * @throws IllegalArgumentException if the value isn't in the pool.
+     */
+    public int id(int value)
+    {
+        return values.id(value);
+    }
+
+    /**
+     * @return a copy of the pool's values in entry order, without the default
+     * zero entry.
+     */
+    public int[] getValues()
+    {
+        final long[] longValues = values.getValues();
+        final int[] result = new int[longValues.length];
+        for (int i = 0; i < longValues.length; i++)
+            result[i] = (int)longValues[i];
+        return result;
+    }
+
+    /**
+     * @return the size of the pool, including the default zero entry.
+     */
+    public int size()
+    {
+        return values.size();
+    }
+
+    /**
+     * @return the pool size to write into the ABC: 0 if the pool has only the
+     * default zero entry, otherwise its size.
+     */
+    public int getNominalSize()
+    {
+        return values.getNominalSize();
+    }
+
+    @Override
+    public String toString()
+    {
+        return Arrays.toString(getValues());
+    }
+}
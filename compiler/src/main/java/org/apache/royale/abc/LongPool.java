@@ -0,0 +1,169 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.abc;
+
+import java.util.Arrays;
+
+/**
+ * The uint pool of an ABC. Like a {@link Pool} of Longs with a default zero
+ * entry, but the values are kept unboxed in an open-addressing hash table.
+ * {@link IntPool} and {@link DoublePool} keep their values in this pool too.
+ */
+public final class LongPool
+{
+    /**
+     * Construct a new, empty pool.
+     */
+    public LongPool()
+    {
+        this(0);
+    }
+
+    /**
+     * Construct a new pool sized for a number of values.
+     * 
+     * @param expectedSize - the number of values the pool can hold without
+     * growing.
+     */
+    public LongPool(int expectedSize)
+    {
+        values = new long[Math.max(expectedSize, 8)];
+        positions = new int[PoolHashing.tableSize(expectedSize)];
+    }
+
+    /**
+     * The pool's values in entry order.
+     */
+    private long[] values;
+
+    /**
+     * The number of values in the pool, not counting the default zero entry.
+     */
+    private int count;
+
+    /**
+     * Hash table of the values' positions in the pool; zero marks an empty
+     * slot.
+     */
+    private int[] positions;
+
+    /**
+     * Add a value to the pool if it's not already present.
+     * 
+     * @param value - the value to add.
+     * @return the value's position in the pool.
+     */
+    public int add(long value)
+    {
+        final int slot = find(value);
+        if (positions[slot] != 0)
+            return positions[slot];
+
+        if (count == values.length)
+            values = Arrays.copyOf(values, count * 2);
+        values[count++] = value;
+        positions[slot] = count;
+        if (PoolHashing.needsGrowth(count, positions.length))
+            rehash(positions.length * 2);
+        return count;
+    }
+
+    /**
+     * Make room for a number of values, so the pool doesn't grow while they
+     * are added.
+     * 
+     * @param expectedSize - the number of values.
+     */
+    public void ensureCapacity(int expectedSize)
+    {
+        if (expectedSize > values.length)
+            values = Arrays.copyOf(values, expectedSize);
+        final int tableSize = PoolHashing.tableSize(expectedSize);
+        if (tableSize > positions.length)
+            rehash(tableSize);
+    }
+
+    /**
+     * @param value - the value of interest.
+     * @return the value's position in the pool.
+     * @throws IllegalArgumentException if the value isn't in the pool.
+     */
+    public int id(long value)
+    {
+        final int position = positions[find(value)];
+        if (position == 0)
+            throw new IllegalArgumentException("Unknown pool item \"" + value + "\"");
+        return position;
+    }
+
+    private int find(long value)
+    {
+        final int mask = positions.length - 1;
+        int slot = PoolHashing.spread(value) & mask;
+        while (positions[slot] != 0 && values[positions[slot] - 1] != value)
+            slot = (slot + 1) & mask;
+        return slot;
+    }
+
+    private void rehash(int tableSize)
+    {
+        positions = new int[tableSize];
+        final int mask = tableSize - 1;
+        for (int i = 0; i < count; i++)
+        {
+            int slot = PoolHashing.spread(values[i]) & mask;
+            while (positions[slot] != 0)
+                slot = (slot + 1) & mask;
+            positions[slot] = i + 1;
+        }
+    }
+
+    /**
+     * @return a copy of the pool's values in entry order, without the default
+     * zero entry.
+     */
+    public long[] getValues()
+    {
+        return Arrays.copyOf(values, count);
+    }
+
+    /**
+     * @return the size of the pool, including the default zero entry.
+     */
+    public int size()
+    {
+        return count + 1;
+    }
+
+    /**
+     * @return the pool size to write into the ABC: 0 if the pool has only the
+     * default zero entry, otherwise its size.
+     */
+    public int getNominalSize()
+    {
+        return count == 0 ? 0 : size();
+    }
+
+    @Override
+    public String toString()
+    {
+        return Arrays.toString(getValues());
+    }
+}
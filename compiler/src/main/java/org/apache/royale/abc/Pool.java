@@ -20,11 +20,14 @@
 package org.apache.royale.abc;
 
 import java.util.ArrayList;
-import java.util.Map;
-import java.util.HashMap;
 
 /**
  * Abstract representation of an ABC pool.
+ * <p>
+ * The pool's elements are indexed by an open-addressing hash table of their
+ * positions, which stores the hash code of each element next to its position.
+ * Lookups don't allocate, and elements are only compared with equals() when
+ * their hash codes match.
  * 
  * @param <T> the type of the Pool's elements. T must implement reasonable
  * hashCode and equals methods. Notably, if it uses identity semantics then you
@@ -41,18 +44,39 @@ public final class Pool<T>
      */
     public Pool(DefaultType default_type)
     {
-        this.hasDefaultZero = default_type == DefaultType.HasDefaultZero;
+        this(default_type, 0);
     }
 
     /**
-     * The pool's elements mapped to their positions for quicker lookup.
+     * Construct a new Pool sized for a number of elements.
+     * 
+     * @param default_type - one of HasDefaultZero or NoDefaultZero.
+     * @param expectedSize - the number of elements the pool can hold without
+     * growing.
      */
-    final Map<T, Integer> refs = new HashMap<T, Integer>();
+    public Pool(DefaultType default_type, int expectedSize)
+    {
+        this.hasDefaultZero = default_type == DefaultType.HasDefaultZero;
+        this.values = new ArrayList<T>(Math.max(expectedSize, 0));
+        this.positions = new int[PoolHashing.tableSize(expectedSize)];
+        this.hashes = new int[positions.length];
+    }
 
     /**
      * The Pool's elements in entry order.
      */
-    final ArrayList<T> values = new ArrayList<T>();
+    final ArrayList<T> values;
+
+    /**
+     * Hash table of the elements' positions in {@link #values} plus one;
+     * zero marks an empty slot.
+     */
+    private int[] positions;
+
+    /**
+     * Hash codes of the elements in the slots of {@link #positions}.
+     */
+    private int[] hashes;
 
     /**
      * When set, the pool has a default meaning for its 0th element (which is
@@ -77,8 +101,6 @@ public final class Pool<T>
      */
     public int add(T e)
     {
-        int result;
-
         if (null == e)
         {
             if (this.hasDefaultZero)
@@ -86,23 +108,78 @@ public final class Pool<T>
             else
                 throw new NullPointerException();
         }
-        else
-        {
-            Integer cached_value = refs.get(e);
 
-            if (cached_value != null)
-            {
-                result = cached_value;
-            }
-            else
-            {
-                values.add(e);
-                result = size();
-                refs.put(e, result);
-            }
+        final int hash = e.hashCode();
+        final int slot = find(e, hash);
+        if (positions[slot] != 0)
+            return poolPosition(positions[slot]);
+
+        values.add(e);
+        positions[slot] = values.size();
+        hashes[slot] = hash;
+        final int result = poolPosition(positions[slot]);
+        if (PoolHashing.needsGrowth(values.size(), positions.length))
+            rehash(positions.length * 2);
+        return result;
+    }
+
+    /**
+     * @return the position in the pool of an entry of {@link #positions}.
+     */
+    private int poolPosition(int entry)
+    {
+        return hasDefaultZero ? entry : entry - 1;
+    }
+
+    /**
+     * Make room for a number of elements, so the pool doesn't grow while
+     * they are added.
+     * 
+     * @param expectedSize - the number of elements.
+     */
+    public void ensureCapacity(int expectedSize)
+    {
+        values.ensureCapacity(expectedSize);
+        final int tableSize = PoolHashing.tableSize(expectedSize);
+        if (tableSize > positions.length)
+            rehash(tableSize);
+    }
+
+    /**
+     * @return the slot of the element, or the empty slot where it belongs.
+     */
+    private int find(Object e, int hash)
+    {
+        final int mask = positions.length - 1;
+        int slot = PoolHashing.spread(hash) & mask;
+        while (true)
+        {
+            final int position = positions[slot];
+            if (position == 0)
+                return slot;
+            if (hashes[slot] == hash && e.equals(values.get(position - 1)))
+                return slot;
+            slot = (slot + 1) & mask;
         }
+    }
 
-        return result;
+    private void rehash(int tableSize)
+    {
+        final int[] oldPositions = positions;
+        final int[] oldHashes = hashes;
+        positions = new int[tableSize];
+        hashes = new int[tableSize];
+        final int mask = tableSize - 1;
+        for (int i = 0; i < oldPositions.length; i++)
+        {
+            if (oldPositions[i] == 0)
+                continue;
+            int slot = PoolHashing.spread(oldHashes[i]) & mask;
+            while (positions[slot] != 0)
+                slot = (slot + 1) & mask;
+            positions[slot] = oldPositions[i];
+            hashes[slot] = oldHashes[i];
+        }
     }
 
     /**
@@ -123,14 +200,14 @@ public final class Pool<T>
         if (null == e && this.hasDefaultZero)
             return 0;
         
-        Integer result = refs.get(e);
+        final int position = e != null ? positions[find(e, e.hashCode())] : 0;
         
-        if (result == null) {
+        if (position == 0) {
             String msg = (e != null) ? e.toString() : "-none-";
             throw new IllegalArgumentException("Unknown pool item \"" + msg + "\"");
         }
         
-        return result;
+        return poolPosition(position);
     }
 
     /**
@@ -139,7 +216,7 @@ public final class Pool<T>
      */
     public int size()
     {
-        return (hasDefaultZero ? 1 : 0) + refs.size();
+        return (hasDefaultZero ? 1 : 0) + values.size();
     }
 
     /**
@@ -158,17 +235,16 @@ public final class Pool<T>
         
         if ((hasDefaultZero) && (poolSize == 1))
         {
-            assert refs.size() == 0 : "pool collection for pool with default zero entry should be empty when computed pool size is 1";
+            assert values.size() == 0 : "pool collection for pool with default zero entry should be empty when computed pool size is 1";
             return 0;
         }
         
-        assert ((!hasDefaultZero) && (poolSize == refs.size())) || ((hasDefaultZero) && (poolSize == (refs.size() + 1))) : "size of pool collection does not match computed size of pool";
         return poolSize;
     }
 
     @Override
     public String toString()
     {
-        return String.valueOf(refs);
+        return String.valueOf(values);
     }
 }
@@ -0,0 +1,69 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.abc;
+
+/**
+ * Sizing and hashing of the open-addressing tables of the pools.
+ * Tables have a power of two size and are kept at most half full.
+ */
+final class PoolHashing
+{
+    private static final int MINIMUM_TABLE_SIZE = 16;
+
+    private PoolHashing()
+    {
+    }
+
+    /**
+     * @return the size of a table for a number of elements.
+     */
+    static int tableSize(int expectedSize)
+    {
+        int size = MINIMUM_TABLE_SIZE;
+        while (size < (1 << 30) && size / 2 < expectedSize)
+            size *= 2;
+        return size;
+    }
+
+    /**
+     * @return true if a table with the number of elements is to be grown.
+     */
+    static boolean needsGrowth(int count, int tableSize)
+    {
+        return count > tableSize / 2;
+    }
+
+    /**
+     * @return the hash code mixed so that its low bits select the slot.
+     */
+    static int spread(int hash)
+    {
+        final int h = hash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * @return the hash code of a long key, mixed like {@link #spread(int)}.
+     */
+    static int spread(long key)
+    {
+        return spread((int)(key ^ (key >>> 32)));
+    }
+}
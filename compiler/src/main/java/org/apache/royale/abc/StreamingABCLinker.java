@@ -0,0 +1,1145 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.abc;
+
+import static org.apache.royale.abc.ABCConstants.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.royale.abc.ABCEmitter.ABCWriter;
+import org.apache.royale.abc.semantics.Metadata;
+import org.apache.royale.abc.visitors.NilABCVisitor;
+
+/**
+ * Links a sequence of ABC blocks into a single ABC block by rewriting their
+ * bytes, without building the scripts, classes, method infos and method
+ * bodies that the visitor pipeline of {@link ABCLinker} builds.
+ * <p>
+ * Every input is read twice. The first pass reads its constant pools, marks
+ * the entries that its methods, metadata, classes, scripts and method bodies
+ * refer to, and adds those to the merged pools. It keeps only the mapping of
+ * its pool indices to the merged ones. The second pass copies the
+ * declarations and method bodies of every input to the output, replacing the
+ * pool, method and class indices. The memory used is proportional to the
+ * pools, not to the bytecode.
+ * <p>
+ * The linker can strip debug instructions and filter metadata, but not run
+ * the optimizer, which needs the instructions. Pool indices may be encoded
+ * in a different number of bytes, and debug instructions may be removed, so
+ * the branch offsets and exception ranges of each method body are relocated.
+ */
+final class StreamingABCLinker
+{
+    // Kinds of indices in the ABC.
+    private static final int INT = 0;
+    private static final int UINT = 1;
+    private static final int DOUBLE = 2;
+    private static final int STRING = 3;
+    private static final int NAMESPACE = 4;
+    private static final int NSSET = 5;
+    private static final int NAME = 6;
+    private static final int POOL_COUNT = 7;
+    private static final int METHOD = 7;
+    private static final int CLASS = 8;
+
+    /**
+     * @param majorVersion - the major version of the linked ABC.
+     * @param minorVersion - the minor version of the linked ABC.
+     * @param stripDebug - true to remove the debug instructions.
+     * @param metaNames - the metadata names to keep, see
+     * {@link ABCLinker.ABCLinkerSettings#setKeepMetadata(Collection)}.
+     * @param stripMetadata - true to filter the metadata of the script and
+     * class traits.
+     * @param stripGotoDefinitionHelp - true to remove "go to definition help"
+     * metadata.
+     * @param stripFileAttribute - true to remove the file attribute of "go to
+     * definition help" metadata.
+     */
+    StreamingABCLinker(int majorVersion, int minorVersion, boolean stripDebug,
+                       boolean stripMetadata, Collection<String> metaNames,
+                       boolean stripGotoDefinitionHelp, boolean stripFileAttribute)
+    {
+        this.majorVersion = majorVersion;
+        this.minorVersion = minorVersion;
+        this.stripDebug = stripDebug;
+        this.stripMetadata = stripMetadata;
+        this.metaNames = metaNames;
+        this.stripGotoDefinitionHelp = stripGotoDefinitionHelp;
+        this.stripFileAttribute = stripFileAttribute;
+    }
+
+    private final int majorVersion;
+    private final int minorVersion;
+    private final boolean stripDebug;
+    private final boolean stripMetadata;
+    private final Collection<String> metaNames;
+    private final boolean stripGotoDefinitionHelp;
+    private final boolean stripFileAttribute;
+
+    /**
+     * Holds the merged constant and metadata pools, and writes them.
+     */
+    private final ABCEmitter pools = new ABCEmitter();
+
+    /**
+     * The name, super name and interface names of every class, as merged name
+     * pool indices, in the order of the classes in the linked ABC.
+     */
+    private final List<int[]> classNames = new ArrayList<int[]>();
+
+    /**
+     * Link the ABC blocks.
+     * 
+     * @param inputABCs - the ABC blocks.
+     * @return the linked ABC, or null if the classes of the ABC blocks are not
+     * in dependency order. The classes would have to be sorted and the
+     * indices of the classes renumbered, so the caller has to link the ABC
+     * blocks with {@link ABCLinker}'s visitors.
+     * @throws Exception if a string can't be encoded.
+     */
+    byte[] link(Iterable<byte[]> inputABCs) throws Exception
+    {
+        pools.visit(majorVersion, minorVersion);
+
+        final List<Input> inputs = new ArrayList<Input>();
+        int methodCount = 0;
+        int classCount = 0;
+        int scriptCount = 0;
+        int methodBodyCount = 0;
+        for (byte[] abc : inputABCs)
+        {
+            final Input input = new Input(abc, methodCount, classCount);
+            input.scan();
+            inputs.add(input);
+            methodCount += input.methodCount;
+            classCount += input.classCount;
+            scriptCount += input.scriptCount;
+            methodBodyCount += input.methodBodyCount;
+        }
+
+        if (!isInDependencyOrder(classNames))
+            return null;
+
+        final ABCWriter out = new ABCWriter();
+        out.writeU16(minorVersion);
+        out.writeU16(majorVersion);
+        pools.emitConstantPools(out);
+
+        out.writeU30(methodCount);
+        for (Input input : inputs)
+            input.copyMethodInfos(out);
+
+        pools.emitMetadataPool(out);
+
+        out.writeU30(classCount);
+        for (Input input : inputs)
+            input.copyInstanceInfos(out);
+        for (Input input : inputs)
+            input.copyClassInfos(out);
+
+        out.writeU30(scriptCount);
+        for (Input input : inputs)
+            input.copyScripts(out);
+
+        out.writeU30(methodBodyCount);
+        for (Input input : inputs)
+            input.copyMethodBodies(out);
+
+        return out.getDirectByteArray();
+    }
+
+    /**
+     * The classes are in dependency order if every class comes after the
+     * classes it extends or implements, which is the order
+     * {@link ClassDependencySort} leaves them in.
+     */
+    private static boolean isInDependencyOrder(List<int[]> classNames)
+    {
+        final Map<Integer, Integer> classByName = new HashMap<Integer, Integer>();
+        for (int i = 0; i < classNames.size(); i++)
+        {
+            final Integer name = classNames.get(i)[0];
+            if (!classByName.containsKey(name))
+                classByName.put(name, i);
+        }
+
+        for (int i = 0; i < classNames.size(); i++)
+        {
+            final int[] names = classNames.get(i);
+            for (int j = 1; j < names.length; j++)
+            {
+                final Integer dependency = classByName.get(names[j]);
+                if (dependency != null && dependency > i)
+                    return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the kind of index of a default value of the kind, or -1 if the
+     * value is not pooled.
+     */
+    private static int getValuePool(int kind)
+    {
+        switch (kind)
+        {
+            case CONSTANT_Int:
+                return INT;
+            case CONSTANT_UInt:
+                return UINT;
+            case CONSTANT_Double:
+                return DOUBLE;
+            case CONSTANT_Utf8:
+                return STRING;
+            case CONSTANT_Namespace:
+            case CONSTANT_PackageNs:
+            case CONSTANT_PackageInternalNs:
+            case CONSTANT_ProtectedNs:
+            case CONSTANT_ExplicitNamespace:
+            case CONSTANT_StaticProtectedNs:
+            case CONSTANT_PrivateNs:
+                return NAMESPACE;
+            default:
+                return -1;
+        }
+    }
+
+    /**
+     * One of the ABC blocks being linked. The methods that read its sections
+     * mark the pool entries they refer to when they are given no writer, and
+     * copy the section to the writer otherwise.
+     */
+    private final class Input
+    {
+        Input(byte[] abc, int methodBase, int classBase)
+        {
+            this.abc = abc;
+            this.methodBase = methodBase;
+            this.classBase = classBase;
+        }
+
+        private final byte[] abc;
+        private final int methodBase;
+        private final int classBase;
+
+        int methodCount;
+        int classCount;
+        int scriptCount;
+        int methodBodyCount;
+
+        // Offsets of the sections, from the first pass.
+        private int methodInfosPos;
+        private int instanceInfosPos;
+        private int classInfosPos;
+        private int scriptsPos;
+        private int methodBodiesPos;
+
+        /**
+         * Marks of the referenced pool entries, during the first pass.
+         */
+        private boolean[][] used;
+
+        /**
+         * Marks of the referenced metadata, by the traits whose metadata is
+         * filtered and by the other traits, during the first pass.
+         */
+        private boolean[] usedFilteredMetadata;
+        private boolean[] usedMetadata;
+
+        /**
+         * The merged pool indices of the pool entries.
+         */
+        private final int[][] poolMaps = new int[POOL_COUNT][];
+
+        /**
+         * The merged metadata pool indices of the metadata, or -1 for the
+         * metadata that is removed.
+         */
+        private int[] filteredMetadataMap;
+        private int[] metadataMap;
+
+        /**
+         * The position of the current method body in the code buffer of the
+         * second pass, by position in the input, and the branch offsets to
+         * relocate.
+         */
+        private int[] codeOffsets;
+        private int[] branchPositions = new int[16];
+        private int[] branchTargets = new int[16];
+        private int[] branchBases = new int[16];
+        private int branchCount;
+
+        /**
+         * The first pass: mark the referenced pool entries, pool them and
+         * remember where the sections start.
+         */
+        void scan()
+        {
+            final ABCParser parser = new ABCParser(abc);
+            final ABCReader p = new ABCReader(parser.parseConstantPools(new NilABCVisitor()), abc);
+            used = new boolean[][] {
+                new boolean[parser.ints.length], new boolean[parser.uints.length],
+                new boolean[parser.doubles.length], new boolean[parser.strings.length],
+                new boolean[parser.namespaces.length], new boolean[parser.namespace_sets.length],
+                new boolean[parser.names.length]
+            };
+
+            methodInfosPos = p.pos;
+            methodCount = p.readU30();
+            for (int i = 0; i < methodCount; i++)
+                copyMethodInfo(p, null);
+
+            final int metadataCount = p.readU30();
+            final Metadata[] metadata = new Metadata[metadataCount];
+            for (int i = 0; i < metadataCount; i++)
+                metadata[i] = parser.readMetadata(p);
+            usedFilteredMetadata = new boolean[metadataCount];
+            usedMetadata = new boolean[metadataCount];
+
+            instanceInfosPos = p.pos;
+            classCount = p.readU30();
+            final int[][] instanceNames = new int[classCount][];
+            for (int i = 0; i < classCount; i++)
+                instanceNames[i] = copyInstanceInfo(p, null);
+
+            classInfosPos = p.pos;
+            for (int i = 0; i < classCount; i++)
+                copyClassInfo(p, null);
+
+            scriptsPos = p.pos;
+            scriptCount = p.readU30();
+            for (int i = 0; i < scriptCount; i++)
+                copyScript(p, null);
+
+            methodBodiesPos = p.pos;
+            methodBodyCount = p.readU30();
+            for (int i = 0; i < methodBodyCount; i++)
+                copyMethodBody(p, null);
+
+            pool(parser, metadata);
+            used = null;
+            usedFilteredMetadata = null;
+            usedMetadata = null;
+
+            for (int[] names : instanceNames)
+            {
+                for (int i = 0; i < names.length; i++)
+                    names[i] = poolMaps[NAME][names[i]];
+                classNames.add(names);
+            }
+        }
+
+        /**
+         * Add the referenced entries of the input's pools to the merged pools.
+         */
+        private void pool(ABCParser parser, Metadata[] metadata)
+        {
+            for (int kind = 0; kind < POOL_COUNT; kind++)
+                poolMaps[kind] = new int[used[kind].length];
+
+            for (int i = 1; i < parser.ints.length; i++)
+            {
+                if (used[INT][i])
+                    poolMaps[INT][i] = pools.intPool.add(parser.ints[i]);
+            }
+            for (int i = 1; i < parser.uints.length; i++)
+            {
+                if (used[UINT][i])
+                    poolMaps[UINT][i] = pools.uintPool.add(parser.uints[i]);
+            }
+            for (int i = 1; i < parser.doubles.length; i++)
+            {
+                if (used[DOUBLE][i])
+                    poolMaps[DOUBLE][i] = pools.doublePool.add(parser.doubles[i]);
+            }
+            for (int i = 1; i < parser.strings.length; i++)
+            {
+                if (used[STRING][i])
+                    poolMaps[STRING][i] = pools.stringPool.add(parser.strings[i]);
+            }
+            for (int i = 1; i < parser.namespaces.length; i++)
+            {
+                if (used[NAMESPACE][i])
+                {
+                    pools.visitPooledNamespace(parser.namespaces[i]);
+                    poolMaps[NAMESPACE][i] = pools.nsPool.id(parser.namespaces[i]);
+                }
+            }
+            for (int i = 1; i < parser.namespace_sets.length; i++)
+            {
+                if (used[NSSET][i])
+                {
+                    pools.visitPooledNsSet(parser.namespace_sets[i]);
+                    poolMaps[NSSET][i] = pools.nssetPool.id(parser.namespace_sets[i]);
+                }
+            }
+            for (int i = 1; i < parser.names.length; i++)
+            {
+                if (used[NAME][i])
+                {
+                    pools.visitPooledName(parser.names[i]);
+                    poolMaps[NAME][i] = pools.namePool.id(parser.names[i]);
+                }
+            }
+
+            filteredMetadataMap = new int[metadata.length];
+            metadataMap = new int[metadata.length];
+            for (int i = 0; i < metadata.length; i++)
+            {
+                metadataMap[i] = usedMetadata[i] ? poolMetadata(metadata[i]) : -1;
+                Metadata filtered = metadata[i];
+                if (usedFilteredMetadata[i])
+                {
+                    filtered = ABCLinker.MetadataStrippingVisitor.filter(
+                            filtered, metaNames, stripGotoDefinitionHelp, stripFileAttribute);
+                }
+                filteredMetadataMap[i] = usedFilteredMetadata[i] && filtered != null ? poolMetadata(filtered) : -1;
+            }
+        }
+
+        private int poolMetadata(Metadata md)
+        {
+            pools.visitPooledMetadata(md);
+            return pools.metadataPool.id(md);
+        }
+
+        void copyMethodInfos(ABCWriter out)
+        {
+            final ABCReader p = new ABCReader(methodInfosPos, abc);
+            p.readU30();
+            for (int i = 0; i < methodCount; i++)
+                copyMethodInfo(p, out);
+        }
+
+        void copyInstanceInfos(ABCWriter out)
+        {
+            final ABCReader p = new ABCReader(instanceInfosPos, abc);
+            p.readU30();
+            for (int i = 0; i < classCount; i++)
+                copyInstanceInfo(p, out);
+        }
+
+        void copyClassInfos(ABCWriter out)
+        {
+            final ABCReader p = new ABCReader(classInfosPos, abc);
+            for (int i = 0; i < classCount; i++)
+                copyClassInfo(p, out);
+        }
+
+        void copyScripts(ABCWriter out)
+        {
+            final ABCReader p = new ABCReader(scriptsPos, abc);
+            p.readU30();
+            for (int i = 0; i < scriptCount; i++)
+                copyScript(p, out);
+        }
+
+        void copyMethodBodies(ABCWriter out)
+        {
+            final ABCReader p = new ABCReader(methodBodiesPos, abc);
+            p.readU30();
+            for (int i = 0; i < methodBodyCount; i++)
+                copyMethodBody(p, out);
+        }
+
+        private void copyMethodInfo(ABCReader p, ABCWriter out)
+        {
+            final int param_count = copyU30(p, out);
+            copyIndex(p, NAME, out);
+            for (int j = 0; j < param_count; j++)
+                copyIndex(p, NAME, out);
+            copyIndex(p, STRING, out);
+            final int flags = copyU8(p, out);
+
+            if ((flags & HAS_OPTIONAL) != 0)
+            {
+                final int optional_count = copyU30(p, out);
+                for (int j = 0; j < optional_count; j++)
+                {
+                    final int index = p.readU30();
+                    final int kind = p.readU8();
+                    copyValue(index, kind, out);
+                    if (out != null)
+                        out.write(kind);
+                }
+            }
+
+            if ((flags & HAS_PARAM_NAMES) != 0)
+            {
+                for (int j = 0; j < param_count; j++)
+                    copyIndex(p, STRING, out);
+            }
+        }
+
+        /**
+         * @return the name, super name and interface names of the class.
+         */
+        private int[] copyInstanceInfo(ABCReader p, ABCWriter out)
+        {
+            final int name = copyIndex(p, NAME, out);
+            final int superName = copyIndex(p, NAME, out);
+            final int flags = copyU8(p, out);
+            if ((flags & CONSTANT_ClassProtectedNs) != 0)
+                copyIndex(p, NAMESPACE, out);
+
+            final int interface_count = copyU30(p, out);
+            final int[] names = new int[2 + interface_count];
+            names[0] = name;
+            names[1] = superName;
+            for (int j = 0; j < interface_count; j++)
+                names[2 + j] = copyIndex(p, NAME, out);
+
+            copyIndex(p, METHOD, out);
+            copyTraits(p, stripMetadata, out);
+            return names;
+        }
+
+        private void copyClassInfo(ABCReader p, ABCWriter out)
+        {
+            copyIndex(p, METHOD, out);
+            copyTraits(p, stripMetadata, out);
+        }
+
+        private void copyScript(ABCReader p, ABCWriter out)
+        {
+            copyIndex(p, METHOD, out);
+            copyTraits(p, stripMetadata, out);
+        }
+
+        private void copyTraits(ABCReader p, boolean filterMetadata, ABCWriter out)
+        {
+            final int trait_count = copyU30(p, out);
+            for (int i = 0; i < trait_count; i++)
+            {
+                copyIndex(p, NAME, out);
+                final int tag = p.readU8();
+                final int tagPos = out != null ? out.size() : -1;
+                if (out != null)
+                    out.write(tag);
+
+                switch (tag & TRAIT_KIND_MASK)
+                {
+                    case TRAIT_Var:
+                    case TRAIT_Const:
+                    {
+                        copyU30(p, out);
+                        copyIndex(p, NAME, out);
+                        final int index = p.readU30();
+                        if (index != 0)
+                        {
+                            final int kind = p.readU8();
+                            copyValue(index, kind, out);
+                            if (out != null)
+                                out.write(kind);
+                        }
+                        else if (out != null)
+                        {
+                            out.writeU30(0);
+                        }
+                        break;
+                    }
+                    case TRAIT_Class:
+                    {
+                        copyU30(p, out);
+                        copyIndex(p, CLASS, out);
+                        break;
+                    }
+                    case TRAIT_Method:
+                    case TRAIT_Getter:
+                    case TRAIT_Setter:
+                    case TRAIT_Function:
+                    {
+                        copyU30(p, out);
+                        copyIndex(p, METHOD, out);
+                        break;
+                    }
+                    default:
+                    {
+                        throw new IllegalArgumentException(String.format("illegal trait kind 0x%h at offset %d", tag & TRAIT_KIND_MASK, p.pos));
+                    }
+                }
+
+                if (((tag >> TRAIT_KIND_SHIFT) & TRAIT_FLAG_metadata) != 0)
+                    copyTraitMetadata(p, filterMetadata, tag, tagPos, out);
+            }
+        }
+
+        /**
+         * Copy the metadata of a trait. If all of it is removed, the metadata
+         * flag of the trait is cleared.
+         */
+        private void copyTraitMetadata(ABCReader p, boolean filterMetadata, int tag, int tagPos, ABCWriter out)
+        {
+            final int count = p.readU30();
+            final int[] indices = new int[count];
+            int kept = 0;
+            for (int j = 0; j < count; j++)
+            {
+                final int index = p.readU30();
+                if (out == null)
+                {
+                    if (filterMetadata)
+                        usedFilteredMetadata[index] = true;
+                    else
+                        usedMetadata[index] = true;
+                }
+                else
+                {
+                    final int merged = filterMetadata ? filteredMetadataMap[index] : metadataMap[index];
+                    if (merged >= 0)
+                        indices[kept++] = merged;
+                }
+            }
+
+            if (out == null)
+                return;
+
+            if (kept == 0)
+            {
+                out.patchU8(tagPos, tag & ~(TRAIT_FLAG_metadata << TRAIT_KIND_SHIFT));
+                return;
+            }
+            out.writeU30(kept);
+            for (int j = 0; j < kept; j++)
+                out.writeU30(indices[j]);
+        }
+
+        private void copyMethodBody(ABCReader p, ABCWriter out)
+        {
+            copyIndex(p, METHOD, out);
+            copyU30(p, out); // max_stack
+            copyU30(p, out); // local_count
+            copyU30(p, out); // init_scope_depth
+            copyU30(p, out); // max_scope_depth
+
+            final int code_len = p.readU30();
+            final int code_start = p.pos;
+            final ABCWriter code = out != null ? new ABCWriter() : null;
+            if (code != null)
+            {
+                codeOffsets = new int[code_len + 1];
+                Arrays.fill(codeOffsets, -1);
+                branchCount = 0;
+            }
+
+            while (p.pos < code_start + code_len)
+            {
+                final int insn_pos = p.pos - code_start;
+                if (code != null)
+                    codeOffsets[insn_pos] = code.size();
+                copyInstruction(p, insn_pos, code);
+            }
+
+            final int exception_count = p.readU30();
+            if (code == null)
+            {
+                for (int i = 0; i < exception_count; i++)
+                {
+                    p.readU30();
+                    p.readU30();
+                    p.readU30();
+                    copyIndex(p, NAME, null);
+                    copyIndex(p, NAME, null);
+                }
+                copyTraits(p, false, null);
+                return;
+            }
+
+            //  Positions inside a removed or malformed instruction map to
+            //  the next instruction.
+            codeOffsets[code_len] = code.size();
+            for (int i = code_len - 1; i >= 0; i--)
+            {
+                if (codeOffsets[i] < 0)
+                    codeOffsets[i] = codeOffsets[i + 1];
+            }
+            for (int i = 0; i < branchCount; i++)
+            {
+                final int target = relocate(branchTargets[i], code_len, code.size());
+                code.patchS24(branchPositions[i], target - branchBases[i]);
+            }
+
+            out.writeU30(code.size());
+            out.write(code.getDirectByteArray(), 0, code.size());
+
+            out.writeU30(exception_count);
+            for (int i = 0; i < exception_count; i++)
+            {
+                out.writeU30(relocate(p.readU30(), code_len, code.size()));
+                out.writeU30(relocate(p.readU30(), code_len, code.size()));
+                out.writeU30(relocate(p.readU30(), code_len, code.size()));
+                copyIndex(p, NAME, out);
+                copyIndex(p, NAME, out);
+            }
+            codeOffsets = null;
+
+            copyTraits(p, false, out);
+        }
+
+        /**
+         * @return the position in the copied code of a position in the
+         * input code. Jumps outside of the method, which some old ABCs
+         * have, stay outside of it.
+         */
+        private int relocate(int pos, int code_len, int new_code_len)
+        {
+            if (pos < 0)
+                return pos;
+            if (pos > code_len)
+                return new_code_len + pos - code_len;
+            return codeOffsets[pos];
+        }
+
+        /**
+         * Copy an instruction, or mark the pool entries it refers to if code
+         * is null.
+         */
+        private void copyInstruction(ABCReader p, int insn_pos, ABCWriter code)
+        {
+            final int op = p.readU8();
+
+            if (stripDebug && (op == OP_debug || op == OP_debugfile || op == OP_debugline))
+            {
+                skipOperands(p, op);
+                return;
+            }
+
+            if (code != null)
+                code.write(op);
+
+            switch (op)
+            {
+                // Opcodes with a branch operand.
+                case OP_ifnlt:
+                case OP_ifnle:
+                case OP_ifngt:
+                case OP_ifnge:
+                case OP_iftrue:
+                case OP_iffalse:
+                case OP_ifeq:
+                case OP_ifne:
+                case OP_iflt:
+                case OP_ifle:
+                case OP_ifgt:
+                case OP_ifge:
+                case OP_ifstricteq:
+                case OP_ifstrictne:
+                case OP_jump:
+                {
+                    //  Jump offset computed from the
+                    //  instruction following the branch.
+                    final int target = p.readS24() + insn_pos + 4;
+                    if (code != null)
+                        addBranch(code, target, code.size() + 3);
+                    break;
+                }
+
+                // Lookupswitch, with offsets computed from the instruction.
+                case OP_lookupswitch:
+                {
+                    final int base = code != null ? code.size() - 1 : 0;
+                    final int default_target = p.readS24() + insn_pos;
+                    if (code != null)
+                        addBranch(code, default_target, base);
+                    final int case_count = copyU30(p, code) + 1;
+                    for (int i = 0; i < case_count; i++)
+                    {
+                        final int target = p.readS24() + insn_pos;
+                        if (code != null)
+                            addBranch(code, target, base);
+                    }
+                    break;
+                }
+
+                // Opcodes with one name operand.
+                case OP_findproperty:
+                case OP_findpropstrict:
+                case OP_getlex:
+                case OP_getsuper:
+                case OP_setsuper:
+                case OP_getproperty:
+                case OP_setproperty:
+                case OP_deleteproperty:
+                case OP_getdescendants:
+                case OP_initproperty:
+                case OP_istype:
+                case OP_coerce:
+                case OP_astype:
+                case OP_finddef:
+                {
+                    copyIndex(p, NAME, code);
+                    break;
+                }
+
+                // Opcodes with a name and an integer operand.
+                case OP_callproperty:
+                case OP_callproplex:
+                case OP_callpropvoid:
+                case OP_callsuper:
+                case OP_callsupervoid:
+                case OP_constructprop:
+                {
+                    copyIndex(p, NAME, code);
+                    copyU30(p, code);
+                    break;
+                }
+
+                // Opcodes with a method and an integer operand.
+                case OP_callstatic:
+                {
+                    copyIndex(p, METHOD, code);
+                    copyU30(p, code);
+                    break;
+                }
+
+                case OP_newfunction:
+                {
+                    copyIndex(p, METHOD, code);
+                    break;
+                }
+
+                case OP_newclass:
+                {
+                    copyIndex(p, CLASS, code);
+                    break;
+                }
+
+                case OP_pushstring:
+                case OP_dxns:
+                case OP_debugfile:
+                {
+                    copyIndex(p, STRING, code);
+                    break;
+                }
+
+                case OP_pushnamespace:
+                {
+                    copyIndex(p, NAMESPACE, code);
+                    break;
+                }
+
+                case OP_pushint:
+                {
+                    copyIndex(p, INT, code);
+                    break;
+                }
+
+                case OP_pushuint:
+                {
+                    copyIndex(p, UINT, code);
+                    break;
+                }
+
+                case OP_pushdouble:
+                {
+                    copyIndex(p, DOUBLE, code);
+                    break;
+                }
+
+                case OP_debug:
+                {
+                    copyU8(p, code);
+                    copyIndex(p, STRING, code);
+                    copyU8(p, code);
+                    copyU30(p, code);
+                    break;
+                }
+
+                default:
+                {
+                    //  The other operands are not indices.
+                    copyOperands(p, op, code);
+                    break;
+                }
+            }
+        }
+
+        /**
+         * Record a branch offset to relocate once the method body is copied,
+         * and write a placeholder for it.
+         */
+        private void addBranch(ABCWriter code, int target, int base)
+        {
+            if (branchCount == branchPositions.length)
+            {
+                branchPositions = Arrays.copyOf(branchPositions, branchCount * 2);
+                branchTargets = Arrays.copyOf(branchTargets, branchCount * 2);
+                branchBases = Arrays.copyOf(branchBases, branchCount * 2);
+            }
+            branchPositions[branchCount] = code.size();
+            branchTargets[branchCount] = target;
+            branchBases[branchCount] = base;
+            branchCount++;
+            code.writeS24(0);
+        }
+
+        private void skipOperands(ABCReader p, int op)
+        {
+            if (op == OP_debug)
+            {
+                p.readU8();
+                p.readU30();
+                p.readU8();
+                p.readU30();
+            }
+            else
+            {
+                p.readU30();
+            }
+        }
+
+        /**
+         * Copy the operands of an instruction that are not indices.
+         */
+        private void copyOperands(ABCReader p, int op, ABCWriter code)
+        {
+            switch (op)
+            {
+                // Opcodes with two unsigned immediate operands.
+                case OP_hasnext2:
+                {
+                    copyU30(p, code);
+                    copyU30(p, code);
+                    break;
+                }
+
+                // Opcodes with an unsigned immediate operand.
+                case OP_constructsuper:
+                case OP_call:
+                case OP_construct:
+                case OP_newarray:
+                case OP_newobject:
+                case OP_getlocal:
+                case OP_setlocal:
+                case OP_getslot:
+                case OP_setslot:
+                case OP_kill:
+                case OP_inclocal:
+                case OP_declocal:
+                case OP_inclocal_i:
+                case OP_declocal_i:
+                case OP_newcatch:
+                case OP_getglobalslot:
+                case OP_setglobalslot:
+                case OP_applytype:
+                case OP_pushshort:
+                case OP_debugline:
+                case OP_bkptline:
+                {
+                    copyU30(p, code);
+                    break;
+                }
+
+                // Opcodes with a byte operand.
+                case OP_pushbyte:
+                case OP_getscopeobject:
+                {
+                    copyU8(p, code);
+                    break;
+                }
+
+                default:
+                {
+                    if (!hasNoOperands(op))
+                        throw new IllegalArgumentException(String.format("Unknown ABC bytecode 0x%x", op));
+                    break;
+                }
+            }
+        }
+
+        /**
+         * Copy a default value, or mark its pool entry.
+         */
+        private void copyValue(int index, int kind, ABCWriter out)
+        {
+            final int pool = getValuePool(kind);
+            if (index == 0 || pool < 0)
+            {
+                if (out != null)
+                    out.writeU30(index);
+            }
+            else if (out == null)
+            {
+                used[pool][index] = true;
+            }
+            else
+            {
+                out.writeU30(poolMaps[pool][index]);
+            }
+        }
+
+        /**
+         * Copy an index, or mark the pool entry it refers to.
+         * 
+         * @return the index in the input.
+         */
+        private int copyIndex(ABCReader p, int kind, ABCWriter out)
+        {
+            final int index = p.readU30();
+            if (out == null)
+            {
+                if (kind < POOL_COUNT && index != 0)
+                    used[kind][index] = true;
+            }
+            else if (kind == METHOD)
+            {
+                out.writeU30(methodBase + index);
+            }
+            else if (kind == CLASS)
+            {
+                out.writeU30(classBase + index);
+            }
+            else
+            {
+                out.writeU30(index != 0 ? poolMaps[kind][index] : 0);
+            }
+            return index;
+        }
+
+        private int copyU30(ABCReader p, ABCWriter out)
+        {
+            final int value = p.readU30();
+            if (out != null)
+                out.writeU30(value);
+            return value;
+        }
+
+        private int copyU8(ABCReader p, ABCWriter out)
+        {
+            final int value = p.readU8();
+            if (out != null)
+                out.write(value);
+            return value;
+        }
+    }
+
+    /**
+     * @return true if the opcode is a valid instruction without operands.
+     */
+    private static boolean hasNoOperands(int op)
+    {
+        switch (op)
+        {
+            case OP_add:
+            case OP_add_i:
+            case OP_astypelate:
+            case OP_bitand:
+            case OP_bitnot:
+            case OP_bitor:
+            case OP_bitxor:
+            case OP_checkfilter:
+            case OP_coerce_a:
+            case OP_coerce_b:
+            case OP_coerce_d:
+            case OP_coerce_i:
+            case OP_coerce_s:
+            case OP_convert_b:
+            case OP_convert_i:
+            case OP_convert_d:
+            case OP_convert_o:
+            case OP_convert_u:
+            case OP_convert_s:
+            case OP_decrement:
+            case OP_decrement_i:
+            case OP_divide:
+            case OP_dup:
+            case OP_dxnslate:
+            case OP_equals:
+            case OP_esc_xattr:
+            case OP_esc_xelem:
+            case OP_getglobalscope:
+            case OP_getlocal0:
+            case OP_getlocal1:
+            case OP_getlocal2:
+            case OP_getlocal3:
+            case OP_greaterequals:
+            case OP_greaterthan:
+            case OP_hasnext:
+            case OP_in:
+            case OP_increment:
+            case OP_increment_i:
+            case OP_instanceof:
+            case OP_istypelate:
+            case OP_lessequals:
+            case OP_lessthan:
+            case OP_lshift:
+            case OP_modulo:
+            case OP_multiply:
+            case OP_multiply_i:
+            case OP_negate:
+            case OP_negate_i:
+            case OP_newactivation:
+            case OP_nextname:
+            case OP_nextvalue:
+            case OP_nop:
+            case OP_not:
+            case OP_pop:
+            case OP_popscope:
+            case OP_pushfalse:
+            case OP_pushtrue:
+            case OP_pushnan:
+            case OP_pushnull:
+            case OP_pushscope:
+            case OP_pushundefined:
+            case OP_pushwith:
+            case OP_returnvalue:
+            case OP_returnvoid:
+            case OP_rshift:
+            case OP_setlocal0:
+            case OP_setlocal1:
+            case OP_setlocal2:
+            case OP_setlocal3:
+            case OP_strictequals:
+            case OP_subtract:
+            case OP_subtract_i:
+            case OP_swap:
+            case OP_throw:
+            case OP_typeof:
+            case OP_unplus:
+            case OP_urshift:
+            case OP_bkpt:
+            case OP_timestamp:
+            case OP_coerce_o:
+            case OP_li8:
+            case OP_li16:
+            case OP_li32:
+            case OP_lf32:
+            case OP_lf64:
+            case OP_si8:
+            case OP_si16:
+            case OP_si32:
+            case OP_sf32:
+            case OP_sf64:
+            case OP_sxi1:
+            case OP_sxi8:
+            case OP_sxi16:
+            case OP_label:
+                return true;
+            default:
+                return false;
+        }
+    }
+}
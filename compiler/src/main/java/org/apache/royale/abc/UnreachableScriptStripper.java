@@ -0,0 +1,618 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+
+package org.apache.royale.abc;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.royale.abc.semantics.ClassInfo;
+import org.apache.royale.abc.semantics.InstanceInfo;
+import org.apache.royale.abc.semantics.Label;
+import org.apache.royale.abc.semantics.Metadata;
+import org.apache.royale.abc.semantics.MethodBodyInfo;
+import org.apache.royale.abc.semantics.MethodInfo;
+import org.apache.royale.abc.semantics.Name;
+import org.apache.royale.abc.semantics.Namespace;
+import org.apache.royale.abc.semantics.Nsset;
+import org.apache.royale.abc.visitors.DelegatingABCVisitor;
+import org.apache.royale.abc.visitors.IABCVisitor;
+import org.apache.royale.abc.visitors.IClassVisitor;
+import org.apache.royale.abc.visitors.IMetadataVisitor;
+import org.apache.royale.abc.visitors.IMethodBodyVisitor;
+import org.apache.royale.abc.visitors.IMethodVisitor;
+import org.apache.royale.abc.visitors.IScriptVisitor;
+import org.apache.royale.abc.visitors.ITraitVisitor;
+import org.apache.royale.abc.visitors.ITraitsVisitor;
+import org.apache.royale.abc.visitors.NilABCVisitor;
+import org.apache.royale.abc.visitors.NilClassVisitor;
+import org.apache.royale.abc.visitors.NilMetadataVisitor;
+import org.apache.royale.abc.visitors.NilMethodBodyVisitor;
+import org.apache.royale.abc.visitors.NilMethodVisitor;
+import org.apache.royale.abc.visitors.NilScriptVisitor;
+import org.apache.royale.abc.visitors.NilTraitVisitor;
+import org.apache.royale.abc.visitors.NilTraitsVisitor;
+import org.apache.royale.abc.visitors.NilVisitors;
+
+/**
+ * The UnreachableScriptStripper analyzes the reachability of the definitions
+ * in a whole program, made of one or more ABC blocks, and removes the scripts
+ * that can't be reached from the entry points of the program.
+ * <p>
+ * The unit of stripping is the script: the AVM initializes a script the
+ * first time one of its traits is referenced, and the script initializer
+ * creates all of the classes of the script, so the definitions of a script
+ * are either all needed or none of them is. A script is reachable if:
+ * <ul>
+ * <li>it is the last script of an ABC block, which the AVM runs when the
+ * block is loaded;</li>
+ * <li>it defines a root name, or one of its traits has root metadata;</li>
+ * <li>it defines a name referenced by the code, the traits, the class
+ * declarations or the method signatures reachable from another reachable
+ * script.</li>
+ * </ul>
+ * Names are matched by their base name, ignoring their namespaces, and
+ * string constants are treated as references to the definitions they name,
+ * so that {@code getDefinitionByName()} of a class name literal keeps the
+ * class. Names computed at runtime can't be followed; the definitions that
+ * are only looked up by such names have to be added as roots.
+ * <p>
+ * The ABC blocks with unreachable scripts are emitted again without them, so
+ * the classes and methods of these scripts and the constant pool entries only
+ * they referenced are removed as well. The other ABC blocks are returned
+ * unchanged.
+ */
+public class UnreachableScriptStripper
+{
+    /**
+     * Get the base name of a qualified name in any of the forms used by
+     * SWFs and by reflection: "a.b.C", "a.b:C" or "a.b::C".
+     */
+    private static String getBaseName(String qualifiedName)
+    {
+        final int separator = Math.max(qualifiedName.lastIndexOf('.'), qualifiedName.lastIndexOf(':'));
+        return qualifiedName.substring(separator + 1);
+    }
+
+    /**
+     * The names, methods and classes referenced by a script, a class or a
+     * method.
+     */
+    private static class Node
+    {
+        final Set<String> names = new HashSet<String>();
+        final List<Object> references = new ArrayList<Object>();
+        boolean reached;
+
+        void addName(Name name)
+        {
+            if (name == null)
+                return;
+
+            if (name.isTypeName())
+            {
+                addName(name.getTypeNameBase());
+                addName(name.getTypeNameParameter());
+            }
+            else if (name.getBaseName() != null)
+            {
+                names.add(name.getBaseName());
+            }
+        }
+
+        void addOperand(Object operand)
+        {
+            if (operand instanceof Name)
+                addName((Name)operand);
+            else if (operand instanceof String)
+                names.add(getBaseName((String)operand));
+            else if (operand instanceof MethodInfo || operand instanceof ClassInfo)
+                references.add(operand);
+        }
+    }
+
+    /**
+     * A script, with the base names it defines and the names of the metadata
+     * of its traits.
+     */
+    private static class ScriptNode extends Node
+    {
+        final Set<String> definedNames = new HashSet<String>();
+        final Set<String> metadataNames = new HashSet<String>();
+    }
+
+    /**
+     * An ABC block, with its methods, classes and scripts in pool order.
+     */
+    private static class ABCBlock
+    {
+        ABCBlock(byte[] abc)
+        {
+            this.abc = abc;
+        }
+
+        final byte[] abc;
+        final List<MethodInfo> methods = new ArrayList<MethodInfo>();
+        final List<ClassInfo> classes = new ArrayList<ClassInfo>();
+        final List<ScriptNode> scripts = new ArrayList<ScriptNode>();
+    }
+
+    /**
+     * Construct an UnreachableScriptStripper.
+     */
+    public UnreachableScriptStripper()
+    {
+    }
+
+    private final List<ABCBlock> blocks = new ArrayList<ABCBlock>();
+
+    /**
+     * The nodes of the methods and classes, by MethodInfo and ClassInfo.
+     */
+    private final Map<Object, Node> nodes = new IdentityHashMap<Object, Node>();
+
+    /**
+     * The scripts that define a base name, by base name.
+     */
+    private final Map<String, List<ScriptNode>> definitions = new HashMap<String, List<ScriptNode>>();
+
+    private final Set<String> rootNames = new HashSet<String>();
+    private final Set<String> rootMetadata = new HashSet<String>();
+
+    private int strippedScriptCount;
+
+    /**
+     * Add an ABC block of the program. The blocks are analyzed together, so
+     * definitions referenced from another block are kept.
+     * 
+     * @param abc the ABC block.
+     */
+    public void addABC(byte[] abc)
+    {
+        final ABCBlock block = new ABCBlock(abc);
+        new ABCParser(abc).parseABC(new CollectingVisitor(block));
+        blocks.add(block);
+    }
+
+    /**
+     * Add a root: a definition that is used even if no code references it,
+     * such as a symbol class or a class looked up by reflection.
+     * 
+     * @param qualifiedName the qualified name of the definition.
+     */
+    public void addRoot(String qualifiedName)
+    {
+        rootNames.add(getBaseName(qualifiedName));
+    }
+
+    /**
+     * Add root metadata: the definitions that have the metadata are used even
+     * if no code references them.
+     * 
+     * @param metadataName the name of the metadata, e.g. "Mixin".
+     */
+    public void addRootMetadata(String metadataName)
+    {
+        rootMetadata.add(metadataName);
+    }
+
+    /**
+     * @return the number of scripts removed by {@link #strip()}.
+     */
+    public int getStrippedScriptCount()
+    {
+        return strippedScriptCount;
+    }
+
+    /**
+     * Remove the unreachable scripts of the ABC blocks.
+     * 
+     * @return the ABC blocks, in the order they were added, without their
+     * unreachable scripts.
+     * @throws Exception if an ABC block can't be emitted again.
+     */
+    public List<byte[]> strip() throws Exception
+    {
+        final Deque<Node> work = new ArrayDeque<Node>();
+        for (ABCBlock block : blocks)
+        {
+            if (!block.scripts.isEmpty())
+                reach(block.scripts.get(block.scripts.size() - 1), work);
+
+            for (ScriptNode script : block.scripts)
+            {
+                if (isRoot(script))
+                    reach(script, work);
+            }
+        }
+
+        while (!work.isEmpty())
+        {
+            final Node node = work.pop();
+            for (Object reference : node.references)
+                reach(nodes.get(reference), work);
+
+            for (String name : node.names)
+            {
+                final List<ScriptNode> scripts = definitions.get(name);
+                if (scripts != null)
+                {
+                    for (ScriptNode script : scripts)
+                        reach(script, work);
+                }
+            }
+        }
+
+        strippedScriptCount = 0;
+        final List<byte[]> result = new ArrayList<byte[]>(blocks.size());
+        for (ABCBlock block : blocks)
+        {
+            int unreached = 0;
+            for (ScriptNode script : block.scripts)
+            {
+                if (!script.reached)
+                    unreached++;
+            }
+
+            if (unreached == 0)
+            {
+                result.add(block.abc);
+            }
+            else
+            {
+                result.add(emit(block));
+                strippedScriptCount += unreached;
+            }
+        }
+        return result;
+    }
+
+    private boolean isRoot(ScriptNode script)
+    {
+        for (String name : script.definedNames)
+        {
+            if (rootNames.contains(name))
+                return true;
+        }
+        for (String name : script.metadataNames)
+        {
+            if (rootMetadata.contains(name))
+                return true;
+        }
+        return false;
+    }
+
+    private static void reach(Node node, Deque<Node> work)
+    {
+        if (node != null && !node.reached)
+        {
+            node.reached = true;
+            work.push(node);
+        }
+    }
+
+    /**
+     * Emit an ABC block with only its reached scripts, classes and methods.
+     * The pooled values are not copied, the emitter pools the values that the
+     * emitted definitions reference.
+     */
+    private byte[] emit(final ABCBlock block) throws Exception
+    {
+        final ABCEmitter emitter = new ABCEmitter();
+        // Same as the linker: ABCs from 4.5 may have non-sensical jumps past
+        // the end of a method.
+        emitter.setAllowBadJumps(true);
+        new ABCParser(block.abc).parseABC(new StrippingVisitor(emitter, block));
+        return emitter.emit();
+    }
+
+    /**
+     * Forwards the reached definitions of an ABC block to its delegate.
+     */
+    private class StrippingVisitor extends DelegatingABCVisitor
+    {
+        StrippingVisitor(IABCVisitor delegate, ABCBlock block)
+        {
+            super(delegate);
+            this.block = block;
+        }
+
+        private final ABCBlock block;
+        private int methodIndex;
+        private int classIndex;
+        private int scriptIndex;
+
+        @Override
+        public IScriptVisitor visitScript()
+        {
+            if (!block.scripts.get(scriptIndex++).reached)
+                return null;
+            return super.visitScript();
+        }
+
+        @Override
+        public IClassVisitor visitClass(InstanceInfo iinfo, ClassInfo cinfo)
+        {
+            if (!nodes.get(block.classes.get(classIndex++)).reached)
+                return null;
+            return super.visitClass(iinfo, cinfo);
+        }
+
+        @Override
+        public IMethodVisitor visitMethod(MethodInfo minfo)
+        {
+            if (!nodes.get(block.methods.get(methodIndex++)).reached)
+                return null;
+            return super.visitMethod(minfo);
+        }
+
+        @Override
+        public void visitPooledInt(Integer i)
+        {
+        }
+
+        @Override
+        public void visitPooledUInt(Long l)
+        {
+        }
+
+        @Override
+        public void visitPooledDouble(Double d)
+        {
+        }
+
+        @Override
+        public void visitPooledString(String s)
+        {
+        }
+
+        @Override
+        public void visitPooledNamespace(Namespace ns)
+        {
+        }
+
+        @Override
+        public void visitPooledNsSet(Nsset nss)
+        {
+        }
+
+        @Override
+        public void visitPooledName(Name n)
+        {
+        }
+
+        @Override
+        public void visitPooledMetadata(Metadata md)
+        {
+        }
+    }
+
+    /**
+     * Collects the nodes of an ABC block.
+     */
+    private class CollectingVisitor extends NilABCVisitor
+    {
+        CollectingVisitor(ABCBlock block)
+        {
+            this.block = block;
+        }
+
+        private final ABCBlock block;
+
+        @Override
+        public IScriptVisitor visitScript()
+        {
+            final ScriptNode script = new ScriptNode();
+            block.scripts.add(script);
+            return new NilScriptVisitor()
+            {
+                @Override
+                public void visitInit(MethodInfo methodInfo)
+                {
+                    script.references.add(methodInfo);
+                }
+
+                @Override
+                public ITraitsVisitor visitTraits()
+                {
+                    return new CollectingTraitsVisitor(script, script);
+                }
+            };
+        }
+
+        @Override
+        public IClassVisitor visitClass(InstanceInfo iinfo, ClassInfo cinfo)
+        {
+            final Node node = new Node();
+            nodes.put(cinfo, node);
+            block.classes.add(cinfo);
+
+            node.addName(iinfo.superName);
+            if (iinfo.interfaceNames != null)
+            {
+                for (Name interfaceName : iinfo.interfaceNames)
+                    node.addName(interfaceName);
+            }
+            node.references.add(iinfo.iInit);
+            node.references.add(cinfo.cInit);
+
+            return new NilClassVisitor()
+            {
+                @Override
+                public ITraitsVisitor visitClassTraits()
+                {
+                    return new CollectingTraitsVisitor(node, null);
+                }
+
+                @Override
+                public ITraitsVisitor visitInstanceTraits()
+                {
+                    return new CollectingTraitsVisitor(node, null);
+                }
+            };
+        }
+
+        @Override
+        public IMethodVisitor visitMethod(MethodInfo minfo)
+        {
+            final Node node = new Node();
+            nodes.put(minfo, node);
+            block.methods.add(minfo);
+
+            for (Name paramType : minfo.getParamTypes())
+                node.addName(paramType);
+            node.addName(minfo.getReturnType());
+
+            return new NilMethodVisitor()
+            {
+                @Override
+                public IMethodBodyVisitor visitBody(MethodBodyInfo mbi)
+                {
+                    return new CollectingMethodBodyVisitor(node);
+                }
+            };
+        }
+    }
+
+    /**
+     * Collects the references of traits, and for the traits of a script, the
+     * names the script defines.
+     */
+    private class CollectingTraitsVisitor extends NilTraitsVisitor
+    {
+        CollectingTraitsVisitor(Node node, ScriptNode script)
+        {
+            this.node = node;
+            this.script = script;
+        }
+
+        private final Node node;
+        private final ScriptNode script;
+
+        @Override
+        public ITraitVisitor visitSlotTrait(int kind, Name name, int slotId, Name slotType, Object slotValue)
+        {
+            node.addName(slotType);
+            if (slotValue instanceof String)
+                node.addOperand(slotValue);
+            return define(name);
+        }
+
+        @Override
+        public ITraitVisitor visitClassTrait(int kind, Name name, int slotId, ClassInfo clazz)
+        {
+            node.references.add(clazz);
+            return define(name);
+        }
+
+        @Override
+        public ITraitVisitor visitMethodTrait(int kind, Name name, int dispId, MethodInfo method)
+        {
+            node.references.add(method);
+            return define(name);
+        }
+
+        private ITraitVisitor define(Name name)
+        {
+            if (script == null)
+                return NilVisitors.NIL_TRAIT_VISITOR;
+
+            if (name != null && name.getBaseName() != null && script.definedNames.add(name.getBaseName()))
+            {
+                List<ScriptNode> scripts = definitions.get(name.getBaseName());
+                if (scripts == null)
+                {
+                    scripts = new ArrayList<ScriptNode>(1);
+                    definitions.put(name.getBaseName(), scripts);
+                }
+                scripts.add(script);
+            }
+
+            return new NilTraitVisitor()
+            {
+                @Override
+                public IMetadataVisitor visitMetadata(int count)
+                {
+                    return new NilMetadataVisitor()
+                    {
+                        @Override
+                        public void visit(Metadata md)
+                        {
+                            script.metadataNames.add(md.getName());
+                        }
+                    };
+                }
+            };
+        }
+    }
+
+    /**
+     * Collects the references of the code of a method.
+     */
+    private class CollectingMethodBodyVisitor extends NilMethodBodyVisitor
+    {
+        CollectingMethodBodyVisitor(Node node)
+        {
+            this.node = node;
+        }
+
+        private final Node node;
+        private int exceptionCount;
+
+        @Override
+        public ITraitsVisitor visitTraits()
+        {
+            return new CollectingTraitsVisitor(node, null);
+        }
+
+        @Override
+        public void visitInstruction(int opcode, Object single_operand)
+        {
+            // The file names of the debug information aren't references.
+            if (opcode != ABCConstants.OP_debugfile)
+                node.addOperand(single_operand);
+        }
+
+        @Override
+        public void visitInstruction(int opcode, Object[] operands)
+        {
+            // Neither are the names of the local variables.
+            if (opcode == ABCConstants.OP_debug)
+                return;
+
+            for (Object operand : operands)
+                node.addOperand(operand);
+        }
+
+        @Override
+        public int visitException(Label from, Label to, Label target, Name exception_type, Name catch_var)
+        {
+            node.addName(exception_type);
+            return exceptionCount++;
+        }
+    }
+}
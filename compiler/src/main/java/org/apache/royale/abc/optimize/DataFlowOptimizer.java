@@ -0,0 +1,739 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.abc.optimize;
+
+import static org.apache.royale.abc.ABCConstants.*;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.royale.abc.graph.IBasicBlock;
+import org.apache.royale.abc.graph.IFlowgraph;
+import org.apache.royale.abc.semantics.Instruction;
+import org.apache.royale.abc.semantics.InstructionFactory;
+import org.apache.royale.abc.semantics.MethodBodyInfo;
+import org.apache.royale.abc.semantics.MethodInfo;
+import org.apache.royale.abc.visitors.DelegatingMethodBodyVisitor;
+import org.apache.royale.abc.visitors.IMethodBodyVisitor;
+
+/**
+ * DataFlowOptimizer optimizes the use of local registers by analyzing the
+ * method's control flow graph at visitEnd() time, and edits the blocks of
+ * the graph in place before its delegate's visitEnd().
+ * <p>
+ * Optimizations implemented:
+ * <ul>
+ * <li>Copy propagation: after getlocal a, setlocal b, reads of b in the same
+ * block read a, until either register is written.</li>
+ * <li>Redundant conversion removal: coerce_x and convert_x instructions whose
+ * operand was produced by an instruction of type x in the same block.</li>
+ * <li>Dead store elimination: stores to registers that are not read before
+ * they are written again become pops, or are removed together with the push
+ * of their value.</li>
+ * <li>Register allocation: local registers whose values are never live at
+ * the same time share a register, which lowers the method's local count.</li>
+ * </ul>
+ * The last two need the liveness of the registers, which is only known when
+ * the control flow graph has all the edges of the method, so they are
+ * skipped for methods with exception handlers. They are also skipped for
+ * methods with debug instructions, since those name registers.
+ */
+public class DataFlowOptimizer extends DelegatingMethodBodyVisitor
+{
+    /**
+     * Constructor.
+     * 
+     * @param mbi - the MethodBodyInfo to be optimized.
+     * @param delegate - the next IMethodBodyVisitor in the chain.
+     */
+    public DataFlowOptimizer(MethodBodyInfo mbi, IMethodBodyVisitor delegate)
+    {
+        super(delegate);
+        this.mbi = mbi;
+    }
+
+    /**
+     * The MethodBodyInfo under optimization.
+     */
+    protected final MethodBodyInfo mbi;
+
+    /**
+     * Types of the values produced or expected by conversions.
+     */
+    private static final int TYPE_NONE = 0;
+    private static final int TYPE_INT = 1;
+    private static final int TYPE_UINT = 2;
+    private static final int TYPE_NUMBER = 3;
+    private static final int TYPE_BOOLEAN = 4;
+    private static final int TYPE_STRING = 5;
+    private static final int TYPE_STRING_OR_NULL = 6;
+
+    private static final int[] NO_REGISTERS = new int[0];
+
+    @Override
+    public void visitEnd()
+    {
+        final IFlowgraph cfg = this.mbi.getCfg();
+        final List<IBasicBlock> blocks = cfg.getBlocksInEntryOrder();
+
+        for ( IBasicBlock b: blocks )
+        {
+            propagateCopies(b);
+            removeRedundantConversions(b);
+        }
+
+        if ( canAllocateRegisters(blocks) )
+        {
+            removeDeadStores(blocks, new Liveness(cfg, blocks));
+            allocateRegisters(blocks, new Liveness(cfg, blocks));
+        }
+
+        super.visitEnd();
+    }
+
+    /**
+     * Replace reads of registers that hold a copy of another register with
+     * reads of the other register.
+     */
+    private static void propagateCopies(IBasicBlock b)
+    {
+        //  Copies made in this block, keyed by the register holding the copy.
+        final Map<Integer, Integer> copies = new HashMap<Integer, Integer>();
+        final List<Instruction> insns = b.getInstructions();
+
+        for ( int i = 0; i < insns.size(); i++ )
+        {
+            final Instruction insn = insns.get(i);
+            final int opcode = insn.getOpcode();
+
+            if ( isGetlocal(opcode) )
+            {
+                final Integer source = copies.get(getRegister(insn));
+                if ( source != null )
+                    insns.set(i, getLocalInstruction(OP_getlocal, source.intValue()));
+                continue;
+            }
+
+            for ( int reg: getWrittenRegisters(insn) )
+                invalidateCopies(copies, reg);
+
+            if ( isSetlocal(opcode) && i > 0 && isGetlocal(insns.get(i - 1).getOpcode()) )
+            {
+                final int source = getRegister(insns.get(i - 1));
+                final int dest = getRegister(insn);
+                if ( source != dest )
+                    copies.put(dest, source);
+            }
+        }
+    }
+
+    private static void invalidateCopies(Map<Integer, Integer> copies, int reg)
+    {
+        copies.remove(reg);
+        final Iterator<Integer> it = copies.values().iterator();
+        while ( it.hasNext() )
+        {
+            if ( it.next().intValue() == reg )
+                it.remove();
+        }
+    }
+
+    /**
+     * Remove conversions of values that already have the type the conversion
+     * produces.
+     */
+    private static void removeRedundantConversions(IBasicBlock b)
+    {
+        final List<Instruction> insns = b.getInstructions();
+
+        int i = 1;
+        while ( i < insns.size() )
+        {
+            final int expected = getConversionType(insns.get(i).getOpcode());
+            final int produced = getProducedType(insns.get(i - 1).getOpcode());
+
+            if ( expected != TYPE_NONE &&
+                 ( produced == expected || (expected == TYPE_STRING_OR_NULL && produced == TYPE_STRING) ) )
+                insns.remove(i);
+            else
+                i++;
+        }
+    }
+
+    /**
+     * Turn stores to registers that are dead after the store into pops.
+     */
+    private static void removeDeadStores(List<IBasicBlock> blocks, Liveness liveness)
+    {
+        for ( int blockIdx = 0; blockIdx < blocks.size(); blockIdx++ )
+        {
+            final List<Instruction> insns = blocks.get(blockIdx).getInstructions();
+            final BitSet live = (BitSet)liveness.liveOut[blockIdx].clone();
+
+            for ( int i = insns.size() - 1; i >= 0; i-- )
+            {
+                final Instruction insn = insns.get(i);
+
+                if ( isSetlocal(insn.getOpcode()) && getRegister(insn) != 0 && !live.get(getRegister(insn)) )
+                {
+                    //  The pushed value is unused too, remove the push
+                    //  unless it would leave the block empty.
+                    if ( i > 0 && insns.size() > 2 && isSimplePush(insns.get(i - 1).getOpcode()) )
+                    {
+                        insns.remove(i);
+                        insns.remove(i - 1);
+                        i--;
+                    }
+                    else
+                    {
+                        insns.set(i, InstructionFactory.getInstruction(OP_pop));
+                    }
+                    continue;
+                }
+
+                updateLiveness(insn, live);
+            }
+        }
+    }
+
+    /**
+     * Give the local registers new numbers, so that registers that are never
+     * live at the same time share a number.
+     */
+    private void allocateRegisters(List<IBasicBlock> blocks, Liveness liveness)
+    {
+        final int registerCount = liveness.registerCount;
+        final int firstLocal = getFirstLocalRegister();
+        if ( registerCount <= firstLocal )
+            return;
+
+        //  Build the interference graph: a register written while
+        //  another one is live can't share its number.
+        final BitSet[] interference = new BitSet[registerCount];
+        for ( int reg = 0; reg < registerCount; reg++ )
+            interference[reg] = new BitSet(registerCount);
+
+        final BitSet used = new BitSet(registerCount);
+        for ( int blockIdx = 0; blockIdx < blocks.size(); blockIdx++ )
+        {
+            final List<Instruction> insns = blocks.get(blockIdx).getInstructions();
+            final BitSet live = (BitSet)liveness.liveOut[blockIdx].clone();
+
+            for ( int i = insns.size() - 1; i >= 0; i-- )
+            {
+                final Instruction insn = insns.get(i);
+
+                for ( int def: getWrittenRegisters(insn) )
+                {
+                    used.set(def);
+                    for ( int reg = live.nextSetBit(0); reg >= 0; reg = live.nextSetBit(reg + 1) )
+                    {
+                        if ( reg != def )
+                        {
+                            interference[def].set(reg);
+                            interference[reg].set(def);
+                        }
+                    }
+                }
+                for ( int use: getReadRegisters(insn) )
+                    used.set(use);
+
+                updateLiveness(insn, live);
+            }
+        }
+
+        //  Parameters keep their numbers, and so do registers that are
+        //  read before they are written, since they hold undefined.
+        final BitSet precolored = (BitSet)liveness.initialValues.clone();
+        precolored.set(0, firstLocal);
+
+        final int[] colors = new int[registerCount];
+        boolean changed = false;
+        int localCount = firstLocal;
+
+        for ( int reg = 0; reg < registerCount; reg++ )
+        {
+            if ( precolored.get(reg) )
+            {
+                colors[reg] = reg;
+                if ( used.get(reg) )
+                    localCount = Math.max(localCount, reg + 1);
+            }
+        }
+
+        for ( int reg = firstLocal; reg < registerCount; reg++ )
+        {
+            if ( precolored.get(reg) || !used.get(reg) )
+                continue;
+
+            final BitSet taken = new BitSet(registerCount);
+            for ( int other = interference[reg].nextSetBit(0); other >= 0; other = interference[reg].nextSetBit(other + 1) )
+            {
+                if ( other < reg || precolored.get(other) )
+                    taken.set(colors[other]);
+            }
+            //  Don't give a number to two registers that are
+            //  both read before they are written.
+            taken.or(precolored);
+
+            int color = taken.nextClearBit(firstLocal);
+            colors[reg] = color;
+            changed |= color != reg;
+            localCount = Math.max(localCount, color + 1);
+        }
+
+        if ( changed )
+        {
+            for ( IBasicBlock b: blocks )
+                renumberRegisters(b.getInstructions(), colors);
+        }
+
+        //  The count is only lowered; computeFrameCounts()
+        //  never lowers it.
+        if ( this.mbi.max_local > localCount )
+            this.mbi.max_local = localCount;
+    }
+
+    private static void renumberRegisters(List<Instruction> insns, int[] colors)
+    {
+        for ( int i = 0; i < insns.size(); i++ )
+        {
+            final Instruction insn = insns.get(i);
+            final int opcode = insn.getOpcode();
+
+            if ( opcode == OP_hasnext2 )
+            {
+                final int objectReg = (Integer)insn.getOperand(0);
+                final int indexReg = (Integer)insn.getOperand(1);
+                if ( colors[objectReg] != objectReg || colors[indexReg] != indexReg )
+                {
+                    insns.set(i, InstructionFactory.getInstruction(OP_hasnext2,
+                            new Object[] { colors[objectReg], colors[indexReg] }));
+                }
+            }
+            else if ( isLocalAccess(opcode) )
+            {
+                final int reg = getRegister(insn);
+                if ( colors[reg] != reg )
+                    insns.set(i, getLocalInstruction(getImmediateOpcode(opcode), colors[reg]));
+            }
+        }
+    }
+
+    /**
+     * @return the number of the first register that is not a parameter,
+     * "this", or the arguments or rest array.
+     */
+    private int getFirstLocalRegister()
+    {
+        final MethodInfo mi = this.mbi.getMethodInfo();
+        //  getParamCount() counts "this".
+        int result = mi.getParamCount();
+        if ( (mi.getFlags() & (NEED_ARGUMENTS | NEED_REST)) != 0 )
+            result++;
+        return result;
+    }
+
+    /**
+     * Registers can only be reallocated if the control flow graph has every
+     * path through the method, and no debug instruction names a register.
+     */
+    private boolean canAllocateRegisters(List<IBasicBlock> blocks)
+    {
+        if ( !this.mbi.getExceptions().isEmpty() )
+            return false;
+
+        for ( IBasicBlock b: blocks )
+        {
+            for ( int i = 0; i < b.size(); i++ )
+            {
+                if ( b.get(i).getOpcode() == OP_debug )
+                    return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Update the set of live registers for an instruction, walking backwards.
+     */
+    private static void updateLiveness(Instruction insn, BitSet live)
+    {
+        for ( int def: getWrittenRegisters(insn) )
+            live.clear(def);
+        for ( int use: getReadRegisters(insn) )
+            live.set(use);
+    }
+
+    /**
+     * The registers live at the start and the end of each block.
+     */
+    private static final class Liveness
+    {
+        Liveness(IFlowgraph cfg, List<IBasicBlock> blocks)
+        {
+            final int blockCount = blocks.size();
+            final Map<IBasicBlock, Integer> indexes = new IdentityHashMap<IBasicBlock, Integer>();
+            for ( int i = 0; i < blockCount; i++ )
+                indexes.put(blocks.get(i), i);
+
+            final BitSet[] uses = new BitSet[blockCount];
+            final BitSet[] defs = new BitSet[blockCount];
+            this.liveIn = new BitSet[blockCount];
+            this.liveOut = new BitSet[blockCount];
+
+            int maxRegister = -1;
+            for ( int i = 0; i < blockCount; i++ )
+            {
+                uses[i] = new BitSet();
+                defs[i] = new BitSet();
+                liveIn[i] = new BitSet();
+                liveOut[i] = new BitSet();
+
+                final IBasicBlock b = blocks.get(i);
+                for ( int j = 0; j < b.size(); j++ )
+                {
+                    final Instruction insn = b.get(j);
+                    for ( int use: getReadRegisters(insn) )
+                    {
+                        if ( !defs[i].get(use) )
+                            uses[i].set(use);
+                        maxRegister = Math.max(maxRegister, use);
+                    }
+                    for ( int def: getWrittenRegisters(insn) )
+                    {
+                        defs[i].set(def);
+                        maxRegister = Math.max(maxRegister, def);
+                    }
+                }
+            }
+            this.registerCount = maxRegister + 1;
+
+            //  Iterate to a fixed point; visiting the blocks
+            //  backwards makes that quick for forward edges.
+            boolean changed = true;
+            while ( changed )
+            {
+                changed = false;
+                for ( int i = blockCount - 1; i >= 0; i-- )
+                {
+                    final BitSet out = liveOut[i];
+                    for ( IBasicBlock succ: blocks.get(i).getSuccessors() )
+                    {
+                        final Integer succIdx = indexes.get(succ);
+                        if ( succIdx != null )
+                            out.or(liveIn[succIdx]);
+                    }
+
+                    final BitSet in = (BitSet)out.clone();
+                    in.andNot(defs[i]);
+                    in.or(uses[i]);
+                    if ( !in.equals(liveIn[i]) )
+                    {
+                        liveIn[i] = in;
+                        changed = true;
+                    }
+                }
+            }
+
+            //  Registers live into a block without predecessors,
+            //  such as the start block, hold their initial value.
+            final BitSet hasPredecessors = new BitSet(blockCount);
+            for ( IBasicBlock b: blocks )
+            {
+                for ( IBasicBlock succ: b.getSuccessors() )
+                {
+                    final Integer succIdx = indexes.get(succ);
+                    if ( succIdx != null )
+                        hasPredecessors.set(succIdx);
+                }
+            }
+            this.initialValues = new BitSet();
+            for ( int i = 0; i < blockCount; i++ )
+            {
+                if ( !hasPredecessors.get(i) || blocks.get(i) == cfg.getStartBlock() )
+                    this.initialValues.or(liveIn[i]);
+            }
+        }
+
+        final BitSet[] liveIn;
+        final BitSet[] liveOut;
+
+        /**
+         * Registers that may be read before they are written.
+         */
+        final BitSet initialValues;
+
+        final int registerCount;
+    }
+
+    /*
+     * ** Instruction classification **
+     */
+
+    private static boolean isGetlocal(int opcode)
+    {
+        return opcode == OP_getlocal || (opcode >= OP_getlocal0 && opcode <= OP_getlocal3);
+    }
+
+    private static boolean isSetlocal(int opcode)
+    {
+        return opcode == OP_setlocal || (opcode >= OP_setlocal0 && opcode <= OP_setlocal3);
+    }
+
+    /**
+     * @return true if the instruction accesses a single local register.
+     */
+    private static boolean isLocalAccess(int opcode)
+    {
+        switch ( opcode )
+        {
+            case OP_kill:
+            case OP_inclocal:
+            case OP_inclocal_i:
+            case OP_declocal:
+            case OP_declocal_i:
+                return true;
+            default:
+                return isGetlocal(opcode) || isSetlocal(opcode);
+        }
+    }
+
+    /**
+     * @return the register accessed by a single local register instruction.
+     */
+    private static int getRegister(Instruction insn)
+    {
+        final int opcode = insn.getOpcode();
+        if ( opcode >= OP_getlocal0 && opcode <= OP_getlocal3 )
+            return opcode - OP_getlocal0;
+        else if ( opcode >= OP_setlocal0 && opcode <= OP_setlocal3 )
+            return opcode - OP_setlocal0;
+        else
+            return insn.getImmediate();
+    }
+
+    /**
+     * @return the opcode with an immediate register of a local register
+     * instruction.
+     */
+    private static int getImmediateOpcode(int opcode)
+    {
+        if ( opcode >= OP_getlocal0 && opcode <= OP_getlocal3 )
+            return OP_getlocal;
+        else if ( opcode >= OP_setlocal0 && opcode <= OP_setlocal3 )
+            return OP_setlocal;
+        else
+            return opcode;
+    }
+
+    /**
+     * @return a local register instruction with an immediate register opcode.
+     * Gets and sets of registers 0 to 3 use the short forms, as the peephole
+     * optimizer expects.
+     */
+    private static Instruction getLocalInstruction(int opcode, int reg)
+    {
+        if ( opcode == OP_getlocal && reg < 4 )
+            return InstructionFactory.getInstruction(OP_getlocal0 + reg);
+        else if ( opcode == OP_setlocal && reg < 4 )
+            return InstructionFactory.getInstruction(OP_setlocal0 + reg);
+        else
+            return InstructionFactory.getInstruction(opcode, reg);
+    }
+
+    private static int[] getReadRegisters(Instruction insn)
+    {
+        final int opcode = insn.getOpcode();
+        switch ( opcode )
+        {
+            case OP_inclocal:
+            case OP_inclocal_i:
+            case OP_declocal:
+            case OP_declocal_i:
+                return new int[] { insn.getImmediate() };
+            case OP_hasnext2:
+                return new int[] { (Integer)insn.getOperand(0), (Integer)insn.getOperand(1) };
+            default:
+                return isGetlocal(opcode) ? new int[] { getRegister(insn) } : NO_REGISTERS;
+        }
+    }
+
+    private static int[] getWrittenRegisters(Instruction insn)
+    {
+        final int opcode = insn.getOpcode();
+        switch ( opcode )
+        {
+            case OP_kill:
+            case OP_inclocal:
+            case OP_inclocal_i:
+            case OP_declocal:
+            case OP_declocal_i:
+                return new int[] { insn.getImmediate() };
+            case OP_hasnext2:
+                return new int[] { (Integer)insn.getOperand(0), (Integer)insn.getOperand(1) };
+            default:
+                return isSetlocal(opcode) ? new int[] { getRegister(insn) } : NO_REGISTERS;
+        }
+    }
+
+    /**
+     * @return true if the instruction only pushes a value, without side
+     * effects.
+     */
+    private static boolean isSimplePush(int opcode)
+    {
+        switch ( opcode )
+        {
+            case OP_pushnull:
+            case OP_pushundefined:
+            case OP_pushtrue:
+            case OP_pushfalse:
+            case OP_pushnan:
+            case OP_pushbyte:
+            case OP_pushshort:
+            case OP_pushint:
+            case OP_pushuint:
+            case OP_pushdouble:
+            case OP_pushstring:
+            case OP_pushnamespace:
+            case OP_dup:
+            case OP_getglobalscope:
+            case OP_getscopeobject:
+                return true;
+            default:
+                return isGetlocal(opcode);
+        }
+    }
+
+    /**
+     * @return the type a conversion instruction produces, or TYPE_NONE.
+     */
+    private static int getConversionType(int opcode)
+    {
+        switch ( opcode )
+        {
+            case OP_convert_i:
+            case OP_coerce_i:
+                return TYPE_INT;
+            case OP_convert_u:
+            case OP_coerce_u:
+                return TYPE_UINT;
+            case OP_convert_d:
+            case OP_coerce_d:
+                return TYPE_NUMBER;
+            case OP_convert_b:
+            case OP_coerce_b:
+                return TYPE_BOOLEAN;
+            case OP_convert_s:
+                return TYPE_STRING;
+            case OP_coerce_s:
+                return TYPE_STRING_OR_NULL;
+            default:
+                return TYPE_NONE;
+        }
+    }
+
+    /**
+     * @return the type of the value an instruction pushes, if it is always
+     * the same, or TYPE_NONE.
+     */
+    private static int getProducedType(int opcode)
+    {
+        switch ( opcode )
+        {
+            case OP_pushbyte:
+            case OP_pushshort:
+            case OP_pushint:
+            case OP_convert_i:
+            case OP_coerce_i:
+            case OP_bitand:
+            case OP_bitor:
+            case OP_bitxor:
+            case OP_bitnot:
+            case OP_lshift:
+            case OP_rshift:
+            case OP_add_i:
+            case OP_subtract_i:
+            case OP_multiply_i:
+            case OP_negate_i:
+            case OP_increment_i:
+            case OP_decrement_i:
+            case OP_sxi1:
+            case OP_sxi8:
+            case OP_sxi16:
+            case OP_li8:
+            case OP_li16:
+            case OP_li32:
+                return TYPE_INT;
+            case OP_pushuint:
+            case OP_convert_u:
+            case OP_coerce_u:
+            case OP_urshift:
+                return TYPE_UINT;
+            case OP_pushdouble:
+            case OP_pushnan:
+            case OP_convert_d:
+            case OP_coerce_d:
+            case OP_subtract:
+            case OP_multiply:
+            case OP_divide:
+            case OP_modulo:
+            case OP_negate:
+            case OP_increment:
+            case OP_decrement:
+            case OP_lf32:
+            case OP_lf64:
+                return TYPE_NUMBER;
+            case OP_pushtrue:
+            case OP_pushfalse:
+            case OP_convert_b:
+            case OP_coerce_b:
+            case OP_not:
+            case OP_equals:
+            case OP_strictequals:
+            case OP_lessthan:
+            case OP_lessequals:
+            case OP_greaterthan:
+            case OP_greaterequals:
+            case OP_instanceof:
+            case OP_istype:
+            case OP_istypelate:
+            case OP_in:
+            case OP_hasnext2:
+            case OP_deleteproperty:
+                return TYPE_BOOLEAN;
+            case OP_pushstring:
+            case OP_convert_s:
+            case OP_typeof:
+            case OP_esc_xelem:
+            case OP_esc_xattr:
+                return TYPE_STRING;
+            case OP_coerce_s:
+                return TYPE_STRING_OR_NULL;
+            default:
+                return TYPE_NONE;
+        }
+    }
+}
@@ -491,6 +491,18 @@ public class ASC
             return removeDeadCode;
         }
 
+        @Override
+        public boolean getOptimizeDataFlow()
+        {
+            return false;
+        }
+
+        @Override
+        public boolean getStreamingLink()
+        {
+            return false;
+        }
+
 		@Override
 		public String getSWFMetadataDate() {
 			// TODO Auto-generated method stub
@@ -34,6 +34,7 @@ import org.apache.royale.compiler.config.ICompilerSettingsConstants;
 import org.apache.royale.compiler.exceptions.ConfigurationException;
 import org.apache.royale.compiler.internal.projects.RoyaleProjectConfigurator;
 import org.apache.royale.compiler.internal.targets.SWFTarget;
+import org.apache.royale.compiler.internal.workspaces.Workspace;
 import org.apache.royale.compiler.problems.ICompilerProblem;
 import org.apache.royale.compiler.problems.MissingRequirementConfigurationProblem;
 import org.apache.royale.compiler.targets.ISWCTarget;
@@ -78,6 +79,21 @@ public class COMPC extends MXMLC implements FlexTool
         return compc.mainNoExit(args);
     }
 
+    public COMPC()
+    {
+        super();
+    }
+
+    /**
+     * Create a compiler that builds in an existing {@link Workspace}.
+     * 
+     * @param workspace The shared workspace.
+     */
+    public COMPC(Workspace workspace)
+    {
+        super(workspace);
+    }
+
     @Override
     public String getName() {
         return FLEX_TOOL_COMPC;
@@ -224,6 +240,7 @@ public class COMPC extends MXMLC implements FlexTool
     {
         if (swcOutputMessage != null)
             println(swcOutputMessage);
+        reportCompilationCacheStatistics();
     }
 
     /**
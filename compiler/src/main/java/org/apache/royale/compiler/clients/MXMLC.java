@@ -60,6 +60,7 @@ import org.apache.royale.compiler.config.RSLSettings;
 import org.apache.royale.compiler.config.RSLSettings.RSLAndPolicyFileURLPair;
 import org.apache.royale.compiler.exceptions.ConfigurationException;
 import org.apache.royale.compiler.filespecs.IFileSpecification;
+import org.apache.royale.compiler.internal.caches.CompilationUnitDiskCache;
 import org.apache.royale.compiler.internal.common.Counter;
 import org.apache.royale.compiler.internal.config.FlashBuilderConfigurator;
 import org.apache.royale.compiler.internal.config.localization.LocalizationManager;
@@ -73,6 +74,7 @@ import org.apache.royale.compiler.internal.targets.Target;
 import org.apache.royale.compiler.internal.units.ResourceModuleCompilationUnit;
 import org.apache.royale.compiler.internal.units.SourceCompilationUnitFactory;
 import org.apache.royale.compiler.internal.units.StyleModuleCompilationUnit;
+import org.apache.royale.compiler.internal.workspaces.CompilationProfiler;
 import org.apache.royale.compiler.internal.workspaces.Workspace;
 import org.apache.royale.compiler.problems.ConfigurationProblem;
 import org.apache.royale.compiler.problems.FileIOProblem;
@@ -234,7 +236,9 @@ public class MXMLC implements FlexTool
                 if ((CompilerDiagnosticsConstants.diagnostics & CompilerDiagnosticsConstants.COMPC_PHASES) == CompilerDiagnosticsConstants.COMPC_PHASES)
                 	System.out.println("Configuration is ok");
                 project.setProblems(problems.getProblems());
+                startProfiling();
                 compile();
+                stopProfiling();
                 exitCode = printProblems(printer, legacyOutput);
                 reportTargetCompletion();
             }
@@ -259,6 +263,7 @@ public class MXMLC implements FlexTool
         }
         finally
         {
+            stopProfiling();
             waitAndClose();
             
             if (Counter.COUNT_TOKENS || Counter.COUNT_NODES ||
@@ -303,7 +308,9 @@ public class MXMLC implements FlexTool
 
             if (continueCompilation)
             {
+                startProfiling();
                 compile(true); // skip linking
+                stopProfiling();
                 exitCode = printProblems(printer, legacyOutput);
                 reportTargetCompletion();
             }
@@ -324,6 +331,7 @@ public class MXMLC implements FlexTool
         }
         finally
         {
+            stopProfiling();
             waitAndClose();
             
             if (Counter.COUNT_TOKENS || Counter.COUNT_NODES ||
@@ -398,12 +406,35 @@ public class MXMLC implements FlexTool
 
     public MXMLC()
     {
-        workspace = new Workspace();
+        this(new Workspace(), true);
+    }
+
+    /**
+     * Create a compiler that builds in an existing {@link Workspace}, such
+     * as one kept alive by a resident compile server. The workspace is not
+     * closed when compilation finishes.
+     * 
+     * @param workspace The shared workspace.
+     */
+    public MXMLC(Workspace workspace)
+    {
+        this(workspace, false);
+    }
+
+    private MXMLC(Workspace workspace, boolean ownsWorkspace)
+    {
+        this.workspace = workspace;
+        this.ownsWorkspace = ownsWorkspace;
         project = new RoyaleProject(workspace);
         problems = new ProblemQuery();
     }
 
     protected Workspace workspace;
+    /**
+     * True if the workspace was created by, and should be closed by, this
+     * compiler.
+     */
+    protected final boolean ownsWorkspace;
     protected RoyaleProject project;
     public Configuration config;
     public ProblemQuery problems;
@@ -415,6 +446,7 @@ public class MXMLC implements FlexTool
     protected ICompilationUnit mainCU;
     protected SWFTarget target;
     protected long startTime;     // start time of execution in nanoseconds
+    private CompilationProfiler profiler;
     protected ITargetSettings targetSettings;
     private ISWF swfTarget;
     private String swfOutputMessage;
@@ -437,7 +469,8 @@ public class MXMLC implements FlexTool
         workspace.startIdleState();
         try
         {
-            workspace.close();
+            if (ownsWorkspace)
+                workspace.close();
         }
         finally
         {
@@ -445,12 +478,57 @@ public class MXMLC implements FlexTool
         }
     }
 
+    /**
+     * Start profiling the compilation if a profile report directory is
+     * configured.
+     */
+    protected void startProfiling()
+    {
+        if (config.getProfileReportDirectory() != null && profiler == null)
+            profiler = CompilationProfiler.install(workspace);
+    }
+
+    /**
+     * Stop profiling and write the profile reports. Does nothing if the
+     * compilation is not profiled, or profiling was already stopped.
+     */
+    protected void stopProfiling()
+    {
+        if (profiler == null)
+            return;
+        profiler.uninstall();
+        try
+        {
+            final String summary = profiler.writeReports(config.getProfileReportDirectory(),
+                    getTargetType().getExtension(), config.getProfileReportTop());
+            println(summary);
+        }
+        catch (IOException e)
+        {
+            problems.add(new FileIOProblem(e));
+        }
+        profiler = null;
+    }
+
+    protected void profilePhaseStarted(String phase)
+    {
+        if (profiler != null)
+            profiler.phaseStarted(null, phase);
+    }
+
+    protected void profilePhaseCompleted(String phase)
+    {
+        if (profiler != null)
+            profiler.phaseCompleted(null, phase);
+    }
+
     /**
      * Force terminate the compilation process.
      */
     protected void close()
     {
-        workspace.close();
+        if (ownsWorkspace)
+            workspace.close();
     }
 
     /**
@@ -641,7 +719,15 @@ public class MXMLC implements FlexTool
             if (config.isDumpAst())
                 dumpAST();
 
-            buildArtifact();
+            profilePhaseStarted("buildArtifact");
+            try
+            {
+                buildArtifact();
+            }
+            finally
+            {
+                profilePhaseCompleted("buildArtifact");
+            }
             project.generateAPIReport();
 
             if (swfTarget == null)
@@ -665,7 +751,16 @@ public class MXMLC implements FlexTool
             if ((CompilerDiagnosticsConstants.diagnostics & CompilerDiagnosticsConstants.COMPC_PHASES) == CompilerDiagnosticsConstants.COMPC_PHASES)
             	System.out.println("attempting to write output");
             final File outputFile = new File(getOutputFilePath());
-            final int swfSize = writeSWF(swfTarget, outputFile);
+            profilePhaseStarted("writeSWF");
+            final int swfSize;
+            try
+            {
+                swfSize = writeSWF(swfTarget, outputFile);
+            }
+            finally
+            {
+                profilePhaseCompleted("writeSWF");
+            }
             long endTime = System.nanoTime();
             String seconds = String.format("%5.3f", (endTime - startTime) / 1e9);
             Map<String, Object> params = new HashMap<String, Object>();
@@ -724,6 +819,25 @@ public class MXMLC implements FlexTool
             reportRequiredRSLs(target);
             println(swfOutputMessage);
         }
+        reportCompilationCacheStatistics();
+    }
+
+    /**
+     * Reports how many compilation units were satisfied by the persistent
+     * compilation cache, if it is enabled.
+     */
+    protected void reportCompilationCacheStatistics()
+    {
+        final CompilationUnitDiskCache diskCache = project.getCompilationUnitDiskCache();
+        if (diskCache == null)
+            return;
+
+        Map<String, Object> params = new HashMap<String, Object>();
+        params.put("hits", diskCache.getHitCount());
+        params.put("misses", diskCache.getMissCount());
+        params.put("stored", diskCache.getStoreCount());
+        params.put("path", diskCache.getDirectory().getPath());
+        println(Messages.getString("MXMLC.compilation_cache_statistics_format", params));
     }
 
     /**
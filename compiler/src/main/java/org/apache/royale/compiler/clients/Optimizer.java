@@ -19,6 +19,7 @@
 
 package org.apache.royale.compiler.clients;
 
+import org.apache.royale.abc.UnreachableScriptStripper;
 import org.apache.royale.compiler.Messages;
 import org.apache.royale.compiler.clients.problems.ProblemFormatter;
 import org.apache.royale.compiler.clients.problems.ProblemPrinter;
@@ -35,6 +36,7 @@ import org.apache.royale.compiler.exceptions.ConfigurationException;
 import org.apache.royale.compiler.internal.config.IConfigurationFilter;
 import org.apache.royale.compiler.internal.config.annotations.Arguments;
 import org.apache.royale.compiler.internal.config.annotations.Config;
+import org.apache.royale.compiler.internal.config.annotations.InfiniteArguments;
 import org.apache.royale.compiler.internal.config.localization.LocalizationManager;
 import org.apache.royale.compiler.internal.projects.CompilerProject;
 import org.apache.royale.compiler.internal.projects.RoyaleProject;
@@ -44,6 +46,7 @@ import org.apache.royale.compiler.internal.workspaces.Workspace;
 import org.apache.royale.compiler.problems.ConfigurationProblem;
 import org.apache.royale.compiler.problems.FileNotFoundProblem;
 import org.apache.royale.compiler.problems.ICompilerProblem;
+import org.apache.royale.compiler.problems.UnableToStripUnreachableScriptsProblem;
 import org.apache.royale.compiler.targets.ITargetProgressMonitor;
 import org.apache.royale.compiler.targets.ITargetSettings;
 import org.apache.royale.swf.io.ISWFWriterFactory;
@@ -52,6 +55,9 @@ import org.apache.royale.swf.ISWF;
 import org.apache.royale.swf.io.ISWFWriter;
 import org.apache.royale.swf.io.SWFReader;
 import org.apache.royale.swf.io.SizeReportWritingSWFWriter;
+import org.apache.royale.swf.tags.DoABCTag;
+import org.apache.royale.swf.tags.ITag;
+import org.apache.royale.swf.tags.SymbolClassTag;
 import com.google.common.collect.ImmutableSet;
 
 import java.io.BufferedInputStream;
@@ -139,6 +145,8 @@ public class Optimizer implements FlexTool
     
                         // do the optimization
                         OptimizerSWFTarget target = new OptimizerSWFTarget(swf, project, targetSettings, null);
+                        if (config.getStripUnreachable())
+                            target.setStripUnreachable(config.getKeepClasses(), config.getKeepClassesWithMetadata());
                         ISWF optimizedSWF = target.build(linkProblems);
 
                         // record any problems found
@@ -423,7 +431,61 @@ public class Optimizer implements FlexTool
         {
             this.output = output;
         }
-        
+
+        //
+        // 'strip-unreachable' option
+        //
+
+        private boolean stripUnreachable = false;
+
+        public boolean getStripUnreachable()
+        {
+            return stripUnreachable;
+        }
+
+        @Config
+        public void setStripUnreachable(ConfigurationValue val, boolean stripUnreachable)
+        {
+            this.stripUnreachable = stripUnreachable;
+        }
+
+        //
+        // 'keep-class' option
+        //
+
+        private final List<String> keepClasses = new ArrayList<String>();
+
+        public List<String> getKeepClasses()
+        {
+            return keepClasses;
+        }
+
+        @Config(allowMultiple = true)
+        @Arguments("class")
+        @InfiniteArguments
+        public void setKeepClass(ConfigurationValue val, List<String> classNames)
+        {
+            keepClasses.addAll(classNames);
+        }
+
+        //
+        // 'keep-classes-with-metadata' option
+        //
+
+        private final List<String> keepClassesWithMetadata = new ArrayList<String>();
+
+        public List<String> getKeepClassesWithMetadata()
+        {
+            return keepClassesWithMetadata;
+        }
+
+        @Config(allowMultiple = true)
+        @Arguments("name")
+        @InfiniteArguments
+        public void setKeepClassesWithMetadata(ConfigurationValue val, List<String> metadataNames)
+        {
+            keepClassesWithMetadata.addAll(metadataNames);
+        }
     }
 
     /**
@@ -441,7 +503,8 @@ public class Optimizer implements FlexTool
          * Set of vars that can be set from the command line
          */
         private static Set<String> configVars = ImmutableSet.<String>of("help", "version", "load-config", "input", "output",
-                "compiler.keep-as3-metadata", "compiler.debug");
+                "compiler.keep-as3-metadata", "compiler.debug", "strip-unreachable", "keep-class",
+                "keep-classes-with-metadata");
 
         /**
          * Create a config filter that will filter out parameters that the optimizer doesn't accept
@@ -497,12 +560,86 @@ public class Optimizer implements FlexTool
          */
         private ISWF swf;
 
+        /**
+         * The classes and metadata that keep definitions when unreachable
+         * scripts are stripped, or null to keep all the scripts.
+         */
+        private Collection<String> keepClasses;
+        private Collection<String> keepClassesWithMetadata;
+
         @Override
         public ISWF build(Collection<ICompilerProblem> problems)
         {
+            if (keepClasses != null)
+                stripUnreachableScripts(problems);
             return linkSWF(swf);
         }
 
+        /**
+         * Remove the scripts that can't be reached from the symbol classes of
+         * the SWF before linking it.
+         * 
+         * @param keepClasses Classes that are used even if no code references
+         * them, e.g. classes looked up by computed names.
+         * @param keepClassesWithMetadata Metadata that marks definitions as
+         * used.
+         */
+        public void setStripUnreachable(Collection<String> keepClasses, Collection<String> keepClassesWithMetadata)
+        {
+            this.keepClasses = keepClasses;
+            this.keepClassesWithMetadata = keepClassesWithMetadata;
+        }
+
+        /**
+         * The scripts are stripped before the SWF is linked, so that the
+         * metadata the linker doesn't keep can still select roots. All the ABC
+         * blocks are analyzed together, as code in a frame may use definitions
+         * of earlier frames.
+         */
+        private void stripUnreachableScripts(Collection<ICompilerProblem> problems)
+        {
+            final UnreachableScriptStripper stripper = new UnreachableScriptStripper();
+            final List<DoABCTag> doABCTags = new ArrayList<DoABCTag>();
+            for (int i = 0; i < swf.getFrameCount(); i++)
+            {
+                for (ITag tag : swf.getFrameAt(i))
+                {
+                    if (tag instanceof DoABCTag)
+                    {
+                        doABCTags.add((DoABCTag)tag);
+                        stripper.addABC(((DoABCTag)tag).getABCData());
+                    }
+                    else if (tag instanceof SymbolClassTag)
+                    {
+                        for (String name : ((SymbolClassTag)tag).getSymbolNames())
+                            stripper.addRoot(name);
+                    }
+                }
+            }
+
+            if (swf.getTopLevelClass() != null)
+                stripper.addRoot(swf.getTopLevelClass());
+            for (String name : keepClasses)
+                stripper.addRoot(name);
+            for (String name : keepClassesWithMetadata)
+                stripper.addRootMetadata(name);
+
+            final List<byte[]> strippedABCs;
+            try
+            {
+                strippedABCs = stripper.strip();
+            }
+            catch (Exception e)
+            {
+                // Leave the ABCs as they are if they can't be emitted again.
+                problems.add(new UnableToStripUnreachableScriptsProblem(e));
+                return;
+            }
+
+            for (int i = 0; i < doABCTags.size(); i++)
+                doABCTags.get(i).setABCData(strippedABCs.get(i));
+        }
+
         public OptimizerSWFTarget (ISWF swf, CompilerProject project, ITargetSettings targetSettings, ITargetProgressMonitor progressMonitor)
         {
             super(project, targetSettings, progressMonitor);
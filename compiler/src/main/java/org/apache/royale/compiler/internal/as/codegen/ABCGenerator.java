@@ -69,7 +69,6 @@ import org.apache.royale.compiler.tree.as.IFunctionNode;
 import org.apache.royale.compiler.tree.as.IParameterNode;
 import org.apache.royale.compiler.units.requests.IABCBytesRequestResult;
 import com.google.common.util.concurrent.Futures;
-import org.apache.royale.utils.ASTUtil;
 
 /**
  * ABCGenerator is the public interface to the code generator.
@@ -118,8 +117,11 @@ public class ABCGenerator implements ICodeGenerator
         global_scope.methodBodyVisitor = mbv;
         global_scope.setInitialControlFlowRegionNode(root_node);
 
+        if (useParallelCodegen && executorService != null)
+            global_scope.setParallelFunctionGenerator(new ParallelFunctionGenerator(executorService, emitter));
+
         //  Process global directives.
-        GlobalDirectiveProcessor top_level_processor = new GlobalDirectiveProcessor(executorService, useParallelCodegen, global_scope, emitter);
+        GlobalDirectiveProcessor top_level_processor = new GlobalDirectiveProcessor(global_scope, emitter);
         boolean fatal_error_encountered = false;
         try
         {
@@ -279,12 +281,17 @@ public class ABCGenerator implements ICodeGenerator
     /**
      * Generate code for a function declaration, using a background thread
      * provided by the specified {@link ExecutorService}.
+     * <p>
+     * The body of the function must have been parsed by the caller, as for
+     * {@link #generateFunction}. It is discarded when the result is finished.
      * 
      * @param executorService {@link ExecutorService} used to do work in other
      * threads.
      * @param func the function declaration node.
      * @param enclosing_scope the lexical scope in which the function was
      * defined.
+     * @param alternate_name the name of the function, if it's not the name of
+     * its definition.
      * @return {@link GenerateFunctionInParallelResult} which can be used to
      * wait for code generation of the specified function to complete and to
      * extract the {@link MethodInfo} created for the specified function. The
@@ -292,20 +299,23 @@ public class ABCGenerator implements ICodeGenerator
      * completes ( you don't have to wait for code generation of the specified
      * function complete ).
      */
-    public GenerateFunctionInParallelResult generateFunctionInParallel (ExecutorService executorService, FunctionNode func, LexicalScope enclosing_scope)
+    public GenerateFunctionInParallelResult generateFunctionInParallel (ExecutorService executorService, FunctionNode func, LexicalScope enclosing_scope, Name alternate_name)
     {
-        MethodInfo mi = createMethodInfo(enclosing_scope, func, null);
+        MethodInfo mi = createMethodInfo(enclosing_scope, func, alternate_name);
         if (mi.isNative())
         {
             // previous versions didn't add the default argument values to
             // native methods, but that led to broken signatures -JT
-            mi = createMethodInfoWithOptionalDefaultArgumentValues(enclosing_scope, func, true, null);
+            mi = createMethodInfoWithOptionalDefaultArgumentValues(enclosing_scope, func, true, alternate_name);
             generateNativeMethod(func, mi, enclosing_scope);
-            return new GenerateFunctionInParallelResult(Futures.immediateFuture(null), mi, Collections.<IVisitor>emptyList());
+            return new GenerateFunctionInParallelResult(Futures.immediateFuture(null), mi, Collections.<IVisitor>emptyList(), null, func);
         }
-        GenerateFunctionRunnable runnable = new GenerateFunctionRunnable(mi, func, enclosing_scope);
+        // Changes to the emitter are deferred until the result is finished,
+        // so they are made in the same order as by generateFunction().
+        final ABCEmitter.DeferringVisitor deferringVisitor = ((ABCEmitter)enclosing_scope.getEmitter()).createDeferringVisitor();
+        GenerateFunctionRunnable runnable = new GenerateFunctionRunnable(mi, func, enclosing_scope, deferringVisitor);
         Future<?> future = executorService.submit(runnable);
-        return new GenerateFunctionInParallelResult(future, mi, runnable.getDeferredVisitEndsList());
+        return new GenerateFunctionInParallelResult(future, mi, runnable.getDeferredVisitEndsList(), deferringVisitor, func);
     }
     
     /**
@@ -367,12 +377,13 @@ public class ABCGenerator implements ICodeGenerator
             InstructionList instance_init_insns)
     {
         List<IVisitor> deferredVisitEnds = new LinkedList<IVisitor>();
-        generateMethodBodyForFunction(deferredVisitEnds, mi, node, enclosing_scope, instance_init_insns);
+        generateMethodBodyForFunction(deferredVisitEnds, null, mi, node, enclosing_scope, instance_init_insns);
         for (IVisitor v : deferredVisitEnds)
             v.visitEnd();
     }
     
     private void generateMethodBodyForFunction(List<IVisitor> deferredVisitEnds,
+            ABCEmitter.DeferringVisitor deferringVisitor,
             MethodInfo mi, IASNode node,
             LexicalScope enclosing_scope,
             InstructionList instance_init_insns)
@@ -381,6 +392,8 @@ public class ABCGenerator implements ICodeGenerator
         final boolean is_constructor =  SemanticUtils.isInConstructor(node);
         //  Set up a lexical scope for this function.
         LexicalScope function_scope = enclosing_scope.pushFrame();
+        if ( deferringVisitor != null )
+            function_scope.setEmitter(deferringVisitor);
 
         //  If instance_init_insns is not null, then the new
         //  scope needs to assume ownership of the initializers'
@@ -713,26 +726,27 @@ public class ABCGenerator implements ICodeGenerator
     private class GenerateFunctionRunnable implements Runnable
     {
         
-        GenerateFunctionRunnable(MethodInfo methodInfo, FunctionNode func, LexicalScope enclosing_scope)
+        GenerateFunctionRunnable(MethodInfo methodInfo, FunctionNode func, LexicalScope enclosing_scope,
+                ABCEmitter.DeferringVisitor deferringVisitor)
         {
             this.methodInfo = methodInfo;
             this.functionNode = func;
             this.enclosingScope = enclosing_scope;
+            this.deferringVisitor = deferringVisitor;
             this.deferredVisitEnds = new LinkedList<IVisitor>();
         }
         
         private final MethodInfo methodInfo;
         private final FunctionNode functionNode;
         private final LexicalScope enclosingScope;
+        private final ABCEmitter.DeferringVisitor deferringVisitor;
         private final List<IVisitor> deferredVisitEnds;
         
         @Override
         public void run()
         {
             assert !methodInfo.isNative() : "Native methods should be handled in the main thread and not be dispatched to a background thread!";
-            functionNode.parseFunctionBody(enclosingScope.getProblems());
-            ASTUtil.processFunctionNode(functionNode, enclosingScope.getProject());
-            generateMethodBodyForFunction(deferredVisitEnds, methodInfo, functionNode, enclosingScope, null);
+            generateMethodBodyForFunction(deferredVisitEnds, deferringVisitor, methodInfo, functionNode, enclosingScope, null);
         }
         
         public List<IVisitor> getDeferredVisitEndsList()
@@ -877,7 +877,10 @@ class ClassDirectiveProcessor extends DirectiveProcessor
         {
             LexicalScope ls = funcDef.isStatic()? classStaticScope: classScope;
 
-            MethodInfo mi = classScope.getGenerator().generateFunction(func, ls, null, bindableName);
+            final ParallelFunctionGenerator parallelGenerator = classScope.getGlobalScope().getParallelFunctionGenerator();
+            MethodInfo mi = parallelGenerator != null ?
+                parallelGenerator.startFunction(func, ls, bindableName) :
+                classScope.getGenerator().generateFunction(func, ls, null, bindableName);
             
             if ( mi != null )
             {
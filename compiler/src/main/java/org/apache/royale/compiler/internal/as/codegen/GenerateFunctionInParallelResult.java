@@ -19,8 +19,10 @@
 
 package org.apache.royale.compiler.internal.as.codegen;
 
+import org.apache.royale.abc.ABCEmitter;
 import org.apache.royale.abc.semantics.MethodInfo;
 import org.apache.royale.abc.visitors.IVisitor;
+import org.apache.royale.compiler.internal.tree.as.FunctionNode;
 
 import java.util.List;
 import java.util.concurrent.ExecutionException;
@@ -28,7 +30,7 @@ import java.util.concurrent.Future;
 
 /**
  * Object that is returned by
- * {@link org.apache.royale.compiler.internal.as.codegen.ICodeGenerator#generateFunctionInParallel(java.util.concurrent.ExecutorService, org.apache.royale.compiler.internal.tree.as.FunctionNode, LexicalScope)}
+ * {@link org.apache.royale.compiler.internal.as.codegen.ICodeGenerator#generateFunctionInParallel(java.util.concurrent.ExecutorService, org.apache.royale.compiler.internal.tree.as.FunctionNode, LexicalScope, org.apache.royale.abc.semantics.Name)}
  * .
  * <p>
  * A wad containing the future for the code generation work happening in
@@ -36,30 +38,39 @@ import java.util.concurrent.Future;
  */
 public class GenerateFunctionInParallelResult
 {
-    GenerateFunctionInParallelResult (Future<?> future, MethodInfo methodInfo, List<IVisitor> deferredVisitEndsList)
+    GenerateFunctionInParallelResult (Future<?> future, MethodInfo methodInfo, List<IVisitor> deferredVisitEndsList,
+                                      ABCEmitter.DeferringVisitor deferringVisitor, FunctionNode functionNode)
     {
         assert future != null;
         assert methodInfo != null;
         this.future = future;
         this.methodInfo = methodInfo;
         this.deferredVisitEnds = deferredVisitEndsList;
+        this.deferringVisitor = deferringVisitor;
+        this.functionNode = functionNode;
     }
 
     private final Future<?> future;
     private final MethodInfo methodInfo;
     private final List<IVisitor> deferredVisitEnds;
+    private final ABCEmitter.DeferringVisitor deferringVisitor;
+    private final FunctionNode functionNode;
 
     /**
      * Blocks until the code generation work that this object corresponds to
-     * is completed.
+     * is completed, then adds the function to the emitter and discards its
+     * body. This must be called on the thread that visits the emitter.
      */
     public void finish() throws InterruptedException, ExecutionException
     {
         future.get();
+        if (deferringVisitor != null)
+            deferringVisitor.commit();
         for (IVisitor v : deferredVisitEnds)
         {
             v.visitEnd();
         }
+        functionNode.discardFunctionBody();
     }
 
     /**
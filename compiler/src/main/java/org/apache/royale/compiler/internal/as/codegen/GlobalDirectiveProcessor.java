@@ -62,10 +62,7 @@ import org.apache.royale.compiler.projects.ICompilerProject;
 import org.apache.royale.compiler.tree.mxml.IMXMLDocumentNode;
 import org.apache.royale.utils.ASTUtil;
 
-import java.util.LinkedList;
 import java.util.List;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
 
 /**
  * A GlobalDirectiveProcessor translates directives at
@@ -88,50 +85,17 @@ class GlobalDirectiveProcessor extends DirectiveProcessor
      */
     protected boolean processingPackage = false;
     
-    private final List<GenerateFunctionInParallelResult> parallelCodeGenList;
-    
-    /**
-     * {@link ExecutorService} used to generation function
-     * bodies in background threads.
-     */
-    private final ExecutorService executorService;
-    
-    /**
-     * Flag to enabling or disabling use of background threads
-     * to generate function bodies.
-     */
-    private final boolean useParallelCodeGen;
-
     /**
      * @param current_scope the scope to use. It may be created a priori by the
      * caller, so it's not created by nesting an enclosing scope.
      * @param emitter the ABC emitter.
      */
     GlobalDirectiveProcessor(LexicalScope current_scope, IABCVisitor emitter)
-    {
-        this(null, false, current_scope, emitter);
-    }
-    
-    /**
-     * @param executorService {@link ExecutorService} used to schedule
-     * generation of function bodies on background threads. This may be null if
-     * useParallelCodeGen is false.
-     * @param useParallelCodeGen Flag to enabling or disabling use of background
-     * threads to generate function bodies.
-     * @param current_scope the scope to use. It may be created a priori by the
-     * caller, so it's not created by nesting an enclosing scope.
-     * @param emitter the ABC emitter.
-     */
-    GlobalDirectiveProcessor(ExecutorService executorService, boolean useParallelCodeGen, LexicalScope current_scope, IABCVisitor emitter)
     {
         super(current_scope.getProblems());
-        assert (!useParallelCodeGen) || (executorService != null) : "Parallel code generation requires access to an ExecutorService";
         
         this.currentScope = current_scope;
         this.emitter = emitter;
-        this.parallelCodeGenList = new LinkedList<GenerateFunctionInParallelResult>();
-        this.executorService = executorService;
-        this.useParallelCodeGen = useParallelCodeGen;
     }
     
     /**
@@ -144,22 +108,14 @@ class GlobalDirectiveProcessor extends DirectiveProcessor
      */
     private MethodInfo startFunctionGeneration(FunctionNode f)
     {
-        if (this.useParallelCodeGen)
-        {
-            assert this.executorService != null : "Parallel codegen requires an ExecutorService!";
-            final GenerateFunctionInParallelResult parallelCodeGen =
-                currentScope.getGenerator().generateFunctionInParallel(this.executorService, f, this.currentScope);
-            
-            this.parallelCodeGenList.add(parallelCodeGen);
-            
-            return parallelCodeGen.getMethodInfo();
-        }
+        f.parseFunctionBody(currentScope.getProblems());
+        ASTUtil.processFunctionNode(f, currentScope.getProject());
+
+        final ParallelFunctionGenerator parallelGenerator = currentScope.getGlobalScope().getParallelFunctionGenerator();
+        if (parallelGenerator != null)
+            return parallelGenerator.startFunction(f, this.currentScope, null);
         else
-        {
-            f.parseFunctionBody(currentScope.getProblems());
-            ASTUtil.processFunctionNode(f, currentScope.getProject());
             return currentScope.getGenerator().generateFunction(f, this.currentScope, null, null);
-        }
     }
     
     /**
@@ -582,16 +538,8 @@ class GlobalDirectiveProcessor extends DirectiveProcessor
      */
     void finish() throws InterruptedException
     {
-        try
-        {
-            for (GenerateFunctionInParallelResult parallelCodeGen : this.parallelCodeGenList)
-            {
-                parallelCodeGen.finish();
-            }
-        }
-        catch (ExecutionException ex)
-        {
-            throw new RuntimeException(ex);
-        }
+        final ParallelFunctionGenerator parallelGenerator = currentScope.getGlobalScope().getParallelFunctionGenerator();
+        if (parallelGenerator != null)
+            parallelGenerator.finish();
     }
 }
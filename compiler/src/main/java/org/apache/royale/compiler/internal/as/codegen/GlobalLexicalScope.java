@@ -36,6 +36,7 @@ import org.apache.royale.abc.semantics.MethodInfo;
 import org.apache.royale.abc.semantics.ScriptInfo;
 import org.apache.royale.abc.visitors.IABCVisitor;
 import org.apache.royale.compiler.definitions.IDefinition;
+import org.apache.royale.compiler.exceptions.CodegenInterruptedException;
 import org.apache.royale.compiler.internal.embedding.EmbedData;
 import org.apache.royale.compiler.internal.scopes.ASProjectScope;
 import org.apache.royale.compiler.internal.semantics.MethodBodySemanticChecker;
@@ -78,6 +79,12 @@ public class GlobalLexicalScope extends LexicalScope
      */
     private int ticketCount = 0;
 
+    /**
+     *  Generator of the functions generated in parallel,
+     *  or null if functions are generated one after the other.
+     */
+    private ParallelFunctionGenerator parallelFunctionGenerator = null;
+
     /**
      * Indicates whether this scope is for an {@link IInvisibleCompilationUnit}.
      * <p>
@@ -348,7 +355,40 @@ public class GlobalLexicalScope extends LexicalScope
      */
     protected String getSyntheticName(String user_supplied)
     {
-        return syntheticNamePrefix +  "$" + Integer.toString(ticketCount++) + ":" + user_supplied;
+        //  Functions started before this name was requested
+        //  take their names first.
+        if (parallelFunctionGenerator != null)
+        {
+            try
+            {
+                parallelFunctionGenerator.finish();
+            }
+            catch (InterruptedException e)
+            {
+                throw new CodegenInterruptedException(e);
+            }
+        }
+        synchronized (this)
+        {
+            return syntheticNamePrefix +  "$" + Integer.toString(ticketCount++) + ":" + user_supplied;
+        }
+    }
+
+    /**
+     * @return the generator of the functions generated in parallel, or null
+     * if functions are generated one after the other.
+     */
+    ParallelFunctionGenerator getParallelFunctionGenerator()
+    {
+        return parallelFunctionGenerator;
+    }
+
+    /**
+     * @param generator - the generator of the functions generated in parallel.
+     */
+    void setParallelFunctionGenerator(ParallelFunctionGenerator generator)
+    {
+        this.parallelFunctionGenerator = generator;
     }
 
     /**
@@ -120,6 +120,8 @@ public interface ICodeGenerator
      * @param func the function declaration node.
      * @param enclosing_scope the lexical scope in which the function was
      * defined.
+     * @param alternateName the name of the function, if it's not the name of
+     * its definition.
      * @return {@link GenerateFunctionInParallelResult} which can be used to
      * wait for code generation of the specified function to complete and to
      * extract the {@link MethodInfo} created for the specified function. The
@@ -129,7 +131,8 @@ public interface ICodeGenerator
      */
     GenerateFunctionInParallelResult generateFunctionInParallel(ExecutorService executorService,
                                                                 FunctionNode func,
-                                                                LexicalScope enclosing_scope);
+                                                                LexicalScope enclosing_scope,
+                                                                Name alternateName);
 
     /**
      * Helper method used by mxml databinding codegen to emit an anonymous
@@ -34,6 +34,7 @@ import java.util.Set;
 import java.util.Vector;
 
 import org.apache.royale.abc.ABCConstants;
+import org.apache.royale.abc.ABCEmitter;
 import org.apache.royale.abc.instructionlist.InstructionList;
 import org.apache.royale.abc.semantics.Instruction;
 import org.apache.royale.abc.semantics.InstructionFactory;
@@ -229,6 +230,18 @@ public class LexicalScope
      */
     private final LexicalScope enclosingFrame;
 
+    /**
+     *  The emitter of this frame and the frames it encloses,
+     *  or null if they use the global scope's emitter.
+     */
+    private IABCVisitor frameEmitter = null;
+
+    /**
+     *  Set if the synthetic name of this scope's anonymous
+     *  function is assigned when its emitter is committed.
+     */
+    private boolean functionNameDeferred = false;
+
     /**
      *  The MethodInfo of this scope's anonymous function,
      *  or null if this is not an anonymous function scope.
@@ -419,6 +432,7 @@ public class LexicalScope
         this.enclosingFrame = enclosingFrame;
         this.globalLexicalScope = enclosingFrame.globalLexicalScope;
         this.nestingState = enclosingFrame.nestingState;
+        this.frameEmitter = enclosingFrame.frameEmitter;
         if (mergableTempManager)
             this.tempManager = new TempManager(enclosingFrame.tempManager);
         else
@@ -1426,7 +1440,21 @@ public class LexicalScope
             // activation record.  Need to set the name of the debug field to the funcName$0, as builder keys of
             // this when displaying the variables.
             if (activationStorage != null)
-                addDebugNameToDefinition(methodInfo.getMethodName() + "$0", activationStorage.getLocalRegister() - 1, result);
+            {
+                final Object[] args = addDebugNameToDefinition(methodInfo.getMethodName() + "$0", activationStorage.getLocalRegister() - 1, result);
+                if (functionNameDeferred)
+                {
+                    final MethodInfo mi = methodInfo;
+                    ((ABCEmitter.DeferringVisitor)getEmitter()).defer(new Runnable()
+                    {
+                        @Override
+                        public void run()
+                        {
+                            args[1] = mi.getMethodName() + "$0";
+                        }
+                    });
+                }
+            }
         }
         else
         {
@@ -1443,10 +1471,11 @@ public class LexicalScope
         }
     }
 
-    private void addDebugNameToDefinition(String name, int index, InstructionList result)
+    private Object[] addDebugNameToDefinition(String name, int index, InstructionList result)
     {
         Object[] args = new Object[] { ABCConstants.DI_LOCAL, name, index };
         result.addInstruction(ABCConstants.OP_debug,  args);
+        return args;
     }
 
     /**
@@ -1692,7 +1721,28 @@ public class LexicalScope
     void declareAnonymousFunction()
     {
         declareNestedFunction();
-        setFunctionName(getGlobalScope().getSyntheticName("anonymous"));
+
+        if (getEmitter() instanceof ABCEmitter.DeferringVisitor)
+        {
+            //  Synthetic names are numbered in the order the
+            //  functions are declared in, so the function gets
+            //  its name in order with the emitter's changes.
+            setFunctionName("anonymous");
+            this.functionNameDeferred = true;
+            final MethodInfo mi = this.methodInfo;
+            ((ABCEmitter.DeferringVisitor)getEmitter()).defer(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    mi.setMethodName(getGlobalScope().getSyntheticName("anonymous"));
+                }
+            });
+        }
+        else
+        {
+            setFunctionName(getGlobalScope().getSyntheticName("anonymous"));
+        }
     }
     
     /**
@@ -1992,9 +2042,21 @@ public class LexicalScope
      */
     IABCVisitor getEmitter()
     {
+        if (frameEmitter != null)
+            return frameEmitter;
         return getGlobalScope().getEmitter();
     }
 
+    /**
+     *  Set the emitter of this frame and the frames
+     *  pushed from it.
+     *  @param emitter - the emitter.
+     */
+    void setEmitter(IABCVisitor emitter)
+    {
+        this.frameEmitter = emitter;
+    }
+
     /**
      * @return true if this scope is for an invisible compilation unit.
      * In this case, {@link IDefinition}'s for package/file classes,
@@ -0,0 +1,135 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.compiler.internal.as.codegen;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+
+import org.apache.royale.abc.ABCEmitter;
+import org.apache.royale.abc.semantics.MethodInfo;
+import org.apache.royale.abc.semantics.Name;
+import org.apache.royale.compiler.exceptions.CodegenInterruptedException;
+import org.apache.royale.compiler.internal.tree.as.FunctionNode;
+
+/**
+ * Generates the functions of a compilation unit on the threads of an
+ * {@link ExecutorService}, for parallel code generation.
+ * <p>
+ * The functions are added to the {@link ABCEmitter} in the order they were
+ * started. A function is finished, and its visitEnd calls made, before the
+ * emitter changes for any other reason, so the emitter sees the same
+ * sequence of changes as when the functions are generated one after the
+ * other, and the ABC is the same.
+ */
+final class ParallelFunctionGenerator
+{
+    /**
+     * @param executorService {@link ExecutorService} used to generate the
+     * functions.
+     * @param emitter the emitter of the compilation unit. This must be called
+     * on the thread that visits it.
+     */
+    ParallelFunctionGenerator(ExecutorService executorService, ABCEmitter emitter)
+    {
+        this.executorService = executorService;
+        this.thread = Thread.currentThread();
+        emitter.setBeforeUpdateCallback(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    finish();
+                }
+                catch (InterruptedException e)
+                {
+                    throw new CodegenInterruptedException(e);
+                }
+            }
+        });
+    }
+
+    private final ExecutorService executorService;
+
+    /**
+     * The thread that visits the emitter.
+     */
+    private final Thread thread;
+
+    /**
+     * The functions that are not finished, in the order they were started.
+     */
+    private final Queue<GenerateFunctionInParallelResult> started = new ArrayDeque<GenerateFunctionInParallelResult>();
+
+    /**
+     * Set while the started functions are finished.
+     */
+    private boolean finishing;
+
+    /**
+     * Start the generation of a function.
+     * 
+     * @param func the function declaration node.
+     * @param enclosing_scope the lexical scope in which the function was
+     * defined.
+     * @param alternate_name the name of the function, if it's not the name of
+     * its definition.
+     * @return {@link MethodInfo} for the function.
+     */
+    MethodInfo startFunction(FunctionNode func, LexicalScope enclosing_scope, Name alternate_name)
+    {
+        final GenerateFunctionInParallelResult result =
+            enclosing_scope.getGenerator().generateFunctionInParallel(executorService, func, enclosing_scope, alternate_name);
+        started.add(result);
+        return result.getMethodInfo();
+    }
+
+    /**
+     * Block until the started functions are generated, and finish them in
+     * the order they were started. This does nothing on other threads, or
+     * while the functions are finished.
+     * 
+     * @throws InterruptedException
+     */
+    void finish() throws InterruptedException
+    {
+        if (finishing || Thread.currentThread() != thread)
+            return;
+
+        finishing = true;
+        try
+        {
+            GenerateFunctionInParallelResult result;
+            while ((result = started.poll()) != null)
+                result.finish();
+        }
+        catch (ExecutionException ex)
+        {
+            throw new RuntimeException(ex);
+        }
+        finally
+        {
+            finishing = false;
+        }
+    }
+}
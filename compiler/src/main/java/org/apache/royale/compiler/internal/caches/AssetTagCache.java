@@ -126,8 +126,11 @@ public class AssetTagCache extends ConcurrentCacheStoreBase<AssetTagCache.AssetT
      */
     public AssetTagCache(SWCManager swcManager)
     {
+        super(DEFAULT_MAXIMUM_WEIGHT);
         this.swcManager = swcManager;
     }
+
+    private static final long DEFAULT_MAXIMUM_WEIGHT = 100000;
     
     private final SWCManager swcManager;
 
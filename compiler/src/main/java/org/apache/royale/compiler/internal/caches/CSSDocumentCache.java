@@ -19,12 +19,12 @@
 
 package org.apache.royale.compiler.internal.caches;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
-import java.util.zip.ZipFile;
 
 import org.antlr.runtime.ANTLRFileStream;
 import org.antlr.runtime.ANTLRInputStream;
@@ -41,7 +41,7 @@ import org.apache.royale.compiler.internal.css.CSSDocument;
 import org.apache.royale.compiler.internal.css.CSSModelTreeType;
 import org.apache.royale.compiler.problems.ICompilerProblem;
 import org.apache.royale.swc.ISWC;
-import org.apache.royale.swc.io.SWCReader;
+import org.apache.royale.swc.io.SWCArchive;
 import org.apache.royale.utils.FilenameNormalization;
 import com.google.common.collect.ImmutableList;
 
@@ -54,6 +54,28 @@ import com.google.common.collect.ImmutableList;
  */
 public class CSSDocumentCache extends ConcurrentCacheStoreBase<ICSSDocument> implements ICSSDocumentCache
 {
+    private static final long DEFAULT_MAXIMUM_WEIGHT = 1000;
+
+    public CSSDocumentCache()
+    {
+        super(DEFAULT_MAXIMUM_WEIGHT);
+    }
+
+    private volatile CSSDocumentDiskCache diskCache;
+
+    /**
+     * Set the directory where parsed CSS models are kept and shared with
+     * other compiler processes.
+     * 
+     * @param directory the directory, or null to always parse the CSS.
+     */
+    public void setDiskCacheDirectory(File directory)
+    {
+        final CSSDocumentDiskCache current = diskCache;
+        if (directory == null ? current == null : current != null && directory.equals(current.getDirectory()))
+            return;
+        diskCache = directory != null ? new CSSDocumentDiskCache(directory) : null;
+    }
 
     /**
      * Since {@link ConcurrentCacheStoreBase#get} doesn't return compiler
@@ -198,6 +220,50 @@ public class CSSDocumentCache extends ConcurrentCacheStoreBase<ICSSDocument> imp
     private abstract static class CSSDocumentCacheKeyBase extends CacheStoreKeyBase
     {
         abstract ICSSDocument parse() throws IOException;
+
+        /**
+         * @return The file the CSS is read from: the SWC for a CSS file in a
+         * SWC, or the CSS file itself.
+         */
+        abstract File getSourceFile();
+
+        /**
+         * @return The name of the CSS file in the SWC, or an empty string.
+         */
+        abstract String getEntryName();
+
+        /**
+         * Load the CSS model from the disk cache, or parse it and store it
+         * in the disk cache.
+         * 
+         * @param diskCache the disk cache, or null.
+         * @throws IOException IO error.
+         */
+        ICSSDocument load(final CSSDocumentDiskCache diskCache) throws IOException
+        {
+            if (diskCache == null)
+                return parse();
+
+            final File sourceFile = getSourceFile();
+            final ICSSDocument cached = diskCache.load(sourceFile, getEntryName());
+            if (cached != null)
+                return cached;
+
+            // Models with problems are never stored, because parse() throws.
+            final ICSSDocument result = parse();
+            if (result != EMPTY_CSS_DOCUMENT && sourceFile.isFile())
+            {
+                try
+                {
+                    diskCache.store(sourceFile, getEntryName(), result);
+                }
+                catch (IOException e)
+                {
+                    // The disk cache is only an optimization.
+                }
+            }
+            return result;
+        }
     }
     
     /**
@@ -227,6 +293,18 @@ public class CSSDocumentCache extends ConcurrentCacheStoreBase<ICSSDocument> imp
                         cssFileName);
         }
 
+        @Override
+        File getSourceFile()
+        {
+            return swc.getSWCFile();
+        }
+
+        @Override
+        String getEntryName()
+        {
+            return cssFileName;
+        }
+
         /**
          * Parse a CSS file in a SWC library into {@link ICSSDocument} model. If the
          * CSS file does not exist, returns {@link #EMPTY_CSS_DOCUMENT} dummy
@@ -237,12 +315,11 @@ public class CSSDocumentCache extends ConcurrentCacheStoreBase<ICSSDocument> imp
         @Override
         ICSSDocument parse() throws IOException
         {
-            final ZipFile zipFile = new ZipFile(swc.getSWCFile(), ZipFile.OPEN_READ);
             ICSSDocument result = EMPTY_CSS_DOCUMENT;
             InputStream input = null;
             try
             {
-                input = SWCReader.getInputStream(zipFile, cssFileName);
+                input = SWCArchive.open(swc.getSWCFile()).getInputStream(cssFileName);
                 if (input != null)
                 {
                     final ANTLRInputStream in = new ANTLRInputStream(input);
@@ -256,7 +333,6 @@ public class CSSDocumentCache extends ConcurrentCacheStoreBase<ICSSDocument> imp
             finally
             {
                 IOUtils.closeQuietly(input);
-                zipFile.close();
             }
             return result;
         }
@@ -284,6 +360,18 @@ public class CSSDocumentCache extends ConcurrentCacheStoreBase<ICSSDocument> imp
             return cssFileName;
         }
 
+        @Override
+        File getSourceFile()
+        {
+            return new File(cssFileName);
+        }
+
+        @Override
+        String getEntryName()
+        {
+            return "";
+        }
+
         /**
          * parse a bare CSS file on the file system.
          */
@@ -334,7 +422,7 @@ public class CSSDocumentCache extends ConcurrentCacheStoreBase<ICSSDocument> imp
         ICSSDocument result = EMPTY_CSS_DOCUMENT;
         try
         {
-            result = cacheKey.parse();
+            result = cacheKey.load(diskCache);
         }
         catch (IOException e)
         {
@@ -0,0 +1,189 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+
+package org.apache.royale.compiler.internal.caches;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+import org.apache.commons.io.IOUtils;
+
+import org.apache.royale.compiler.common.VersionInfo;
+import org.apache.royale.compiler.css.ICSSDocument;
+import org.apache.royale.compiler.internal.css.CSSModelSerializer;
+
+import com.google.common.hash.Hashing;
+
+/**
+ * An on-disk cache of parsed CSS models, shared by all compiler processes
+ * through a cache directory. Builds that use the same libraries and themes
+ * read the "defaults.css" files of the SWCs and the theme CSS files from
+ * this cache instead of parsing them again.
+ * <p>
+ * Entries are written once, atomically, and never modified. An entry is
+ * only used if it was written by the same format version and compiler build
+ * for a source file with the same path, length and time stamp. The source
+ * file is a SWC for the CSS files inside it, or the CSS file itself.
+ * <p>
+ * Format: int magic, int version, UTF compiler build, UTF source path, long
+ * source length, long source time stamp, UTF entry name, then the model as
+ * written by {@link CSSModelSerializer}.
+ */
+public class CSSDocumentDiskCache
+{
+    private static final int MAGIC = 0x52435353; // "RCSS"
+    private static final int FORMAT_VERSION = 1;
+    private static final String ENTRY_EXTENSION = ".rcss";
+
+    /**
+     * Create a cache in the specified directory.
+     * 
+     * @param directory Directory of the cache. It is created on demand.
+     */
+    public CSSDocumentDiskCache(File directory)
+    {
+        this.directory = directory;
+    }
+
+    private final File directory;
+
+    /**
+     * @return The directory of the cache.
+     */
+    public File getDirectory()
+    {
+        return directory;
+    }
+
+    /**
+     * Load a CSS model.
+     * 
+     * @param sourceFile The SWC or CSS file the model was parsed from.
+     * @param entryName The name of the CSS file in the SWC, or an empty
+     * string for a CSS file.
+     * @return The CSS model, or null if there is no valid entry for the
+     * current version of the source file.
+     */
+    public ICSSDocument load(File sourceFile, String entryName)
+    {
+        final File entryFile = getEntryFile(sourceFile, entryName);
+        if (!entryFile.isFile())
+            return null;
+
+        DataInputStream in = null;
+        try
+        {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(entryFile)));
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION)
+                return null;
+            if (!VersionInfo.buildMessage().equals(in.readUTF()))
+                return null;
+            if (!sourceFile.getAbsolutePath().equals(in.readUTF()) ||
+                in.readLong() != sourceFile.length() ||
+                in.readLong() != sourceFile.lastModified() ||
+                !entryName.equals(in.readUTF()))
+            {
+                return null;
+            }
+            return CSSModelSerializer.read(in);
+        }
+        catch (IOException e)
+        {
+            return null;
+        }
+        catch (RuntimeException e)
+        {
+            // A truncated or corrupted entry.
+            return null;
+        }
+        finally
+        {
+            IOUtils.closeQuietly(in);
+        }
+    }
+
+    /**
+     * Store a CSS model. The entry is replaced atomically, so processes
+     * reading the previous entry are not affected.
+     * 
+     * @param sourceFile The SWC or CSS file the model was parsed from.
+     * @param entryName The name of the CSS file in the SWC, or an empty
+     * string for a CSS file.
+     * @param css The CSS model.
+     * @throws IOException error writing the entry.
+     */
+    public void store(File sourceFile, String entryName, ICSSDocument css) throws IOException
+    {
+        if (!directory.isDirectory() && !directory.mkdirs() && !directory.isDirectory())
+            throw new IOException("can't create " + directory);
+
+        final File entryFile = getEntryFile(sourceFile, entryName);
+        final File tempFile = File.createTempFile(entryFile.getName(), ".tmp", directory);
+        try
+        {
+            final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+            try
+            {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeUTF(VersionInfo.buildMessage());
+                out.writeUTF(sourceFile.getAbsolutePath());
+                out.writeLong(sourceFile.length());
+                out.writeLong(sourceFile.lastModified());
+                out.writeUTF(entryName);
+                CSSModelSerializer.write(css, out);
+            }
+            finally
+            {
+                out.close();
+            }
+
+            try
+            {
+                Files.move(tempFile.toPath(), entryFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            }
+            catch (AtomicMoveNotSupportedException e)
+            {
+                Files.move(tempFile.toPath(), entryFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        finally
+        {
+            tempFile.delete();
+        }
+    }
+
+    private File getEntryFile(File sourceFile, String entryName)
+    {
+        final String key = sourceFile.getAbsolutePath() + ":" + entryName;
+        final String name = Hashing.sha256().hashString(key, StandardCharsets.UTF_8).toString();
+        return new File(directory, name + ENTRY_EXTENSION);
+    }
+}
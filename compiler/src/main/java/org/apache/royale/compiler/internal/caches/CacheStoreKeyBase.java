@@ -21,27 +21,46 @@ package org.apache.royale.compiler.internal.caches;
 
 /**
  * Key object for {@link ConcurrentCacheStoreBase}.  
+ * <p>
+ * The string key is generated the first time it is needed and kept, so
+ * the fields of a key must not change once it is used.
  */
 public abstract class CacheStoreKeyBase
 {
+    private String key;
+
     /**
      * Generate a string key based on concrete classes' fields.
      * @return key
      */
     public abstract String generateKey();
+
+    private String getKey()
+    {
+        String result = key;
+        if (result == null)
+        {
+            result = generateKey();
+            key = result;
+        }
+        return result;
+    }
     
     @Override
     public String toString()
     {
-        return generateKey();
+        return getKey();
     }
     
     @Override
     public boolean equals(Object o)
     {
+        if (o == this)
+            return true;
+
         if(o instanceof CacheStoreKeyBase)
         {
-            return this.generateKey().equals(((CacheStoreKeyBase)o).generateKey());
+            return this.getKey().equals(((CacheStoreKeyBase)o).getKey());
         }
         
         return false;
@@ -50,6 +69,6 @@ public abstract class CacheStoreKeyBase
     @Override
     public int hashCode()
     {
-        return generateKey().hashCode();
+        return getKey().hashCode();
     }
 }
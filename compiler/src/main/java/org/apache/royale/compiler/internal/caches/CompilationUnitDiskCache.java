@@ -0,0 +1,611 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.compiler.internal.caches;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.io.IOUtils;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+import org.apache.royale.compiler.common.DependencyType;
+import org.apache.royale.compiler.common.DependencyTypeSet;
+import org.apache.royale.compiler.common.VersionInfo;
+import org.apache.royale.compiler.config.ConfigurationBuffer;
+import org.apache.royale.compiler.config.ConfigurationValue;
+import org.apache.royale.compiler.definitions.IDefinition;
+import org.apache.royale.compiler.definitions.ITypeDefinition;
+import org.apache.royale.compiler.filespecs.IFileSpecification;
+import org.apache.royale.compiler.internal.as.codegen.CodeGeneratorManager;
+import org.apache.royale.compiler.internal.projects.CompilerProject;
+import org.apache.royale.compiler.internal.projects.DependencyGraph;
+import org.apache.royale.compiler.internal.units.requests.ABCBytesRequestResult;
+import org.apache.royale.compiler.problems.ICompilerProblem;
+import org.apache.royale.compiler.units.ICompilationUnit;
+import org.apache.royale.compiler.units.ICompilationUnit.UnitType;
+import org.apache.royale.compiler.units.requests.IABCBytesRequestResult;
+import org.apache.royale.compiler.units.requests.ISyntaxTreeRequestResult;
+
+/**
+ * A content-addressed, on-disk cache of the ABC bytes generated for source
+ * compilation units. Entries survive the compiler process, so a cold JVM can
+ * reuse the code generated by a previous build for every unchanged
+ * {@code .as} or {@code .mxml} file.
+ * <p>
+ * An entry is keyed by the compiler version, a digest of the effective
+ * configuration, the code generator in use, the path of the compilation unit
+ * and the content of its root file. Each entry also records a fingerprint of
+ * every included file, of every compilation unit the generated code
+ * depended on, and of every compilation unit that defines an ancestor class
+ * or interface of a type the code depended on. Override, conflict and
+ * interface checks, and inherited constants, read those ancestors even when
+ * the code never names them. An entry is only reused when all of those
+ * fingerprints still match, and the recorded dependencies are replayed into
+ * the project's
+ * {@link DependencyGraph} so that linking sees the same graph as a full
+ * build.
+ * <p>
+ * Only results without problems and without embedded assets are stored;
+ * everything else is always regenerated.
+ */
+public class CompilationUnitDiskCache
+{
+    private static final int MAGIC = 0x52434143; // "RCAC"
+    private static final int FORMAT_VERSION = 2;
+    private static final String ENTRY_EXTENSION = ".abc";
+
+    /**
+     * Compute a digest of all the configuration variables set in a
+     * {@link ConfigurationBuffer}, including the values loaded from
+     * configuration files.
+     *
+     * @param buffer The configuration buffer used to configure the project.
+     * @return A hex digest of the configuration.
+     */
+    public static String computeConfigurationDigest(ConfigurationBuffer buffer)
+    {
+        final Hasher hasher = Hashing.sha256().newHasher();
+        for (final String var : new TreeSet<String>(buffer.getVars()))
+        {
+            final List<ConfigurationValue> values = buffer.getVar(var);
+            if (values == null)
+                continue;
+            hasher.putString(var, StandardCharsets.UTF_8).putByte((byte)0);
+            for (final ConfigurationValue value : values)
+            {
+                for (final String arg : value.getArgs())
+                    hasher.putString(arg, StandardCharsets.UTF_8).putByte((byte)1);
+                hasher.putByte((byte)2);
+            }
+        }
+        return hasher.hash().toString();
+    }
+
+    /**
+     * Create a cache rooted at the specified directory.
+     *
+     * @param directory Root directory of the cache. It is created on demand.
+     * @param configurationDigest Digest of the effective configuration, as
+     * computed by {@link #computeConfigurationDigest(ConfigurationBuffer)}.
+     */
+    public CompilationUnitDiskCache(File directory, String configurationDigest)
+    {
+        this.directory = directory;
+        this.configurationDigest = configurationDigest;
+        this.fingerprints = new ConcurrentHashMap<String, Fingerprint>();
+    }
+
+    private final File directory;
+    private final String configurationDigest;
+    private final ConcurrentMap<String, Fingerprint> fingerprints;
+    private final AtomicInteger hits = new AtomicInteger();
+    private final AtomicInteger misses = new AtomicInteger();
+    private final AtomicInteger stores = new AtomicInteger();
+
+    /**
+     * Memoized fingerprint of a file, valid as long as the last modified
+     * time of the file does not change.
+     */
+    private static final class Fingerprint
+    {
+        Fingerprint(long lastModified, String value)
+        {
+            this.lastModified = lastModified;
+            this.value = value;
+        }
+
+        final long lastModified;
+        final String value;
+    }
+
+    /**
+     * A dependency recorded in a cache entry.
+     */
+    private static final class RecordedDependency
+    {
+        String path;
+        String fingerprint;
+        final List<String> qnames = new ArrayList<String>();
+        final List<String> types = new ArrayList<String>();
+        String anonymousTypes;
+    }
+
+    /**
+     * @return the root directory of this cache.
+     */
+    public File getDirectory()
+    {
+        return directory;
+    }
+
+    /**
+     * @return the number of ABC requests satisfied by this cache.
+     */
+    public int getHitCount()
+    {
+        return hits.get();
+    }
+
+    /**
+     * @return the number of ABC requests for which no valid entry was found.
+     */
+    public int getMissCount()
+    {
+        return misses.get();
+    }
+
+    /**
+     * @return the number of entries written to this cache.
+     */
+    public int getStoreCount()
+    {
+        return stores.get();
+    }
+
+    /**
+     * Determine whether the result of the ABC bytes request of a compilation
+     * unit can be kept in this cache.
+     *
+     * @param unit The compilation unit.
+     * @return true if the unit is a visible AS or MXML unit.
+     */
+    public static boolean isCacheable(ICompilationUnit unit)
+    {
+        if (unit.isInvisible())
+            return false;
+        final UnitType type = unit.getCompilationUnitType();
+        return type == UnitType.AS_UNIT || type == UnitType.MXML_UNIT;
+    }
+
+    /**
+     * Try to load the ABC bytes of a compilation unit from the cache. On a
+     * hit, the dependencies recorded with the entry are added to the
+     * project's dependency graph.
+     *
+     * @param unit The compilation unit.
+     * @return The cached result, or null if there is no valid entry.
+     * @throws InterruptedException
+     */
+    public IABCBytesRequestResult load(ICompilationUnit unit) throws InterruptedException
+    {
+        final ISyntaxTreeRequestResult syntaxTree = unit.getSyntaxTreeRequest().get();
+        final String key = computeKey(unit);
+        final File entryFile = key != null ? getEntryFile(key) : null;
+        if (entryFile == null || !entryFile.isFile())
+        {
+            misses.incrementAndGet();
+            return null;
+        }
+
+        DataInputStream in = null;
+        try
+        {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(entryFile)));
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION)
+            {
+                misses.incrementAndGet();
+                return null;
+            }
+
+            // The set of included files, and their content, must match.
+            final int includedFileCount = in.readInt();
+            if (includedFileCount != syntaxTree.getIncludedFiles().size())
+            {
+                misses.incrementAndGet();
+                return null;
+            }
+            for (int i = 0; i < includedFileCount; i++)
+            {
+                final String path = in.readUTF();
+                final String fingerprint = in.readUTF();
+                if (!syntaxTree.getIncludedFiles().contains(path) ||
+                    !fingerprint.equals(getFileFingerprint(unit, path, true)))
+                {
+                    misses.incrementAndGet();
+                    return null;
+                }
+            }
+
+            final CompilerProject project = (CompilerProject)unit.getProject();
+            final int dependencyCount = in.readInt();
+            final List<RecordedDependency> dependencies = new ArrayList<RecordedDependency>(dependencyCount);
+            final List<ICompilationUnit> dependees = new ArrayList<ICompilationUnit>(dependencyCount);
+            for (int i = 0; i < dependencyCount; i++)
+            {
+                final RecordedDependency dependency = readDependency(in);
+                final ICompilationUnit dependee = resolveDependee(project, dependency);
+                if (dependee == null || !dependency.fingerprint.equals(getUnitFingerprint(dependee)))
+                {
+                    misses.incrementAndGet();
+                    return null;
+                }
+                dependencies.add(dependency);
+                dependees.add(dependee);
+            }
+
+            final int ancestorCount = in.readInt();
+            for (int i = 0; i < ancestorCount; i++)
+            {
+                final String path = in.readUTF();
+                final String fingerprint = in.readUTF();
+                final Collection<ICompilationUnit> units = project.getWorkspace().getCompilationUnits(path, project);
+                if (units.isEmpty() || !fingerprint.equals(getUnitFingerprint(units.iterator().next())))
+                {
+                    misses.incrementAndGet();
+                    return null;
+                }
+            }
+
+            final byte[] bytes = new byte[in.readInt()];
+            in.readFully(bytes);
+
+            for (int i = 0; i < dependencyCount; i++)
+                replayDependency(project, unit, dependees.get(i), dependencies.get(i));
+
+            hits.incrementAndGet();
+            return new ABCBytesRequestResult(bytes);
+        }
+        catch (IOException e)
+        {
+            // A truncated or unreadable entry is just a miss.
+            misses.incrementAndGet();
+            return null;
+        }
+        finally
+        {
+            IOUtils.closeQuietly(in);
+        }
+    }
+
+    /**
+     * Store the ABC bytes of a compilation unit. Results with problems or
+     * embedded assets are not stored.
+     *
+     * @param unit The compilation unit.
+     * @param result The result of the ABC bytes request of the unit.
+     * @throws InterruptedException
+     */
+    public void store(ICompilationUnit unit, IABCBytesRequestResult result) throws InterruptedException
+    {
+        final ICompilerProblem[] problems = result.getProblems();
+        if ((problems != null && problems.length > 0) ||
+            !result.getEmbeds().isEmpty() ||
+            result.getABCBytes() == null)
+        {
+            return;
+        }
+
+        final String key = computeKey(unit);
+        if (key == null)
+            return;
+
+        final ISyntaxTreeRequestResult syntaxTree = unit.getSyntaxTreeRequest().get();
+        final CompilerProject project = (CompilerProject)unit.getProject();
+        final DependencyGraph graph = project.getDependencyGraph();
+
+        final File entryFile = getEntryFile(key);
+        File tempFile = null;
+        DataOutputStream out = null;
+        try
+        {
+            // The temporary file is in the directory of the entry, so that
+            // it can be moved into place atomically, and has a unique name,
+            // so that concurrent compilers sharing the cache never write to
+            // the same file.
+            final File entryDirectory = entryFile.getParentFile();
+            entryDirectory.mkdirs();
+            tempFile = File.createTempFile(entryFile.getName(), ".tmp", entryDirectory);
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+
+            out.writeInt(syntaxTree.getIncludedFiles().size());
+            for (final String path : syntaxTree.getIncludedFiles())
+            {
+                final String fingerprint = getFileFingerprint(unit, path, true);
+                if (fingerprint == null)
+                    return;
+                out.writeUTF(path);
+                out.writeUTF(fingerprint);
+            }
+
+            final Collection<ICompilationUnit> dependees = graph.getDirectDependencies(unit);
+            out.writeInt(dependees.size());
+            for (final ICompilationUnit dependee : dependees)
+            {
+                final String fingerprint = getUnitFingerprint(dependee);
+                if (fingerprint == null)
+                    return;
+                out.writeUTF(dependee.getAbsoluteFilename());
+                out.writeUTF(fingerprint);
+                final Map<String, DependencyTypeSet> named = graph.getDependencySet(unit, dependee);
+                out.writeInt(named.size());
+                for (final Map.Entry<String, DependencyTypeSet> entry : named.entrySet())
+                {
+                    out.writeUTF(entry.getKey());
+                    out.writeUTF(DependencyType.getTypeString(entry.getValue()));
+                }
+                out.writeUTF(DependencyType.getTypeString(graph.getDependencyTypes(unit, dependee)));
+            }
+
+            final Map<String, String> ancestors = getAncestorFingerprints(project, graph, unit, dependees);
+            if (ancestors == null)
+                return;
+            out.writeInt(ancestors.size());
+            for (final Map.Entry<String, String> ancestor : ancestors.entrySet())
+            {
+                out.writeUTF(ancestor.getKey());
+                out.writeUTF(ancestor.getValue());
+            }
+
+            final byte[] bytes = result.getABCBytes();
+            out.writeInt(bytes.length);
+            out.write(bytes);
+            out.close();
+            out = null;
+
+            // Publish the entry atomically so a concurrent reader never
+            // observes a partially written file.
+            try
+            {
+                Files.move(tempFile.toPath(), entryFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            }
+            catch (AtomicMoveNotSupportedException e)
+            {
+                Files.move(tempFile.toPath(), entryFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            stores.incrementAndGet();
+        }
+        catch (IOException e)
+        {
+            // The cache is an optimization; failing to write an entry
+            // must not fail the build.
+        }
+        finally
+        {
+            IOUtils.closeQuietly(out);
+            if (tempFile != null)
+                tempFile.delete();
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s (%s): %d hits, %d misses, %d stored",
+                getClass().getSimpleName(), directory, hits.get(), misses.get(), stores.get());
+    }
+
+    private File getEntryFile(String key)
+    {
+        return new File(new File(directory, key.substring(0, 2)), key + ENTRY_EXTENSION);
+    }
+
+    private String computeKey(ICompilationUnit unit)
+    {
+        final String contentFingerprint = getFileFingerprint(unit, unit.getAbsoluteFilename(), true);
+        if (contentFingerprint == null)
+            return null;
+        return Hashing.sha256().newHasher()
+                .putString(VersionInfo.buildMessage(), StandardCharsets.UTF_8).putByte((byte)0)
+                .putString(configurationDigest, StandardCharsets.UTF_8).putByte((byte)0)
+                .putString(CodeGeneratorManager.getCodeGenerator().getClass().getName(), StandardCharsets.UTF_8).putByte((byte)0)
+                .putString(unit.getAbsoluteFilename(), StandardCharsets.UTF_8).putByte((byte)0)
+                .putString(contentFingerprint, StandardCharsets.UTF_8)
+                .hash().toString();
+    }
+
+    /**
+     * Source units are fingerprinted by content, since their file
+     * specification may be an unsaved in-memory document. Everything else
+     * (SWCs, ABC files, embedded assets) is fingerprinted by size and time
+     * stamp to avoid hashing large binaries.
+     */
+    private String getUnitFingerprint(ICompilationUnit unit)
+    {
+        final UnitType type = unit.getCompilationUnitType();
+        final boolean hashContent = type == UnitType.AS_UNIT ||
+                                    type == UnitType.MXML_UNIT ||
+                                    type == UnitType.FXG_UNIT ||
+                                    type == UnitType.CSS_UNIT;
+        return getFileFingerprint(unit, unit.getAbsoluteFilename(), hashContent);
+    }
+
+    private String getFileFingerprint(ICompilationUnit unit, String path, boolean hashContent)
+    {
+        final IFileSpecification fileSpec = unit.getProject().getWorkspace().getFileSpecification(path);
+        final long lastModified = fileSpec.getLastModified();
+        final String memoKey = (hashContent ? "c:" : "t:") + path;
+        final Fingerprint memo = fingerprints.get(memoKey);
+        if (memo != null && memo.lastModified == lastModified)
+            return memo.value;
+
+        final String value;
+        if (hashContent)
+        {
+            Reader reader = null;
+            try
+            {
+                reader = fileSpec.createReader();
+                value = Hashing.sha256().hashString(IOUtils.toString(reader), StandardCharsets.UTF_8).toString();
+            }
+            catch (IOException e)
+            {
+                return null;
+            }
+            finally
+            {
+                IOUtils.closeQuietly(reader);
+            }
+        }
+        else
+        {
+            value = new File(path).length() + "@" + lastModified;
+        }
+        fingerprints.put(memoKey, new Fingerprint(lastModified, value));
+        return value;
+    }
+
+    /**
+     * Collect the compilation units that define the ancestor classes and
+     * interfaces of the types the unit depends on, other than the direct
+     * dependees, which are already recorded.
+     * 
+     * @return fingerprints by path, or null if a unit can't be
+     * fingerprinted.
+     */
+    private Map<String, String> getAncestorFingerprints(CompilerProject project, DependencyGraph graph,
+                                                        ICompilationUnit unit, Collection<ICompilationUnit> dependees)
+    {
+        final Set<String> dependeePaths = new HashSet<String>();
+        for (final ICompilationUnit dependee : dependees)
+            dependeePaths.add(dependee.getAbsoluteFilename());
+
+        final Map<String, String> result = new TreeMap<String, String>();
+        for (final ICompilationUnit dependee : dependees)
+        {
+            for (final String qname : graph.getDependencySet(unit, dependee).keySet())
+            {
+                final IDefinition definition = project.getScope().findDefinitionByName(qname);
+                if (!(definition instanceof ITypeDefinition))
+                    continue;
+                for (final ITypeDefinition ancestor : ((ITypeDefinition)definition).typeIteratable(project, true))
+                {
+                    final ICompilationUnit ancestorUnit = project.getScope().getCompilationUnitForDefinition(ancestor);
+                    if (ancestorUnit == null)
+                        continue;
+                    final String path = ancestorUnit.getAbsoluteFilename();
+                    if (dependeePaths.contains(path) || result.containsKey(path))
+                        continue;
+                    final String fingerprint = getUnitFingerprint(ancestorUnit);
+                    if (fingerprint == null)
+                        return null;
+                    result.put(path, fingerprint);
+                }
+            }
+        }
+        return result;
+    }
+
+    private static RecordedDependency readDependency(DataInputStream in) throws IOException
+    {
+        final RecordedDependency dependency = new RecordedDependency();
+        dependency.path = in.readUTF();
+        dependency.fingerprint = in.readUTF();
+        final int namedCount = in.readInt();
+        for (int i = 0; i < namedCount; i++)
+        {
+            dependency.qnames.add(in.readUTF());
+            dependency.types.add(in.readUTF());
+        }
+        dependency.anonymousTypes = in.readUTF();
+        return dependency;
+    }
+
+    /**
+     * Find the compilation unit a recorded dependency refers to in the
+     * current project. Named dependencies are resolved through the project
+     * scope, since several units can share one path (such as the scripts of
+     * a SWC). The resolved unit must still come from the recorded path.
+     */
+    private static ICompilationUnit resolveDependee(CompilerProject project, RecordedDependency dependency)
+    {
+        if (!dependency.qnames.isEmpty())
+        {
+            ICompilationUnit dependee = null;
+            for (final String qname : dependency.qnames)
+            {
+                final IDefinition definition = project.getScope().findDefinitionByName(qname);
+                if (definition == null)
+                    return null;
+                final ICompilationUnit unit = project.getScope().getCompilationUnitForDefinition(definition);
+                if (unit == null || (dependee != null && unit != dependee))
+                    return null;
+                dependee = unit;
+            }
+            return dependency.path.equals(dependee.getAbsoluteFilename()) ? dependee : null;
+        }
+
+        final Collection<ICompilationUnit> units = project.getWorkspace().getCompilationUnits(dependency.path, project);
+        return units.size() == 1 ? units.iterator().next() : null;
+    }
+
+    private static void replayDependency(CompilerProject project, ICompilationUnit unit,
+                                         ICompilationUnit dependee, RecordedDependency dependency)
+    {
+        for (int i = 0; i < dependency.qnames.size(); i++)
+            project.addDependency(unit, dependee, toTypeSet(dependency.types.get(i)), dependency.qnames.get(i));
+
+        for (final DependencyType type : toTypeSet(dependency.anonymousTypes))
+            project.addDependency(unit, dependee, type);
+    }
+
+    private static DependencyTypeSet toTypeSet(String typeString)
+    {
+        final DependencyTypeSet types = DependencyTypeSet.noneOf();
+        for (int i = 0; i < typeString.length(); i++)
+            types.add(DependencyType.get(typeString.charAt(i)));
+        return types;
+    }
+}
@@ -19,63 +19,121 @@
 
 package org.apache.royale.compiler.internal.caches;
 
-import java.lang.ref.SoftReference;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
-
 import com.google.common.base.Joiner;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.CacheLoader.InvalidCacheLoadException;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.LoadingCache;
+import com.google.common.cache.Weigher;
+import com.google.common.util.concurrent.ExecutionError;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 
 /**
  * A key-value pair cache store that supports concurrent access.
+ * <p>
+ * Each value is created once: when several threads miss the same key at the
+ * same time, one of them calls {@link #createEntryValue(CacheStoreKeyBase)}
+ * and the others wait for its result. Threads that need other keys are not
+ * blocked.
+ * <p>
+ * A store can be bounded by a maximum total weight, in which case the least
+ * recently used entries are evicted when the bound is exceeded. The weight
+ * of an entry is 1 unless a subclass overrides
+ * {@link #weigh(CacheStoreKeyBase, Object)}. The bound of a store can be
+ * changed with the {@code royale.cache.<class name>.maximumWeight} system
+ * property, where the class name is the simple name of the store class, for
+ * example {@code royale.cache.SWFCache.maximumWeight}.
  */
 public abstract class ConcurrentCacheStoreBase<T>
 {
     /**
-     * Initialize the cache store.
+     * Used as the maximum weight of unbounded stores.
+     */
+    public static final long UNBOUNDED = -1;
+
+    /**
+     * Initialize an unbounded cache store.
      */
     protected ConcurrentCacheStoreBase()
     {
-        this.cache = new ConcurrentHashMap<CacheStoreKeyBase, SoftReference<T>>();
+        this(UNBOUNDED);
+    }
+
+    /**
+     * Initialize a cache store.
+     * 
+     * @param defaultMaximumWeight the maximum total weight of the entries,
+     * unless overridden by a system property, or {@link #UNBOUNDED}.
+     */
+    protected ConcurrentCacheStoreBase(long defaultMaximumWeight)
+    {
+        final long maximumWeight = Long.getLong(
+                "royale.cache." + getClass().getSimpleName() + ".maximumWeight",
+                defaultMaximumWeight);
+
+        final CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder().recordStats();
+        if (maximumWeight >= 0)
+        {
+            builder.maximumWeight(maximumWeight).weigher(new Weigher<CacheStoreKeyBase, T>()
+            {
+                @Override
+                public int weigh(CacheStoreKeyBase key, T value)
+                {
+                    return ConcurrentCacheStoreBase.this.weigh(key, value);
+                }
+            });
+        }
+        this.cache = builder.build(new CacheLoader<CacheStoreKeyBase, T>()
+        {
+            @Override
+            public T load(CacheStoreKeyBase key)
+            {
+                return createEntryValue(key);
+            }
+        });
     }
 
-    private final ConcurrentMap<CacheStoreKeyBase, SoftReference<T>> cache;
+    private final LoadingCache<CacheStoreKeyBase, T> cache;
 
     /**
      * Get a value from the cache store. If the cache doesn't have a valid
      * entry, it will obtain the value, add to the cache and return the value.
      * <p>
-     * The implementation is thread-safe. The API looks like a "read" access,
-     * but when the cache doesn't have a hit, it will write an entry to the
-     * cache table. The first attempt queries the cache, so the read-lock allows
-     * parallelized read if no other thread is writing the cache. If there's no
-     * hit, the second attempt is to create a valid entry, store it in the cache
-     * and return it. This requires upgrading the read-lock to a write-lock.
+     * The implementation is thread-safe. If another thread is already
+     * creating the value of the key, this waits for that value instead of
+     * creating it again. Exceptions thrown by
+     * {@link #createEntryValue(CacheStoreKeyBase)} are thrown to every thread
+     * that waited for the value, and nothing is cached.
      * 
      * @param key cache key
      * @return cached value
      */
     public final T get(CacheStoreKeyBase key)
     {
-        T result = null;
-
-        if (cache.containsKey(key))
+        final T result;
+        try
         {
-            result = cache.get(key).get();
+            result = cache.getUnchecked(key);
         }
-
-        // create entry and store in cache
-        if (result == null)
+        catch (InvalidCacheLoadException e)
         {
-            result = createEntryValue(key);
-            if (result == null)
-                throw new NullPointerException("Null value not allowed in cache store.");
-            cache.put(key, new SoftReference<T>(result));
-
+            throw new NullPointerException("Null value not allowed in cache store.");
+        }
+        catch (UncheckedExecutionException e)
+        {
+            // Rethrow what createEntryValue() threw.
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException)e.getCause();
+            throw e;
+        }
+        catch (ExecutionError e)
+        {
+            throw (Error)e.getCause();
         }
 
         assert result != null : "Expected non-null value from cache.";
         return result;
-
     }
 
     /**
@@ -86,10 +144,7 @@ public abstract class ConcurrentCacheStoreBase<T>
      */
     public final T remove(CacheStoreKeyBase key)
     {
-        SoftReference<T> entryRef = cache.remove(key);
-        if (entryRef == null)
-            return null;
-        return entryRef.get();
+        return cache.asMap().remove(key);
     }
 
     /**
@@ -99,26 +154,52 @@ public abstract class ConcurrentCacheStoreBase<T>
      */
     public int size()
     {
-        return cache.size();
+        return (int)cache.size();
+    }
+
+    /**
+     * Get the hit, miss, load and eviction counts of the cache store since it
+     * was created.
+     * 
+     * @return statistics
+     */
+    public CacheStats getStats()
+    {
+        return cache.stats();
     }
 
     /**
      * Concrete class must implement this method to create a cache value object.
      * Do NOT add the value to the cache in this method. {@link #get(CacheStoreKeyBase)} is
      * responsible for reading and writing the cache table.
+     * <p>
+     * This method must not get the value of the same key from this store.
      * 
      * @param key cache key
      * @return object to be cached.
      */
     protected abstract T createEntryValue(CacheStoreKeyBase key);
 
+    /**
+     * Weight of an entry, used to bound the size of the store. Must not
+     * change while the entry is cached.
+     * 
+     * @param key cache key
+     * @param value cached value
+     * @return weight, 1 by default.
+     */
+    protected int weigh(CacheStoreKeyBase key, T value)
+    {
+        return 1;
+    }
+
     @Override
     public String toString()
     {
         final StringBuilder result = new StringBuilder();
         result.append(getClass().getSimpleName());
         result.append(" (").append(cache.size()).append(") {");
-        result.append(Joiner.on(", ").join(cache.keySet()));
+        result.append(Joiner.on(", ").join(cache.asMap().keySet()));
         result.append("} ");
         return result.toString();
     }
@@ -0,0 +1,293 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+
+package org.apache.royale.compiler.internal.caches;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+
+import org.apache.commons.io.IOUtils;
+
+import org.apache.royale.compiler.common.VersionInfo;
+import org.apache.royale.swf.Header;
+import org.apache.royale.swf.ISWF;
+import org.apache.royale.swf.SWF;
+import org.apache.royale.swf.SWFFrame;
+import org.apache.royale.swf.io.SWFReader;
+import org.apache.royale.swf.io.SWFWriter;
+import org.apache.royale.swf.tags.ICharacterTag;
+import org.apache.royale.swf.tags.IManagedTag;
+import org.apache.royale.swf.tags.ITag;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+/**
+ * An on-disk cache of transcoded embedded assets, shared by all compiler
+ * processes and projects through a cache directory. Builds that embed the
+ * same image or sound with the same attributes read the SWF tags from this
+ * cache instead of decoding and encoding the asset again.
+ * <p>
+ * Entries are content addressed: the key is a digest of the compiler build,
+ * the transcoder, the embed attributes and the bytes of the asset, so an
+ * entry is valid for any file with the same content. Entries are written
+ * once, atomically, and never modified.
+ * <p>
+ * Format: int magic, int version, UTF compiler build, UTF key, UTF symbol
+ * name, int length, then an uncompressed SWF of one frame with the tags.
+ * The assets are exported in the SymbolClass tag of the frame; the other
+ * tags are the additional tags of the transcoder. Symbol names that start
+ * with the stored symbol name are renamed to the symbol name of the loading
+ * embed, so the same asset embedded by different classes shares an entry.
+ */
+public class EmbedTranscodingCache
+{
+    private static final int MAGIC = 0x52454D42; // "REMB"
+    private static final int FORMAT_VERSION = 1;
+    private static final String ENTRY_EXTENSION = ".rembed";
+
+    /**
+     * Version of the SWF the tags are written in. It only has to be recent
+     * enough for all the tags the transcoders create.
+     */
+    private static final int SWF_VERSION = 14;
+
+    /**
+     * Compute the key of a transcoded asset.
+     * 
+     * @param transcoderName The name of the transcoder.
+     * @param attributes The embed attributes that affect the transcoding,
+     * sorted by name.
+     * @param assetBytes The bytes of the asset.
+     * @return The key.
+     */
+    public static String computeKey(String transcoderName, SortedMap<String, String> attributes, byte[] assetBytes)
+    {
+        final Hasher hasher = Hashing.sha256().newHasher();
+        hasher.putString(VersionInfo.buildMessage(), StandardCharsets.UTF_8);
+        hasher.putInt(FORMAT_VERSION);
+        hasher.putString(transcoderName, StandardCharsets.UTF_8);
+        hasher.putInt(attributes.size());
+        for (Map.Entry<String, String> attribute : attributes.entrySet())
+        {
+            hasher.putString(attribute.getKey(), StandardCharsets.UTF_8);
+            hasher.putByte((byte)0);
+            hasher.putString(attribute.getValue(), StandardCharsets.UTF_8);
+            hasher.putByte((byte)0);
+        }
+        hasher.putInt(assetBytes.length);
+        hasher.putBytes(assetBytes);
+        return hasher.hash().toString();
+    }
+
+    /**
+     * Create a cache in the specified directory.
+     * 
+     * @param directory Directory of the cache. It is created on demand.
+     */
+    public EmbedTranscodingCache(File directory)
+    {
+        this.directory = directory;
+    }
+
+    private final File directory;
+
+    /**
+     * @return The directory of the cache.
+     */
+    public File getDirectory()
+    {
+        return directory;
+    }
+
+    /**
+     * Load a transcoded asset.
+     * 
+     * @param key The key from {@link #computeKey}.
+     * @param symbolName The symbol name of the embed.
+     * @param tags The additional tags of the asset are added to this
+     * collection if the entry is valid.
+     * @return Map of symbol name to character asset tags, or null if there is
+     * no valid entry.
+     */
+    public Map<String, ICharacterTag> load(String key, String symbolName, Collection<ITag> tags)
+    {
+        final File entryFile = getEntryFile(key);
+        if (!entryFile.isFile())
+            return null;
+
+        DataInputStream in = null;
+        try
+        {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(entryFile)));
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION)
+                return null;
+            if (!VersionInfo.buildMessage().equals(in.readUTF()) || !key.equals(in.readUTF()))
+                return null;
+            final String storedSymbolName = in.readUTF();
+            final byte[] swfBytes = new byte[in.readInt()];
+            in.readFully(swfBytes);
+
+            final SWFReader reader = new SWFReader();
+            final ISWF swf;
+            try
+            {
+                swf = reader.readFrom(new ByteArrayInputStream(swfBytes), entryFile.getPath());
+            }
+            finally
+            {
+                reader.close();
+            }
+            if (!reader.getProblems().isEmpty() || swf.getFrameCount() != 1)
+                return null;
+
+            final SWFFrame frame = swf.getFrameAt(0);
+            final List<ITag> additionalTags = new ArrayList<ITag>();
+            final Map<String, ICharacterTag> assetTags = new LinkedHashMap<String, ICharacterTag>();
+            for (ITag tag : frame)
+            {
+                if (tag instanceof IManagedTag)
+                    continue;
+
+                final String name = tag instanceof ICharacterTag ? frame.getSymbolName((ICharacterTag)tag) : null;
+                if (name == null)
+                    additionalTags.add(tag);
+                else if (name.startsWith(storedSymbolName))
+                    assetTags.put(symbolName + name.substring(storedSymbolName.length()), (ICharacterTag)tag);
+                else
+                    assetTags.put(name, (ICharacterTag)tag);
+            }
+            if (assetTags.isEmpty())
+                return null;
+
+            tags.addAll(additionalTags);
+            return assetTags;
+        }
+        catch (IOException e)
+        {
+            return null;
+        }
+        catch (RuntimeException e)
+        {
+            // A truncated or corrupted entry.
+            return null;
+        }
+        finally
+        {
+            IOUtils.closeQuietly(in);
+        }
+    }
+
+    /**
+     * Store a transcoded asset. The entry is replaced atomically, so
+     * processes reading the previous entry are not affected.
+     * 
+     * @param key The key from {@link #computeKey}.
+     * @param symbolName The symbol name of the embed.
+     * @param tags The additional tags of the asset.
+     * @param assetTags Map of symbol name to character asset tags.
+     * @throws IOException error writing the entry.
+     */
+    public void store(String key, String symbolName, Collection<ITag> tags, Map<String, ICharacterTag> assetTags) throws IOException
+    {
+        final SWFFrame frame = new SWFFrame();
+        for (ITag tag : tags)
+            frame.addTag(tag);
+        for (Map.Entry<String, ICharacterTag> assetTag : assetTags.entrySet())
+        {
+            frame.addTag(assetTag.getValue());
+            frame.defineSymbol(assetTag.getValue(), assetTag.getKey());
+        }
+
+        final SWF swf = new SWF();
+        swf.setVersion(SWF_VERSION);
+        swf.addFrame(frame);
+        final ByteArrayOutputStream swfBytes = new ByteArrayOutputStream();
+        final SWFWriter writer = new SWFWriter(swf, Header.Compression.NONE);
+        try
+        {
+            writer.writeTo(swfBytes);
+        }
+        finally
+        {
+            writer.close();
+        }
+
+        if (!directory.isDirectory() && !directory.mkdirs() && !directory.isDirectory())
+            throw new IOException("can't create " + directory);
+
+        final File entryFile = getEntryFile(key);
+        final File tempFile = File.createTempFile(entryFile.getName(), ".tmp", directory);
+        try
+        {
+            final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+            try
+            {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeUTF(VersionInfo.buildMessage());
+                out.writeUTF(key);
+                out.writeUTF(symbolName);
+                out.writeInt(swfBytes.size());
+                swfBytes.writeTo(out);
+            }
+            finally
+            {
+                out.close();
+            }
+
+            try
+            {
+                Files.move(tempFile.toPath(), entryFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            }
+            catch (AtomicMoveNotSupportedException e)
+            {
+                Files.move(tempFile.toPath(), entryFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        finally
+        {
+            tempFile.delete();
+        }
+    }
+
+    private File getEntryFile(String key)
+    {
+        return new File(directory, key + ENTRY_EXTENSION);
+    }
+}
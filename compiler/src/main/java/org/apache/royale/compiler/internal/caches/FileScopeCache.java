@@ -19,9 +19,13 @@
 
 package org.apache.royale.compiler.internal.caches;
 
+import java.io.File;
 import java.io.IOException;
-import java.lang.ref.SoftReference;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.royale.compiler.caches.IFileScopeCache;
 import org.apache.royale.compiler.internal.abc.ABCScopeBuilder;
@@ -29,6 +33,7 @@ import org.apache.royale.compiler.internal.scopes.ASFileScope;
 import org.apache.royale.compiler.internal.scopes.SWCFileScopeProvider;
 import org.apache.royale.compiler.scopes.IASScope;
 import org.apache.royale.swc.ISWC;
+import org.apache.royale.swc.ISWCLibrary;
 import org.apache.royale.swc.ISWCScript;
 import org.apache.royale.swc.SWCManager;
 import org.apache.royale.swf.ITagContainer;
@@ -39,7 +44,12 @@ import org.apache.royale.swf.tags.DoABCTag;
  * SWF. The tag contains an ABC script which has a top-level file scope with one
  * or many public definitions inside. The {@code FileScopeCache} is a table of
  * key-value pairs. The key is a string in the form: {@code swc/library/script}.
- * The value is a {@link SoftReference} to a collection of {@link ASFileScope}s.
+ * The value is a collection of {@link ASFileScope}s.
+ * <p>
+ * If a definition index directory is set, the scopes are built from the
+ * {@link SWCDefinitionIndex} of the SWC instead of the library SWF, so the
+ * library SWF is only read once per SWC version, by the first process that
+ * needs it.
  */
 public class FileScopeCache extends ConcurrentCacheStoreBase<Collection<IASScope>> implements IFileScopeCache
 {
@@ -85,12 +95,148 @@ public class FileScopeCache extends ConcurrentCacheStoreBase<Collection<IASScope
 
     public FileScopeCache(SWCManager swcManager)
     {
-        super();
+        super(DEFAULT_MAXIMUM_WEIGHT);
         this.swcManager = swcManager;
     }
     
     private final SWCManager swcManager;
 
+    /**
+     * The number of scripts whose scopes are cached.
+     */
+    private static final long DEFAULT_MAXIMUM_WEIGHT = 100000;
+
+    private volatile File definitionIndexDirectory;
+
+    // Loaded definition indexes, by SWC path.
+    private final Map<String, SWCDefinitionIndex> definitionIndexes =
+            new ConcurrentHashMap<String, SWCDefinitionIndex>();
+
+    // SWCs that could not be indexed, for example because their library
+    // SWF has problems.
+    private final Set<String> unindexedSWCs = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Set the directory where the definition indexes of SWCs are kept.
+     * 
+     * @param directory the directory, or null to always read the library
+     * SWFs.
+     */
+    public void setDefinitionIndexDirectory(File directory)
+    {
+        if (directory == null ? definitionIndexDirectory == null : directory.equals(definitionIndexDirectory))
+            return;
+        definitionIndexDirectory = directory;
+        definitionIndexes.clear();
+        unindexedSWCs.clear();
+    }
+
+    /**
+     * Get the definition index of a SWC if it already exists, without
+     * creating it.
+     * 
+     * @param swc the SWC.
+     * @return the index, or null if there is no valid index.
+     */
+    public SWCDefinitionIndex findDefinitionIndex(ISWC swc)
+    {
+        final File directory = definitionIndexDirectory;
+        if (directory == null)
+            return null;
+        final File swcFile = swc.getSWCFile();
+        final String path = swcFile.getAbsolutePath();
+        SWCDefinitionIndex index = definitionIndexes.get(path);
+        if (index == null && !unindexedSWCs.contains(path))
+        {
+            index = SWCDefinitionIndex.load(SWCDefinitionIndex.getIndexFile(directory, swcFile), swcFile);
+            if (index != null)
+                definitionIndexes.put(path, index);
+        }
+        return index;
+    }
+
+    /**
+     * Get the definition index of a SWC, creating it from the library SWFs
+     * if needed.
+     * 
+     * @param swc the SWC.
+     * @return the index, or null if definition indexes are disabled or the
+     * SWC can't be indexed.
+     */
+    private SWCDefinitionIndex getDefinitionIndex(ISWC swc)
+    {
+        SWCDefinitionIndex index = findDefinitionIndex(swc);
+        if (index != null || definitionIndexDirectory == null)
+            return index;
+
+        final File swcFile = swc.getSWCFile();
+        final String path = swcFile.getAbsolutePath();
+        synchronized (this)
+        {
+            index = findDefinitionIndex(swc);
+            if (index != null || unindexedSWCs.contains(path))
+                return index;
+
+            final Map<String, byte[]> scriptABCs = new HashMap<String, byte[]>();
+            for (ISWCLibrary library : swc.getLibraries())
+            {
+                final CacheStoreKeyBase swfCacheKey = SWFCache.createKey(swc, library.getPath());
+                final ITagContainer tags = ((SWFCache)swcManager.getSWFCache()).get(swfCacheKey);
+                if (!tags.getProblems().isEmpty())
+                {
+                    // Problems are reported from the library SWF, so it has
+                    // to be read by every build.
+                    unindexedSWCs.add(path);
+                    return null;
+                }
+                for (ISWCScript script : library.getScripts())
+                {
+                    final DoABCTag abcTag = SWFCache.findDoABCTagByName(tags, script.getName());
+                    if (abcTag != null)
+                        scriptABCs.put(getIndexEntryName(library.getPath(), script.getName()), abcTag.getABCData());
+                }
+            }
+
+            final File indexFile = SWCDefinitionIndex.getIndexFile(definitionIndexDirectory, swcFile);
+            try
+            {
+                SWCDefinitionIndex.write(indexFile, swcFile, scriptABCs);
+            }
+            catch (IOException e)
+            {
+                // The index is only an optimization.
+            }
+            catch (RuntimeException e)
+            {
+                // ABC that ABCParser can't strip.
+            }
+            index = SWCDefinitionIndex.load(indexFile, swcFile);
+            if (index != null)
+                definitionIndexes.put(path, index);
+            else
+                unindexedSWCs.add(path);
+            return index;
+        }
+    }
+
+    /**
+     * Forget the definition index of a SWC, for example because the SWC
+     * changed.
+     * 
+     * @param swc the SWC.
+     */
+    public void removeDefinitionIndex(ISWC swc)
+    {
+        final String path = swc.getSWCFile().getAbsolutePath();
+        definitionIndexes.remove(path);
+        unindexedSWCs.remove(path);
+    }
+
+    private static String getIndexEntryName(String librarySWFPath, String scriptName)
+    {
+        return librarySWFPath + ":" + scriptName;
+    }
+
     /**
      * Get the {@link ASFileScope}s associated with the key.
      * 
@@ -103,17 +249,26 @@ public class FileScopeCache extends ConcurrentCacheStoreBase<Collection<IASScope
             throw new IllegalArgumentException("expect FileScopeCacheKey but got " + key.getClass().getSimpleName());
 
         final FileScopeCacheKey fileScopeCacheKey = (FileScopeCacheKey)key;
-        final CacheStoreKeyBase swfCacheKey = SWFCache.createKey(fileScopeCacheKey.swc, fileScopeCacheKey.swfPath);
-        final ITagContainer tags = ((SWFCache)swcManager.getSWFCache()).get(swfCacheKey);
+        byte[] abcData = null;
+        final SWCDefinitionIndex index = getDefinitionIndex(fileScopeCacheKey.swc);
+        if (index != null)
+            abcData = index.getScriptABC(getIndexEntryName(fileScopeCacheKey.swfPath, fileScopeCacheKey.scriptName));
+        if (abcData == null)
+        {
+            final CacheStoreKeyBase swfCacheKey = SWFCache.createKey(fileScopeCacheKey.swc, fileScopeCacheKey.swfPath);
+            final ITagContainer tags = ((SWFCache)swcManager.getSWFCache()).get(swfCacheKey);
+            final DoABCTag abcTag = SWFCache.findDoABCTagByName(tags, fileScopeCacheKey.scriptName);
+            if (abcTag != null)
+                abcData = abcTag.getABCData();
+        }
 
-        final DoABCTag abcTag = SWFCache.findDoABCTagByName(tags, fileScopeCacheKey.scriptName);
-        if (abcTag != null)
+        if (abcData != null)
         {
             try
             {
                 final ABCScopeBuilder abcScopeBuilder = new ABCScopeBuilder(
                         swcManager.getWorkspace(), 
-                        abcTag.getABCData(), 
+                        abcData, 
                         fileScopeCacheKey.swc.getSWCFile().getCanonicalPath(),
                         SWCFileScopeProvider.getInstance());
                 return abcScopeBuilder.build();
@@ -20,7 +20,6 @@
 package org.apache.royale.compiler.internal.caches;
 
 import java.io.FileNotFoundException;
-import java.lang.ref.SoftReference;
 import java.util.List;
 
 import org.apache.commons.io.IOUtils;
@@ -33,7 +32,10 @@ import org.apache.royale.compiler.internal.parsing.mxml.MXMLTokenizer;
 /**
  * Concurrent cache for parsed MXML models. The cache is a list of key-value pairs.
  * The key is an {@code IFileSpecificaton} for an MXML file.
- * The value is a {@link SoftReference} to a DOM-like {@link MXMLData} object.
+ * The value is a DOM-like {@link MXMLData} object. The cache is bounded by
+ * the size of the cached files rather than their number, so that workspaces
+ * with thousands of small components keep all of them, while a few very large
+ * generated files can't hold on to an unbounded amount of memory.
  */
 public class MXMLDataCache extends ConcurrentCacheStoreBase<MXMLData>
 {
@@ -64,9 +66,21 @@ public class MXMLDataCache extends ConcurrentCacheStoreBase<MXMLData>
      */
     public MXMLDataCache()
     {
-        super();
+        super(DEFAULT_MAXIMUM_WEIGHT);
     }
-    
+
+    /**
+     * 64 MB of MXML source, which is more than ten thousand components of a
+     * typical size. A model also holds on to the characters of its file.
+     */
+    private static final long DEFAULT_MAXIMUM_WEIGHT = 64 * 1024;
+
+    @Override
+    protected int weigh(CacheStoreKeyBase key, MXMLData mxmlData)
+    {
+        return 1 + mxmlData.getEnd() / 1024;
+    }
+
     /**
      * Get the {@code MXMLData} to be associated with the key.
      * 
@@ -82,7 +96,7 @@ public class MXMLDataCache extends ConcurrentCacheStoreBase<MXMLData>
         final MXMLTokenizer tokenizer = new MXMLTokenizer(fileSpec);
         try
         {
-            List<MXMLToken> tokens = tokenizer.parseTokens(fileSpec.createReader());
+            List<MXMLToken> tokens = tokenizer.parseTokens(fileSpec);
             
             // Build tags and attributes from the tokens.
             final MXMLData mxmlData = new MXMLData(tokens, tokenizer.getPrefixMap(), fileSpec);
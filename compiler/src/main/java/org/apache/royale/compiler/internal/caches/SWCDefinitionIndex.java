@@ -0,0 +1,269 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.compiler.internal.caches;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.royale.abc.ABCParser;
+import org.apache.royale.abc.visitors.NilABCVisitor;
+import org.apache.royale.compiler.common.VersionInfo;
+
+import com.google.common.hash.Hashing;
+
+/**
+ * A precomputed index of the definitions in a SWC, shared by all compiler
+ * processes through a cache directory.
+ * <p>
+ * Building the file scopes of a SWC requires the library SWF, which has to
+ * be inflated and parsed as a whole even if only a few of its scripts are
+ * used. The index stores, for every script of the SWC, the declarations part
+ * of its ABC: the constant pools, method signatures, metadata, classes,
+ * traits and script initializers, without the method bodies. That is all
+ * {@link org.apache.royale.compiler.internal.abc.ABCScopeBuilder} reads to
+ * build the definitions, so scopes built from the index are the same as the
+ * ones built from the library SWF.
+ * <p>
+ * Index files are written once, atomically, and never modified, so they are
+ * memory-mapped and several compiler processes share the pages. An index is
+ * only used if it was written by the same format version and compiler build
+ * for a SWC with the same path, length and time stamp.
+ * <p>
+ * Format: int magic, int version, UTF compiler build, UTF SWC path, long SWC
+ * length, long SWC time stamp, int script count, int offset of the data,
+ * then for every script UTF name, int offset in the data and int length of
+ * its ABC, followed by the data.
+ */
+public class SWCDefinitionIndex
+{
+    private static final int MAGIC = 0x52444958; // "RDIX"
+    private static final int FORMAT_VERSION = 1;
+    private static final String EXTENSION = ".rdi";
+
+    /**
+     * Get the file of the index of a SWC in the index directory.
+     */
+    public static File getIndexFile(File directory, File swcFile)
+    {
+        final String path = swcFile.getAbsolutePath();
+        final String name = Hashing.sha256().hashString(path, StandardCharsets.UTF_8).toString();
+        return new File(directory, name + EXTENSION);
+    }
+
+    /**
+     * Load the index of a SWC.
+     *
+     * @param indexFile The index file.
+     * @param swcFile The SWC the index is expected to describe.
+     * @return The index, or null if there is no valid index of the current
+     * version of the SWC.
+     */
+    public static SWCDefinitionIndex load(File indexFile, File swcFile)
+    {
+        if (!indexFile.isFile())
+            return null;
+        try
+        {
+            final ByteBuffer buffer;
+            final FileChannel channel = FileChannel.open(indexFile.toPath(), StandardOpenOption.READ);
+            try
+            {
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+            finally
+            {
+                channel.close();
+            }
+
+            if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION)
+                return null;
+            if (!VersionInfo.buildMessage().equals(readUTF(buffer)))
+                return null;
+            if (!swcFile.getAbsolutePath().equals(readUTF(buffer)) ||
+                buffer.getLong() != swcFile.length() ||
+                buffer.getLong() != swcFile.lastModified())
+            {
+                return null;
+            }
+
+            final int count = buffer.getInt();
+            final int dataOffset = buffer.getInt();
+            final Map<String, long[]> scripts = new HashMap<String, long[]>(count * 2);
+            for (int i = 0; i < count; i++)
+            {
+                final String name = readUTF(buffer);
+                final int offset = dataOffset + buffer.getInt();
+                final int length = buffer.getInt();
+                if (offset < 0 || length < 0 || offset + length > buffer.limit())
+                    return null;
+                scripts.put(name, new long[] {offset, length});
+            }
+            return new SWCDefinitionIndex(buffer, scripts);
+        }
+        catch (IOException e)
+        {
+            return null;
+        }
+        catch (RuntimeException e)
+        {
+            // BufferUnderflowException etc. for a truncated file.
+            return null;
+        }
+    }
+
+    /**
+     * Write the index of a SWC. The file is replaced atomically, so
+     * processes that mapped the previous version are not affected.
+     *
+     * @param indexFile The index file.
+     * @param swcFile The SWC.
+     * @param scriptABCs The complete ABC of every script in the SWC, by
+     * script name.
+     * @throws IOException error writing the index.
+     */
+    public static void write(File indexFile, File swcFile, Map<String, byte[]> scriptABCs) throws IOException
+    {
+        final Map<String, byte[]> declarations = new HashMap<String, byte[]>();
+        for (Map.Entry<String, byte[]> entry : scriptABCs.entrySet())
+            declarations.put(entry.getKey(), stripMethodBodies(entry.getValue()));
+
+        final File directory = indexFile.getParentFile();
+        if (!directory.isDirectory() && !directory.mkdirs() && !directory.isDirectory())
+            throw new IOException("can't create " + directory);
+
+        final File tempFile = File.createTempFile(indexFile.getName(), ".tmp", directory);
+        try
+        {
+            // The table comes before the data, so it is built first.
+            final ByteArrayOutputStream tableBytes = new ByteArrayOutputStream();
+            final DataOutputStream table = new DataOutputStream(tableBytes);
+            int dataOffset = 0;
+            for (Map.Entry<String, byte[]> entry : declarations.entrySet())
+            {
+                table.writeUTF(entry.getKey());
+                table.writeInt(dataOffset);
+                table.writeInt(entry.getValue().length);
+                dataOffset += entry.getValue().length;
+            }
+
+            final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+            try
+            {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeUTF(VersionInfo.buildMessage());
+                out.writeUTF(swcFile.getAbsolutePath());
+                out.writeLong(swcFile.length());
+                out.writeLong(swcFile.lastModified());
+                out.writeInt(declarations.size());
+                out.writeInt(out.size() + 4 + tableBytes.size());
+                tableBytes.writeTo(out);
+                for (byte[] abc : declarations.values())
+                    out.write(abc);
+            }
+            finally
+            {
+                out.close();
+            }
+
+            try
+            {
+                Files.move(tempFile.toPath(), indexFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            }
+            catch (AtomicMoveNotSupportedException e)
+            {
+                Files.move(tempFile.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        finally
+        {
+            tempFile.delete();
+        }
+    }
+
+    /**
+     * Remove the method bodies from an ABC. The method bodies pool is the
+     * last part of an ABC, so it is replaced with an empty pool.
+     */
+    static byte[] stripMethodBodies(byte[] abc)
+    {
+        final ABCParser parser = new ABCParser(abc);
+        parser.parseABC(new NilABCVisitor());
+        final int offset = parser.getMethodBodiesOffset();
+        final byte[] result = new byte[offset + 1];
+        System.arraycopy(abc, 0, result, 0, offset);
+        // An empty method bodies pool: U30 0.
+        result[offset] = 0;
+        return result;
+    }
+
+    /**
+     * Read a string written by {@link DataOutputStream#writeUTF(String)}.
+     * Names in ABC and file paths are not expected to contain characters that
+     * modified UTF-8 encodes differently.
+     */
+    private static String readUTF(ByteBuffer buffer)
+    {
+        final int length = buffer.getShort() & 0xFFFF;
+        final byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private SWCDefinitionIndex(ByteBuffer buffer, Map<String, long[]> scripts)
+    {
+        this.buffer = buffer;
+        this.scripts = scripts;
+    }
+
+    private final ByteBuffer buffer;
+    private final Map<String, long[]> scripts;
+
+    /**
+     * Get the declarations ABC of a script.
+     *
+     * @param scriptName The name of the script, as in the catalog.
+     * @return A copy of the ABC, or null if the SWC has no such script.
+     */
+    public byte[] getScriptABC(String scriptName)
+    {
+        final long[] location = scripts.get(scriptName);
+        if (location == null)
+            return null;
+        final byte[] abc = new byte[(int)location[1]];
+        final ByteBuffer data = buffer.duplicate();
+        data.position((int)location[0]);
+        data.get(abc);
+        return abc;
+    }
+}
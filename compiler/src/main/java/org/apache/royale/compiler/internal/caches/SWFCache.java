@@ -23,17 +23,16 @@ import java.io.BufferedInputStream;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.lang.ref.SoftReference;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
-import java.util.zip.ZipFile;
 
 import org.apache.royale.compiler.caches.ISWFCache;
 import org.apache.royale.compiler.problems.FileInLibraryNotFoundProblem;
 import org.apache.royale.swc.ISWC;
 import org.apache.royale.swc.SWC;
 import org.apache.royale.swc.SWCManager;
+import org.apache.royale.swc.io.SWCArchive;
 import org.apache.royale.swc.io.SWCReader;
 import org.apache.royale.swf.ITagContainer;
 import org.apache.royale.swf.io.SWFReader;
@@ -43,8 +42,8 @@ import org.apache.royale.swf.tags.SymbolClassTag;
 
 /**
  * Cache for parsed SWF models. The cache is a list of key-value pairs. The key
- * is the URI to the SWF file. The value is a {@link SoftReference} to a
- * collection of SWF tags.
+ * is the URI to the SWF file. The value is a collection of SWF tags. The
+ * weight of an entry is the size of its ABC in kilobytes.
  */
 public class SWFCache extends ConcurrentCacheStoreBase<ITagContainer> implements ISWFCache
 {
@@ -85,28 +84,25 @@ public class SWFCache extends ConcurrentCacheStoreBase<ITagContainer> implements
         @Override
         void readSWF(SWFReader swfReader) throws IOException
         {
-            ZipFile zipFile = null;
-            try
+            // Load library SWF inside a SWC. Only this entry is inflated.
+            InputStream swfInputStream = SWCArchive.open(swc.getSWCFile()).getInputStream(swfPath);
+            if (swfInputStream != null)
             {
-                // Load library SWF inside a SWC.
-                zipFile = new ZipFile(swc.getSWCFile(), ZipFile.OPEN_READ);
-                InputStream swfInputStream = SWCReader.getInputStream(zipFile, swfPath);
-                if (swfInputStream != null)
+                try
                 {
                     swfInputStream = new BufferedInputStream(swfInputStream);
                     swfReader.readFrom(swfInputStream, SWCReader.getReportingPath( 
                             swc.getSWCFile().getAbsolutePath(), swfPath));
                 }
-                else if (swc instanceof SWC)
+                finally
                 {
-                    ((SWC)swc).addProblem(new FileInLibraryNotFoundProblem(swfPath, 
-                            swc.getSWCFile().getAbsolutePath()));
+                    swfInputStream.close();
                 }
             }
-            finally
+            else if (swc instanceof SWC)
             {
-                // closes the input steam as well as the zip file.
-                zipFile.close();
+                ((SWC)swc).addProblem(new FileInLibraryNotFoundProblem(swfPath, 
+                        swc.getSWCFile().getAbsolutePath()));
             }
         }
     }
@@ -229,7 +225,24 @@ public class SWFCache extends ConcurrentCacheStoreBase<ITagContainer> implements
      */
     public SWFCache(SWCManager swcManager)
     {
-        super();
+        super(DEFAULT_MAXIMUM_WEIGHT);
+    }
+
+    /**
+     * 256 MB of ABC.
+     */
+    private static final long DEFAULT_MAXIMUM_WEIGHT = 256 * 1024;
+
+    @Override
+    protected int weigh(CacheStoreKeyBase key, ITagContainer tags)
+    {
+        long abcSize = 0;
+        for (final ITag tag : tags)
+        {
+            if (tag instanceof DoABCTag)
+                abcSize += ((DoABCTag)tag).getABCData().length;
+        }
+        return (int)Math.min(Integer.MAX_VALUE, 1 + abcSize / 1024);
     }
 
     /**
@@ -31,6 +31,7 @@ import org.apache.royale.compiler.css.FontFaceSourceType;
 import org.apache.royale.compiler.css.ICSSFontFace;
 import org.apache.royale.compiler.css.ICSSProperty;
 import org.apache.royale.compiler.css.ICSSPropertyValue;
+import com.google.common.collect.ImmutableList;
 
 /**
  * Implementation for {@code @font-face} statement DOM.
@@ -53,6 +54,7 @@ public class CSSFontFace extends CSSNodeBase implements ICSSFontFace
         super(tree, tokenStream, CSSModelTreeType.FONT_FACE);
 
         assert properties != null : "Properties can't be null for @font-face.";
+        this.properties = ImmutableList.copyOf(properties);
 
         ICSSPropertyValue srcValue = null;
         ICSSPropertyValue fontFamilyValue = null;
@@ -112,6 +114,7 @@ public class CSSFontFace extends CSSNodeBase implements ICSSFontFace
         
     }
 
+    private final ImmutableList<CSSProperty> properties;
     private final CSSFunctionCallPropertyValue source;
     private final ArrayList<ICSSPropertyValue> sources = new ArrayList<ICSSPropertyValue>();
     private final String fontFamily;
@@ -120,6 +123,14 @@ public class CSSFontFace extends CSSNodeBase implements ICSSFontFace
     private final boolean isEmbedAsCFF;
     private final boolean isAdvancedAntiAliasing;
 
+    /**
+     * @return The properties in the {@code @font-face} block.
+     */
+    ImmutableList<CSSProperty> getProperties()
+    {
+        return properties;
+    }
+
     public ArrayList<ICSSPropertyValue> getSources()
     {
         return sources;
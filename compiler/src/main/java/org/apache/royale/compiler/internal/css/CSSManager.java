@@ -28,6 +28,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.WeakHashMap;
 
 import org.apache.commons.io.FilenameUtils;
 
@@ -41,6 +42,7 @@ import org.apache.royale.compiler.filespecs.IFileSpecification;
 import org.apache.royale.compiler.internal.caches.CSSDocumentCache;
 import org.apache.royale.compiler.internal.caches.CacheStoreKeyBase;
 import org.apache.royale.compiler.internal.css.codegen.CSSCompilationSession;
+import org.apache.royale.compiler.internal.css.semantics.CSSRuleIndex;
 import org.apache.royale.compiler.internal.projects.RoyaleProject;
 import org.apache.royale.compiler.internal.scopes.ASProjectScope;
 import org.apache.royale.compiler.internal.units.EmbedCompilationUnit;
@@ -51,6 +53,8 @@ import org.apache.royale.compiler.units.ICompilationUnit;
 import org.apache.royale.swc.ISWC;
 import org.apache.royale.swc.ISWCFileEntry;
 import org.apache.royale.swc.ISWCManager;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 
@@ -146,6 +150,29 @@ public class CSSManager implements ICSSManager
     /** Owner project. */
     private final RoyaleProject royaleProject;
 
+    /**
+     * Rule indexes of the CSS documents used by the project. A CSS document
+     * is replaced by a new one when its file changes, so only the changed
+     * document is indexed again.
+     */
+    private final Map<ICSSDocument, CSSRuleIndex> ruleIndexes = new WeakHashMap<ICSSDocument, CSSRuleIndex>();
+
+    /**
+     * The maximum number of style data classes kept by {@link #styleData}.
+     */
+    private static final int MAX_STYLE_DATA = 8;
+
+    /**
+     * The style data classes last generated for the targets of the project, by
+     * class name. A project usually has one or two targets, so only the most
+     * recently generated classes are kept, and they can be collected when the
+     * memory is needed.
+     */
+    private final Cache<String, StyleData> styleData = CacheBuilder.newBuilder()
+            .maximumSize(MAX_STYLE_DATA)
+            .softValues()
+            .<String, StyleData>build();
+
     /**
      * Initialize a CSS manager.
      * 
@@ -205,7 +232,7 @@ public class CSSManager implements ICSSManager
         final ImmutableSet<String> qnames = buildQNameToDefinitionMap(getClassDefinitionSet(definitions)).keySet();
 
         // IFilter (ICSSRule[], IClassDefinition[]) -> (ICSSRule[] applies to IClassDefinition[])
-        final ImmutableSet<ICSSRule> matchedRules = getMatchedRules(session, royaleProject, cssDocument, qnames, problems);
+        final ImmutableSet<ICSSRule> matchedRules = getMatchedRules(session, cssDocument, qnames, problems);
 
         // Find IClassDefinition(ClassReference) and CompilationUnit(Embed) from the matched ICSSRule[] 
         final Set<IClassDefinition> classReferences = new HashSet<IClassDefinition>();
@@ -235,6 +262,125 @@ public class CSSManager implements ICSSManager
                 .build();
     }
 
+    /**
+     * Get the rules in a CSS document that match any of the given QNames. This
+     * has the same result as {@link CSSSemanticAnalyzer#getMatchedRules},
+     * but it reuses the rule index of the document, and only looks up the
+     * QNames that the session hasn't matched against the document yet.
+     * 
+     * @param session CSS compilation session.
+     * @param cssDocument CSS document.
+     * @param qnames QNames of the definitions to be matched by the CSS rules.
+     * @param problems Problems collection.
+     * @return A set of CSS rules matched by one of the given QNames.
+     */
+    private ImmutableSet<ICSSRule> getMatchedRules(
+            final CSSCompilationSession session,
+            final ICSSDocument cssDocument,
+            final ImmutableSet<String> qnames,
+            final Collection<ICompilerProblem> problems)
+    {
+        final CSSRuleIndex index = getRuleIndex(cssDocument);
+        problems.addAll(index.getProblems());
+
+        // Cache the result of selector resolution on the session. 
+        // The CSS code generation will use this map later.
+        session.resolvedSelectors.putAll(index.getResolvedSelectors());
+
+        CSSRuleIndex.Matches matches = session.matchedRules.get(cssDocument);
+        if (matches == null)
+        {
+            matches = new CSSRuleIndex.Matches();
+            session.matchedRules.put(cssDocument, matches);
+        }
+        return index.match(matches, qnames);
+    }
+
+    /**
+     * Get the rule index of a CSS document, and index the document if it
+     * hasn't been indexed with the current manifests and compatibility
+     * version.
+     * 
+     * @param cssDocument CSS document.
+     * @return The rule index of the document.
+     */
+    private CSSRuleIndex getRuleIndex(final ICSSDocument cssDocument)
+    {
+        final boolean isFlex3CSS = isFlex3CSS();
+        synchronized (ruleIndexes)
+        {
+            CSSRuleIndex index = ruleIndexes.get(cssDocument);
+            if (index == null || index.isFlex3CSS() != isFlex3CSS)
+            {
+                index = new CSSRuleIndex(royaleProject, cssDocument, isFlex3CSS);
+                ruleIndexes.put(cssDocument, index);
+            }
+            return index;
+        }
+    }
+
+    /**
+     * Discard the rule indexes of all CSS documents and the generated style
+     * data. This is called when the type selectors might resolve to different
+     * classes, such as when the MXML manifests change.
+     */
+    public void clean()
+    {
+        synchronized (ruleIndexes)
+        {
+            ruleIndexes.clear();
+        }
+        styleData.invalidateAll();
+    }
+
+    /**
+     * Get the ABC of a style data class generated by a previous compilation.
+     * 
+     * @param className Name of the style data class.
+     * @param key Key of the style data, from
+     * {@link CSSCompilationSession#getStyleDataKey}.
+     * @return The ABC of the class, or null if the class hasn't been
+     * generated from the same style data.
+     */
+    public byte[] getStyleDataABC(final String className, final String key)
+    {
+        final StyleData data = styleData.getIfPresent(className);
+        if (data == null || !data.key.equals(key))
+            return null;
+        // Targets own the ABC of their tags, so hand out a copy.
+        return data.abc.clone();
+    }
+
+    /**
+     * Remember the ABC of a generated style data class, so that the next
+     * compilation can reuse it if the style data doesn't change.
+     * 
+     * @param className Name of the style data class.
+     * @param key Key of the style data, from
+     * {@link CSSCompilationSession#getStyleDataKey}.
+     * @param abc The ABC of the class.
+     */
+    public void setStyleDataABC(final String className, final String key, final byte[] abc)
+    {
+        styleData.put(className, new StyleData(key, abc.clone()));
+    }
+
+    /**
+     * A generated style data class and the key of the style data it was
+     * generated from.
+     */
+    private static class StyleData
+    {
+        private StyleData(final String key, final byte[] abc)
+        {
+            this.key = key;
+            this.abc = abc;
+        }
+
+        private final String key;
+        private final byte[] abc;
+    }
+
     @Override
     public Collection<ICSSDocument> getCSSFromThemes(final Collection<ICompilerProblem> problems)
     {
@@ -0,0 +1,554 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+
+package org.apache.royale.compiler.internal.css;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.antlr.runtime.CommonToken;
+import org.antlr.runtime.Token;
+import org.antlr.runtime.tree.CommonTree;
+
+import org.apache.royale.compiler.css.CombinatorType;
+import org.apache.royale.compiler.css.ConditionType;
+import org.apache.royale.compiler.css.ICSSCombinator;
+import org.apache.royale.compiler.css.ICSSDocument;
+import org.apache.royale.compiler.css.ICSSFontFace;
+import org.apache.royale.compiler.css.ICSSMediaQueryCondition;
+import org.apache.royale.compiler.css.ICSSNamespaceDefinition;
+import org.apache.royale.compiler.css.ICSSNode;
+import org.apache.royale.compiler.css.ICSSProperty;
+import org.apache.royale.compiler.css.ICSSPropertyValue;
+import org.apache.royale.compiler.css.ICSSRule;
+import org.apache.royale.compiler.css.ICSSSelector;
+import org.apache.royale.compiler.css.ICSSSelectorCondition;
+
+/**
+ * Write a {@link CSSDocument} model to a stream and read it back, without
+ * parsing the CSS again. The model that is read has the same rules,
+ * selectors, media queries, properties, namespaces, font faces and source
+ * locations as the model that was written.
+ * <p>
+ * Format: int string count, then every string as UTF, then the document.
+ * Strings in the document are indexes into the string table, -1 for null.
+ * Every node starts with its source location: string source path, int start,
+ * int end, int line and int column.
+ */
+public class CSSModelSerializer
+{
+    // Kinds of property values.
+    private static final byte NUMBER = 0;
+    private static final byte COLOR = 1;
+    private static final byte RGB = 2;
+    private static final byte RGBA = 3;
+    private static final byte KEYWORD = 4;
+    private static final byte STRING = 5;
+    private static final byte FUNCTION_CALL = 6;
+    private static final byte URL_AND_FORMAT = 7;
+    private static final byte ARRAY = 8;
+    private static final byte MULTI_VALUE = 9;
+
+    /**
+     * Write a CSS model.
+     * 
+     * @param css The CSS model, as created by {@link CSSDocument#parse}.
+     * @param out The output stream.
+     * @throws IOException error writing the model, or the model has a node
+     * this format doesn't support.
+     */
+    public static void write(final ICSSDocument css, final DataOutputStream out) throws IOException
+    {
+        // The string table comes before the document, so the document is
+        // written first.
+        final Writer writer = new Writer();
+        writer.writeDocument(css);
+        writer.out.flush();
+
+        out.writeInt(writer.strings.size());
+        for (final String string : writer.strings)
+            out.writeUTF(string);
+        writer.bytes.writeTo(out);
+    }
+
+    /**
+     * Read a CSS model.
+     * 
+     * @param in The input stream.
+     * @return The CSS model.
+     * @throws IOException error reading the model.
+     */
+    public static CSSDocument read(final DataInputStream in) throws IOException
+    {
+        final int count = in.readInt();
+        if (count < 0)
+            throw new IOException("invalid string count " + count);
+        final String[] strings = new String[count];
+        for (int i = 0; i < count; i++)
+            strings[i] = in.readUTF();
+        return new Reader(in, strings).readDocument();
+    }
+
+    private static class Writer
+    {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final DataOutputStream out = new DataOutputStream(bytes);
+        private final List<String> strings = new ArrayList<String>();
+        private final Map<String, Integer> stringIndexes = new HashMap<String, Integer>();
+
+        private void writeString(final String string) throws IOException
+        {
+            if (string == null)
+            {
+                out.writeInt(-1);
+                return;
+            }
+            Integer index = stringIndexes.get(string);
+            if (index == null)
+            {
+                index = strings.size();
+                strings.add(string);
+                stringIndexes.put(string, index);
+            }
+            out.writeInt(index);
+        }
+
+        private void writeLocation(final ICSSNode node) throws IOException
+        {
+            writeString(node.getSourcePath());
+            out.writeInt(node.getStart());
+            out.writeInt(node.getEnd());
+            out.writeInt(node.getLine());
+            out.writeInt(node.getColumn());
+        }
+
+        private void writeDocument(final ICSSDocument css) throws IOException
+        {
+            writeLocation(css);
+
+            out.writeInt(css.getAtNamespaces().size());
+            for (final ICSSNamespaceDefinition namespace : css.getAtNamespaces())
+            {
+                writeLocation(namespace);
+                writeString(namespace.getPrefix());
+                writeString(namespace.getURI());
+            }
+
+            out.writeInt(css.getFontFaces().size());
+            for (final ICSSFontFace fontFace : css.getFontFaces())
+            {
+                writeLocation(fontFace);
+                writeProperties(((CSSFontFace)fontFace).getProperties());
+            }
+
+            out.writeInt(css.getRules().size());
+            for (final ICSSRule rule : css.getRules())
+                writeRule(rule);
+        }
+
+        private void writeRule(final ICSSRule rule) throws IOException
+        {
+            writeLocation(rule);
+
+            out.writeInt(rule.getMediaQueryConditions().size());
+            for (final ICSSMediaQueryCondition condition : rule.getMediaQueryConditions())
+            {
+                writeLocation(condition);
+                writeString(condition.getKey());
+                if (condition.getKey() == null)
+                    writeString(condition.getValue().toString());
+                else
+                    writePropertyValue(condition.getValue());
+            }
+
+            out.writeInt(rule.getSelectorGroup().size());
+            for (final ICSSSelector selector : rule.getSelectorGroup())
+                writeSelector(selector);
+
+            writeProperties(rule.getProperties());
+        }
+
+        private void writeSelector(final ICSSSelector selector) throws IOException
+        {
+            writeLocation(selector);
+            writeString(selector.getElementName());
+            writeString(selector.getNamespacePrefix());
+
+            out.writeInt(selector.getConditions().size());
+            for (final ICSSSelectorCondition condition : selector.getConditions())
+            {
+                writeLocation(condition);
+                writeString(condition.getValue());
+                out.writeByte(condition.getConditionType().ordinal());
+            }
+
+            final ICSSCombinator combinator = selector.getCombinator();
+            out.writeBoolean(combinator != null);
+            if (combinator != null)
+            {
+                writeLocation(combinator);
+                out.writeByte(combinator.getCombinatorType().ordinal());
+                writeSelector(combinator.getSelector());
+            }
+        }
+
+        private void writeProperties(final List<? extends ICSSProperty> properties) throws IOException
+        {
+            out.writeInt(properties.size());
+            for (final ICSSProperty property : properties)
+            {
+                writeLocation(property);
+                writeString(((CSSProperty)property).getRawName());
+                writePropertyValue(property.getValue());
+            }
+        }
+
+        private void writePropertyValue(final ICSSPropertyValue value) throws IOException
+        {
+            writeLocation(value);
+            if (value instanceof CSSNumberPropertyValue)
+            {
+                out.writeByte(NUMBER);
+                writeString(value.toString());
+            }
+            else if (value instanceof CSSColorPropertyValue)
+            {
+                final CSSColorPropertyValue color = (CSSColorPropertyValue)value;
+                out.writeByte(COLOR);
+                out.writeInt(color.getColorAsInt());
+                writeString(color.getText());
+            }
+            else if (value instanceof CSSRgbColorPropertyValue)
+            {
+                final CSSRgbColorPropertyValue color = (CSSRgbColorPropertyValue)value;
+                out.writeByte(RGB);
+                writeString(color.getRawRgb());
+                writeString(color.getText());
+            }
+            else if (value instanceof CSSRgbaColorPropertyValue)
+            {
+                final CSSRgbaColorPropertyValue color = (CSSRgbaColorPropertyValue)value;
+                out.writeByte(RGBA);
+                writeString(color.getRawRgb());
+                writeString(color.getText());
+            }
+            else if (value instanceof CSSKeywordPropertyValue)
+            {
+                out.writeByte(KEYWORD);
+                writeString(((CSSKeywordPropertyValue)value).getKeyword());
+            }
+            else if (value instanceof CSSStringPropertyValue)
+            {
+                out.writeByte(STRING);
+                writeString(((CSSStringPropertyValue)value).getValue());
+            }
+            else if (value instanceof CSSURLAndFormatPropertyValue)
+            {
+                final CSSURLAndFormatPropertyValue url = (CSSURLAndFormatPropertyValue)value;
+                out.writeByte(URL_AND_FORMAT);
+                writeString(url.name);
+                writeString(url.rawArguments);
+                writeString(url.getFormat());
+            }
+            else if (value instanceof CSSFunctionCallPropertyValue)
+            {
+                final CSSFunctionCallPropertyValue functionCall = (CSSFunctionCallPropertyValue)value;
+                out.writeByte(FUNCTION_CALL);
+                writeString(functionCall.name);
+                writeString(functionCall.rawArguments);
+            }
+            else if (value instanceof CSSArrayPropertyValue)
+            {
+                out.writeByte(ARRAY);
+                writePropertyValues(((CSSArrayPropertyValue)value).getElements());
+            }
+            else if (value instanceof CSSMultiValuePropertyValue)
+            {
+                out.writeByte(MULTI_VALUE);
+                writePropertyValues(((CSSMultiValuePropertyValue)value).getElements());
+            }
+            else
+            {
+                throw new IOException("unsupported CSS property value " + value.getClass().getName());
+            }
+        }
+
+        private void writePropertyValues(final List<? extends ICSSPropertyValue> values) throws IOException
+        {
+            out.writeInt(values.size());
+            for (final ICSSPropertyValue value : values)
+                writePropertyValue(value);
+        }
+    }
+
+    private static class Reader
+    {
+        private Reader(final DataInputStream in, final String[] strings)
+        {
+            this.in = in;
+            this.strings = strings;
+        }
+
+        private final DataInputStream in;
+        private final String[] strings;
+
+        private String readString() throws IOException
+        {
+            final int index = in.readInt();
+            if (index == -1)
+                return null;
+            if (index < 0 || index >= strings.length)
+                throw new IOException("invalid string index " + index);
+            return strings[index];
+        }
+
+        private int readCount() throws IOException
+        {
+            final int count = in.readInt();
+            if (count < 0)
+                throw new IOException("invalid count " + count);
+            return count;
+        }
+
+        /**
+         * Source locations are read before the node they belong to, and set
+         * on the node once it is created.
+         */
+        private int[] readLocation() throws IOException
+        {
+            final int sourcePath = in.readInt();
+            return new int[] {sourcePath, in.readInt(), in.readInt(), in.readInt(), in.readInt()};
+        }
+
+        private <T extends CSSNodeBase> T setLocation(final T node, final int[] location) throws IOException
+        {
+            final int sourcePath = location[0];
+            if (sourcePath != -1)
+            {
+                if (sourcePath < 0 || sourcePath >= strings.length)
+                    throw new IOException("invalid string index " + sourcePath);
+                node.setSourcePath(strings[sourcePath]);
+            }
+            node.setStart(location[1]);
+            node.setEnd(location[2]);
+            node.setLine(location[3]);
+            node.setColumn(location[4]);
+            return node;
+        }
+
+        private CSSDocument readDocument() throws IOException
+        {
+            final int[] location = readLocation();
+
+            final int namespaceCount = readCount();
+            final List<CSSNamespaceDefinition> namespaces = new ArrayList<CSSNamespaceDefinition>(namespaceCount);
+            for (int i = 0; i < namespaceCount; i++)
+            {
+                final int[] namespaceLocation = readLocation();
+                final String prefix = readString();
+                final String uri = readString();
+                namespaces.add(setLocation(new CSSNamespaceDefinition(prefix, '"' + uri + '"', null, null), namespaceLocation));
+            }
+
+            final int fontFaceCount = readCount();
+            final List<CSSFontFace> fontFaces = new ArrayList<CSSFontFace>(fontFaceCount);
+            for (int i = 0; i < fontFaceCount; i++)
+            {
+                final int[] fontFaceLocation = readLocation();
+                fontFaces.add(setLocation(new CSSFontFace(readProperties(), null, null), fontFaceLocation));
+            }
+
+            final int ruleCount = readCount();
+            final List<CSSRule> rules = new ArrayList<CSSRule>(ruleCount);
+            for (int i = 0; i < ruleCount; i++)
+                rules.add(readRule());
+
+            return setLocation(new CSSDocument(rules, namespaces, fontFaces, null, null), location);
+        }
+
+        private CSSRule readRule() throws IOException
+        {
+            final int[] location = readLocation();
+
+            final int conditionCount = readCount();
+            final List<CSSMediaQueryCondition> conditions = new ArrayList<CSSMediaQueryCondition>(conditionCount);
+            for (int i = 0; i < conditionCount; i++)
+            {
+                final int[] conditionLocation = readLocation();
+                final String key = readString();
+                final CSSMediaQueryCondition condition;
+                if (key == null)
+                {
+                    // Keyword conditions are created from the keyword token,
+                    // and so is their value.
+                    condition = new CSSMediaQueryCondition(createTree(readString()), null);
+                    setLocation((CSSNodeBase)condition.getValue(), conditionLocation);
+                }
+                else
+                {
+                    condition = new CSSMediaQueryCondition(key, readPropertyValue(), null, null);
+                }
+                conditions.add(setLocation(condition, conditionLocation));
+            }
+
+            final int selectorCount = readCount();
+            final List<CSSSelector> selectors = new ArrayList<CSSSelector>(selectorCount);
+            for (int i = 0; i < selectorCount; i++)
+                selectors.add(readSelector());
+
+            final List<CSSProperty> properties = readProperties();
+            return setLocation(new CSSRule(conditions.isEmpty() ? null : conditions, selectors, properties, null, null), location);
+        }
+
+        private CSSSelector readSelector() throws IOException
+        {
+            final int[] location = readLocation();
+            final String elementName = readString();
+            final String namespacePrefix = readString();
+
+            final int conditionCount = readCount();
+            final List<CSSSelectorCondition> conditions = new ArrayList<CSSSelectorCondition>(conditionCount);
+            for (int i = 0; i < conditionCount; i++)
+            {
+                final int[] conditionLocation = readLocation();
+                final String value = readString();
+                final ConditionType type = readEnum(ConditionType.values());
+                conditions.add(setLocation(new CSSSelectorCondition(value, type, null, null), conditionLocation));
+            }
+
+            CSSCombinator combinator = null;
+            if (in.readBoolean())
+            {
+                final int[] combinatorLocation = readLocation();
+                final CombinatorType type = readEnum(CombinatorType.values());
+                combinator = setLocation(new CSSCombinator(readSelector(), type, null, null), combinatorLocation);
+            }
+
+            return setLocation(new CSSSelector(combinator, elementName, namespacePrefix, conditions, null, null), location);
+        }
+
+        private <T extends Enum<T>> T readEnum(final T[] values) throws IOException
+        {
+            final int ordinal = in.readByte();
+            if (ordinal < 0 || ordinal >= values.length)
+                throw new IOException("invalid " + values.getClass().getComponentType().getSimpleName() + " " + ordinal);
+            return values[ordinal];
+        }
+
+        private List<CSSProperty> readProperties() throws IOException
+        {
+            final int count = readCount();
+            final List<CSSProperty> properties = new ArrayList<CSSProperty>(count);
+            for (int i = 0; i < count; i++)
+            {
+                final int[] location = readLocation();
+                final String name = readString();
+                properties.add(setLocation(new CSSProperty(name, readPropertyValue(), null, null), location));
+            }
+            return properties;
+        }
+
+        private CSSPropertyValue readPropertyValue() throws IOException
+        {
+            final int[] location = readLocation();
+            final byte kind = in.readByte();
+            final CSSPropertyValue value;
+            switch (kind)
+            {
+                case NUMBER:
+                    value = new CSSNumberPropertyValue(readString(), null, null);
+                    break;
+                case COLOR:
+                {
+                    final int colorInt = in.readInt();
+                    value = new CSSColorPropertyValue(colorInt, createTree(readString()), null);
+                    break;
+                }
+                case RGB:
+                {
+                    final String rawRgb = readString();
+                    value = new CSSRgbColorPropertyValue(rawRgb, createTree(readString()), null);
+                    break;
+                }
+                case RGBA:
+                {
+                    final String rawRgb = readString();
+                    value = new CSSRgbaColorPropertyValue(rawRgb, createTree(readString()), null);
+                    break;
+                }
+                case KEYWORD:
+                    value = new CSSKeywordPropertyValue(createTree(readString()), null);
+                    break;
+                case STRING:
+                    value = new CSSStringPropertyValue(readString());
+                    break;
+                case URL_AND_FORMAT:
+                {
+                    final String name = readString();
+                    final String rawArguments = readString();
+                    value = new CSSURLAndFormatPropertyValue(name, "(" + rawArguments + ")", readString(), null, null);
+                    break;
+                }
+                case FUNCTION_CALL:
+                {
+                    final String name = readString();
+                    value = new CSSFunctionCallPropertyValue(name, "(" + readString() + ")", null, null);
+                    break;
+                }
+                case ARRAY:
+                    value = new CSSArrayPropertyValue(readPropertyValues(), null, null);
+                    break;
+                case MULTI_VALUE:
+                    value = new CSSMultiValuePropertyValue(readPropertyValues(), null, null);
+                    break;
+                default:
+                    throw new IOException("invalid CSS property value kind " + kind);
+            }
+            return setLocation(value, location);
+        }
+
+        private List<CSSPropertyValue> readPropertyValues() throws IOException
+        {
+            final int count = readCount();
+            final List<CSSPropertyValue> values = new ArrayList<CSSPropertyValue>(count);
+            for (int i = 0; i < count; i++)
+                values.add(readPropertyValue());
+            return values;
+        }
+
+        /**
+         * Some property values keep the token they were parsed from. Give
+         * them a token with the same text. Without a token stream, the node
+         * doesn't compute a source location from it.
+         */
+        private static CommonTree createTree(final String text) throws IOException
+        {
+            if (text == null)
+                throw new IOException("missing token text");
+            return new CommonTree(new CommonToken(Token.INVALID_TOKEN_TYPE, text));
+        }
+    }
+}
@@ -54,6 +54,14 @@ public class CSSProperty extends CSSNodeBase implements ICSSProperty
         return value;
     }
 
+    /**
+     * @return The property name as it is written in the CSS.
+     */
+    String getRawName()
+    {
+        return rawName;
+    }
+
     @Override
     public String toString()
     {
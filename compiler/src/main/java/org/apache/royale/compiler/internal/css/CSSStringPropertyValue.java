@@ -38,6 +38,18 @@ public class CSSStringPropertyValue extends CSSPropertyValue
         this.value = convertEscapes(stripQuotes(stringWithQuotes));
     }
 
+    /**
+     * Create a string property value that has already been unquoted and
+     * unescaped, such as one read by {@link CSSModelSerializer}.
+     * 
+     * @param value The string value without the quotes.
+     */
+    CSSStringPropertyValue(final String value)
+    {
+        super(null, null, CSSModelTreeType.PROPERTY_VALUE);
+        this.value = value;
+    }
+
     private final String value;
 
     /**
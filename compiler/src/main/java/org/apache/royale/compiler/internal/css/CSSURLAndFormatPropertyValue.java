@@ -48,6 +48,14 @@ public class CSSURLAndFormatPropertyValue extends CSSFunctionCallPropertyValue
     }
 
     private String format;
+
+    /**
+     * @return The format text after the URL, or null.
+     */
+    String getFormat()
+    {
+        return format;
+    }
     
     /**
      * Generate CSS code fragment for this model object. This is used by
@@ -21,7 +21,9 @@ package org.apache.royale.compiler.internal.css.codegen;
 
 import static com.google.common.collect.Collections2.transform;
 
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
@@ -49,6 +51,7 @@ import org.apache.royale.compiler.internal.css.CSSNamespaceDefinition;
 import org.apache.royale.compiler.internal.css.CSSProperty;
 import org.apache.royale.compiler.internal.css.CSSRule;
 import org.apache.royale.compiler.internal.css.CSSSelector;
+import org.apache.royale.compiler.internal.css.semantics.CSSRuleIndex;
 import org.apache.royale.compiler.internal.css.semantics.CSSSemanticAnalyzer;
 import org.apache.royale.compiler.internal.css.codegen.CSSEmitter;
 import org.apache.royale.compiler.internal.units.EmbedCompilationUnit;
@@ -56,6 +59,8 @@ import org.apache.royale.compiler.projects.ICompilerProject;
 import org.apache.royale.compiler.projects.IRoyaleProject;
 import com.google.common.base.Function;
 import com.google.common.collect.ImmutableList;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
 
 /**
  * A CSS compilation session stores data used by one compilation cycle. <h3>This
@@ -96,6 +101,7 @@ public class CSSCompilationSession
         inheritingStyles = new LinkedHashSet<String>();
         resolvedEmbedProperties = new HashMap<CSSFunctionCallPropertyValue, EmbedCompilationUnit>();
         activatedRules = new HashSet<ICSSRule>();
+        matchedRules = new HashMap<ICSSDocument, CSSRuleIndex.Matches>();
         cssDocuments = new ArrayList<ICSSDocument>();
         fontFaces = new ArrayList<CSSFontFace>();
         singleSelectorRules = new LinkedHashMap<String, SingleSelectorRule>();
@@ -125,6 +131,13 @@ public class CSSCompilationSession
      */
     public final Set<ICSSRule> activatedRules;
 
+    /**
+     * A map of CSS documents to the rules matched so far by the dependency
+     * analysis. Definitions found in later iterations of the analysis only
+     * look up the rules they activate.
+     */
+    public final Map<ICSSDocument, CSSRuleIndex.Matches> matchedRules;
+
     /**
      * A set of font faces that will be included in the code generation.
      */
@@ -282,6 +295,75 @@ public class CSSCompilationSession
         return reducer;
     }
 
+    /**
+     * Get a key of the data that {@link #emitStyleDataClass} generates code
+     * from. Sessions with equal keys generate the same style data class, so
+     * the class generated for a previous compilation can be reused as long as
+     * no CSS changed and the same rules are activated.
+     * <p>
+     * The key is a digest of the text of the rules kept for code generation,
+     * the classes their selectors resolve to, the font faces, the embedded
+     * assets, the inheriting styles and the CSS compatibility mode. It holds
+     * no reference to the CSS model.
+     * 
+     * @param project {@link IRoyaleProject} for which code is being
+     * generated.
+     * @return Key of the style data.
+     */
+    public String getStyleDataKey(final IRoyaleProject project)
+    {
+        final Hasher hasher = Hashing.sha256().newHasher();
+        hasher.putBoolean(project.isRoyale());
+        hasher.putBoolean(project.getCSSManager().isFlex3CSS());
+
+        for (final ICSSDocument cssDocument : cssDocuments)
+        {
+            for (final ICSSRule rule : cssDocument.getRules())
+            {
+                if (!keepRule(rule))
+                    continue;
+                putString(hasher, rule.toString());
+                for (final ICSSSelector selector : rule.getSelectorGroup())
+                    putString(hasher, resolvedSelectors.get(selector));
+            }
+            for (final ICSSFontFace fontFace : cssDocument.getFontFaces())
+                putString(hasher, fontFace.toString());
+        }
+
+        // The embeds are only known by their property values, which are
+        // not ordered, so sort them.
+        final List<String> embeds = new ArrayList<String>();
+        for (final Map.Entry<CSSFunctionCallPropertyValue, EmbedCompilationUnit> entry : resolvedEmbedProperties.entrySet())
+            embeds.add(entry.getKey().toString() + "=" + entry.getValue().getName());
+        Collections.sort(embeds);
+        hasher.putInt(embeds.size());
+        for (final String embed : embeds)
+            putString(hasher, embed);
+
+        hasher.putInt(inheritingStyles.size());
+        for (final String style : inheritingStyles)
+            putString(hasher, style);
+
+        return hasher.hash().toString();
+    }
+
+    /**
+     * Add a string, or null, to a digest so that it can't run into the next
+     * one.
+     */
+    private static void putString(final Hasher hasher, final String s)
+    {
+        if (s == null)
+        {
+            hasher.putInt(-1);
+        }
+        else
+        {
+            hasher.putInt(s.length());
+            hasher.putString(s, StandardCharsets.UTF_8);
+        }
+    }
+
     /**
      * Resolve the {@code selector} against the {@link #resolvedSelectors} map
      * and return the name in the following pattern: <br>
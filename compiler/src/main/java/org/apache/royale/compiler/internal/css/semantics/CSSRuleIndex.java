@@ -0,0 +1,282 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+
+package org.apache.royale.compiler.internal.css.semantics;
+
+import static org.apache.royale.compiler.internal.css.semantics.CSSSemanticAnalyzer.*;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.royale.compiler.css.ICSSDocument;
+import org.apache.royale.compiler.css.ICSSRule;
+import org.apache.royale.compiler.css.ICSSSelector;
+import org.apache.royale.compiler.problems.ICompilerProblem;
+import org.apache.royale.compiler.projects.IRoyaleProject;
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.SetMultimap;
+
+/**
+ * An index of the rules in a CSS document by the names of the definitions
+ * that activate them. The selectors are resolved once when the index is
+ * created, so matching the rules against a set of definitions only looks up
+ * the rules of those definitions instead of testing every rule.
+ * <p>
+ * An index stays valid as long as its CSS document, the MXML manifests and
+ * the compatibility version of the project don't change. It can be shared
+ * by the compilation sessions of a project.
+ */
+public class CSSRuleIndex
+{
+    /**
+     * Index the rules of a CSS document.
+     * 
+     * @param royaleProject Project that resolves the type selectors.
+     * @param cssDocument CSS document.
+     * @param isFlex3CSS True if the rules are matched as Flex 3 CSS.
+     */
+    public CSSRuleIndex(final IRoyaleProject royaleProject, final ICSSDocument cssDocument, final boolean isFlex3CSS)
+    {
+        assert royaleProject != null : "Expected project";
+        assert cssDocument != null : "Expected CSS document";
+
+        final List<ICompilerProblem> problems = new ArrayList<ICompilerProblem>();
+        this.resolvedSelectors = resolveSelectors(royaleProject, cssDocument, problems, royaleProject, isFlex3CSS);
+        this.problems = ImmutableList.copyOf(problems);
+        this.isFlex3CSS = isFlex3CSS;
+        this.rules = ImmutableList.copyOf(cssDocument.getRules());
+        this.rulesByName = HashMultimap.create();
+        this.unconditionalRules = new BitSet(rules.size());
+        this.requiredNames = new ArrayList<Set<String>>(rules.size());
+
+        for (int i = 0; i < rules.size(); i++)
+        {
+            final ICSSRule rule = rules.get(i);
+            if (isFlex3CSS)
+                indexFlex3Rule(i, rule);
+            else if (royaleProject.isPlatformRule(rule))
+                indexRule(i, rule);
+            else
+                requiredNames.add(null);
+        }
+    }
+
+    /**
+     * The rules of the document, in document order. Rules are referred to by
+     * their positions in this list.
+     */
+    private final ImmutableList<ICSSRule> rules;
+
+    /**
+     * A map of selectors to the QNames of their resolved types.
+     */
+    private final ImmutableMap<ICSSSelector, String> resolvedSelectors;
+
+    /**
+     * Problems found while resolving the selectors.
+     */
+    private final ImmutableList<ICompilerProblem> problems;
+
+    /**
+     * True if the rules are matched as Flex 3 CSS.
+     */
+    private final boolean isFlex3CSS;
+
+    /**
+     * A map of names to the positions of the rules that the names can
+     * activate. The names are QNames, or simple names in Flex 3 CSS.
+     */
+    private final SetMultimap<String, Integer> rulesByName;
+
+    /**
+     * Positions of the rules that are activated by any definition set.
+     */
+    private final BitSet unconditionalRules;
+
+    /**
+     * In Flex 3 CSS, the names that must all be defined for a rule to be
+     * activated, by rule position. Null for rules that can be activated by any
+     * one of their names.
+     */
+    private final List<Set<String>> requiredNames;
+
+    /**
+     * A rule is activated by any one of the resolved types of its subject
+     * selectors, up to the first wildcard selector. Rules with a wildcard
+     * selector are always activated, unless the wildcard is an optional class
+     * selector, which is activated by the class it names.
+     * 
+     * @see CSSSemanticAnalyzer#getOptionalSelectorName(ICSSSelector)
+     */
+    private void indexRule(final int position, final ICSSRule rule)
+    {
+        requiredNames.add(null);
+        for (final ICSSSelector selector : rule.getSelectorGroup())
+        {
+            if (isWildcardSelector(selector))
+            {
+                final String optionalName = getOptionalSelectorName(selector);
+                if (optionalName == null)
+                    unconditionalRules.set(position);
+                else
+                    rulesByName.put(optionalName, position);
+                return;
+            }
+            final String qname = resolvedSelectors.get(selector);
+            if (qname != null)
+                rulesByName.put(qname, position);
+        }
+    }
+
+    /**
+     * In Flex 3 CSS, a rule is activated when all the element names of its
+     * selectors are defined. Rules with advanced selectors are never
+     * activated.
+     */
+    private void indexFlex3Rule(final int position, final ICSSRule rule)
+    {
+        final Set<String> names = new HashSet<String>();
+        for (final ICSSSelector selector : rule.getSelectorGroup())
+        {
+            if (selector.isAdvanced())
+            {
+                requiredNames.add(null);
+                return;
+            }
+            final String elementName = selector.getElementName();
+            if (elementName != null && !GLOBAL_SELECTOR.equals(elementName))
+                names.add(elementName);
+        }
+
+        if (names.isEmpty())
+        {
+            requiredNames.add(null);
+            unconditionalRules.set(position);
+        }
+        else
+        {
+            requiredNames.add(ImmutableSet.copyOf(names));
+            for (final String name : names)
+                rulesByName.put(name, position);
+        }
+    }
+
+    /**
+     * @return True if the rules are matched as Flex 3 CSS.
+     */
+    public boolean isFlex3CSS()
+    {
+        return isFlex3CSS;
+    }
+
+    /**
+     * @return A map of the selectors in the document to the QNames of their
+     * resolved types.
+     */
+    public ImmutableMap<ICSSSelector, String> getResolvedSelectors()
+    {
+        return resolvedSelectors;
+    }
+
+    /**
+     * @return Problems found while resolving the selectors.
+     */
+    public ImmutableList<ICompilerProblem> getProblems()
+    {
+        return problems;
+    }
+
+    /**
+     * Match the rules against a set of definitions. Only the QNames that
+     * {@code matches} hasn't seen yet are looked up, and the rules they
+     * activate are added to the previous matches.
+     * 
+     * @param matches The QNames and rules matched so far.
+     * @param qnames QNames of the definitions to match.
+     * @return All the rules matched so far, in document order.
+     */
+    public ImmutableSet<ICSSRule> match(final Matches matches, final Collection<String> qnames)
+    {
+        assert matches != null : "Expected matches";
+        assert qnames != null : "Expected a set of definitions for the CSS rules to match.";
+
+        if (matches.index != this)
+        {
+            // The matches were made with an index that has been replaced.
+            matches.index = this;
+            matches.names.clear();
+            matches.rules.clear();
+        }
+
+        final BitSet matched = matches.rules;
+        matched.or(unconditionalRules);
+        for (final String qname : qnames)
+        {
+            final String name = isFlex3CSS ? QNAME_TO_SIMPLE_NAME.apply(qname) : qname;
+            if (!matches.names.add(name))
+                continue;
+            for (final Integer position : rulesByName.get(name))
+            {
+                if (matched.get(position))
+                    continue;
+                final Set<String> required = requiredNames.get(position);
+                if (required == null || matches.names.containsAll(required))
+                    matched.set(position);
+            }
+        }
+
+        final ImmutableSet.Builder<ICSSRule> builder = new ImmutableSet.Builder<ICSSRule>();
+        for (int i = matched.nextSetBit(0); i >= 0; i = matched.nextSetBit(i + 1))
+        {
+            builder.add(rules.get(i));
+        }
+        return builder.build();
+    }
+
+    /**
+     * The names and rules of one CSS document matched so far in a compilation
+     * session. Definitions are only ever added to a session, so the rules of a
+     * name are looked up once.
+     */
+    public static class Matches
+    {
+        /**
+         * The index that the rule positions refer to.
+         */
+        private CSSRuleIndex index;
+
+        /**
+         * Names that have been looked up.
+         */
+        private final Set<String> names = new HashSet<String>();
+
+        /**
+         * Positions of the matched rules.
+         */
+        private final BitSet rules = new BitSet();
+    }
+}
@@ -87,7 +87,7 @@ public class CSSSemanticAnalyzer
 {
 
     /** Global selector. */
-    private static final String GLOBAL_SELECTOR = "global";
+    static final String GLOBAL_SELECTOR = "global";
     /** Universal selector. */
     private static final String UNIVERSAL_SELECTOR = "*";
 
@@ -469,7 +469,7 @@ public class CSSSemanticAnalyzer
      * <li>{@code f("bar") = "bar";}</li>
      * </ul>
      */
-    private static final Function<String, String> QNAME_TO_SIMPLE_NAME = new Function<String, String>()
+    static final Function<String, String> QNAME_TO_SIMPLE_NAME = new Function<String, String>()
     {
         @Override
         public String apply(String qname)
@@ -489,7 +489,11 @@ public class CSSSemanticAnalyzer
      * rules.
      * @param problems Problems collection.
      * @return A set of CSS rules matched by one of the given class definitions.
+     * @deprecated Use {@link CSSRuleIndex#match}, which resolves the selectors
+     * of a document once instead of on every call, and only looks up the
+     * definitions that haven't been matched yet.
      */
+    @Deprecated
     public static ImmutableSet<ICSSRule> getMatchedRules(
             final CSSCompilationSession session,
             final IRoyaleProject royaleProject,
@@ -121,6 +121,13 @@ public class ImageTranscoder extends ScalableTranscoder
         return isSupported;
     }
 
+    @Override
+    protected boolean isTranscodingCacheable()
+    {
+        // Only scaled and smoothed images are decoded.
+        return scaling || smoothing;
+    }
+
     @Override
     protected Map<String, ICharacterTag> doTranscode(Collection<ITag> tags, Collection<ICompilerProblem> problems)
     {
@@ -128,6 +135,12 @@ public class ImageTranscoder extends ScalableTranscoder
         if (bytes == null)
             return null;
 
+        return doTranscode(bytes, tags, problems);
+    }
+
+    @Override
+    protected Map<String, ICharacterTag> doTranscode(byte[] bytes, Collection<ITag> tags, Collection<ICompilerProblem> problems)
+    {
         ImageInfo imageInfo = null;
         if (scaling || smoothing)
         {
@@ -109,6 +109,12 @@ public class JPEGTranscoder extends ImageTranscoder
         return isSupported;
     }
 
+    @Override
+    protected boolean isTranscodingCacheable()
+    {
+        return true;
+    }
+
     @Override
     protected Map<String, ICharacterTag> doTranscode(Collection<ITag> tags, Collection<ICompilerProblem> problems)
     {
@@ -116,6 +122,12 @@ public class JPEGTranscoder extends ImageTranscoder
         if (bytes == null)
             return null;
 
+        return doTranscode(bytes, tags, problems);
+    }
+
+    @Override
+    protected Map<String, ICharacterTag> doTranscode(byte[] bytes, Collection<ITag> tags, Collection<ICompilerProblem> problems)
+    {
         byte[] jpegBytes;
         byte[] compressedAlphaData;
         try
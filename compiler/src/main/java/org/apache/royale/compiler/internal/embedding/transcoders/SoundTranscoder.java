@@ -20,6 +20,7 @@
 package org.apache.royale.compiler.internal.embedding.transcoders;
 
 import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Collection;
@@ -106,6 +107,12 @@ public class SoundTranscoder extends TranscoderBase
         return result;
     }
 
+    @Override
+    protected boolean isTranscodingCacheable()
+    {
+        return true;
+    }
+
     @Override
     protected Map<String, ICharacterTag> doTranscode(Collection<ITag> tags, Collection<ICompilerProblem> problems)
     {
@@ -113,6 +120,17 @@ public class SoundTranscoder extends TranscoderBase
         if (strm == null)
             return null;
 
+        return transcodeSound(strm, problems);
+    }
+
+    @Override
+    protected Map<String, ICharacterTag> doTranscode(byte[] bytes, Collection<ITag> tags, Collection<ICompilerProblem> problems)
+    {
+        return transcodeSound(new ByteArrayInputStream(bytes), problems);
+    }
+
+    private Map<String, ICharacterTag> transcodeSound(InputStream strm, Collection<ICompilerProblem> problems)
+    {
         DefineSoundTag assetTag = buildSound(strm, problems);
         if (assetTag == null)
             return null;
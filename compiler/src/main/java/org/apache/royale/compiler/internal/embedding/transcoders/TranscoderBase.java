@@ -21,9 +21,13 @@ package org.apache.royale.compiler.internal.embedding.transcoders;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.EnumSet;
+import java.util.List;
 import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
 
 import org.apache.commons.io.IOUtils;
 
@@ -33,6 +37,7 @@ import org.apache.royale.compiler.constants.INamespaceConstants;
 import org.apache.royale.compiler.embedding.transcoders.ITranscoder;
 import org.apache.royale.compiler.filespecs.IBinaryFileSpecification;
 import org.apache.royale.compiler.embedding.EmbedAttribute;
+import org.apache.royale.compiler.internal.caches.EmbedTranscodingCache;
 import org.apache.royale.compiler.internal.embedding.EmbedData;
 import org.apache.royale.compiler.internal.embedding.EmbedMIMEType;
 import org.apache.royale.compiler.internal.semantics.PostProcessStep;
@@ -89,6 +94,22 @@ public abstract class TranscoderBase implements ITranscoder
      */
     protected abstract Map<String, ICharacterTag> doTranscode(Collection<ITag> tags, Collection<ICompilerProblem> problems);
 
+    /**
+     * Transcode the embedded asset from bytes that have already been read,
+     * when the asset is missing from the {@link EmbedTranscodingCache}.
+     * Transcoders that read the whole asset override this so the asset isn't
+     * read a second time; by default the asset is read again.
+     * 
+     * @param bytes The original bytes of the embedded asset.
+     * @param tags The collection of transcoded asset tags
+     * @param problems The collection of compiler problems to which this method will add problems.
+     * @return map of symbol name to character asset tags.  null if error
+     */
+    protected Map<String, ICharacterTag> doTranscode(byte[] bytes, Collection<ITag> tags, Collection<ICompilerProblem> problems)
+    {
+        return doTranscode(tags, problems);
+    }
+
     /**
      * The relevant SWF tags
      * @param tags The transcoded asset tags
@@ -98,7 +119,71 @@ public abstract class TranscoderBase implements ITranscoder
      */
     public Map<String, ICharacterTag> getTags(Collection<ITag> tags, Collection<ICompilerProblem> problems)
     {
-        return doTranscode(tags, problems);
+        final EmbedTranscodingCache cache = isTranscodingCacheable() ? workspace.getEmbedTranscodingCache() : null;
+        if (cache == null)
+            return doTranscode(tags, problems);
+
+        final byte[] bytes = getDataBytes(problems);
+        if (bytes == null)
+            return null;
+
+        final String key = EmbedTranscodingCache.computeKey(getClass().getName(), getTranscodingAttributes(), bytes);
+        final Map<String, ICharacterTag> cachedTags = cache.load(key, data.getQName(), tags);
+        if (cachedTags != null)
+            return cachedTags;
+
+        final List<ITag> transcodedTags = new ArrayList<ITag>();
+        final List<ICompilerProblem> transcodingProblems = new ArrayList<ICompilerProblem>();
+        final Map<String, ICharacterTag> symbolTags = doTranscode(bytes, transcodedTags, transcodingProblems);
+        tags.addAll(transcodedTags);
+        problems.addAll(transcodingProblems);
+
+        // Only store assets transcoded without problems, so a cached asset
+        // never hides a warning.
+        if (symbolTags != null && transcodingProblems.isEmpty())
+        {
+            try
+            {
+                cache.store(key, data.getQName(), transcodedTags, symbolTags);
+            }
+            catch (IOException e)
+            {
+                // The transcoding cache is only an optimization.
+            }
+        }
+
+        return symbolTags;
+    }
+
+    /**
+     * Whether the SWF tags of this transcoder are worth keeping in the
+     * {@link EmbedTranscodingCache}. Transcoders that decode or encode the
+     * asset return true; transcoders that only copy the bytes of the asset
+     * into a tag return false.
+     * 
+     * @return true if the tags are kept in the transcoding cache.
+     */
+    protected boolean isTranscodingCacheable()
+    {
+        return false;
+    }
+
+    /**
+     * The embed attributes that affect the SWF tags, keyed by attribute name.
+     * The source is left out, because the cache is keyed by the content of
+     * the asset.
+     * 
+     * @return The attributes, sorted by name.
+     */
+    protected SortedMap<String, String> getTranscodingAttributes()
+    {
+        final SortedMap<String, String> attributes = new TreeMap<String, String>();
+        for (EmbedAttribute attribute : data.getAttributes())
+        {
+            if (attribute != EmbedAttribute.SOURCE)
+                attributes.put(attribute.toString(), String.valueOf(data.getAttribute(attribute)));
+        }
+        return attributes;
     }
 
     public String getBaseClassQName()
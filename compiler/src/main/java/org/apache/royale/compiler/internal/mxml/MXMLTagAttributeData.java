@@ -98,7 +98,7 @@ public class MXMLTagAttributeData extends SourceLocation implements IMXMLTagAttr
             token = tokenIterator.next();
             if (token.getType() == MXMLTokenTypes.TOKEN_STRING)
             {
-                valueIncludingDelimiters = token.getText();
+                setValueIncludingDelimiters(token.getCharSequence());
             }
             else
             {
@@ -148,9 +148,23 @@ public class MXMLTagAttributeData extends SourceLocation implements IMXMLTagAttr
     protected int stateStart;
     
     /**
-     * The attribute value, including any delimiters.
+     * The attribute value, including any delimiters. When the tokenizer
+     * scanned the file in place, this is a view of the file's characters,
+     * which are only copied when the value is asked for.
      */
-    protected String valueIncludingDelimiters;
+    protected CharSequence valueIncludingDelimiters;
+
+    /**
+     * The range of the value without its delimiters in
+     * {@link #valueIncludingDelimiters}.
+     */
+    private int rawValueStart;
+    private int rawValueEnd;
+
+    /**
+     * The value without its delimiters, once it has been copied.
+     */
+    private String rawValue;
 
     /**
      * The offset at which the attribute value starts.
@@ -271,25 +285,43 @@ public class MXMLTagAttributeData extends SourceLocation implements IMXMLTagAttr
     @Override
     public boolean hasValue()
     {
-        return getRawValue() != null;
+        return valueIncludingDelimiters != null;
     }
 
     @Override
     public String getRawValue()
     {
-        String value = getValueWithQuotes();
+        if (valueIncludingDelimiters == null)
+            return null;
 
-        if (value != null && value.length() > 0)
+        String result = rawValue;
+        if (result == null)
         {
-            // length can be one in case of invalid data and then the substring() call fails
-            // so, handle it here
-            if (value.charAt(0) == value.charAt(value.length() - 1) && value.length() != 1)
-                value = value.substring(1, value.length() - 1);
-            else
-                value = value.substring(1);
+            result = valueIncludingDelimiters.subSequence(rawValueStart, rawValueEnd).toString();
+            rawValue = result;
         }
+        return result;
+    }
+
+    /**
+     * Sets the value with its delimiters, and the range of the value without
+     * them.
+     */
+    private void setValueIncludingDelimiters(CharSequence value)
+    {
+        valueIncludingDelimiters = value;
+        rawValue = null;
+        rawValueStart = 0;
+        rawValueEnd = value.length();
 
-        return value;
+        if (value.length() > 0)
+        {
+            // length can be one in case of invalid data, and then there is
+            // no closing delimiter, so handle it here
+            rawValueStart = 1;
+            if (value.charAt(0) == value.charAt(value.length() - 1) && value.length() != 1)
+                rawValueEnd = value.length() - 1;
+        }
     }
 
     @Override
@@ -318,7 +350,7 @@ public class MXMLTagAttributeData extends SourceLocation implements IMXMLTagAttr
     public int getValueEnd()
     {
         if (hasValue())
-              return getValueStart() + getRawValue().length();
+              return getValueStart() + rawValueEnd - rawValueStart;
 
         // If there is no valid "end", then we must return -1. Callers depend on this.
         // See MXMLTagData.findArttributeContainingOffset for an example
@@ -500,7 +532,7 @@ public class MXMLTagAttributeData extends SourceLocation implements IMXMLTagAttr
      */
     public String getValueWithQuotes()
     {
-        return valueIncludingDelimiters;
+        return valueIncludingDelimiters != null ? valueIncludingDelimiters.toString() : null;
     }
 
     /**
@@ -0,0 +1,101 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+
+
+package org.apache.royale.compiler.internal.parsing;
+
+/**
+ * A read-only view of a range of a character array, such as the characters of
+ * a file that a tokenizer scanned in place. The characters are only copied
+ * when {@link #toString()} is first called, and that String is kept for later
+ * calls.
+ * <p>
+ * The array must not be modified while views of it are in use.
+ */
+public final class CharArraySequence implements CharSequence
+{
+    /**
+     * Constructor
+     * 
+     * @param chars the shared characters
+     * @param start offset of the first character in the array
+     * @param end offset after the last character in the array
+     */
+    public CharArraySequence(char[] chars, int start, int end)
+    {
+        if (start < 0 || end > chars.length || start > end)
+            throw new IndexOutOfBoundsException("start " + start + ", end " + end + ", length " + chars.length);
+
+        this.chars = chars;
+        this.start = start;
+        this.end = end;
+    }
+
+    private final char[] chars;
+
+    private final int start;
+
+    private final int end;
+
+    /**
+     * The characters copied into a String, or null if they haven't been yet.
+     * Racing callers can at worst each make an equal copy.
+     */
+    private String string;
+
+    @Override
+    public int length()
+    {
+        return end - start;
+    }
+
+    @Override
+    public char charAt(int index)
+    {
+        if (index < 0 || index >= end - start)
+            throw new IndexOutOfBoundsException("index " + index + ", length " + (end - start));
+
+        return chars[start + index];
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end)
+    {
+        if (start < 0 || end > this.end - this.start || start > end)
+            throw new IndexOutOfBoundsException("start " + start + ", end " + end + ", length " + (this.end - this.start));
+
+        if (start == 0 && end == this.end - this.start)
+            return this;
+
+        return new CharArraySequence(chars, this.start + start, this.start + end);
+    }
+
+    @Override
+    public String toString()
+    {
+        String result = string;
+        if (result == null)
+        {
+            result = new String(chars, start, end - start);
+            string = result;
+        }
+        return result;
+    }
+}
@@ -2524,7 +2524,9 @@ abstract class BaseASParser extends LLkParser implements IProblemReporter
      * Since {@link Reader#skip(long)} is slow, the parser keeps a secondary
      * {@code Reader} ({@link #secondaryReader}) in order to cache the text of
      * the function body on-the-fly. The text is stored on the corresponding
-     * {@link FunctionNode}.
+     * {@link FunctionNode}. With {@link DeferFunctionBody#ON_DEMAND}, only the
+     * offsets are stored, and the body is read from the file when it is
+     * needed.
      * <p>
      * This feature is turn on only <b>all</b> of the following conditions are
      * true:
@@ -2547,7 +2549,7 @@ abstract class BaseASParser extends LLkParser implements IProblemReporter
         assert openT != null && openT.getType() == TOKEN_BLOCK_OPEN : "Expected '{' token";
 
         // this feature is not applicable to this function node
-        if (deferFunctionBody != DeferFunctionBody.ENABLED ||
+        if (deferFunctionBody == DeferFunctionBody.DISABLED ||
             functionNode.getParent() instanceof FunctionObjectNode)
             return;
 
@@ -2587,7 +2589,11 @@ abstract class BaseASParser extends LLkParser implements IProblemReporter
         assert LA(1) == TOKEN_BLOCK_CLOSE || LA(1) == EOF : "Loop should stop before the '}' of the function body or 'eof'.";
         assert prevToken != null : "Function body must have at least one token if we reached here.";
 
-        final StringBuilder functionBodyText = tryGetFunctionBodyText(openT, functionBodyHasInclude, prevToken);
+        final StringBuilder functionBodyText;
+        if (deferFunctionBody == DeferFunctionBody.ENABLED)
+            functionBodyText = tryGetFunctionBodyText(openT, functionBodyHasInclude, prevToken);
+        else
+            functionBodyText = null;
         functionNode.setFunctionBodyInfo(openT, prevToken, configProcessor, functionBodyText);
         fileNodeAccumulator.addDeferredFunctionNode(functionNode);
     }
@@ -29,6 +29,13 @@ public enum DeferFunctionBody
      */
     ENABLED,
 
+    /**
+     * Enable the feature without caching the text of the function bodies.
+     * Only the offsets of the bodies are recorded, and the bodies are read
+     * from the source file again when they are parsed.
+     */
+    ON_DEMAND,
+
     /**
      * Disable the feature.
      */
@@ -20,10 +20,12 @@
 package org.apache.royale.compiler.internal.parsing.mxml;
 
 import java.io.Closeable;
+import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.Reader;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 
@@ -76,6 +78,8 @@ public class MXMLTokenizer implements IMXMLTokenizer, Closeable
 	
 	private static final int SIZE = 100;
 	
+	private static final int READ_SIZE = 8192;
+	
 	private List<ICompilerProblem> problems;
 
     private String path;
@@ -248,12 +252,50 @@ public class MXMLTokenizer implements IMXMLTokenizer, Closeable
 	 * @return			List of MXMLTokens
 	 */
 	public List<MXMLToken> parseTokens(Reader input) {
+		setReader(input);
+		return parseTokens();
+	}
+
+	/**
+	 * Parse the contents of a file. The file is read into one array, which
+	 * the raw tokenizer scans in place instead of copying the characters
+	 * from a reader into its own buffer as it goes.
+	 * @param specification	File to be parsed
+	 * @return			List of MXMLTokens
+	 * @throws FileNotFoundException if the file doesn't exist
+	 */
+	public List<MXMLToken> parseTokens(IFileSpecification specification) throws FileNotFoundException {
+		final Reader reader = specification.createReader();
+		// The number of bytes of a file is enough for its characters in any
+		// encoding, and the extra one lets the end of the file be read
+		// without growing the array.
+		final long fileLength = specification.isOpenDocument() ? 0 : new File(specification.getPath()).length();
+		char[] chars = new char[fileLength > 0 && fileLength < Integer.MAX_VALUE ? (int)fileLength + 1 : READ_SIZE];
+		int length = 0;
+		try {
+			int count;
+			while ((count = reader.read(chars, length, chars.length - length)) != -1) {
+				length += count;
+				if (length == chars.length)
+					chars = Arrays.copyOf(chars, chars.length * 2);
+			}
+		} catch (IOException e) {
+		    ICompilerProblem problem = new InternalCompilerProblem2(path, e, SUB_SYSTEM);
+		    problems.add(problem);
+		} finally {
+			IOUtils.closeQuietly(reader);
+		}
+		tokenizer.reset();
+		tokenizer.yyreset(chars, length);
+		return parseTokens();
+	}
+
+	private List<MXMLToken> parseTokens() {
 		// Add fake characters onto the end of the stream to make it easier to handle
 		// unclosed constructs like <![CDATA[ and <!--.
 		wasRepaired = false;
-		setReader(input);
 		// Set the start offset in the tokenizer
-		// This is done after setReader() as setReader() resets the tokenizer, setting yychar to 0
+		// This is done after the tokenizer is reset, as resetting it sets yychar to 0
 		tokenizer.setOffset(startOffset);
 		MXMLToken token = null;
 		List<MXMLToken> list = new ArrayList<MXMLToken>(SIZE);
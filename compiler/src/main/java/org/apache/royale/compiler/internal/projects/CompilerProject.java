@@ -42,6 +42,7 @@ import org.apache.royale.compiler.definitions.IDefinition;
 import org.apache.royale.compiler.definitions.IFunctionDefinition;
 import org.apache.royale.compiler.definitions.INamespaceDefinition;
 import org.apache.royale.compiler.definitions.ITypeDefinition;
+import org.apache.royale.compiler.internal.caches.CompilationUnitDiskCache;
 import org.apache.royale.compiler.internal.definitions.ClassDefinition;
 import org.apache.royale.compiler.internal.definitions.NamespaceDefinition;
 import org.apache.royale.compiler.internal.embedding.EmbedData;
@@ -49,6 +50,7 @@ import org.apache.royale.compiler.internal.parsing.as.IProjectConfigVariables;
 import org.apache.royale.compiler.internal.scopes.ASProjectScope;
 import org.apache.royale.compiler.internal.scopes.ASScope;
 import org.apache.royale.compiler.internal.scopes.ASScopeCache;
+import org.apache.royale.compiler.internal.scopes.ScopeResolutionCache;
 import org.apache.royale.compiler.internal.targets.AppSWFTarget;
 import org.apache.royale.compiler.internal.targets.Target;
 import org.apache.royale.compiler.internal.units.EmbedCompilationUnit;
@@ -67,6 +69,7 @@ import org.apache.royale.compiler.units.requests.IRequest;
 import org.apache.royale.utils.FilenameNormalization;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
+import com.google.common.cache.CacheStats;
 import com.google.common.cache.LoadingCache;
 
 /**
@@ -111,13 +114,23 @@ public abstract class CompilerProject implements ICompilerProject
 
     /**
      * Map that holds caches for each scope in the project - uses a Concurrent Map, with weak keys so that the caches
-     * will go away once the corresponding scope has been gc'ed.  Uses soft values so the caches may be collected
-     * if the VM is running out of memory
+     * will go away once the corresponding scope has been gc'ed.  The number of caches is bounded, so the least
+     * recently used caches are dropped when the project has more scopes than that, and the evictions are recorded
+     * in the statistics of the map.
      */
-    private LoadingCache<ASScope, ASScopeCache> scopeCaches = CacheBuilder.newBuilder()
-        .weakKeys()
-        .softValues()
-        .build(new ScopeCacheLoader(this));
+    private volatile LoadingCache<ASScope, ASScopeCache> scopeCaches =
+        createScopeCaches(ScopeResolutionCache.DEFAULT_MAXIMUM_SCOPES);
+
+    private LoadingCache<ASScope, ASScopeCache> createScopeCaches(long maximumScopes)
+    {
+        return CacheBuilder.newBuilder()
+            .weakKeys()
+            .maximumSize(maximumScopes)
+            .recordStats()
+            .build(new ScopeCacheLoader(this));
+    }
+
+    private long scopeCacheMaximumScopes = ScopeResolutionCache.DEFAULT_MAXIMUM_SCOPES;
  
     /** This thread local is to avoid every thread contending for access to the scopeCaches map, which is shared
      *  across the entire Project.
@@ -127,6 +140,13 @@ public abstract class CompilerProject implements ICompilerProject
      *  won't have to do any locking. 
      */    
     private ThreadLocal<Map<ASScope, WeakReference<ASScopeCache>> > threadLocalScopeCache; 
+
+    /**
+     * The bound and the statistics of the name lookups and constant values
+     * cached by the {@link ASScopeCache}s of the project.
+     */
+    private volatile ScopeResolutionCache scopeResolutionCache =
+        new ScopeResolutionCache(ScopeResolutionCache.DEFAULT_MAXIMUM_SIZE);
     
     /**
      * Dependency graph is used to keep track of which {@link ICompilationUnit}
@@ -142,12 +162,29 @@ public abstract class CompilerProject implements ICompilerProject
      * If true, use parallel code generation of method bodies.
      */
     private boolean useParallelCodeGen;
+
+    /**
+     * If true, the bodies of functions in source files are read from the
+     * files when they are needed, instead of being cached during parsing.
+     */
+    private boolean parseFunctionBodiesOnDemand;
     
     /**
      * If true, use function inlining in code generation.
      */
     private boolean enableInlining;
 
+    /**
+     * Optional on-disk cache of generated ABC bytes, or null.
+     */
+    private CompilationUnitDiskCache compilationUnitDiskCache;
+
+    /**
+     * Holds the syntax trees of compilation units within a memory budget, or
+     * null if the trees are not bounded.
+     */
+    private SyntaxTreeBudget syntaxTreeBudget;
+
     private final boolean useAS3;
 
     /**
@@ -725,6 +762,70 @@ public abstract class CompilerProject implements ICompilerProject
         initThreadLocalCaches();
     }
 
+    /**
+     * Gets the bound and the statistics of the name lookups and constant
+     * values cached by the scopes in the project.
+     * 
+     * @return the settings shared by the {@link ASScopeCache}s of the project.
+     */
+    public ScopeResolutionCache getScopeResolutionCache()
+    {
+        return scopeResolutionCache;
+    }
+
+    /**
+     * Sets the maximum number of entries of each kind of lookup kept by each
+     * {@link ASScopeCache} of the project. The cached results are discarded.
+     * 
+     * @param maximumSize the maximum number of entries of each kind.
+     */
+    public void setScopeCacheMaximumSize(long maximumSize)
+    {
+        if (maximumSize == scopeResolutionCache.getMaximumSize())
+            return;
+        scopeResolutionCache = new ScopeResolutionCache(maximumSize);
+        scopeCaches.invalidateAll();
+        initThreadLocalCaches();
+    }
+
+    /**
+     * Sets the maximum number of {@link ASScopeCache}s kept by the project.
+     * The least recently used caches are dropped beyond that. The cached
+     * results are discarded.
+     * 
+     * @param maximumScopes the maximum number of scopes with a cache.
+     */
+    public void setScopeCacheMaximumScopes(long maximumScopes)
+    {
+        if (maximumScopes == scopeCacheMaximumScopes)
+            return;
+        scopeCacheMaximumScopes = maximumScopes;
+        scopeCaches = createScopeCaches(maximumScopes);
+        initThreadLocalCaches();
+    }
+
+    /**
+     * @return the maximum number of {@link ASScopeCache}s kept by the
+     * project.
+     */
+    public long getScopeCacheMaximumScopes()
+    {
+        return scopeCacheMaximumScopes;
+    }
+
+    /**
+     * Gets the statistics of the {@link ASScopeCache}s of the project: a miss
+     * is the creation of the cache of a scope, and an eviction is the removal
+     * of a cache because the project has more than
+     * {@link #getScopeCacheMaximumScopes()} of them.
+     * 
+     * @return the statistics of the scope caches.
+     */
+    public CacheStats getScopeCacheStats()
+    {
+        return scopeCaches.stats();
+    }
+
     public void addGlobalUsedNamespacesToNamespaceSet(Set<INamespaceDefinition> nsSet)
     {
         nsSet.add(NamespaceDefinition.getPublicNamespaceDefinition());
@@ -920,6 +1021,43 @@ public abstract class CompilerProject implements ICompilerProject
     {
         this.useParallelCodeGen = useParallelCodeGeneration;
     }
+
+    /**
+     * Gets a boolean that indicates whether function bodies are parsed on
+     * demand. If true, parsing a source file only records the offsets of its
+     * function bodies, and a body is read from the file and parsed when code
+     * generation or semantic analysis needs it.
+     * @return true if function bodies are parsed on demand, false otherwise.
+     */
+    public boolean getParseFunctionBodiesOnDemand()
+    {
+        return parseFunctionBodiesOnDemand;
+    }
+
+    public void setParseFunctionBodiesOnDemand(boolean parseFunctionBodiesOnDemand)
+    {
+        this.parseFunctionBodiesOnDemand = parseFunctionBodiesOnDemand;
+    }
+    
+    /**
+     * Gets the on-disk cache used to reuse the ABC bytes of unchanged
+     * compilation units across compiler processes.
+     * @return the cache, or null if the persistent cache is disabled.
+     */
+    public CompilationUnitDiskCache getCompilationUnitDiskCache()
+    {
+        return compilationUnitDiskCache;
+    }
+
+    /**
+     * Sets the on-disk cache used to reuse the ABC bytes of unchanged
+     * compilation units across compiler processes.
+     * @param compilationUnitDiskCache the cache, or null to disable it.
+     */
+    public void setCompilationUnitDiskCache(CompilationUnitDiskCache compilationUnitDiskCache)
+    {
+        this.compilationUnitDiskCache = compilationUnitDiskCache;
+    }
     
     @Override
     public Set<ICompilationUnit> getDirectDependencies(ICompilationUnit cu)
@@ -959,6 +1097,40 @@ public abstract class CompilerProject implements ICompilerProject
     {
     }
 
+    /**
+     * Gets the memory budget of the syntax trees of the compilation units.
+     * @return the budget, or null if the syntax trees are not bounded.
+     */
+    public SyntaxTreeBudget getSyntaxTreeBudget()
+    {
+        return syntaxTreeBudget;
+    }
+
+    /**
+     * Sets the memory budget of the syntax trees of the compilation units.
+     * @param maximumBytes the estimated size of the syntax trees kept once
+     * the build no longer needs them, or a negative value to not bound them.
+     */
+    public void setSyntaxTreeBudget(long maximumBytes)
+    {
+        syntaxTreeBudget = maximumBytes >= 0 ? new SyntaxTreeBudget(maximumBytes) : null;
+    }
+
+    /**
+     * Called when the ABC of a compilation unit is generated and its semantic
+     * problems are found. By default the build no longer needs the syntax
+     * tree then. Projects whose targets generate code from the syntax trees
+     * later release them with {@link SyntaxTreeBudget#release(ICompilationUnit)}
+     * themselves.
+     * 
+     * @param unit The compilation unit.
+     */
+    public void codeGenerationCompleted(ICompilationUnit unit)
+    {
+        if (syntaxTreeBudget != null)
+            syntaxTreeBudget.release(unit);
+    }
+
     /**
      * Override this to permit package aliasing on imports and elsewhere
      * 
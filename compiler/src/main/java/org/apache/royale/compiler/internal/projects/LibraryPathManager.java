@@ -40,6 +40,7 @@ import org.apache.commons.io.IOCase;
 import org.apache.commons.io.filefilter.FileFilterUtils;
 
 import org.apache.royale.compiler.internal.caches.CacheStoreKeyBase;
+import org.apache.royale.compiler.internal.caches.FileScopeCache;
 import org.apache.royale.compiler.internal.caches.SWFCache;
 import org.apache.royale.compiler.internal.units.ResourceBundleCompilationUnit;
 import org.apache.royale.compiler.internal.units.SWCCompilationUnit;
@@ -646,6 +647,10 @@ public final class LibraryPathManager
             ISWC swc = swcManager.get(swcFile);
             problems.addAll(swc.getProblems());
             
+            // An index is only written for SWCs without library problems.
+            if (((FileScopeCache)swcManager.getFileScopeCache()).findDefinitionIndex(swc) != null)
+                continue;
+
             for (ISWCLibrary library : swc.getLibraries())
             {
                 final CacheStoreKeyBase key = SWFCache.createKey(swc, library.getPath());
@@ -36,7 +36,6 @@ import org.apache.royale.compiler.config.Configuration;
 import org.apache.royale.compiler.config.RSLSettings;
 import org.apache.royale.compiler.constants.IASLanguageConstants;
 import org.apache.royale.compiler.constants.IMetaAttributeConstants;
-import org.apache.royale.compiler.css.ICSSManager;
 import org.apache.royale.compiler.css.ICSSRule;
 import org.apache.royale.compiler.definitions.IClassDefinition;
 import org.apache.royale.compiler.definitions.IDefinition;
@@ -142,7 +141,7 @@ public class RoyaleProject extends ASProject implements IRoyaleProject, ICompile
         this(workspace, IASDocBundleDelegate.NIL_DELEGATE);
     }
 
-    private final ICSSManager cssManager;
+    private final CSSManager cssManager;
     
     private Collection<String> locales;
     
@@ -498,6 +497,7 @@ public class RoyaleProject extends ASProject implements IRoyaleProject, ICompile
     private Map<File, List<String>> extensions;
     private boolean isRoyale = false;
     private boolean strictXML = false;
+    private boolean useParallelMXMLTreeBuilding = false;
 
     /**
      * QName of the class definition for {@code <s:HTTPService>} tag.
@@ -1184,6 +1184,7 @@ public class RoyaleProject extends ASProject implements IRoyaleProject, ICompile
     public void invalidateManifestManager()
     {
         manifestManager = null;
+        cssManager.clean();
     }
 
     /**
@@ -1496,7 +1497,7 @@ public class RoyaleProject extends ASProject implements IRoyaleProject, ICompile
     }
     
     @Override
-    public ICSSManager getCSSManager()
+    public CSSManager getCSSManager()
     {
         return cssManager;
     }
@@ -2128,6 +2129,7 @@ public class RoyaleProject extends ASProject implements IRoyaleProject, ICompile
     {
         super.clean();
         manifestManager = null;
+        cssManager.clean();
     }
 
     @Override
@@ -2236,6 +2238,21 @@ public class RoyaleProject extends ASProject implements IRoyaleProject, ICompile
     {
         return this.strictXML = strictXML;
     }
+
+    /**
+     * Gets a boolean that indicates whether the databinding expressions of
+     * MXML documents are parsed in parallel while their trees are built.
+     * @return true if the expressions are parsed in parallel, false otherwise.
+     */
+    public boolean getUseParallelMXMLTreeBuilding()
+    {
+        return useParallelMXMLTreeBuilding;
+    }
+
+    public void setUseParallelMXMLTreeBuilding(boolean useParallelMXMLTreeBuilding)
+    {
+        this.useParallelMXMLTreeBuilding = useParallelMXMLTreeBuilding;
+    }
     
     /**
      * The base for compiler-generated id's on instance tags that need an id but
@@ -33,6 +33,7 @@ import org.apache.royale.compiler.config.Configurator;
 import org.apache.royale.compiler.filespecs.FileSpecification;
 import org.apache.royale.compiler.fxg.flex.FlexFXG2SWFTranscoder;
 import org.apache.royale.compiler.internal.as.codegen.BindableHelper;
+import org.apache.royale.compiler.internal.caches.CompilationUnitDiskCache;
 import org.apache.royale.compiler.internal.config.RoyaleTargetSettings;
 import org.apache.royale.compiler.internal.definitions.ClassDefinition;
 import org.apache.royale.compiler.internal.embedding.transcoders.DataTranscoder;
@@ -44,6 +45,8 @@ import org.apache.royale.compiler.projects.IRoyaleProject;
 import org.apache.royale.compiler.projects.ICompilerProject;
 import org.apache.royale.compiler.targets.ITargetSettings;
 import org.apache.royale.swc.ISWC;
+import org.apache.royale.swc.ISWCManager;
+import org.apache.royale.swc.SWCManager;
 import org.apache.royale.utils.FilenameNormalization;
 
 /**
@@ -269,6 +272,8 @@ public class RoyaleProjectConfigurator extends Configurator
             project.setAllowPrivateConstructors(configuration.getCompilerAllowPrivateConstructors());
 
             project.setStrictIdentifierNames(configuration.getCompilerStrictIdentifierNames());
+            project.setParseFunctionBodiesOnDemand(configuration.getCompilerParseFunctionBodiesOnDemand());
+            project.setUseParallelMXMLTreeBuilding(configuration.getCompilerParallelMXMLTreeBuilding());
             
             project.setSwfDebugfileAlias(configuration.getSwfDebugfileAlias());
             if (configuration.getSwfDebugfileAlias() != null)
@@ -486,6 +491,30 @@ public class RoyaleProjectConfigurator extends Configurator
     private void setupCodegenOptions(RoyaleProject royaleProject)
     {
         royaleProject.setEnableInlining(configuration.isInliningEnabled());
+        royaleProject.setUseParallelCodeGeneration(configuration.getParallelCodeGeneration());
+
+        final File compilationCacheDirectory = configuration.getCompilationCacheDirectory();
+        if (compilationCacheDirectory != null && getConfigurationBuffer() != null)
+        {
+            final String configurationDigest =
+                CompilationUnitDiskCache.computeConfigurationDigest(getConfigurationBuffer());
+            royaleProject.setCompilationUnitDiskCache(
+                new CompilationUnitDiskCache(compilationCacheDirectory, configurationDigest));
+        }
+        else
+        {
+            royaleProject.setCompilationUnitDiskCache(null);
+        }
+
+        final ISWCManager swcManager = royaleProject.getWorkspace().getSWCManager();
+        if (swcManager instanceof SWCManager)
+            ((SWCManager)swcManager).setDefinitionIndexDirectory(configuration.getDefinitionIndexDirectory());
+        royaleProject.getWorkspace().setEmbedCacheDirectory(configuration.getEmbedCacheDirectory());
+
+        final int syntaxTreeBudget = configuration.getSyntaxTreeBudget();
+        royaleProject.setSyntaxTreeBudget(syntaxTreeBudget < 0 ? -1 : syntaxTreeBudget * 1024L * 1024L);
+        royaleProject.setScopeCacheMaximumSize(Math.max(0, configuration.getScopeCacheSize()));
+        royaleProject.setScopeCacheMaximumScopes(Math.max(0, configuration.getScopeCacheScopes()));
     }
     
     /**
@@ -0,0 +1,248 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.compiler.internal.projects;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.royale.compiler.tree.as.IASNode;
+import org.apache.royale.compiler.units.ICompilationUnit;
+
+/**
+ * Holds the syntax trees of the ActionScript compilation units of a project
+ * within a memory budget.
+ * <p>
+ * A compilation unit only holds its syntax tree weakly once its ABC is
+ * generated, and builds the tree again from source if it is requested
+ * after it was collected. The budget keeps the trees strongly until the
+ * build no longer needs them, that is until the unit is released with
+ * {@link #release(ICompilationUnit)} after its code is generated. Released
+ * trees are kept while the retained trees fit into the budget, and the ones
+ * released first are dropped first when they don't.
+ * <p>
+ * Sizes are estimated from the number of nodes of a tree, without the
+ * bodies of functions that are not parsed. The trees are walked before the
+ * budget is locked, so that the threads generating code only wait for each
+ * other to update the bookkeeping.
+ */
+public final class SyntaxTreeBudget
+{
+    /**
+     * The estimated size of a node, including its share of scopes,
+     * definitions and tokens.
+     */
+    private static final long ESTIMATED_NODE_BYTES = 96;
+
+    private static final class Entry
+    {
+        IASNode ast;
+        long bytes;
+    }
+
+    /**
+     * @param maximumBytes The budget in bytes.
+     */
+    public SyntaxTreeBudget(long maximumBytes)
+    {
+        this.maximumBytes = maximumBytes;
+    }
+
+    private final long maximumBytes;
+
+    // Released units, in the order they were released.
+    private final LinkedHashMap<ICompilationUnit, Entry> released = new LinkedHashMap<ICompilationUnit, Entry>();
+    private final Map<ICompilationUnit, Entry> unreleased = new HashMap<ICompilationUnit, Entry>();
+    // Released units whose trees were dropped.
+    private final Set<ICompilationUnit> dropped = new HashSet<ICompilationUnit>();
+
+    private long retainedBytes;
+    private long peakRetainedBytes;
+    private int evictionCount;
+    private int rebuildCount;
+
+    /**
+     * Retain the syntax tree of a compilation unit. If the unit was already
+     * released, the tree was built again after it was dropped, and it can
+     * be dropped again right away.
+     * 
+     * @param unit The compilation unit.
+     * @param ast Its syntax tree.
+     */
+    public void retain(ICompilationUnit unit, IASNode ast)
+    {
+        final long bytes = estimateBytes(ast);
+        synchronized (this)
+        {
+            Entry entry;
+            if (dropped.remove(unit))
+            {
+                rebuildCount++;
+                entry = new Entry();
+                released.put(unit, entry);
+            }
+            else
+            {
+                entry = released.get(unit);
+                if (entry == null)
+                    entry = unreleased.get(unit);
+                if (entry == null)
+                {
+                    entry = new Entry();
+                    unreleased.put(unit, entry);
+                }
+            }
+            entry.ast = ast;
+            setBytes(entry, bytes);
+            trim();
+        }
+    }
+
+    /**
+     * Allow the syntax tree of a compilation unit to be dropped, because the
+     * build no longer needs it.
+     * 
+     * @param unit The compilation unit.
+     */
+    public void release(ICompilationUnit unit)
+    {
+        final Entry entry;
+        final IASNode ast;
+        synchronized (this)
+        {
+            entry = unreleased.get(unit);
+            if (entry == null)
+                return;
+            ast = entry.ast;
+        }
+
+        // Function bodies may have been parsed since the tree was retained.
+        final long bytes = estimateBytes(ast);
+        synchronized (this)
+        {
+            if (unreleased.get(unit) != entry)
+                return;
+            unreleased.remove(unit);
+            released.put(unit, entry);
+            // A tree retained in the meantime was estimated by retain().
+            if (entry.ast == ast)
+                setBytes(entry, bytes);
+            trim();
+        }
+    }
+
+    /**
+     * Forget a compilation unit, for example because it was invalidated.
+     * 
+     * @param unit The compilation unit.
+     */
+    public synchronized void remove(ICompilationUnit unit)
+    {
+        dropped.remove(unit);
+        Entry entry = released.remove(unit);
+        if (entry == null)
+            entry = unreleased.remove(unit);
+        if (entry != null)
+            retainedBytes -= entry.bytes;
+    }
+
+    /**
+     * @return The estimated size of the retained syntax trees.
+     */
+    public synchronized long getRetainedBytes()
+    {
+        return retainedBytes;
+    }
+
+    /**
+     * @return The largest estimated size of the retained syntax trees.
+     */
+    public synchronized long getPeakRetainedBytes()
+    {
+        return peakRetainedBytes;
+    }
+
+    /**
+     * @return The number of syntax trees dropped to stay within the budget.
+     */
+    public synchronized int getEvictionCount()
+    {
+        return evictionCount;
+    }
+
+    /**
+     * @return The number of syntax trees built again after they were
+     * dropped.
+     */
+    public synchronized int getRebuildCount()
+    {
+        return rebuildCount;
+    }
+
+    public long getMaximumBytes()
+    {
+        return maximumBytes;
+    }
+
+    private void setBytes(Entry entry, long bytes)
+    {
+        retainedBytes -= entry.bytes;
+        entry.bytes = bytes;
+        retainedBytes += entry.bytes;
+        peakRetainedBytes = Math.max(peakRetainedBytes, retainedBytes);
+    }
+
+    private void trim()
+    {
+        for (Iterator<Map.Entry<ICompilationUnit, Entry>> i = released.entrySet().iterator();
+             i.hasNext() && retainedBytes > maximumBytes;)
+        {
+            final Map.Entry<ICompilationUnit, Entry> e = i.next();
+            retainedBytes -= e.getValue().bytes;
+            i.remove();
+            dropped.add(e.getKey());
+            evictionCount++;
+        }
+    }
+
+    static long estimateBytes(IASNode ast)
+    {
+        long nodes = 0;
+        final Deque<IASNode> stack = new ArrayDeque<IASNode>();
+        stack.push(ast);
+        while (!stack.isEmpty())
+        {
+            final IASNode node = stack.pop();
+            nodes++;
+            for (int i = 0, count = node.getChildCount(); i < count; i++)
+            {
+                final IASNode child = node.getChild(i);
+                if (child != null)
+                    stack.push(child);
+            }
+        }
+        return nodes * ESTIMATED_NODE_BYTES;
+    }
+}
@@ -32,7 +32,6 @@ import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import com.google.common.base.Function;
@@ -93,7 +92,11 @@ import org.apache.royale.compiler.workspaces.IWorkspace;
  * <p>
  * Since multiple compilation units need to concurrently access a project scope,
  * it uses a ReadWriteLock to allow either multiple readers with no writer or a
- * single writer with no readers.
+ * single writer with no readers. Lookups of a single name, which are by far
+ * the most common, don't take the read lock unless a writer holds the write
+ * lock: the definition store is a {@link ConcurrentDefinitionStore}, whose
+ * definition sets are replaced rather than modified, and a lookup is only
+ * repeated under the read lock if the write lock was taken while it ran.
  * <p>
  * A project scope can store a special kind of definition called a <i>definition
  * promise</i>, represented by <code>ASProjectScope.DefinitionPromise</code>.
@@ -209,7 +212,7 @@ public class ASProjectScope extends ASScopeBase
         }
         // Hold the lock until we're done adding all the definitions
         // so that no look ups occur when we're in the middle of adding definitions to the project.
-        writeLock.lock();
+        lockForWriting();
         try
         {
             for (int i = 0; i < size; ++i)
@@ -218,7 +221,7 @@ public class ASProjectScope extends ASScopeBase
         }
         finally
         {
-            writeLock.unlock();
+            unlockForWriting();
         }
     }
 
@@ -229,11 +232,17 @@ public class ASProjectScope extends ASScopeBase
     // or its scopeToCompilationUnitMap map, we lock readLock to allow
     // multiple-readers-and-no-writers or lock writeLock to allow
     // no-readers-and-one-writer.
-    private final ReadWriteLock readWriteLock;
+    private final ReentrantReadWriteLock readWriteLock;
     private final Lock readLock;
     private final Lock writeLock;
     private final Lock newVectorClassLock;
 
+    // Incremented when a thread takes the write lock and when it releases
+    // it, so it is odd while the write lock is held. Lookups that don't take
+    // the read lock check that it did not change while they ran.
+    // See lockForWriting() and unlockForWriting().
+    private volatile long writeVersion;
+
     /**
      * The value is a WeakReference to a ICompilationUnit, as the
      * DependencyGraph should have the only long held hard reference to a
@@ -268,7 +277,7 @@ public class ASProjectScope extends ASScopeBase
      * definition is added or removed. Note that the set contains a "wildcard"
      * version of every dotted name.
      */
-    private Set<String> validImports;
+    private volatile Set<String> validImports;
     
     private final LoadingCache<ICompilationUnit, Collection<IASScope>> compilationUnitToScopeList =
         CacheBuilder.newBuilder()
@@ -299,6 +308,7 @@ public class ASProjectScope extends ASScopeBase
 
         qnameToShadowedDefinitions = null;
 
+        definitionStore = new ConcurrentDefinitionStore();
         super.addDefinitionToStore(ClassDefinition.getAnyTypeClassDefinition());
         super.addDefinitionToStore(ClassDefinition.getVoidClassDefinition());
     }
@@ -319,15 +329,46 @@ public class ASProjectScope extends ASScopeBase
         return definitionPromise;
     }
 
-    private IDefinitionSet replacePromisesWithDefinitions(IDefinitionSet definitionSet)
+    /**
+     * Take the write lock. Every change to this scope is made with this
+     * method, rather than writeLock.lock(), so that lookups without the read
+     * lock know when they have to be repeated.
+     */
+    private void lockForWriting()
+    {
+        writeLock.lock();
+        if (readWriteLock.getWriteHoldCount() == 1)
+            writeVersion++;
+    }
+
+    /**
+     * Release the write lock taken by {@link #lockForWriting()}.
+     */
+    private void unlockForWriting()
+    {
+        if (readWriteLock.getWriteHoldCount() == 1)
+            writeVersion++;
+        writeLock.unlock();
+    }
+
+    private ConcurrentDefinitionStore getConcurrentDefinitionStore()
+    {
+        return (ConcurrentDefinitionStore)definitionStore;
+    }
+
+    private static boolean containsPromise(IDefinitionSet definitionSet)
+    {
+        int n = definitionSet.getSize();
+        for (int i = 0; i < n; i++)
+        {
+            if (definitionSet.getDefinition(i) instanceof DefinitionPromise)
+                return true;
+        }
+        return false;
+    }
+
+    private IDefinitionSet replacePromisesWithDefinitions(String name, IDefinitionSet definitionSet)
     {
-        // If the existing definition set is a SmallDefinitionSet or a LargeDefinitionSet,
-        // we can return the same set with the promises replaced by actual definitions.
-        // If the existing definition set is a promise acting as its own set-of-size-1,
-        // then we have to return a different set (the actual definition acting as its
-        // own set-of-size-1.
-        IDefinitionSet returnedDefinitionSet = definitionSet;
-        
         int n = definitionSet.getSize();
         for (int i = 0; i < n; i++)
         {
@@ -338,14 +379,14 @@ public class ASProjectScope extends ASScopeBase
 
                 // Release the writeLock before calling getActualDefinition(),
                 // otherwise we can deadlock on the getFileScopeRequest().
-                writeLock.unlock();
+                unlockForWriting();
                 try
                 {
                     definition = promise.getActualDefinition();
                 }
                 finally
                 {
-                    writeLock.lock();
+                    lockForWriting();
                 }
 
                 if (definition != null)
@@ -354,13 +395,11 @@ public class ASProjectScope extends ASScopeBase
                     // promise hasn't already been replaced by another thread
                     // between giving up the write lock, parsing, and getting
                     // the lock again.
-                    if (definitionSet.getDefinition(i) == promise)
+                    IDefinitionSet currentDefinitionSet = super.getLocalDefinitionSetByName(name);
+                    if (currentDefinitionSet != null && indexOf(currentDefinitionSet, promise) != -1)
                     {
-                        if (definitionSet.getMaxSize() == 1)
-                            returnedDefinitionSet = (DefinitionBase)definition;
-                        else
-                            ((IMutableDefinitionSet)definitionSet).replaceDefinition(i, definition);
-                        
+                        getConcurrentDefinitionStore().replace(promise, definition);
+
                         if (shouldBeCached(definition))
                             setBuiltinDefinition(definition);
                     }
@@ -368,60 +407,62 @@ public class ASProjectScope extends ASScopeBase
             }
         }
         
-        return returnedDefinitionSet;
+        return super.getLocalDefinitionSetByName(name);
+    }
+
+    private static int indexOf(IDefinitionSet definitionSet, IDefinition definition)
+    {
+        int n = definitionSet.getSize();
+        for (int i = 0; i < n; i++)
+        {
+            if (definitionSet.getDefinition(i) == definition)
+                return i;
+        }
+        return -1;
     }
 
     @Override
     public IDefinitionSet getLocalDefinitionSetByName(String name)
     {
         IDefinitionSet definitionSet = null;
-        boolean containsPromise = false;
+        boolean found = false;
 
-        readLock.lock();
-        try
+        // Get the definition set from the store without the read lock,
+        // unless a writer changed the store in the meantime.
+        final long version = writeVersion;
+        if ((version & 1) == 0)
         {
-            // Get the definition set from the store.
             definitionSet = super.getLocalDefinitionSetByName(name);
-
-            // Does it contain any promises?
-            if (definitionSet != null)
-            {
-                int n = definitionSet.getSize();
-                for (int i = 0; i < n; i++)
-                {
-                    IDefinition definition = definitionSet.getDefinition(i);
-                    if (definition instanceof DefinitionPromise)
-                    {
-                        containsPromise = true;
-                        break;
-                    }
-                }
-            }
-        }
-        finally
-        {
-            readLock.unlock();
+            found = writeVersion == version;
         }
 
-        IDefinitionSet returnedDefinitionSet = definitionSet;
-
-        if (containsPromise)
+        if (!found)
         {
-            // Note that we lock for writing only if there is a promise to replace.
-            writeLock.lock();
+            readLock.lock();
             try
             {
-                returnedDefinitionSet = replacePromisesWithDefinitions(definitionSet);
-                if (returnedDefinitionSet != definitionSet)
-                    definitionStore.putDefinitionSetByName(name, returnedDefinitionSet);
+                definitionSet = super.getLocalDefinitionSetByName(name);
             }
             finally
             {
-                writeLock.unlock();
+                readLock.unlock();
             }
         }
 
-        return returnedDefinitionSet;
+        // Does it contain any promises?
+        if (definitionSet == null || !containsPromise(definitionSet))
+            return definitionSet;
+
+        // Note that we lock for writing only if there is a promise to replace.
+        lockForWriting();
+        try
+        {
+            return replacePromisesWithDefinitions(name, definitionSet);
+        }
+        finally
+        {
+            unlockForWriting();
+        }
     }
 
     private static boolean referenceMatchesQName(IWorkspace workspace, IResolvedQualifiersReference reference, String qualifiedName)
@@ -898,7 +939,7 @@ public class ASProjectScope extends ASScopeBase
     @Override
     public void addDefinition(IDefinition def)
     {
-        writeLock.lock();
+        lockForWriting();
         try
         {
             assert getCompilationUnitForDefinition(def) != null : "def must either be a definition promise or addScopeForCompilationUnit must be called before addDefinition";
@@ -917,8 +958,9 @@ public class ASProjectScope extends ASScopeBase
             if (shouldAddDef)
             {
                 if (existingDef != null)
-                    super.removeDefinition(existingDef);
-                addDefinitionToStore(def);
+                    replaceDefinitionInStore(existingDef, def);
+                else
+                    addDefinitionToStore(def);
             }
 
             assert (def instanceof DefinitionPromise) || (getCompilationUnitForScope(def.getContainingScope()) != null);
@@ -933,15 +975,51 @@ public class ASProjectScope extends ASScopeBase
             if (!def.isGeneratedEmbedClass())
                 validImports = null;
 
-            writeLock.unlock();
+            unlockForWriting();
         }
     }
 
     @Override
     protected void addDefinitionToStore(IDefinition def)
     {
-        super.addDefinitionToStore(def);
+        lockForWriting();
+        try
+        {
+            super.addDefinitionToStore(def);
+            definitionAddedToStore(def);
+        }
+        finally
+        {
+            unlockForWriting();
+        }
+    }
 
+    @Override
+    protected void removeDefinitionFromStore(IDefinition def)
+    {
+        lockForWriting();
+        try
+        {
+            super.removeDefinitionFromStore(def);
+        }
+        finally
+        {
+            unlockForWriting();
+        }
+    }
+
+    /**
+     * Replaces a visible definition with one that has the same qualified
+     * name, without the name ever being missing from the store.
+     */
+    private void replaceDefinitionInStore(IDefinition oldDef, IDefinition newDef)
+    {
+        getConcurrentDefinitionStore().replace(oldDef, newDef);
+        definitionAddedToStore(newDef);
+    }
+
+    private void definitionAddedToStore(IDefinition def)
+    {
         if (!(def instanceof DefinitionPromise) && shouldBeCached(def))
             setBuiltinDefinition(def);
 
@@ -1057,7 +1135,7 @@ public class ASProjectScope extends ASScopeBase
     @Override
     public void removeDefinition(IDefinition definition)
     {
-        writeLock.lock();
+        lockForWriting();
         try
         {
             // Find the visible definition with the same qname
@@ -1072,14 +1150,16 @@ public class ASProjectScope extends ASScopeBase
                 if (!(visibleDefinition instanceof DefinitionPromise) && shouldBeCached(visibleDefinition))
                     removeBuiltinDefinition(visibleDefinition);
 
-                // The definition we are removing is not shadowed by another
-                // definition, so remove the definition from the definition store.
-                super.removeDefinition(definition);
-
                 // Next we need to see if the definition we are removing
                 // shadows some other definition.
                 Set<IDefinition> shadowedDefs = getShadowedDefinitions(definition);
-                if (shadowedDefs != null)
+                if (shadowedDefs == null)
+                {
+                    // The definition we are removing is not shadowed by another
+                    // definition, so remove the definition from the definition store.
+                    super.removeDefinition(definition);
+                }
+                else
                 {
                     // The definition we are removing shadows at least one other
                     // definition, so we need find the definition that was shadowed
@@ -1112,7 +1192,9 @@ public class ASProjectScope extends ASScopeBase
                         nextDef = shadowedDefsArr[0];
                         shadowedDefs.remove(nextDef);
                     }
-                    addDefinitionToStore(nextDef);
+                    // Replace the removed definition with it in one step,
+                    // so that lookups without the lock always find one.
+                    replaceDefinitionInStore(definition, nextDef);
                 }
                 return;
             }
@@ -1149,21 +1231,21 @@ public class ASProjectScope extends ASScopeBase
         finally
         {
             validImports = null;
-            writeLock.unlock();
+            unlockForWriting();
         }
     }
 
     @Override
     public void compact()
     {
-        writeLock.lock();
+        lockForWriting();
         try
         {
             super.compact();
         }
         finally
         {
-            writeLock.unlock();
+            unlockForWriting();
         }
     }
 
@@ -1224,7 +1306,7 @@ public class ASProjectScope extends ASScopeBase
         if (scope.setCompilationUnit(cu))
             return;
 
-        writeLock.lock();
+        lockForWriting();
         try
         {
             assert scope instanceof SWCFileScope : "only SWCFileScope should be added to swcFileScopeToCompilationUnitMap";
@@ -1232,7 +1314,7 @@ public class ASProjectScope extends ASScopeBase
         }
         finally
         {
-            writeLock.unlock();
+            unlockForWriting();
         }
     }
 
@@ -1274,10 +1356,23 @@ public class ASProjectScope extends ASScopeBase
             assert compilationUnit.getProject() == getProject();
             return compilationUnit;
         }
+        assert fileScope instanceof SWCFileScope : "only SWCFileScope should be in swcFileScopeToCompilationUnitMap";
+
+        // The map is concurrent, so the read lock is only needed
+        // if a writer changed this scope while we looked.
+        final long version = writeVersion;
+        if ((version & 1) == 0)
+        {
+            ICompilationUnit swcCompilationUnit = swcFileScopeToCompilationUnitMap.get(fileScope);
+            if (writeVersion == version)
+            {
+                assert (swcCompilationUnit == null) || (swcCompilationUnit.getProject() == getProject());
+                return swcCompilationUnit;
+            }
+        }
         readLock.lock();
         try
         {
-            assert fileScope instanceof SWCFileScope : "only SWCFileScope should be in swcFileScopeToCompilationUnitMap";
             ICompilationUnit swcCompilationUnit = swcFileScopeToCompilationUnitMap.get(fileScope);
             assert (swcCompilationUnit == null) || (swcCompilationUnit.getProject() == getProject());
             return swcCompilationUnit;
@@ -1377,7 +1472,7 @@ public class ASProjectScope extends ASScopeBase
         if ((compilationUnitsToRemove == null) || (compilationUnitsToRemove.size() == 0))
             return;
 
-        writeLock.lock();
+        lockForWriting();
         try
         {
             // build up collections of items to remove so we are not
@@ -1420,7 +1515,7 @@ public class ASProjectScope extends ASScopeBase
         }
         finally
         {
-            writeLock.unlock();
+            unlockForWriting();
         }
     }
 
@@ -1432,21 +1527,15 @@ public class ASProjectScope extends ASScopeBase
 
     private AppliedVectorDefinition getExistingVectorClass(ITypeDefinition elementType)
     {
-        readLock.lock();
-        try
-        {
-            return vectorElementTypeToVectorClassMap.get(elementType);
-        }
-        finally
-        {
-            readLock.unlock();
-        }
+        // The map is concurrent and only changes under newVectorClassLock,
+        // so the read lock is not needed.
+        return vectorElementTypeToVectorClassMap.get(elementType);
     }
 
     public AppliedVectorDefinition newVectorClass(ITypeDefinition elementType)
     {
         // First try to get an existing vector class
-        // just using the read lock.
+        // without any lock.
         AppliedVectorDefinition existingVectorClass = getExistingVectorClass(elementType);
         if (existingVectorClass != null)
             return existingVectorClass;
@@ -1644,59 +1733,38 @@ public class ASProjectScope extends ASScopeBase
      */
     public boolean isValidImport(String importName)
     {
-        // Determine whether we need to rebuild the validImports Set.
-        // To get validImports, we need the read lock.
-        boolean needToBuildValidImports = false;
-        readLock.lock();
-        try
-        {
-            if (validImports == null)
-                needToBuildValidImports = true;
-        }
-        finally
-        {
-            readLock.unlock();
-        }
-
-        if (needToBuildValidImports)
+        // The validImports Set is never modified once it is built,
+        // so it can be queried without the read lock.
+        Set<String> imports = validImports;
+        if (imports == null)
         {
             // We need to rebuild the validImports Set.
             // To set validImports, we need the write lock.
-            writeLock.lock();
+            lockForWriting();
             try
             {
                 // Make sure we still need to rebuild it.
                 // Another thread might have done it
-                // between the read lock and the write kicj,
-                if (validImports == null)
+                // while we waited for the write lock.
+                imports = validImports;
+                if (imports == null)
                 {
-                    validImports = new HashSet<String>();
+                    imports = new HashSet<String>();
                     for (String name : getAllQualifiedNames())
                     {
-                        validImports.add(name);
-                        validImports.add(ImportNode.makeWildcardName(name));
+                        imports.add(name);
+                        imports.add(ImportNode.makeWildcardName(name));
                     }
+                    validImports = imports;
                 }
             }
             finally
             {
-                writeLock.unlock();
+                unlockForWriting();
             }
         }
 
-        // Query the validImports Set.
-        // This requires the read lock.
-        boolean isValid = false;
-        readLock.lock();
-        try
-        {
-            isValid = validImports.contains(importName);
-        }
-        finally
-        {
-            readLock.unlock();
-        }
-        return isValid;
+        return imports.contains(importName);
     }
 
     /**
@@ -42,17 +42,16 @@ import java.lang.ref.SoftReference;
 import java.util.Collections;
 import java.util.List;
 import java.util.Set;
-import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
  * Class to manage cached lookups in a given project. Each scope object will
  * have one of these per project the scope object is used in. This class is
  * intended to provide thread safe access to the various caches it maintains.
- * The caches will be maintained via SoftReferences - this is meant to make the
- * caches stick around unless the VM really needs the memory back. The caches
- * can be rebuilt on the fly, so in a worst case scenario where the VM is
- * constantly low on memory, the results should be correct, but performance will
- * be slower.
+ * The results of name lookups and constant values are kept in maps created
+ * on demand and bounded by the {@link ScopeResolutionCache} of the project,
+ * which also records their statistics. The few small per-scope values are
+ * maintained via SoftReferences and rebuilt on the fly.
  */
 public class ASScopeCache
 {
@@ -73,41 +72,37 @@ public class ASScopeCache
     {
         this.scope = scope;
         this.project = project;
+        this.resolutionCache = project.getScopeResolutionCache();
+        this.lookups = new AtomicReferenceArray<ScopeResolutionCache.Lookups<?>>(ScopeResolutionCache.Kind.values().length);
     }
 
     private final ASScope scope;
     private final CompilerProject project;
+    private final ScopeResolutionCache resolutionCache;
 
     /**
-     * Cache results of unqualified lookups over the scope chain
-     * (ASScopeBase.findProperty). This is for caching the results of
-     * ASScope.findProperty().
+     * The results of each kind of lookup in this scope, created on demand.
      */
-    private SoftReference<ConcurrentMap<String, IDefinition>> findPropCache;
+    private final AtomicReferenceArray<ScopeResolutionCache.Lookups<?>> lookups;
 
-    /**
-     * Cache results of lookups of qualified names over the scope chain
-     * (ASScopeBase.findPropertyQualified).
-     */
-    private SoftReference<ConcurrentMap<QName, IDefinition>> findPropQualifiedCache;
+    @SuppressWarnings("unchecked")
+    private <V> ScopeResolutionCache.Lookups<V> getLookups(ScopeResolutionCache.Kind kind)
+    {
+        ScopeResolutionCache.Lookups<?> result = lookups.get(kind.ordinal());
+        if (result == null)
+        {
+            // Two threads may both create the lookups; only one is kept.
+            lookups.compareAndSet(kind.ordinal(), null, resolutionCache.<V>newLookups(kind));
+            result = lookups.get(kind.ordinal());
+        }
+        return (ScopeResolutionCache.Lookups<V>)result;
+    }
 
     /**
      * Cache the set of open namespaces
      */
     private SoftReference<Set<INamespaceDefinition>> openNamespaceCache = null;
 
-    /**
-     * Cache the open namespace set per name
-     */
-    private SoftReference<ConcurrentMap<String, Set<INamespaceDefinition>>> namespacesForNameCache;
-
-    private SoftReference<ConcurrentMap<IResolvedQualifiersReference, IDefinition>> multinameLookupCache;
-
-    /**
-     * Cache the compile time values of constants
-     */
-    private SoftReference<ConcurrentMap<IDefinition, Object>> constValueLookupCache;
-
     /**
      * Cache the needs Event dispatch flag
      */
@@ -136,9 +131,8 @@ public class ASScopeCache
      */
     IDefinition findProperty(String name, DependencyType dt, boolean favorTypes)
     {
-        ConcurrentMap<String, IDefinition> map = getScopeChainMap();
-
-        IDefinition result = map.get(name);
+        ScopeResolutionCache.Key key = new ScopeResolutionCache.Key(name, null);
+        IDefinition result = this.<IDefinition>getLookups(ScopeResolutionCache.Kind.FIND_PROPERTY).get(key);
         if (result != null)
         {
             // We found a cached result - we're done
@@ -205,7 +199,7 @@ public class ASScopeCache
             // be properly invalidated when the file containing the definition changes.
             if (dt != null && !wasAmbiguous)
             {
-                result = map.putIfAbsent(name, def);
+                result = this.<IDefinition>getLookups(ScopeResolutionCache.Kind.FIND_PROPERTY).putIfAbsent(key, def);
                 if (result == null)
                     result = def;
             }
@@ -218,52 +212,6 @@ public class ASScopeCache
 
     }
 
-    private ConcurrentMap<String, IDefinition> getScopeChainMap()
-    {
-        ConcurrentMap<String, IDefinition> map = findPropCache != null ? findPropCache.get() : null;
-        if (map == null)
-        {
-        	if ((CompilerDiagnosticsConstants.diagnostics & CompilerDiagnosticsConstants.ASSCOPECACHE) == CompilerDiagnosticsConstants.ASSCOPECACHE)
-        		System.out.println("ASScopeCache waiting for lock in getScopeChainMap");
-            synchronized (this)
-            {
-                // Check again, in case another thread updated the map first
-                map = findPropCache != null ? findPropCache.get() : null;
-                if (map == null)
-                {
-                    map = mapMaker.<String, IDefinition> makeMap();
-                    findPropCache = new SoftReference<ConcurrentMap<String, IDefinition>>(map);
-                }
-            }
-        	if ((CompilerDiagnosticsConstants.diagnostics & CompilerDiagnosticsConstants.ASSCOPECACHE) == CompilerDiagnosticsConstants.ASSCOPECACHE)
-        		System.out.println("ASScopeCache done with lock in getScopeChainMap");
-        }
-        return map;
-    }
-
-    private ConcurrentMap<QName, IDefinition> getQualifiedScopeChainMap()
-    {
-        ConcurrentMap<QName, IDefinition> map = findPropQualifiedCache != null ? findPropQualifiedCache.get() : null;
-        if (map == null)
-        {
-        	if ((CompilerDiagnosticsConstants.diagnostics & CompilerDiagnosticsConstants.ASSCOPECACHE) == CompilerDiagnosticsConstants.ASSCOPECACHE)
-        		System.out.println("ASScopeCache waiting for lock in getQualifiedScopeChainMap");
-            synchronized (this)
-            {
-                // Check again, in case another thread updated the map first
-                map = findPropQualifiedCache != null ? findPropQualifiedCache.get() : null;
-                if (map == null)
-                {
-                    map = mapMaker.<QName, IDefinition> makeMap();
-                    findPropQualifiedCache = new SoftReference<ConcurrentMap<QName, IDefinition>>(map);
-                }
-            }
-        	if ((CompilerDiagnosticsConstants.diagnostics & CompilerDiagnosticsConstants.ASSCOPECACHE) == CompilerDiagnosticsConstants.ASSCOPECACHE)
-        		System.out.println("ASScopeCache done with lock in getQualifiedScopeChainMap");
-        }
-        return map;
-    }
-
     /**
      * Version of findPropertyQualified that uses a cache. Checks the cache
      * first, and only queries the scope if the we don't have a cached result.
@@ -278,10 +226,9 @@ public class ASScopeCache
     IDefinition findPropertyQualified(INamespaceDefinition qualifier, String name,
                                       DependencyType dt)
     {
-        QName qname = new QName(name, qualifier);
-        ConcurrentMap<QName, IDefinition> map = getQualifiedScopeChainMap();
-
-        IDefinition result = map.get(qname);
+        assert qualifier != null;
+        ScopeResolutionCache.Key key = new ScopeResolutionCache.Key(name, qualifier);
+        IDefinition result = this.<IDefinition>getLookups(ScopeResolutionCache.Kind.FIND_PROPERTY_QUALIFIED).get(key);
         if (result != null)
         {
             assert result.isInProject(project);
@@ -329,7 +276,7 @@ public class ASScopeCache
             // be properly invalidated when the file containing the definition changes.
             if (dt != null)
             {
-                result = map.putIfAbsent(qname, def);
+                result = this.<IDefinition>getLookups(ScopeResolutionCache.Kind.FIND_PROPERTY_QUALIFIED).putIfAbsent(key, def);
                 if (result == null)
                     result = def;
             }
@@ -357,8 +304,8 @@ public class ASScopeCache
      */
     public IDefinition findPropertyMultiname(IResolvedQualifiersReference ref, DependencyType dt)
     {
-        ConcurrentMap<IResolvedQualifiersReference, IDefinition> cache = getMultinameLookupMap();
-        IDefinition result = cache.get(ref);
+        ScopeResolutionCache.Key key = new ScopeResolutionCache.Key(ref, null);
+        IDefinition result = this.<IDefinition>getLookups(ScopeResolutionCache.Kind.FIND_PROPERTY_MULTINAME).get(key);
         if (result != null)
             return result;
 
@@ -395,7 +342,7 @@ public class ASScopeCache
             // be properly invalidated when the file containing the definition changes.
             if (dt != null)
             {
-                result = cache.putIfAbsent(ref, def);
+                result = this.<IDefinition>getLookups(ScopeResolutionCache.Kind.FIND_PROPERTY_MULTINAME).putIfAbsent(key, def);
                 if (result == null)
                     result = def;
             }
@@ -423,75 +370,6 @@ public class ASScopeCache
         return nsSet;
     }
 
-    private ConcurrentMap<String, Set<INamespaceDefinition>> getNamespacesForNameMap()
-    {
-        ConcurrentMap<String, Set<INamespaceDefinition>> map = namespacesForNameCache != null ? namespacesForNameCache.get() : null;
-        if (map == null)
-        {
-        	if ((CompilerDiagnosticsConstants.diagnostics & CompilerDiagnosticsConstants.ASSCOPECACHE) == CompilerDiagnosticsConstants.ASSCOPECACHE)
-        		System.out.println("ASScopeCache waiting for lock in getNamespacesForNameMap");
-            synchronized (this)
-            {
-                // Check again, in case another thread updated the map first
-                map = namespacesForNameCache != null ? namespacesForNameCache.get() : null;
-                if (map == null)
-                {
-                    map = mapMaker.<String, Set<INamespaceDefinition>> makeMap();
-                    namespacesForNameCache = new SoftReference<ConcurrentMap<String, Set<INamespaceDefinition>>>(map);
-                }
-            }
-        	if ((CompilerDiagnosticsConstants.diagnostics & CompilerDiagnosticsConstants.ASSCOPECACHE) == CompilerDiagnosticsConstants.ASSCOPECACHE)
-        		System.out.println("ASScopeCache done with lock in getNamespacesForNameMap");
-        }
-        return map;
-    }
-
-    private ConcurrentMap<IResolvedQualifiersReference, IDefinition> getMultinameLookupMap()
-    {
-        ConcurrentMap<IResolvedQualifiersReference, IDefinition> map = multinameLookupCache != null ? multinameLookupCache.get() : null;
-        if (map == null)
-        {
-        	if ((CompilerDiagnosticsConstants.diagnostics & CompilerDiagnosticsConstants.ASSCOPECACHE) == CompilerDiagnosticsConstants.ASSCOPECACHE)
-        		System.out.println("ASScopeCache waiting for lock in getMultinameLookupMap");
-            synchronized (this)
-            {
-                // Check again, in case another thread updated the map first
-                map = multinameLookupCache != null ? multinameLookupCache.get() : null;
-                if (map == null)
-                {
-                    map = mapMaker.<IResolvedQualifiersReference, IDefinition> makeMap();
-                    multinameLookupCache = new SoftReference<ConcurrentMap<IResolvedQualifiersReference, IDefinition>>(map);
-                }
-            }
-        	if ((CompilerDiagnosticsConstants.diagnostics & CompilerDiagnosticsConstants.ASSCOPECACHE) == CompilerDiagnosticsConstants.ASSCOPECACHE)
-        		System.out.println("ASScopeCache done with lock in getMultinameLookupMap");
-        }
-        return map;
-    }
-
-    private ConcurrentMap<IDefinition, Object> getConstantValueLookupMap()
-    {
-        ConcurrentMap<IDefinition, Object> map = constValueLookupCache != null ? constValueLookupCache.get() : null;
-        if (map == null)
-        {
-        	if ((CompilerDiagnosticsConstants.diagnostics & CompilerDiagnosticsConstants.ASSCOPECACHE) == CompilerDiagnosticsConstants.ASSCOPECACHE)
-        		System.out.println("ASScopeCache waiting for lock in getConstantValueLookupMap");
-            synchronized (this)
-            {
-                // Check again, in case another thread updated the map first
-                map = constValueLookupCache != null ? constValueLookupCache.get() : null;
-                if (map == null)
-                {
-                    map = mapMaker.<IDefinition, Object> makeMap();
-                    constValueLookupCache = new SoftReference<ConcurrentMap<IDefinition, Object>>(map);
-                }
-            }
-        	if ((CompilerDiagnosticsConstants.diagnostics & CompilerDiagnosticsConstants.ASSCOPECACHE) == CompilerDiagnosticsConstants.ASSCOPECACHE)
-        		System.out.println("ASScopeCache done with lock in getConstantValueLookupMap");
-        }
-        return map;
-    }
-
     private Set<IASLanguageConstants.BuiltinType> getBuiltinTypeMap()
     {
         Set<IASLanguageConstants.BuiltinType> set = builtinTypeDependencyCache != null ? builtinTypeDependencyCache.get() : null;
@@ -598,9 +476,8 @@ public class ASScopeCache
      */
     Set<INamespaceDefinition> getNamespaceSetForName(String name)
     {
-        ConcurrentMap<String, Set<INamespaceDefinition>> map = getNamespacesForNameMap();
-
-        Set<INamespaceDefinition> result = map.get(name);
+        ScopeResolutionCache.Key key = new ScopeResolutionCache.Key(name, null);
+        Set<INamespaceDefinition> result = this.<Set<INamespaceDefinition>>getLookups(ScopeResolutionCache.Kind.NAMESPACE_SET_FOR_NAME).get(key);
         if (result != null)
         {
             // We found a cached result - we're done
@@ -613,7 +490,7 @@ public class ASScopeCache
         // and memory wise).
 
         Set<INamespaceDefinition> newResult = scope.getNamespaceSetForNameImpl(project, name);
-        result = map.putIfAbsent(name, newResult);
+        result = this.<Set<INamespaceDefinition>>getLookups(ScopeResolutionCache.Kind.NAMESPACE_SET_FOR_NAME).putIfAbsent(key, newResult);
         if (result == null)
             result = newResult;
         return result;
@@ -666,9 +543,8 @@ public class ASScopeCache
      */
     public Object getConstantValue(ConstantDefinition constDef)
     {
-        ConcurrentMap<IDefinition, Object> map = getConstantValueLookupMap();
-
-        Object result = map.get(constDef);
+        ScopeResolutionCache.Key key = new ScopeResolutionCache.Key(constDef, null);
+        Object result = this.<Object>getLookups(ScopeResolutionCache.Kind.CONSTANT_VALUE).get(key);
         if (result != null)
         {
             // We found a cached result - we're done
@@ -685,7 +561,7 @@ public class ASScopeCache
         Object newResult = constDef.resolveValueImpl(project);
         if (newResult == null)
             newResult = NO_CONST_VALUE;
-        result = map.putIfAbsent(constDef, newResult);
+        result = this.<Object>getLookups(ScopeResolutionCache.Kind.CONSTANT_VALUE).putIfAbsent(key, newResult);
         if (result == null)
             result = newResult;
 
@@ -694,39 +570,4 @@ public class ASScopeCache
         else
             return result;
     }
-
-    /**
-     * Helper class - to be used as a key for caching qualified name lookups.
-     */
-    private static class QName
-    {
-        String name;
-        INamespaceDefinition ns;
-
-        QName(String name, INamespaceDefinition ns)
-        {
-            assert ns != null;
-            this.name = name;
-            this.ns = ns;
-        }
-
-        @Override
-        public int hashCode()
-        {
-            return name.hashCode() ^ ns.hashCode();
-        }
-
-        @Override
-        public boolean equals(Object o)
-        {
-            if (o == this)
-                return true;
-            if (o instanceof QName)
-            {
-                QName other = (QName)o;
-                return name.equals(other.name) && ns.equals(other.ns);
-            }
-            return false;
-        }
-    }
 }
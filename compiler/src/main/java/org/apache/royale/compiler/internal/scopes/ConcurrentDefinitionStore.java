@@ -0,0 +1,179 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.compiler.internal.scopes;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.royale.compiler.definitions.IDefinition;
+import org.apache.royale.compiler.scopes.IDefinitionSet;
+
+/**
+ * An implementation of {@link IDefinitionStore} that can be read while it is
+ * modified, used by {@link ASProjectScope}.
+ * <p>
+ * The definition sets are never modified once they are in the store. Adding
+ * or removing a definition puts a modified copy of its set into the map, so
+ * a reader always gets a complete set. Modifications must still be made by
+ * one thread at a time.
+ */
+final class ConcurrentDefinitionStore implements IDefinitionStore
+{
+    /**
+     * Constructor.
+     */
+    ConcurrentDefinitionStore()
+    {
+    }
+
+    private final ConcurrentHashMap<String, IDefinitionSet> map = new ConcurrentHashMap<String, IDefinitionSet>();
+
+    /**
+     * Copy a definition set, so that the copy can be modified.
+     */
+    private static IDefinitionSet copy(IDefinitionSet definitionSet)
+    {
+        // A definition acting as its own set-of-size-1 is never modified;
+        // addDefinitionToSet() replaces it.
+        if (definitionSet == null || definitionSet.getMaxSize() == 1)
+            return definitionSet;
+
+        IDefinitionSet result = null;
+        int n = definitionSet.getSize();
+        for (int i = 0; i < n; i++)
+            result = SmallDefinitionStoreBase.addDefinitionToSet(result, definitionSet.getDefinition(i));
+        return result;
+    }
+
+    @Override
+    public int getCapacity()
+    {
+        return Integer.MAX_VALUE;
+    }
+
+    @Override
+    public IDefinitionStore createLargerStore()
+    {
+        // This store can already store an unlimited number of definition sets.
+        return this;
+    }
+
+    @Override
+    public boolean add(IDefinition definition)
+    {
+        String baseName = definition.getBaseName();
+        IDefinitionSet newDefinitionSet =
+            SmallDefinitionStoreBase.addDefinitionToSet(copy(map.get(baseName)), definition);
+        map.put(baseName, newDefinitionSet);
+        return true;
+    }
+
+    @Override
+    public boolean remove(IDefinition definition)
+    {
+        String baseName = definition.getBaseName();
+        IDefinitionSet newDefinitionSet = copy(map.get(baseName));
+        if (newDefinitionSet == null)
+            return false;
+
+        if (SmallDefinitionStoreBase.removeDefinitionFromSet(newDefinitionSet, definition))
+            map.remove(baseName);
+        else
+            map.put(baseName, newDefinitionSet);
+        return true;
+    }
+
+    /**
+     * Replace a definition with another one with the same base name in one
+     * step, so that readers never find the base name missing. The new
+     * definition takes the place of the old one in the set, or is added if
+     * the old one is not in the set.
+     * 
+     * @param oldDefinition The {@link IDefinition} to remove.
+     * @param newDefinition The {@link IDefinition} to add.
+     */
+    void replace(IDefinition oldDefinition, IDefinition newDefinition)
+    {
+        String baseName = newDefinition.getBaseName();
+        assert baseName.equals(oldDefinition.getBaseName()) : "Base name must match";
+        IDefinitionSet oldDefinitionSet = map.get(baseName);
+
+        IDefinitionSet newDefinitionSet = null;
+        boolean replaced = false;
+        int n = oldDefinitionSet != null ? oldDefinitionSet.getSize() : 0;
+        for (int i = 0; i < n; i++)
+        {
+            IDefinition definition = oldDefinitionSet.getDefinition(i);
+            if (definition == oldDefinition)
+            {
+                definition = newDefinition;
+                replaced = true;
+            }
+            newDefinitionSet = SmallDefinitionStoreBase.addDefinitionToSet(newDefinitionSet, definition);
+        }
+        if (!replaced)
+            newDefinitionSet = SmallDefinitionStoreBase.addDefinitionToSet(newDefinitionSet, newDefinition);
+        map.put(baseName, newDefinitionSet);
+    }
+
+    @Override
+    public IDefinitionSet getDefinitionSetByName(String baseName)
+    {
+        return map.get(baseName);
+    }
+
+    @Override
+    public void putDefinitionSetByName(String baseName, IDefinitionSet set)
+    {
+        map.put(baseName, set);
+    }
+
+    @Override
+    public Collection<String> getAllNames()
+    {
+        return map.keySet();
+    }
+
+    @Override
+    public Collection<IDefinitionSet> getAllDefinitionSets()
+    {
+        return map.values();
+    }
+
+    @Override
+    public Collection<IDefinition> getAllDefinitions()
+    {
+        List<IDefinition> list = new ArrayList<IDefinition>();
+        for (IDefinitionSet definitionSet : map.values())
+            SmallDefinitionStoreBase.addDefinitionsToList(list, definitionSet);
+        return list;
+    }
+
+    /**
+     * For debugging only.
+     */
+    @Override
+    public String toString()
+    {
+        return map.toString();
+    }
+}
@@ -0,0 +1,225 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.compiler.internal.scopes;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.google.common.base.Objects;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.RemovalCause;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+
+/**
+ * The bound and the statistics of the name resolution results of the
+ * {@link ASScopeCache}s of a project.
+ * <p>
+ * Each {@link ASScopeCache} keeps one {@link Lookups} for each kind of
+ * lookup, created on demand. The lookups of a scope hold at most a fixed
+ * number of entries and drop the least recently used ones beyond that, so
+ * the memory used by name resolution in one scope is bounded. They belong
+ * to the {@link ASScopeCache}, which the project references by scope in a
+ * map with weak keys, so the results of a scope go away with it. That map
+ * holds at most {@link #DEFAULT_MAXIMUM_SCOPES} caches by default, which
+ * bounds the lookups of the whole project. This class records the hits,
+ * misses and evictions of all the scopes of the project.
+ */
+public final class ScopeResolutionCache
+{
+    /**
+     * The default maximum number of entries of each kind of lookup in a
+     * scope.
+     */
+    public static final long DEFAULT_MAXIMUM_SIZE = 10000;
+
+    /**
+     * The default maximum number of scopes of a project with cached lookups.
+     */
+    public static final long DEFAULT_MAXIMUM_SCOPES = 50000;
+
+    /**
+     * The concurrency level of the lookups of a scope. It is unlikely that
+     * the lookups of one scope are updated from more than 4 threads at once.
+     */
+    private static final int CONCURRENCY_LEVEL = 4;
+
+    /**
+     * The kinds of lookups.
+     */
+    enum Kind
+    {
+        // Unqualified lookups over the scope chain, by name.
+        FIND_PROPERTY("findProperty"),
+        // Qualified lookups over the scope chain, by name and qualifier.
+        FIND_PROPERTY_QUALIFIED("findPropertyQualified"),
+        // Lookups of resolved multinames, by reference.
+        FIND_PROPERTY_MULTINAME("findPropertyMultiname"),
+        // Namespace sets of unqualified lookups, by name.
+        NAMESPACE_SET_FOR_NAME("namespaceSetForName"),
+        // Compile time values of constants, by definition.
+        CONSTANT_VALUE("constantValue");
+
+        Kind(String name)
+        {
+            this.name = name;
+        }
+
+        final String name;
+    }
+
+    /**
+     * The key of a lookup in a scope. The qualifier is null for lookups
+     * that don't have one.
+     */
+    static final class Key
+    {
+        Key(Object name, Object qualifier)
+        {
+            this.name = name;
+            this.qualifier = qualifier;
+        }
+
+        final Object name;
+        final Object qualifier;
+
+        @Override
+        public int hashCode()
+        {
+            return name.hashCode() * 31 + (qualifier != null ? qualifier.hashCode() : 0);
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            if (o == this)
+                return true;
+            if (!(o instanceof Key))
+                return false;
+            Key other = (Key)o;
+            return name.equals(other.name) && Objects.equal(qualifier, other.qualifier);
+        }
+    }
+
+    /**
+     * The results of one kind of lookup in one scope.
+     */
+    final class Lookups<V>
+    {
+        private Lookups(Kind kind)
+        {
+            this.kind = kind;
+            this.cache = CacheBuilder.newBuilder()
+                    .maximumSize(maximumSize)
+                    .concurrencyLevel(CONCURRENCY_LEVEL)
+                    .removalListener(new RemovalListener<Key, V>()
+                    {
+                        @Override
+                        public void onRemoval(RemovalNotification<Key, V> notification)
+                        {
+                            if (notification.getCause() == RemovalCause.SIZE)
+                                evictions.incrementAndGet(Lookups.this.kind.ordinal());
+                        }
+                    })
+                    .build();
+        }
+
+        private final Kind kind;
+        private final Cache<Key, V> cache;
+
+        /**
+         * @return The cached result, or null.
+         */
+        V get(Key key)
+        {
+            final V result = cache.getIfPresent(key);
+            (result != null ? hits : misses).incrementAndGet(kind.ordinal());
+            return result;
+        }
+
+        /**
+         * @return The result already cached for the key, or null if the
+         * value was added.
+         */
+        V putIfAbsent(Key key, V value)
+        {
+            return cache.asMap().putIfAbsent(key, value);
+        }
+    }
+
+    /**
+     * @param maximumSize The maximum number of entries of each kind of lookup
+     * in a scope.
+     */
+    public ScopeResolutionCache(long maximumSize)
+    {
+        this.maximumSize = maximumSize;
+        final int kinds = Kind.values().length;
+        this.hits = new AtomicLongArray(kinds);
+        this.misses = new AtomicLongArray(kinds);
+        this.evictions = new AtomicLongArray(kinds);
+    }
+
+    private final long maximumSize;
+    private final AtomicLongArray hits;
+    private final AtomicLongArray misses;
+    private final AtomicLongArray evictions;
+
+    /**
+     * @return The maximum number of entries of each kind of lookup in a
+     * scope.
+     */
+    public long getMaximumSize()
+    {
+        return maximumSize;
+    }
+
+    /**
+     * Create the results of one kind of lookup for a scope.
+     * 
+     * @param kind The kind of lookup.
+     * @return The empty lookups.
+     */
+    <V> Lookups<V> newLookups(Kind kind)
+    {
+        return new Lookups<V>(kind);
+    }
+
+    /**
+     * Get the statistics of the lookups of all the scopes: "findProperty",
+     * "findPropertyQualified", "findPropertyMultiname",
+     * "namespaceSetForName" and "constantValue".
+     * 
+     * @return statistics by kind of lookup, in that order.
+     */
+    public Map<String, CacheStats> getCacheStats()
+    {
+        final Map<String, CacheStats> result = new LinkedHashMap<String, CacheStats>();
+        for (Kind kind : Kind.values())
+        {
+            final int i = kind.ordinal();
+            result.put(kind.name, new CacheStats(hits.get(i), misses.get(i), 0, 0, 0, evictions.get(i)));
+        }
+        return result;
+    }
+}
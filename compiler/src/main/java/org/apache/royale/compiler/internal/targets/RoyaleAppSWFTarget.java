@@ -64,6 +64,7 @@ import org.apache.royale.compiler.definitions.IStyleDefinition;
 import org.apache.royale.compiler.definitions.references.IResolvedQualifiersReference;
 import org.apache.royale.compiler.definitions.references.ReferenceFactory;
 import org.apache.royale.compiler.internal.abc.ClassGeneratorHelper;
+import org.apache.royale.compiler.internal.css.CSSManager;
 import org.apache.royale.compiler.internal.css.codegen.CSSCompilationSession;
 import org.apache.royale.compiler.internal.css.codegen.ICSSCodeGenResult;
 import org.apache.royale.compiler.internal.css.semantics.ActivatedStyleSheets;
@@ -942,17 +943,37 @@ public class RoyaleAppSWFTarget extends AppSWFTarget
         
         private boolean addGeneratedStylesClassToFrame(SWFFrame frame, Set<ICompilationUnit> emittedCompilationUnits) throws Exception
         {
-            ABCEmitter emitter = new ABCEmitter();
-            emitter.visit(ABCConstants.VERSION_ABC_MAJOR_FP10, ABCConstants.VERSION_ABC_MINOR_FP10);
-            ICSSCodeGenResult cssCodeGenResult = cssCompilationSession.emitStyleDataClass(royaleProject, emitter);
-
-            Name stylesClassName = new Name(getStylesClassName());
-
             IDefinition objectDef = objectReference.resolve(royaleProject);
             if ((objectDef == null) || (!(objectDef instanceof ClassDefinition)))
                 return false;
 
-            ClassDefinition objectClassDef = (ClassDefinition)objectDef;
+            // Reuse the class generated by the previous compilation if
+            // the CSS and the activated rules haven't changed.
+            final CSSManager cssManager = royaleProject.getCSSManager();
+            final String stylesClassNameString = getStylesClassName();
+            final String styleDataKey = cssCompilationSession.getStyleDataKey(royaleProject);
+            byte[] abc = cssManager.getStyleDataABC(stylesClassNameString, styleDataKey);
+            if (abc == null)
+            {
+                abc = emitStylesClass(stylesClassNameString, (ClassDefinition)objectDef);
+                cssManager.setStyleDataABC(stylesClassNameString, styleDataKey, abc);
+            }
+
+            DoABCTag tag = new DoABCTag();
+            tag.setABCData(abc);
+            tag.setName("defaults.css and theme CSS data");
+            frame.addTag(tag);
+
+            return true;
+        }
+
+        private byte[] emitStylesClass(String stylesClassNameString, ClassDefinition objectClassDef) throws Exception
+        {
+            ABCEmitter emitter = new ABCEmitter();
+            emitter.visit(ABCConstants.VERSION_ABC_MAJOR_FP10, ABCConstants.VERSION_ABC_MINOR_FP10);
+            ICSSCodeGenResult cssCodeGenResult = cssCompilationSession.emitStyleDataClass(royaleProject, emitter);
+
+            Name stylesClassName = new Name(stylesClassNameString);
 
             // Generates a Style's class
             // Generated class name will be of the form _MyApplication_Styles
@@ -979,12 +1000,7 @@ public class RoyaleAppSWFTarget extends AppSWFTarget
 
             classGenerator.finishScript();
 
-            DoABCTag tag = new DoABCTag();
-            tag.setABCData(emitter.emit());
-            tag.setName("defaults.css and theme CSS data");
-            frame.addTag(tag);
-
-            return true;
+            return emitter.emit();
         }
         
         private boolean computeGenerateSystemManagerAndFlexInit()
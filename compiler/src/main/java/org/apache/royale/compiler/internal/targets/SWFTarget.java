@@ -728,6 +728,10 @@ public abstract class SWFTarget extends Target implements ISWFTarget
         linkSettings.setStripFileAttributeFromGotoDefinitionHelp(settings.isOptimized());
         linkSettings.setProblemsCollection(this.problemCollection);
         linkSettings.setRemoveDeadCode(settings.getRemoveDeadCode());
+        linkSettings.setOptimizeDataFlow(settings.getOptimizeDataFlow());
+        // The streaming linker can't optimize, inline or remove code.
+        linkSettings.setStreaming(settings.getStreamingLink() && !settings.isOptimized() &&
+                !project.isInliningEnabled() && !settings.getRemoveDeadCode());
         
         Collection<String> metadataNames = getASMetadataNames();
         if (settings.isDebugEnabled() && metadataNames != null)
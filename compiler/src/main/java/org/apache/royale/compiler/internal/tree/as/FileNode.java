@@ -19,7 +19,11 @@
 
 package org.apache.royale.compiler.internal.tree.as;
 
+import java.io.IOException;
+import java.io.Reader;
 import java.io.Serializable;
+import java.io.StringReader;
+import java.lang.ref.SoftReference;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.EnumSet;
@@ -27,11 +31,15 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
+import org.apache.commons.io.IOUtils;
 import org.apache.royale.compiler.common.IEmbedResolver;
 import org.apache.royale.compiler.common.IFileSpecificationGetter;
 import org.apache.royale.compiler.common.RecursionGuard;
+import org.apache.royale.compiler.config.CompilerDiagnosticsConstants;
 import org.apache.royale.compiler.constants.INamespaceConstants;
 import org.apache.royale.compiler.definitions.IDefinition;
 import org.apache.royale.compiler.filespecs.IFileSpecification;
@@ -174,6 +182,17 @@ public class FileNode extends ScopedBlockNode implements Serializable, IFileNode
      * are deferred.
      */
     private final Set<FunctionNode> deferredFunctionNodes;
+
+    /**
+     * The text of the source files that deferred function bodies are read
+     * from, by path. Function bodies whose text is not cached on the
+     * {@code FunctionNode} are parsed one by one, and the text is kept while
+     * memory allows so the file is not read again for every body.
+     * <p>
+     * This is only a cache, so it is not serialized and is created on first
+     * use by {@link #getFunctionBodySources()}.
+     */
+    private transient volatile Map<String, SoftReference<String>> functionBodySources;
     
     //
     // NodeBase overrides
@@ -455,6 +474,63 @@ public class FileNode extends ScopedBlockNode implements Serializable, IFileNode
         }
     }
 
+    /**
+     * Create a reader of a deferred function body.
+     * 
+     * @param sourcePath The file the function body is in, which is not this
+     * file if the function is in an included file.
+     * @param offset The local offset of the body in the file.
+     * @return A reader positioned at the body.
+     * @throws IOException error reading the file.
+     */
+    public Reader createFunctionBodyReader(String sourcePath, int offset) throws IOException
+    {
+        final Map<String, SoftReference<String>> sources = getFunctionBodySources();
+        String text = null;
+        final SoftReference<String> reference = sources.get(sourcePath);
+        if (reference != null)
+            text = reference.get();
+
+        if (text == null)
+        {
+        	if ((CompilerDiagnosticsConstants.diagnostics & CompilerDiagnosticsConstants.WORKSPACE) == CompilerDiagnosticsConstants.WORKSPACE)
+        		System.out.println("FileNode waiting for lock in createFunctionBodyReader");
+            final Reader reader = getWorkspace().getFileSpecification(sourcePath).createReader();
+        	if ((CompilerDiagnosticsConstants.diagnostics & CompilerDiagnosticsConstants.WORKSPACE) == CompilerDiagnosticsConstants.WORKSPACE)
+        		System.out.println("FileNode done with lock in createFunctionBodyReader");
+            try
+            {
+                text = IOUtils.toString(reader);
+            }
+            finally
+            {
+                IOUtils.closeQuietly(reader);
+            }
+            sources.put(sourcePath, new SoftReference<String>(text));
+        }
+
+        final StringReader reader = new StringReader(text);
+        reader.skip(offset);
+        return reader;
+    }
+
+    /**
+     * Get the cache of function body source text, creating it if this node
+     * has not used it yet or was deserialized. Two threads racing here may
+     * each create a map, in which case the entries put in the losing map are
+     * simply read again on a later miss.
+     */
+    private Map<String, SoftReference<String>> getFunctionBodySources()
+    {
+        Map<String, SoftReference<String>> sources = functionBodySources;
+        if (sources == null)
+        {
+            sources = new ConcurrentHashMap<String, SoftReference<String>>();
+            functionBodySources = sources;
+        }
+        return sources;
+    }
+
     private static boolean isInsideDisabledConfigBlock(FunctionNode fn)
     {
         ConfigConditionBlockNode configBlock = (ConfigConditionBlockNode)fn.getAncestorOfType(ConfigConditionBlockNode.class);
@@ -0,0 +1,520 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.compiler.internal.tree.as;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.royale.compiler.filespecs.IFileSpecification;
+import org.apache.royale.compiler.tree.ASTNodeID;
+import org.apache.royale.compiler.tree.as.IASNode;
+import org.apache.royale.compiler.tree.as.IExpressionNode;
+import org.apache.royale.compiler.tree.as.IIdentifierNode;
+import org.apache.royale.compiler.tree.as.ILiteralNode;
+import org.apache.royale.compiler.tree.as.IScopedNode;
+
+/**
+ * A read-only copy of an expression tree, with the nodes stored in parallel
+ * arrays instead of one object per node.
+ * <p>
+ * The nodes are numbered breadth-first from the root, which is node 0, so
+ * the children of a node and the nodes of a level are next to each other.
+ * For every node, the tree keeps its {@link ASTNodeID}, its parent, its
+ * children, whether it is a terminal, its local and absolute source
+ * locations and, for identifiers and literals, the name or the raw value. Equal names and values are stored once.
+ * <p>
+ * The tree can be walked by node index, or through {@link IASNode} views
+ * that are created when they are requested and hold nothing but the tree and
+ * the index. The views are not attached to a file or scope, so they have no
+ * file specification, containing scope or package name, and they only
+ * implement {@link IASNode}: code that needs the semantics of an expression
+ * has to use the original nodes.
+ */
+public final class PackedExpressionTree
+{
+    /**
+     * Index of a missing node.
+     */
+    public static final int NO_NODE = -1;
+
+    private static final ASTNodeID[] NODE_IDS = ASTNodeID.values();
+
+    /**
+     * Copy an expression tree.
+     * 
+     * @param root The root of the expression.
+     * @return The packed tree.
+     */
+    public static PackedExpressionTree pack(IExpressionNode root)
+    {
+        // Breadth-first, so the children of a node get consecutive indices
+        // and the children array can be filled in the same pass.
+        final List<IASNode> nodes = new ArrayList<IASNode>();
+        final List<Integer> parents = new ArrayList<Integer>();
+        final ArrayDeque<Integer> queue = new ArrayDeque<Integer>();
+        nodes.add(root);
+        parents.add(NO_NODE);
+        queue.add(0);
+
+        int childCount = 0;
+        int[] children = new int[16];
+        final List<Integer> offsets = new ArrayList<Integer>();
+        while (!queue.isEmpty())
+        {
+            final int index = queue.remove();
+            final IASNode node = nodes.get(index);
+            offsets.add(childCount);
+            for (int i = 0, count = node.getChildCount(); i < count; i++)
+            {
+                final IASNode child = node.getChild(i);
+                int childIndex = NO_NODE;
+                if (child != null)
+                {
+                    childIndex = nodes.size();
+                    nodes.add(child);
+                    parents.add(index);
+                    queue.add(childIndex);
+                }
+                if (childCount == children.length)
+                    children = Arrays.copyOf(children, childCount * 2);
+                children[childCount++] = childIndex;
+            }
+        }
+        offsets.add(childCount);
+
+        final int nodeCount = nodes.size();
+        final int[] childOffsets = new int[nodeCount + 1];
+        for (int i = 0; i <= nodeCount; i++)
+            childOffsets[i] = offsets.get(i);
+
+        final PackedExpressionTree tree = new PackedExpressionTree(nodeCount, root.getSourcePath(),
+                Arrays.copyOf(children, childCount), childOffsets);
+        final Map<String, Integer> stringIndices = new HashMap<String, Integer>();
+        final List<String> strings = new ArrayList<String>();
+        for (int i = 0; i < nodeCount; i++)
+        {
+            final IASNode node = nodes.get(i);
+            tree.nodeIDs[i] = (short)node.getNodeID().ordinal();
+            tree.parents[i] = parents.get(i);
+            tree.terminals[i] = node.isTerminal();
+            tree.starts[i] = node.getStart();
+            tree.ends[i] = node.getEnd();
+            tree.absoluteStarts[i] = node.getAbsoluteStart();
+            tree.absoluteEnds[i] = node.getAbsoluteEnd();
+            tree.lines[i] = node.getLine();
+            tree.columns[i] = node.getColumn();
+            tree.endLines[i] = node.getEndLine();
+            tree.endColumns[i] = node.getEndColumn();
+
+            String text = null;
+            if (node instanceof IIdentifierNode)
+                text = ((IIdentifierNode)node).getName();
+            else if (node instanceof ILiteralNode)
+                text = ((ILiteralNode)node).getValue(true);
+            int textIndex = NO_NODE;
+            if (text != null)
+            {
+                final Integer existing = stringIndices.get(text);
+                if (existing != null)
+                {
+                    textIndex = existing;
+                }
+                else
+                {
+                    textIndex = strings.size();
+                    strings.add(text);
+                    stringIndices.put(text, textIndex);
+                }
+            }
+            tree.texts[i] = textIndex;
+        }
+        tree.strings = strings.toArray(new String[strings.size()]);
+        return tree;
+    }
+
+    private PackedExpressionTree(int nodeCount, String sourcePath, int[] children, int[] childOffsets)
+    {
+        this.sourcePath = sourcePath;
+        this.children = children;
+        this.childOffsets = childOffsets;
+        nodeIDs = new short[nodeCount];
+        parents = new int[nodeCount];
+        texts = new int[nodeCount];
+        terminals = new boolean[nodeCount];
+        starts = new int[nodeCount];
+        ends = new int[nodeCount];
+        absoluteStarts = new int[nodeCount];
+        absoluteEnds = new int[nodeCount];
+        lines = new int[nodeCount];
+        columns = new int[nodeCount];
+        endLines = new int[nodeCount];
+        endColumns = new int[nodeCount];
+    }
+
+    // All the nodes of an expression come from the same file.
+    private final String sourcePath;
+
+    private final short[] nodeIDs;
+    private final int[] parents;
+    // The children of node i are children[childOffsets[i]] to
+    // children[childOffsets[i + 1] - 1], NO_NODE for a null child.
+    private final int[] children;
+    private final int[] childOffsets;
+    // Index in strings, or NO_NODE.
+    private final int[] texts;
+    private String[] strings;
+    private final boolean[] terminals;
+
+    private final int[] starts;
+    private final int[] ends;
+    private final int[] absoluteStarts;
+    private final int[] absoluteEnds;
+    private final int[] lines;
+    private final int[] columns;
+    private final int[] endLines;
+    private final int[] endColumns;
+
+    /**
+     * @return The number of nodes.
+     */
+    public int getNodeCount()
+    {
+        return nodeIDs.length;
+    }
+
+    /**
+     * @return A view of the root.
+     */
+    public IASNode getRoot()
+    {
+        return new Node(this, 0);
+    }
+
+    /**
+     * @return A view of a node.
+     */
+    public IASNode getNode(int node)
+    {
+        return node != NO_NODE ? new Node(this, node) : null;
+    }
+
+    public ASTNodeID getNodeID(int node)
+    {
+        return NODE_IDS[nodeIDs[node]];
+    }
+
+    /**
+     * @return The parent of a node, or {@link #NO_NODE} for the root.
+     */
+    public int getParent(int node)
+    {
+        return parents[node];
+    }
+
+    public int getChildCount(int node)
+    {
+        return childOffsets[node + 1] - childOffsets[node];
+    }
+
+    /**
+     * @return The child of a node, or {@link #NO_NODE} if the original node
+     * had a null child.
+     */
+    public int getChild(int node, int i)
+    {
+        return children[childOffsets[node] + i];
+    }
+
+    /**
+     * @return The name of an identifier, the raw value of a literal, or null
+     * for other nodes.
+     */
+    public String getText(int node)
+    {
+        final int index = texts[node];
+        return index != NO_NODE ? strings[index] : null;
+    }
+
+    public String getSourcePath()
+    {
+        return sourcePath;
+    }
+
+    public boolean isTerminal(int node)
+    {
+        return terminals[node];
+    }
+
+    public int getStart(int node)
+    {
+        return starts[node];
+    }
+
+    public int getEnd(int node)
+    {
+        return ends[node];
+    }
+
+    public int getAbsoluteStart(int node)
+    {
+        return absoluteStarts[node];
+    }
+
+    public int getAbsoluteEnd(int node)
+    {
+        return absoluteEnds[node];
+    }
+
+    public int getLine(int node)
+    {
+        return lines[node];
+    }
+
+    public int getColumn(int node)
+    {
+        return columns[node];
+    }
+
+    public int getEndLine(int node)
+    {
+        return endLines[node];
+    }
+
+    public int getEndColumn(int node)
+    {
+        return endColumns[node];
+    }
+
+    /**
+     * @return The size of the tree, without the object headers of the tree
+     * and its arrays.
+     */
+    public long getRetainedBytes()
+    {
+        long bytes = 2L * nodeIDs.length + 4L * (parents.length + texts.length +
+                children.length + childOffsets.length) +
+                terminals.length + 4L * 8 * starts.length;
+        for (String s : strings)
+            bytes += 2L * s.length();
+        return bytes;
+    }
+
+    /**
+     * An {@link IASNode} view of a node of a {@link PackedExpressionTree}.
+     * The views of a node are equal.
+     */
+    private static final class Node implements IASNode
+    {
+        Node(PackedExpressionTree tree, int index)
+        {
+            this.tree = tree;
+            this.index = index;
+        }
+
+        private final PackedExpressionTree tree;
+        private final int index;
+
+        @Override
+        public ASTNodeID getNodeID()
+        {
+            return tree.getNodeID(index);
+        }
+
+        @Override
+        public boolean contains(int offset)
+        {
+            return getAbsoluteStart() < offset && getAbsoluteEnd() >= offset;
+        }
+
+        @Override
+        public IASNode getAncestorOfType(Class<? extends IASNode> nodeType)
+        {
+            IASNode current = getParent();
+            while (current != null && !nodeType.isInstance(current))
+                current = current.getParent();
+            return current;
+        }
+
+        @Override
+        public IASNode getChild(int i)
+        {
+            return tree.getNode(tree.getChild(index, i));
+        }
+
+        @Override
+        public int getChildCount()
+        {
+            return tree.getChildCount(index);
+        }
+
+        @Override
+        public IASNode getContainingNode(int offset)
+        {
+            if (!contains(offset))
+                return null;
+            for (int i = 0, count = getChildCount(); i < count; i++)
+            {
+                final IASNode child = getChild(i);
+                if (child == null)
+                    continue;
+                if (child.getAbsoluteStart() > offset)
+                    break;
+                if (child.contains(offset))
+                    return child.getContainingNode(offset);
+            }
+            return this;
+        }
+
+        @Override
+        public IScopedNode getContainingScope()
+        {
+            return null;
+        }
+
+        @Override
+        public String getPackageName()
+        {
+            return null;
+        }
+
+        @Override
+        public IASNode getParent()
+        {
+            return tree.getNode(tree.getParent(index));
+        }
+
+        @Override
+        public IFileSpecification getFileSpecification()
+        {
+            return null;
+        }
+
+        @Override
+        public int getSpanningStart()
+        {
+            return getStart();
+        }
+
+        @Override
+        public IASNode getSucceedingNode(int offset)
+        {
+            if (getAbsoluteEnd() <= offset)
+                return null;
+            for (int i = 0, count = getChildCount(); i < count; i++)
+            {
+                final IASNode child = getChild(i);
+                if (child == null)
+                    continue;
+                if (child.getAbsoluteStart() > offset)
+                    return child;
+                else if (child.getAbsoluteEnd() > offset)
+                    return child.getSucceedingNode(offset);
+            }
+            return null;
+        }
+
+        @Override
+        public boolean isTerminal()
+        {
+            return tree.isTerminal(index);
+        }
+
+        @Override
+        public String getSourcePath()
+        {
+            return tree.getSourcePath();
+        }
+
+        @Override
+        public int getStart()
+        {
+            return tree.getStart(index);
+        }
+
+        @Override
+        public int getEnd()
+        {
+            return tree.getEnd(index);
+        }
+
+        @Override
+        public int getLine()
+        {
+            return tree.getLine(index);
+        }
+
+        @Override
+        public int getColumn()
+        {
+            return tree.getColumn(index);
+        }
+
+        @Override
+        public int getEndLine()
+        {
+            return tree.getEndLine(index);
+        }
+
+        @Override
+        public int getEndColumn()
+        {
+            return tree.getEndColumn(index);
+        }
+
+        @Override
+        public int getAbsoluteStart()
+        {
+            return tree.getAbsoluteStart(index);
+        }
+
+        @Override
+        public int getAbsoluteEnd()
+        {
+            return tree.getAbsoluteEnd(index);
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            if (!(o instanceof Node))
+                return false;
+            final Node other = (Node)o;
+            return tree == other.tree && index == other.index;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return System.identityHashCode(tree) * 31 + index;
+        }
+
+        @Override
+        public String toString()
+        {
+            final String text = tree.getText(index);
+            return getNodeID().getParaphrase() + (text != null ? " \"" + text + "\"" : "") +
+                   " " + getStart() + ":" + getEnd();
+        }
+    }
+}
@@ -94,6 +94,26 @@ class MXMLDataBindingParser
                                Workspace workspace,
                                MXMLDialect mxmlDialect,
                                ICompilerProject project)
+    {
+        return parse(parent, sourceLocation, fragments, problems, workspace, mxmlDialect, project, null);
+    }
+
+    /**
+     * Parses source fragments looking for databinding expressions, like
+     * {@link #parse(IMXMLNode, ISourceLocation, ISourceFragment[], Collection, Workspace, MXMLDialect, ICompilerProject)}.
+     * <p>
+     * If an {@code expressionParser} is specified, the expressions of the
+     * databindings are parsed by it, and the databinding nodes that are
+     * returned get their expression nodes when it finishes.
+     */
+    public static Object parse(IMXMLNode parent,
+                               ISourceLocation sourceLocation,
+                               ISourceFragment[] fragments,
+                               Collection<ICompilerProblem> problems,
+                               Workspace workspace,
+                               MXMLDialect mxmlDialect,
+                               ICompilerProject project,
+                               MXMLParallelExpressionParser expressionParser)
     {
         assert fragments != null : "Expected an array of source fragments";
 
@@ -115,7 +135,8 @@ class MXMLDataBindingParser
         // Create an MXMLConcatenatedDataBindingNode with children.
         // Each DataBindingFragmentList creates a child MXMLDataBindingNode.
         // Each NonDataBindingFragmentList creates a child LiteralNode of type STRING.
-        return createNode(parent, sourceLocation, splitResult, problems, workspace, mxmlDialect, project);
+        return createNode(parent, sourceLocation, splitResult, problems, workspace, mxmlDialect, project,
+                          expressionParser);
     }
 
     /**
@@ -276,7 +297,8 @@ class MXMLDataBindingParser
                                       Collection<ICompilerProblem> problems,
                                       Workspace workspace,
                                       MXMLDialect mxmlDialect,
-                                      ICompilerProject project)
+                                      ICompilerProject project,
+                                      MXMLParallelExpressionParser expressionParser)
     {
         MXMLConcatenatedDataBindingNode node = new MXMLConcatenatedDataBindingNode((NodeBase)parent);
 
@@ -294,7 +316,8 @@ class MXMLDataBindingParser
             {
                 // For each DataBindingFragmentList, add an IMXMLDataBindingNode
                 // containing an IExpressionNode created by the ActionScript parser.
-                children.add(createDataBindingNode(node, sourceLocation, fragmentList, problems, workspace, project));
+                children.add(createDataBindingNode(node, sourceLocation, fragmentList, problems, workspace, project,
+                                                   expressionParser));
             }
             else if (fragmentList instanceof NonDataBindingFragmentList)
             {
@@ -373,7 +396,8 @@ class MXMLDataBindingParser
             List<ISourceFragment> fragments,
             Collection<ICompilerProblem> problems,
             Workspace workspace,
-            ICompilerProject project)
+            ICompilerProject project,
+            MXMLParallelExpressionParser expressionParser)
     {
         MXMLSingleDataBindingNode result = new MXMLSingleDataBindingNode((NodeBase)parent);
 
@@ -386,6 +410,13 @@ class MXMLDataBindingParser
         result.setLine(firstFragment.getPhysicalLine());
         result.setColumn(firstFragment.getPhysicalColumn() - 1);
 
+        // The expression parser parses the fragments later, on another thread.
+        if (expressionParser != null)
+        {
+            expressionParser.parse(result, sourceLocation, fragments.toArray(new ISourceFragment[0]));
+            return result;
+        }
+
         // Parse the fragments inside the databinding expression.
         Reader reader = new SourceFragmentsReader(sourceLocation.getSourcePath(), fragments.toArray(new ISourceFragment[0]));
         // IExpressionNode expressionNode = ASParser.parseDataBinding(workspace, reader, problems);
@@ -394,6 +425,16 @@ class MXMLDataBindingParser
         IExpressionNode expressionNode = ASParser.parseExpression(workspace, reader, problems, 
                             projectConfigVariables, sourceLocation);
 
+        setExpressionNode(result, expressionNode);
+        return result;
+    }
+
+    /**
+     * Makes the expression node that was parsed from the fragments inside a
+     * databinding the child of the databinding node.
+     */
+    static void setExpressionNode(MXMLSingleDataBindingNode node, IExpressionNode expressionNode)
+    {
         // If the parse of the databinding expression failed,
         // substitute an empty string literal node
         // (which is the result of the empty databinding expression {}).
@@ -402,12 +443,11 @@ class MXMLDataBindingParser
 
         // ASParser creates the ExpressionNodeBase as a child of a FileNode.
         // Make it a child of the MXMLDataBindingNode.
-        ((ExpressionNodeBase)expressionNode).setParent(result);
-        result.setExpressionNode(expressionNode);
+        ((ExpressionNodeBase)expressionNode).setParent(node);
+        node.setExpressionNode(expressionNode);
 
         // double check that the node tree has its children's parent chain set up
         validateParents((NodeBase)expressionNode);
-        return result;
     }
 
     private static void validateParents(NodeBase expressionNode)
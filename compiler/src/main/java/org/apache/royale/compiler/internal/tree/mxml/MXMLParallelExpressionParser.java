@@ -0,0 +1,146 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+
+package org.apache.royale.compiler.internal.tree.mxml;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
+
+import org.apache.royale.compiler.common.ISourceLocation;
+import org.apache.royale.compiler.internal.parsing.ISourceFragment;
+import org.apache.royale.compiler.internal.parsing.SourceFragmentsReader;
+import org.apache.royale.compiler.internal.parsing.as.ASParser;
+import org.apache.royale.compiler.internal.parsing.as.IProjectConfigVariables;
+import org.apache.royale.compiler.internal.tree.as.ExpressionNodeBase;
+import org.apache.royale.compiler.internal.workspaces.Workspace;
+import org.apache.royale.compiler.problems.ICompilerProblem;
+
+/**
+ * Parses the ActionScript expressions of the databindings of an MXML document
+ * in parallel with the building of the rest of its tree.
+ * <p>
+ * Each expression is parsed by a task of the workspace's executor into a
+ * detached expression node, with its own collection of problems. The tasks
+ * don't touch the tree: {@link #finish(Collection)} waits for them in the
+ * order they were started, on the thread that builds the tree, and attaches
+ * their expression nodes to the databinding nodes and adds their problems. A
+ * task that no thread of the executor has started yet is run by the thread
+ * that builds the tree, so a tree built on a thread of the executor doesn't
+ * wait for threads that are all busy. The tree is the same as
+ * when the expressions are parsed one after the other, and so are the
+ * problems, except that those of the expressions come after the others.
+ */
+class MXMLParallelExpressionParser
+{
+    /**
+     * The result of parsing one databinding expression.
+     */
+    private static class ParsedExpression
+    {
+        ExpressionNodeBase expressionNode;
+        final List<ICompilerProblem> problems = new ArrayList<ICompilerProblem>();
+    }
+
+    /**
+     * A databinding node waiting for its expression.
+     */
+    private static class PendingExpression
+    {
+        PendingExpression(MXMLSingleDataBindingNode node, FutureTask<ParsedExpression> task)
+        {
+            this.node = node;
+            this.task = task;
+        }
+
+        final MXMLSingleDataBindingNode node;
+        final FutureTask<ParsedExpression> task;
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param workspace The workspace of the MXML document, whose executor
+     * parses the expressions.
+     * @param projectConfigVariables The config variables of the project.
+     */
+    MXMLParallelExpressionParser(Workspace workspace, IProjectConfigVariables projectConfigVariables)
+    {
+        this.workspace = workspace;
+        this.projectConfigVariables = projectConfigVariables;
+    }
+
+    private final Workspace workspace;
+    private final IProjectConfigVariables projectConfigVariables;
+    private final List<PendingExpression> pending = new ArrayList<PendingExpression>();
+
+    /**
+     * Start parsing the expression of a databinding node.
+     * 
+     * @param node The databinding node.
+     * @param sourceLocation The location of the databinding.
+     * @param fragments The fragments inside the databinding.
+     */
+    void parse(MXMLSingleDataBindingNode node, final ISourceLocation sourceLocation,
+               final ISourceFragment[] fragments)
+    {
+        final FutureTask<ParsedExpression> task = new FutureTask<ParsedExpression>(new Callable<ParsedExpression>()
+        {
+            @Override
+            public ParsedExpression call()
+            {
+                final ParsedExpression result = new ParsedExpression();
+                final SourceFragmentsReader reader =
+                        new SourceFragmentsReader(sourceLocation.getSourcePath(), fragments);
+                result.expressionNode = ASParser.parseExpression(workspace, reader, result.problems,
+                        projectConfigVariables, sourceLocation);
+                return result;
+            }
+        });
+        workspace.getExecutorService().execute(task);
+        pending.add(new PendingExpression(node, task));
+    }
+
+    /**
+     * Wait for the expressions that have been started and attach them to
+     * their databinding nodes.
+     * 
+     * @param problems The problems of the tree, to which the problems found
+     * while parsing the expressions are added.
+     * @throws InterruptedException The thread was interrupted.
+     * @throws ExecutionException An expression could not be parsed.
+     */
+    void finish(Collection<ICompilerProblem> problems) throws InterruptedException, ExecutionException
+    {
+        for (PendingExpression expression : pending)
+        {
+            // Does nothing if the task was started by the executor.
+            expression.task.run();
+            final ParsedExpression result = expression.task.get();
+            problems.addAll(result.problems);
+            MXMLDataBindingParser.setExpressionNode(expression.node, result.expressionNode);
+        }
+        pending.clear();
+    }
+}
@@ -180,6 +180,12 @@ public class MXMLTreeBuilder
 
     private IVariableDefinition percentProxyDefinition;
 
+    /**
+     * Parses the databinding expressions in parallel while the tree is
+     * built, or null to parse them as they are found.
+     */
+    private MXMLParallelExpressionParser expressionParser;
+
     /**
      * Gets the compilation unit which is building the MXML tree.
      * 
@@ -314,9 +320,18 @@ public class MXMLTreeBuilder
     {
         fileNode = new MXMLFileNode();
 
+        if (project.getUseParallelMXMLTreeBuilding())
+        {
+            expressionParser = new MXMLParallelExpressionParser(
+                    workspace, project.getProjectConfigVariables());
+        }
+
         try
         {
             fileNode.initialize(this);
+
+            if (expressionParser != null)
+                expressionParser.finish(problems);
         }
         catch (Exception e)
         {
@@ -571,7 +586,7 @@ public class MXMLTreeBuilder
         {
             Object result = MXMLDataBindingParser.parse(
                     null, location, fragments,
-                    problems, workspace, mxmlDialect, project);
+                    problems, workspace, mxmlDialect, project, expressionParser);
 
             if (result instanceof IMXMLDataBindingNode)
             {
@@ -681,7 +696,7 @@ public class MXMLTreeBuilder
             {
                 Object result = MXMLDataBindingParser.parse(
                         null, location, fragments,
-                        problems, workspace, mxmlDialect, project);
+                        problems, workspace, mxmlDialect, project, expressionParser);
 
                 if (result instanceof IMXMLDataBindingNode)
                 {
@@ -39,6 +39,7 @@ import org.apache.royale.compiler.internal.parsing.as.ASParser;
 import org.apache.royale.compiler.internal.parsing.as.DeferFunctionBody;
 import org.apache.royale.compiler.internal.projects.CompilerProject;
 import org.apache.royale.compiler.internal.projects.DefinitionPriority;
+import org.apache.royale.compiler.internal.projects.SyntaxTreeBudget;
 import org.apache.royale.compiler.internal.scopes.ASFileScope;
 import org.apache.royale.compiler.internal.semantics.PostProcessStep;
 import org.apache.royale.compiler.internal.tree.as.ClassNode;
@@ -289,8 +290,16 @@ public class ASCompilationUnit extends CompilationUnitBase
         // open in IDE). "isInvisible" means the compilation unit is invisible 
         // to semantic analyzer. It, however, is "visible" to the user in the 
         // IDE.
+        // When function bodies are parsed on demand, they are read again from
+        // the workspace's file specification, so any source the workspace
+        // knows can defer them.
         final DeferFunctionBody deferFunctionBody;
-        if(!isInvisible() && specification instanceof FileSpecification)
+        if (isInvisible())
+            deferFunctionBody = DeferFunctionBody.DISABLED;
+        else if (getProject().getParseFunctionBodiesOnDemand() &&
+                 specification == getProject().getWorkspace().getFileSpecification(getAbsoluteFilename()))
+            deferFunctionBody = DeferFunctionBody.ON_DEMAND;
+        else if (specification instanceof FileSpecification)
             deferFunctionBody = DeferFunctionBody.ENABLED;
         else
             deferFunctionBody = DeferFunctionBody.DISABLED;
@@ -346,6 +355,15 @@ public class ASCompilationUnit extends CompilationUnitBase
             ASSyntaxTreeRequestResult result = new ASSyntaxTreeRequestResult(this, syntaxTreeRequest, ast, includedFiles, ast.getIncludeTreeLastModified(), problemCollection);
             getProject().getWorkspace().addIncludedFilesToCompilationUnit(this, result.getIncludedFiles());
             getProject().addToASTCache(ast);
+            final SyntaxTreeBudget syntaxTreeBudget = getProject().getSyntaxTreeBudget();
+            if (syntaxTreeBudget != null)
+            {
+                syntaxTreeBudget.retain(this, ast);
+                // The tree was dropped and is built again. Like the first
+                // one after code generation, only the budget holds it.
+                if (operationsCompleted(EnumSet.of(ICompilationUnit.Operation.GET_SEMANTIC_PROBLEMS, ICompilationUnit.Operation.GET_ABC_BYTES)))
+                    result.dropASTRef();
+            }
             return result;
         }
         finally
@@ -552,6 +570,7 @@ public class ASCompilationUnit extends CompilationUnitBase
             {
                 assert syntaxTreeRequest != null;
                 ((ASSyntaxTreeRequestResult)syntaxTreeRequest.get()).dropASTRef();
+                getProject().codeGenerationCompleted(this);
             }
             catch (InterruptedException e)
             {
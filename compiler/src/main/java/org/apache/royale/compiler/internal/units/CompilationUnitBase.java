@@ -48,6 +48,7 @@ import org.apache.royale.compiler.css.ICSSSelector;
 import org.apache.royale.compiler.definitions.IClassDefinition;
 import org.apache.royale.compiler.definitions.IDefinition;
 import org.apache.royale.compiler.filespecs.IFileSpecification;
+import org.apache.royale.compiler.internal.caches.CompilationUnitDiskCache;
 import org.apache.royale.compiler.internal.css.CSSFunctionCallPropertyValue;
 import org.apache.royale.compiler.internal.css.codegen.CSSCompilationSession;
 import org.apache.royale.compiler.internal.css.semantics.CSSSemanticAnalyzer;
@@ -726,6 +727,8 @@ public abstract class CompilationUnitBase implements ICompilationUnit
             // If we are are invalidating the file scope,
             // we should also invalidate the ast.
             syntaxTreeRequest.set(null);
+            if (project.getSyntaxTreeBudget() != null)
+                project.getSyntaxTreeBudget().remove(this);
 
             project.removeAnyUnfoundDependencies(this);
         }
@@ -873,7 +876,17 @@ public abstract class CompilationUnitBase implements ICompilationUnit
 
     private IABCBytesRequestResult processABCBytesRequest() throws InterruptedException
     {
-        IABCBytesRequestResult result = handleABCBytesRequest();
+        IABCBytesRequestResult result = null;
+        final CompilationUnitDiskCache diskCache = project.getCompilationUnitDiskCache();
+        final boolean useDiskCache = diskCache != null && CompilationUnitDiskCache.isCacheable(this);
+        if (useDiskCache)
+            result = diskCache.load(this);
+        if (result == null)
+        {
+            result = handleABCBytesRequest();
+            if (useDiskCache)
+                diskCache.store(this, result);
+        }
         operationComplete(ICompilationUnit.Operation.GET_ABC_BYTES);
         removeAST();
 
@@ -28,9 +28,11 @@ import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
+import org.apache.royale.compiler.internal.workspaces.CompilationProfiler;
 import org.apache.royale.compiler.internal.workspaces.Workspace;
 import org.apache.royale.compiler.units.requests.IRequest;
 import org.apache.royale.compiler.units.requests.IRequestResult;
+import org.apache.royale.compiler.workspaces.IWorkspaceProfilingDelegate;
 
 /**
  * Creates implementations of the IRequest, where the object returned from the
@@ -185,7 +187,7 @@ public abstract class RequestMaker<ResultType extends IRequestResult, RequesteeI
             if (atomicRef.compareAndSet(null, request))
             {
                 ExecutorService exec = workspace.getExecutorService();
-                request.setFuture(exec.submit(wrapCallable(u, getCallable(u), workspace)));
+                request.setFuture(exec.submit(wrapCallable(u, getCallable(u), workspace, System.nanoTime())));
             }
             else
             {
@@ -213,16 +215,21 @@ public abstract class RequestMaker<ResultType extends IRequestResult, RequesteeI
      * @param c Callable the resulting Callable calls and that may not catch all
      * Throwable that are thrown.
      * @param workspace The workspace to notify once this callable finishes.
+     * @param submitTime The {@link System#nanoTime()} at which the callable
+     * is submitted to the executor.
      * @return A new callable that will not throw any Throwable other than
      * InterruptedException.
      */
-    private Callable<ResultType> wrapCallable(final RequesteeType u, final Callable<ResultType> c, final Workspace workspace)
+    private Callable<ResultType> wrapCallable(final RequesteeType u, final Callable<ResultType> c, final Workspace workspace, final long submitTime)
     {
         return new Callable<ResultType>()
         {
             @Override
             public ResultType call() throws InterruptedException
             {
+                final IWorkspaceProfilingDelegate profilingDelegate = workspace.getProfilingDelegate();
+                if (profilingDelegate instanceof CompilationProfiler)
+                    ((CompilationProfiler)profilingDelegate).requestStarted(u, System.nanoTime() - submitTime);
                 try
                 {
                     return c.call();
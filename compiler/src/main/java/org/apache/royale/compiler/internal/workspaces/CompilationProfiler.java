@@ -0,0 +1,607 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.compiler.internal.workspaces;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.royale.compiler.internal.projects.CompilerProject;
+import org.apache.royale.compiler.internal.projects.SyntaxTreeBudget;
+import org.apache.royale.compiler.internal.scopes.ScopeResolutionCache;
+import org.apache.royale.compiler.units.ICompilationUnit;
+import org.apache.royale.compiler.workspaces.IWorkspaceProfilingDelegate;
+import org.apache.royale.swc.SWCManager;
+
+import com.google.common.cache.CacheStats;
+
+/**
+ * An {@link IWorkspaceProfilingDelegate} that records the wall and CPU time
+ * of every compilation unit operation, and of the phases the compiler
+ * clients report, and writes them as a Chrome trace event file and a summary
+ * of the slowest compilation units.
+ * <p>
+ * Operations can nest when a compilation unit operation runs another one on
+ * the same thread, so besides the total time of an operation the profiler
+ * keeps its self time, which excludes the nested operations. The summary
+ * ranks compilation units by self time.
+ * <p>
+ * The trace file can be opened with {@code chrome://tracing} or
+ * <a href="https://ui.perfetto.dev">Perfetto</a>.
+ */
+public class CompilationProfiler implements IWorkspaceProfilingDelegate
+{
+    public static final String TRACE_FILE_SUFFIX = ".trace.json";
+    public static final String SUMMARY_FILE_SUFFIX = ".summary.txt";
+
+    /**
+     * Profile a workspace until {@link #uninstall()} is called.
+     *
+     * @param workspace The workspace.
+     * @return The profiler.
+     */
+    public static CompilationProfiler install(Workspace workspace)
+    {
+        final CompilationProfiler profiler = new CompilationProfiler(workspace);
+        workspace.setProfilingDelegate(profiler);
+        return profiler;
+    }
+
+    /**
+     * A running operation or phase.
+     */
+    private static class OpenOperation
+    {
+        OpenOperation(ICompilationUnit unit, String name, long startNanos, long startCPUNanos)
+        {
+            this.unit = unit;
+            this.name = name;
+            this.startNanos = startNanos;
+            this.startCPUNanos = startCPUNanos;
+        }
+
+        final ICompilationUnit unit;
+        final String name;
+        final long startNanos;
+        final long startCPUNanos;
+        long childNanos;
+        long childCPUNanos;
+    }
+
+    /**
+     * A completed operation or phase.
+     */
+    private static class Event
+    {
+        ICompilationUnit unit;
+        String name;
+        long threadId;
+        // The number of enclosing compilation unit operations.
+        int depth;
+        long startNanos;
+        long nanos;
+        long cpuNanos;
+        long selfNanos;
+        long selfCPUNanos;
+    }
+
+    /**
+     * The times of one compilation unit, summed over its operations.
+     */
+    private static class UnitTimes
+    {
+        UnitTimes(ICompilationUnit unit)
+        {
+            this.unit = unit;
+        }
+
+        final ICompilationUnit unit;
+        final Map<String, Long> selfNanosByOperation = new HashMap<String, Long>();
+        long selfNanos;
+        long selfCPUNanos;
+        long queueNanos;
+    }
+
+    private CompilationProfiler(Workspace workspace)
+    {
+        this.workspace = workspace;
+        this.previousDelegate = workspace.getProfilingDelegate();
+        this.executor = workspace.getExecutorService();
+        threadMXBean = ManagementFactory.getThreadMXBean();
+        cpuTimeSupported = threadMXBean.isCurrentThreadCpuTimeSupported();
+        if (cpuTimeSupported && !threadMXBean.isThreadCpuTimeEnabled())
+            threadMXBean.setThreadCpuTimeEnabled(true);
+        startNanos = System.nanoTime();
+    }
+
+    private final Workspace workspace;
+    private final IWorkspaceProfilingDelegate previousDelegate;
+    private final ExecutorService executor;
+    private final ThreadMXBean threadMXBean;
+    private final boolean cpuTimeSupported;
+    private final long startNanos;
+    private volatile long endNanos;
+
+    private final ThreadLocal<ArrayDeque<OpenOperation>> openOperations = new ThreadLocal<ArrayDeque<OpenOperation>>()
+    {
+        @Override
+        protected ArrayDeque<OpenOperation> initialValue()
+        {
+            return new ArrayDeque<OpenOperation>();
+        }
+    };
+
+    private final Queue<Event> events = new ConcurrentLinkedQueue<Event>();
+    private final Map<Long, String> threadNames = Collections.synchronizedMap(new HashMap<Long, String>());
+    private final Map<ICompilationUnit, Long> queueNanosByUnit = Collections.synchronizedMap(new HashMap<ICompilationUnit, Long>());
+    private final AtomicLong requestCount = new AtomicLong();
+    private final AtomicLong queueNanos = new AtomicLong();
+    private final AtomicLong maxQueueNanos = new AtomicLong();
+
+    /**
+     * Stop profiling, and restore the profiling delegate the workspace had
+     * before {@link #install(Workspace)}.
+     */
+    public void uninstall()
+    {
+        endNanos = System.nanoTime();
+        if (workspace.getProfilingDelegate() == this)
+            workspace.setProfilingDelegate(previousDelegate);
+    }
+
+    @Override
+    public void operationStarted(ICompilationUnit cu, ICompilationUnit.Operation operation)
+    {
+        start(cu, operation.name());
+    }
+
+    @Override
+    public void operationCompleted(ICompilationUnit cu, ICompilationUnit.Operation operation)
+    {
+        complete(cu, operation.name());
+    }
+
+    /**
+     * Called when a compiler phase that is not a compilation unit operation
+     * starts on the current thread, for example writing the output.
+     *
+     * @param unit The compilation unit the phase works on, or null.
+     * @param name The name of the phase.
+     */
+    public void phaseStarted(ICompilationUnit unit, String name)
+    {
+        start(unit, name);
+    }
+
+    /**
+     * Called when a phase started with
+     * {@link #phaseStarted(ICompilationUnit, String)} completes.
+     */
+    public void phaseCompleted(ICompilationUnit unit, String name)
+    {
+        complete(unit, name);
+    }
+
+    /**
+     * Called when the workspace executor starts running a request.
+     *
+     * @param requestee The object the request was made on.
+     * @param waitNanos Time between the submission of the request and the
+     * start of its execution.
+     */
+    public void requestStarted(Object requestee, long waitNanos)
+    {
+        requestCount.incrementAndGet();
+        queueNanos.addAndGet(waitNanos);
+        long max = maxQueueNanos.get();
+        while (waitNanos > max && !maxQueueNanos.compareAndSet(max, waitNanos))
+            max = maxQueueNanos.get();
+
+        if (requestee instanceof ICompilationUnit)
+        {
+            final ICompilationUnit unit = (ICompilationUnit)requestee;
+            synchronized (queueNanosByUnit)
+            {
+                final Long previous = queueNanosByUnit.get(unit);
+                queueNanosByUnit.put(unit, previous != null ? previous + waitNanos : waitNanos);
+            }
+        }
+    }
+
+    private void start(ICompilationUnit unit, String name)
+    {
+        openOperations.get().push(new OpenOperation(unit, name, System.nanoTime(), getCPUTime()));
+    }
+
+    private void complete(ICompilationUnit unit, String name)
+    {
+        final long now = System.nanoTime();
+        final long cpuNow = getCPUTime();
+
+        // Operations complete in reverse order of their start, but an
+        // exception can skip a completion, so search for the matching start.
+        final ArrayDeque<OpenOperation> stack = openOperations.get();
+        OpenOperation open = null;
+        final Iterator<OpenOperation> it = stack.iterator();
+        while (it.hasNext())
+        {
+            final OpenOperation candidate = it.next();
+            if (candidate.unit == unit && candidate.name.equals(name))
+            {
+                open = candidate;
+                it.remove();
+                break;
+            }
+        }
+        if (open == null)
+            return;
+
+        final Event event = new Event();
+        event.unit = unit;
+        event.name = name;
+        event.threadId = Thread.currentThread().getId();
+        for (OpenOperation enclosing : stack)
+        {
+            if (enclosing.unit != null)
+                event.depth++;
+        }
+        event.startNanos = open.startNanos;
+        event.nanos = now - open.startNanos;
+        event.cpuNanos = cpuNow - open.startCPUNanos;
+        event.selfNanos = Math.max(0, event.nanos - open.childNanos);
+        event.selfCPUNanos = Math.max(0, event.cpuNanos - open.childCPUNanos);
+        events.add(event);
+
+        final OpenOperation parent = stack.peek();
+        if (parent != null)
+        {
+            parent.childNanos += event.nanos;
+            parent.childCPUNanos += event.cpuNanos;
+        }
+
+        if (!threadNames.containsKey(event.threadId))
+            threadNames.put(event.threadId, Thread.currentThread().getName());
+    }
+
+    private long getCPUTime()
+    {
+        return cpuTimeSupported ? threadMXBean.getCurrentThreadCpuTime() : 0;
+    }
+
+    /**
+     * Write the trace and summary files.
+     *
+     * @param directory The directory of the reports.
+     * @param name The base name of the report files, for example the target
+     * type.
+     * @param topCount The number of compilation units listed in the summary.
+     * @return The summary.
+     * @throws IOException error writing the reports.
+     */
+    public String writeReports(File directory, String name, int topCount) throws IOException
+    {
+        if (!directory.isDirectory() && !directory.mkdirs())
+            throw new IOException("can't create " + directory);
+
+        final List<Event> events = new ArrayList<Event>(this.events);
+        Collections.sort(events, new Comparator<Event>()
+        {
+            @Override
+            public int compare(Event e1, Event e2)
+            {
+                return Long.compare(e1.startNanos, e2.startNanos);
+            }
+        });
+
+        final Writer trace = new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(new File(directory, name + TRACE_FILE_SUFFIX)), StandardCharsets.UTF_8));
+        try
+        {
+            writeTrace(trace, events);
+        }
+        finally
+        {
+            trace.close();
+        }
+
+        final String summary = getSummary(events, topCount);
+        final Writer summaryWriter = new OutputStreamWriter(
+                new FileOutputStream(new File(directory, name + SUMMARY_FILE_SUFFIX)), StandardCharsets.UTF_8);
+        try
+        {
+            summaryWriter.write(summary);
+        }
+        finally
+        {
+            summaryWriter.close();
+        }
+        return summary;
+    }
+
+    private void writeTrace(Writer out, List<Event> events) throws IOException
+    {
+        out.write("{\"displayTimeUnit\":\"ms\",\"traceEvents\":[\n");
+        boolean first = true;
+        synchronized (threadNames)
+        {
+            for (Map.Entry<Long, String> entry : threadNames.entrySet())
+            {
+                if (!first)
+                    out.write(",\n");
+                first = false;
+                out.write("{\"ph\":\"M\",\"name\":\"thread_name\",\"pid\":1,\"tid\":" + entry.getKey() +
+                          ",\"args\":{\"name\":" + quote(entry.getValue()) + "}}");
+            }
+        }
+        for (Event event : events)
+        {
+            if (!first)
+                out.write(",\n");
+            first = false;
+            out.write("{\"ph\":\"X\",\"pid\":1,\"tid\":" + event.threadId +
+                      ",\"name\":" + quote(event.unit != null ? event.name + " " + getUnitName(event.unit) : event.name) +
+                      ",\"cat\":" + quote(event.unit != null ? "unit" : "phase") +
+                      ",\"ts\":" + toMicros(event.startNanos - startNanos) +
+                      ",\"dur\":" + toMicros(event.nanos) +
+                      ",\"args\":{\"cpuMs\":" + toMillis(event.cpuNanos) +
+                      ",\"selfMs\":" + toMillis(event.selfNanos) +
+                      ",\"selfCpuMs\":" + toMillis(event.selfCPUNanos));
+            if (event.unit != null)
+                out.write(",\"file\":" + quote(event.unit.getAbsoluteFilename()));
+            out.write("}}");
+        }
+        out.write("\n]}\n");
+    }
+
+    private String getSummary(List<Event> events, int topCount)
+    {
+        final long end = endNanos != 0 ? endNanos : System.nanoTime();
+        final long span = Math.max(1, end - startNanos);
+
+        final Map<ICompilationUnit, UnitTimes> unitTimes = new HashMap<ICompilationUnit, UnitTimes>();
+        final Map<String, long[]> operationTimes = new HashMap<String, long[]>();
+        final Map<Long, Long> busyNanosByThread = new HashMap<Long, Long>();
+        for (Event event : events)
+        {
+            long[] times = operationTimes.get(event.name);
+            if (times == null)
+            {
+                times = new long[3];
+                operationTimes.put(event.name, times);
+            }
+            times[0]++;
+            times[1] += event.selfNanos;
+            times[2] += event.selfCPUNanos;
+
+            // A thread is busy while it runs the outermost compilation unit
+            // operation. Phases of the clients mostly wait for operations
+            // on other threads.
+            if (event.unit != null && event.depth == 0)
+            {
+                final Long busy = busyNanosByThread.get(event.threadId);
+                busyNanosByThread.put(event.threadId, (busy != null ? busy : 0) + event.nanos);
+            }
+
+            if (event.unit == null)
+                continue;
+            UnitTimes unitTime = unitTimes.get(event.unit);
+            if (unitTime == null)
+            {
+                unitTime = new UnitTimes(event.unit);
+                unitTimes.put(event.unit, unitTime);
+            }
+            unitTime.selfNanos += event.selfNanos;
+            unitTime.selfCPUNanos += event.selfCPUNanos;
+            final Long operationNanos = unitTime.selfNanosByOperation.get(event.name);
+            unitTime.selfNanosByOperation.put(event.name, (operationNanos != null ? operationNanos : 0) + event.selfNanos);
+        }
+        synchronized (queueNanosByUnit)
+        {
+            for (Map.Entry<ICompilationUnit, Long> entry : queueNanosByUnit.entrySet())
+            {
+                final UnitTimes times = unitTimes.get(entry.getKey());
+                if (times != null)
+                    times.queueNanos = entry.getValue();
+            }
+        }
+
+        final StringWriter result = new StringWriter();
+        final PrintWriter out = new PrintWriter(result);
+        out.printf("Compilation profile: %.3f s, %d operations on %d threads%n",
+                span / 1e9, events.size(), busyNanosByThread.size());
+
+        long busyNanos = 0;
+        for (Long busy : busyNanosByThread.values())
+            busyNanos += busy;
+        out.printf("Thread utilisation: %.1f%% (%.3f s busy over %d threads)%n",
+                busyNanosByThread.isEmpty() ? 0.0 : 100.0 * busyNanos / (span * (double)busyNanosByThread.size()),
+                busyNanos / 1e9, busyNanosByThread.size());
+        if (executor instanceof ThreadPoolExecutor)
+        {
+            final ThreadPoolExecutor pool = (ThreadPoolExecutor)executor;
+            out.printf("Workspace executor: %d threads at most, %d largest pool size%n",
+                    pool.getMaximumPoolSize(), pool.getLargestPoolSize());
+        }
+        final long requests = requestCount.get();
+        out.printf("Request queue wait: %.3f s total, %.3f ms mean, %.3f ms max over %d requests%n",
+                queueNanos.get() / 1e9, requests != 0 ? queueNanos.get() / 1e6 / requests : 0.0,
+                maxQueueNanos.get() / 1e6, requests);
+        if (!cpuTimeSupported)
+            out.println("CPU time is not supported by this JVM.");
+
+        if (workspace.getSWCManager() instanceof SWCManager)
+        {
+            out.println();
+            out.println("SWC caches (since the workspace was created):");
+            for (Map.Entry<String, CacheStats> entry : ((SWCManager)workspace.getSWCManager()).getCacheStats().entrySet())
+            {
+                final CacheStats stats = entry.getValue();
+                out.printf("  %-24s %8d hits %8d misses %8d evictions %12.3f ms loading%n",
+                        entry.getKey(), stats.hitCount(), stats.missCount(), stats.evictionCount(),
+                        stats.totalLoadTime() / 1e6);
+            }
+        }
+
+        for (CompilerProject project : workspace.getProjects())
+        {
+            final ScopeResolutionCache scopeCache = project.getScopeResolutionCache();
+            out.println();
+            final CacheStats scopeStats = project.getScopeCacheStats();
+            out.printf("Scope caches (%d scopes and %d entries of each kind per scope at most):%n",
+                    project.getScopeCacheMaximumScopes(), scopeCache.getMaximumSize());
+            out.printf("  %-24s %8d created %8d evictions%n",
+                    "scopes", scopeStats.loadCount(), scopeStats.evictionCount());
+            for (Map.Entry<String, CacheStats> entry : scopeCache.getCacheStats().entrySet())
+            {
+                final CacheStats stats = entry.getValue();
+                out.printf("  %-24s %8d hits %8d misses %8d evictions %8.1f%% hit rate%n",
+                        entry.getKey(), stats.hitCount(), stats.missCount(), stats.evictionCount(),
+                        stats.hitRate() * 100);
+            }
+        }
+
+        for (CompilerProject project : workspace.getProjects())
+        {
+            final SyntaxTreeBudget budget = project.getSyntaxTreeBudget();
+            if (budget == null)
+                continue;
+            out.println();
+            out.printf("Syntax trees: %.1f MB peak retained of %.1f MB budget, %.1f MB retained, %d evictions, %d rebuilds%n",
+                    budget.getPeakRetainedBytes() / 1048576.0, budget.getMaximumBytes() / 1048576.0,
+                    budget.getRetainedBytes() / 1048576.0, budget.getEvictionCount(), budget.getRebuildCount());
+        }
+
+        out.println();
+        out.println("Operations (self time):");
+        final List<String> operationNames = new ArrayList<String>(operationTimes.keySet());
+        Collections.sort(operationNames);
+        for (String operationName : operationNames)
+        {
+            final long[] times = operationTimes.get(operationName);
+            out.printf("  %-24s %8d x %12.3f ms wall %12.3f ms cpu%n",
+                    operationName, times[0], times[1] / 1e6, times[2] / 1e6);
+        }
+
+        final List<UnitTimes> slowest = new ArrayList<UnitTimes>(unitTimes.values());
+        Collections.sort(slowest, new Comparator<UnitTimes>()
+        {
+            @Override
+            public int compare(UnitTimes t1, UnitTimes t2)
+            {
+                return Long.compare(t2.selfNanos, t1.selfNanos);
+            }
+        });
+        out.println();
+        out.printf("Top %d compilation units (self time):%n", Math.min(topCount, slowest.size()));
+        out.printf("  %12s %12s %12s  %s%n", "wall ms", "cpu ms", "queue ms", "unit");
+        for (UnitTimes times : slowest.subList(0, Math.min(topCount, slowest.size())))
+        {
+            out.printf("  %12.3f %12.3f %12.3f  %s%n",
+                    times.selfNanos / 1e6, times.selfCPUNanos / 1e6, times.queueNanos / 1e6,
+                    getUnitName(times.unit));
+            final List<String> names = new ArrayList<String>(times.selfNanosByOperation.keySet());
+            Collections.sort(names);
+            final StringBuilder breakdown = new StringBuilder();
+            for (String operationName : names)
+            {
+                if (breakdown.length() > 0)
+                    breakdown.append(", ");
+                breakdown.append(operationName).append(' ')
+                         .append(String.format("%.3f", times.selfNanosByOperation.get(operationName) / 1e6));
+            }
+            out.printf("  %38s  %s%n", "", breakdown);
+        }
+        out.flush();
+        return result.toString();
+    }
+
+    private static String getUnitName(ICompilationUnit unit)
+    {
+        final String fileName = unit.getAbsoluteFilename();
+        return fileName != null ? fileName : unit.getName();
+    }
+
+    private static String toMicros(long nanos)
+    {
+        return String.format(Locale.ROOT, "%.3f", nanos / 1e3);
+    }
+
+    private static String toMillis(long nanos)
+    {
+        return String.format(Locale.ROOT, "%.3f", nanos / 1e6);
+    }
+
+    private static String quote(String s)
+    {
+        final StringBuilder result = new StringBuilder(s.length() + 2);
+        result.append('"');
+        for (int i = 0; i < s.length(); i++)
+        {
+            final char c = s.charAt(i);
+            switch (c)
+            {
+                case '"':
+                    result.append("\\\"");
+                    break;
+                case '\\':
+                    result.append("\\\\");
+                    break;
+                case '\n':
+                    result.append("\\n");
+                    break;
+                case '\r':
+                    result.append("\\r");
+                    break;
+                case '\t':
+                    result.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20)
+                        result.append(String.format("\\u%04x", (int)c));
+                    else
+                        result.append(c);
+            }
+        }
+        result.append('"');
+        return result.toString();
+    }
+}
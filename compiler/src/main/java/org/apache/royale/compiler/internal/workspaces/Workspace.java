@@ -47,6 +47,7 @@ import org.apache.royale.compiler.definitions.IDefinition;
 import org.apache.royale.compiler.filespecs.FileSpecification;
 import org.apache.royale.compiler.filespecs.IBinaryFileSpecification;
 import org.apache.royale.compiler.filespecs.IFileSpecification;
+import org.apache.royale.compiler.internal.caches.EmbedTranscodingCache;
 import org.apache.royale.compiler.internal.caches.PackageNamespaceDefinitionCache;
 import org.apache.royale.compiler.internal.definitions.references.ReferenceCache;
 import org.apache.royale.compiler.internal.embedding.EmbedData;
@@ -148,6 +149,8 @@ public final class Workspace implements IWorkspace
      */
     private IASDocDelegate asDocDelegate;
 
+    private volatile EmbedTranscodingCache embedTranscodingCache;
+
     /**
      * Constructor
      */
@@ -227,7 +230,7 @@ public final class Workspace implements IWorkspace
         return executorService;
     }
 
-    private CompilerProject[] getProjects()
+    CompilerProject[] getProjects()
     {
         return projects.keySet().toArray(new CompilerProject[0]);
     }
@@ -343,6 +346,29 @@ public final class Workspace implements IWorkspace
         return packageNamespaceDefinitionCache;
     }
 
+    /**
+     * @return The on-disk cache of transcoded embedded assets, or null if
+     * embedded assets are always transcoded.
+     */
+    public EmbedTranscodingCache getEmbedTranscodingCache()
+    {
+        return embedTranscodingCache;
+    }
+
+    /**
+     * Set the directory where transcoded embedded assets are kept and shared
+     * with other projects and compiler processes.
+     * 
+     * @param directory the directory, or null to always transcode the assets.
+     */
+    public void setEmbedCacheDirectory(File directory)
+    {
+        final EmbedTranscodingCache current = embedTranscodingCache;
+        if (directory == null ? current == null : current != null && directory.equals(current.getDirectory()))
+            return;
+        embedTranscodingCache = directory != null ? new EmbedTranscodingCache(directory) : null;
+    }
+
     /**
      * Close the workspace. It is illegal to use the workspace after it has been
      * closed.
@@ -1241,4 +1267,26 @@ public final class Workspace implements IWorkspace
         // is a good a non-value as anything.
         projects.put(project, Object.class);
     }
+
+    /**
+     * Delete every project in this workspace. The workspace level caches,
+     * such as the SWC and MXML data caches, are kept so that a later project
+     * created in this workspace can reuse them.
+     */
+    public void deleteAllProjects()
+    {
+        for (CompilerProject project : getProjects())
+            project.delete();
+    }
+
+    /**
+     * Gets the paths of all the files this workspace has handed out an
+     * {@link IFileSpecification} for.
+     * 
+     * @return A copy of the set of known file paths.
+     */
+    public synchronized Set<String> getKnownFilePaths()
+    {
+        return new HashSet<String>(pathToFileSpecMap.keySet());
+    }
 }
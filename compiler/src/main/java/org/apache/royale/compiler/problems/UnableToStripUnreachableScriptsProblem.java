@@ -0,0 +1,47 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+
+package org.apache.royale.compiler.problems;
+
+import org.apache.royale.compiler.problems.annotations.DefaultSeverity;
+
+/**
+ * Warning reported by the optimizer when the ABC blocks of a SWF can't be
+ * emitted again without their unreachable scripts. The SWF is linked with
+ * all of its scripts.
+ */
+@DefaultSeverity(CompilerProblemSeverity.WARNING)
+public final class UnableToStripUnreachableScriptsProblem extends CompilerProblem
+{
+    public static final String DESCRIPTION =
+        "Unable to remove unreachable scripts, all scripts are kept: ${reason}";
+
+    public static final int warningCode = 5051;
+
+    /**
+     * @param exception The exception thrown while the scripts were removed.
+     */
+    public UnableToStripUnreachableScriptsProblem(Exception exception)
+    {
+        this.reason = exception.toString();
+    }
+
+    public final String reason;
+}
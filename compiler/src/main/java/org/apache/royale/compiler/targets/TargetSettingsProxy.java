@@ -328,4 +328,16 @@ public abstract class TargetSettingsProxy implements ITargetSettings
     {
         return baseTargetSettings.getRemoveDeadCode();
     }
+
+    @Override
+    public boolean getOptimizeDataFlow()
+    {
+        return baseTargetSettings.getOptimizeDataFlow();
+    }
+
+    @Override
+    public boolean getStreamingLink()
+    {
+        return baseTargetSettings.getStreamingLink();
+    }
 }
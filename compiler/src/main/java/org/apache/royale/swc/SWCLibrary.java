@@ -28,8 +28,8 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.zip.ZipFile;
 
+import org.apache.royale.swc.io.SWCArchive;
 import org.apache.royale.swc.io.SWCReader;
 import org.apache.royale.swf.ISWF;
 import org.apache.royale.swf.io.ISWFReader;
@@ -107,35 +107,26 @@ public class SWCLibrary implements ISWCLibrary
     @Override
     public void readSWFInputStream(ISWFReader swfReader, ISWC swc)
     {
-        ZipFile swcFile = null;
         try
         {
-            swcFile = new ZipFile(swc.getSWCFile());
-            InputStream swcFileInputStream = SWCReader.getInputStream(swcFile, path);
+            InputStream swcFileInputStream = SWCArchive.open(swc.getSWCFile()).getInputStream(path);
             if(swcFileInputStream != null) {
                 final InputStream inputStream = new BufferedInputStream(swcFileInputStream);
-                swfReader.readFrom(inputStream, SWCReader.getReportingPath(
-                        swc.getSWCFile().getAbsolutePath(), path));
-            }
-        }
-        catch (IOException e)
-        {
-            throw new RuntimeException(e);
-        }
-        finally
-        {
-            if (swcFile != null)
-            {
                 try
                 {
-                    swcFile.close();
+                    swfReader.readFrom(inputStream, SWCReader.getReportingPath(
+                            swc.getSWCFile().getAbsolutePath(), path));
                 }
-                catch (IOException e)
+                finally
                 {
-                    // Ignore this.
+                    inputStream.close();
                 }
             }
         }
+        catch (IOException e)
+        {
+            throw new RuntimeException(e);
+        }
     }
 
     @Override
@@ -21,6 +21,8 @@ package org.apache.royale.swc;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import org.apache.royale.compiler.caches.IAssetTagCache;
 import org.apache.royale.compiler.caches.ICSSDocumentCache;
@@ -33,8 +35,11 @@ import org.apache.royale.compiler.internal.caches.ConcurrentCacheStoreBase;
 import org.apache.royale.compiler.internal.caches.FileScopeCache;
 import org.apache.royale.compiler.internal.caches.SWFCache;
 import org.apache.royale.compiler.workspaces.IWorkspace;
+import org.apache.royale.swc.io.SWCArchive;
 import org.apache.royale.swc.io.SWCReader;
 
+import com.google.common.cache.CacheStats;
+
 /**
  * This is a cached implementation for {@link ISWCManager} based on
  * {@link ConcurrentCacheStoreBase}.
@@ -122,6 +127,35 @@ public class SWCManager extends ConcurrentCacheStoreBase<ISWC> implements ISWCMa
         return workspace;
     }
 
+    /**
+     * Get the statistics of the SWC caches: "swc" for the SWC models, "swf"
+     * for the library SWFs, "fileScope", "assetTag" and "css".
+     * 
+     * @return statistics by cache name, in that order.
+     */
+    public Map<String, CacheStats> getCacheStats()
+    {
+        final Map<String, CacheStats> result = new LinkedHashMap<String, CacheStats>();
+        result.put("swc", getStats());
+        result.put("swf", swfCache.getStats());
+        result.put("fileScope", fileScopeCache.getStats());
+        result.put("assetTag", assetTagCache.getStats());
+        result.put("css", cssDocumentCache.getStats());
+        return result;
+    }
+
+    /**
+     * Set the directory where definition indexes and parsed CSS of SWCs are
+     * kept and shared with other compiler processes.
+     * 
+     * @param directory the directory, or null to disable the indexes.
+     */
+    public void setDefinitionIndexDirectory(File directory)
+    {
+        fileScopeCache.setDefinitionIndexDirectory(directory);
+        cssDocumentCache.setDiskCacheDirectory(directory);
+    }
+
     @Override
     protected ISWC createEntryValue(CacheStoreKeyBase key)
     {
@@ -150,9 +184,11 @@ public class SWCManager extends ConcurrentCacheStoreBase<ISWC> implements ISWCMa
     @Override
     public void remove(File file)
     {
+        SWCArchive.release(file);
         ISWC removedSWC = this.remove(new SWCCacheKey(file));
         if (removedSWC == null)
             return;
+        fileScopeCache.removeDefinitionIndex(removedSWC);
         for (ISWCLibrary lib : removedSWC.getLibraries())
         {
             String librarySWFPath = lib.getPath();
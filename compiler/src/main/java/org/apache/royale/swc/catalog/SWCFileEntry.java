@@ -19,12 +19,12 @@
 
 package org.apache.royale.swc.catalog;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.zip.ZipFile;
 
 import org.apache.royale.swc.ISWCFileEntry;
-import org.apache.royale.swc.io.SWCReader;
+import org.apache.royale.swc.io.SWCArchive;
 
 /**
  * A file in a SWC archive.
@@ -63,8 +63,6 @@ class SWCFileEntry implements ISWCFileEntry
     @Override
     public InputStream createInputStream() throws IOException
     {
-        ZipFile swcFile = new ZipFile(containingSWCPath);
-        InputStream inputStream = SWCReader.getInputStream(swcFile, path);
-        return inputStream;
+        return SWCArchive.open(new File(containingSWCPath)).getInputStream(path);
     }
 }
@@ -0,0 +1,393 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.swc.io;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipException;
+
+import org.apache.royale.utils.FilenameNormalization;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * Random access to the entries of a SWC archive.
+ * <p>
+ * Opening a SWC with {@code ZipFile} reads and indexes its whole central
+ * directory, and {@link SWCReader#getInputStream(java.util.zip.ZipFile, String)}
+ * then scans all entries for the one it needs, every time an entry is read.
+ * A {@code SWCArchive} maps the SWC into memory once, indexes the central
+ * directory the first time an entry is requested, and inflates only the
+ * entries that are read. Archives are shared by all readers of a SWC until
+ * the file changes, {@link #release(File)} is called, or the garbage
+ * collector needs the memory.
+ * <p>
+ * SWCs smaller than {@link #MIN_MAPPED_SIZE} are read into the heap. Larger
+ * ones are mapped, unless the {@code royale.swc.mmap} system property is
+ * false. Mapped files can not be deleted or replaced on Windows until the
+ * mapping is garbage collected, so the property defaults to false there.
+ * Elsewhere, a mapped SWC must not be rewritten in place while its entries
+ * are read: reading a page of a truncated file kills the JVM with
+ * {@code SIGBUS}. Tools that write SWCs release the archive first, and the
+ * streams of an archive are only read while a SWC is loaded.
+ */
+public final class SWCArchive
+{
+    private static final boolean USE_MEMORY_MAPPING =
+            Boolean.parseBoolean(System.getProperty("royale.swc.mmap",
+                    String.valueOf(!System.getProperty("os.name", "").startsWith("Windows"))));
+
+    /**
+     * SWCs smaller than this are copied to the heap, where reading them is
+     * as fast, and rewriting the file can't affect the copy.
+     */
+    public static final int MIN_MAPPED_SIZE = 1024 * 1024;
+
+    private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+    private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+    private static final int END_HEADER_SIGNATURE = 0x06054b50;
+    private static final int END_HEADER_SIZE = 22;
+    private static final int LOCAL_HEADER_SIZE = 30;
+    private static final int CENTRAL_HEADER_SIZE = 46;
+    private static final int MAX_COMMENT_SIZE = 0xFFFF;
+
+    /**
+     * Archives by normalized path. The values are softly referenced, so that
+     * the indexes and buffers of SWCs that are no longer read can be
+     * collected.
+     */
+    private static final Cache<String, SWCArchive> archives =
+            CacheBuilder.newBuilder().softValues().<String, SWCArchive>build();
+
+    /**
+     * Get the shared archive for a SWC file.
+     *
+     * @param file SWC file.
+     * @return The archive. The file is not read until the first entry is
+     * requested.
+     */
+    public static SWCArchive open(File file)
+    {
+        final String path = FilenameNormalization.normalize(file.getAbsolutePath());
+        SWCArchive archive = archives.getIfPresent(path);
+        if (archive == null || !archive.isCurrent())
+        {
+            archive = new SWCArchive(new File(path));
+            archives.put(path, archive);
+        }
+        return archive;
+    }
+
+    /**
+     * Forget the archive of a SWC, for example because the SWC is about to be
+     * rewritten.
+     *
+     * @param file SWC file.
+     */
+    public static void release(File file)
+    {
+        archives.invalidate(FilenameNormalization.normalize(file.getAbsolutePath()));
+    }
+
+    private SWCArchive(File file)
+    {
+        this.file = file;
+        this.length = file.length();
+        this.lastModified = file.lastModified();
+    }
+
+    private final File file;
+    private final long length;
+    private final long lastModified;
+
+    // Set by index().
+    private ByteBuffer buffer;
+    private Map<String, Integer> entryIndexes;
+    private int[] localHeaderOffsets;
+    private int[] compressedSizes;
+    private int[] uncompressedSizes;
+    private short[] methods;
+
+    public File getFile()
+    {
+        return file;
+    }
+
+    /**
+     * @param name Name of the entry.
+     * @return true if the archive has an entry with the name.
+     * @throws IOException Error reading the archive.
+     */
+    public boolean hasEntry(String name) throws IOException
+    {
+        index();
+        return entryIndexes.containsKey(name);
+    }
+
+    /**
+     * Get the {@code InputStream} of an entry. The caller must close the
+     * stream, as the stream of a compressed entry holds a native
+     * {@code Inflater}.
+     *
+     * @param name Name of the entry.
+     * @return The stream, or null if there is no entry with the name.
+     * @throws IOException Error reading the archive.
+     */
+    public InputStream getInputStream(String name) throws IOException
+    {
+        index();
+        final Integer i = entryIndexes.get(name);
+        if (i == null)
+            return null;
+
+        final int offset = localHeaderOffsets[i];
+        if (buffer.getInt(offset) != LOCAL_HEADER_SIGNATURE)
+            throw new ZipException("invalid local header for " + name + " in " + file);
+        final int dataOffset = offset + LOCAL_HEADER_SIZE +
+                               unsignedShort(offset + 26) + unsignedShort(offset + 28);
+        final ByteBuffer data = buffer.duplicate();
+        data.limit(dataOffset + compressedSizes[i]);
+        data.position(dataOffset);
+
+        switch (methods[i])
+        {
+            case 0:
+                return new ByteBufferInputStream(data.slice());
+            case 8:
+                return new EntryInflaterInputStream(new ByteBufferInputStream(data.slice()),
+                        uncompressedSizes[i]);
+            default:
+                throw new ZipException("unsupported compression method " + methods[i] +
+                                       " for " + name + " in " + file);
+        }
+    }
+
+    private boolean isCurrent()
+    {
+        return file.length() == length && file.lastModified() == lastModified;
+    }
+
+    private synchronized void index() throws IOException
+    {
+        if (entryIndexes != null)
+            return;
+
+        final ByteBuffer buffer = read();
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        final int size = buffer.limit();
+
+        // The end of central directory record is followed by a comment of
+        // at most 64K.
+        int end = size - END_HEADER_SIZE;
+        final int stop = Math.max(0, size - END_HEADER_SIZE - MAX_COMMENT_SIZE);
+        while (end >= stop && buffer.getInt(end) != END_HEADER_SIGNATURE)
+            end--;
+        if (end < stop)
+            throw new ZipException("not a zip file: " + file);
+
+        final int count = buffer.getShort(end + 10) & 0xFFFF;
+        final long centralDirectoryOffset = buffer.getInt(end + 16) & 0xFFFFFFFFL;
+        if (count == 0xFFFF || centralDirectoryOffset == 0xFFFFFFFFL)
+            throw new ZipException("ZIP64 archives are not supported: " + file);
+
+        final Map<String, Integer> entryIndexes = new HashMap<String, Integer>(count * 2);
+        localHeaderOffsets = new int[count];
+        compressedSizes = new int[count];
+        uncompressedSizes = new int[count];
+        methods = new short[count];
+        int offset = (int)centralDirectoryOffset;
+        for (int i = 0; i < count; i++)
+        {
+            if (offset + CENTRAL_HEADER_SIZE > size || buffer.getInt(offset) != CENTRAL_HEADER_SIGNATURE)
+                throw new ZipException("invalid central directory in " + file);
+            methods[i] = buffer.getShort(offset + 10);
+            compressedSizes[i] = buffer.getInt(offset + 20);
+            uncompressedSizes[i] = buffer.getInt(offset + 24);
+            final int nameLength = buffer.getShort(offset + 28) & 0xFFFF;
+            final int extraLength = buffer.getShort(offset + 30) & 0xFFFF;
+            final int commentLength = buffer.getShort(offset + 32) & 0xFFFF;
+            localHeaderOffsets[i] = buffer.getInt(offset + 42);
+
+            final byte[] name = new byte[nameLength];
+            final ByteBuffer nameBuffer = buffer.duplicate();
+            nameBuffer.position(offset + CENTRAL_HEADER_SIZE);
+            nameBuffer.get(name);
+            // Like SWCReader.getInputStream(), the first entry with a name wins.
+            final String entryName = new String(name, StandardCharsets.UTF_8);
+            if (!entryIndexes.containsKey(entryName))
+                entryIndexes.put(entryName, i);
+
+            offset += CENTRAL_HEADER_SIZE + nameLength + extraLength + commentLength;
+        }
+
+        this.buffer = buffer;
+        this.entryIndexes = entryIndexes;
+    }
+
+    private ByteBuffer read() throws IOException
+    {
+        final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try
+        {
+            final long size = channel.size();
+            if (size > Integer.MAX_VALUE)
+                throw new ZipException("SWC too large: " + file);
+            if (USE_MEMORY_MAPPING && size >= MIN_MAPPED_SIZE)
+                return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+
+            final ByteBuffer heapBuffer = ByteBuffer.allocate((int)size);
+            while (heapBuffer.hasRemaining())
+            {
+                if (channel.read(heapBuffer) < 0)
+                    throw new EOFException(file.toString());
+            }
+            heapBuffer.flip();
+            return heapBuffer;
+        }
+        finally
+        {
+            // A mapping stays valid after the channel is closed.
+            channel.close();
+        }
+    }
+
+    private int unsignedShort(int offset)
+    {
+        return buffer.getShort(offset) & 0xFFFF;
+    }
+
+    /**
+     * An {@code InputStream} over the remaining bytes of a buffer.
+     */
+    private static class ByteBufferInputStream extends InputStream
+    {
+        ByteBufferInputStream(ByteBuffer buffer)
+        {
+            this.buffer = buffer;
+        }
+
+        private final ByteBuffer buffer;
+
+        @Override
+        public int read()
+        {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len)
+        {
+            if (len == 0)
+                return 0;
+            if (!buffer.hasRemaining())
+                return -1;
+            len = Math.min(len, buffer.remaining());
+            buffer.get(b, off, len);
+            return len;
+        }
+
+        @Override
+        public long skip(long n)
+        {
+            final int skipped = (int)Math.max(0, Math.min(n, buffer.remaining()));
+            buffer.position(buffer.position() + skipped);
+            return skipped;
+        }
+
+        @Override
+        public int available()
+        {
+            return buffer.remaining();
+        }
+    }
+
+    /**
+     * Inflates a deflated entry, like the streams returned by {@code ZipFile}.
+     */
+    private static class EntryInflaterInputStream extends InflaterInputStream
+    {
+        EntryInflaterInputStream(InputStream in, int uncompressedSize)
+        {
+            super(in, new Inflater(true), 8192);
+            this.remaining = uncompressedSize;
+        }
+
+        private int remaining;
+        private boolean eof;
+        private boolean closed;
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException
+        {
+            final int n = super.read(b, off, len);
+            if (n > 0)
+                remaining -= n;
+            return n;
+        }
+
+        @Override
+        protected void fill() throws IOException
+        {
+            if (eof)
+                throw new EOFException("Unexpected end of ZLIB input stream");
+            len = in.read(buf, 0, buf.length);
+            if (len == -1)
+            {
+                // The inflater needs an extra dummy byte when there is no
+                // zlib trailer.
+                buf[0] = 0;
+                len = 1;
+                eof = true;
+            }
+            inf.setInput(buf, 0, len);
+        }
+
+        @Override
+        public int available() throws IOException
+        {
+            if (closed)
+                return 0;
+            return Math.max(0, remaining);
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            if (!closed)
+            {
+                closed = true;
+                inf.end();
+                super.close();
+            }
+        }
+    }
+}
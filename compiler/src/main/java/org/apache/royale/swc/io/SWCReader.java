@@ -37,8 +37,10 @@ import org.apache.royale.swc.catalog.StAXCatalogReader;
 import org.apache.royale.swc.dita.IDITAList;
 
 /**
- * Read a SWC file using Java ZIP utilities. The {@code SWCReader} owns the
- * result {@linkplain ISWC} object.
+ * Read a SWC file through its shared {@link SWCArchive}. The
+ * {@code SWCReader} owns the result {@linkplain ISWC} object. Only the
+ * catalog and the DITA manifest are read here; the library SWFs and other
+ * files are read when they are needed.
  */
 public class SWCReader implements ISWCReader
 {
@@ -86,23 +88,30 @@ public class SWCReader implements ISWCReader
             return;
         }
 
-        ZipFile zipFile = null;
+        final SWCArchive archive = SWCArchive.open(swcFile);
         catalogReader = null;
         try
         {
             try
             {
-                zipFile = new ZipFile(swcFile, ZipFile.OPEN_READ);
-                final InputStream catalogInputStream = getInputStream(zipFile, CATALOG_XML);
+                final InputStream catalogInputStream = archive.getInputStream(CATALOG_XML);
                 if (catalogInputStream == null)
                 {
                     swc.addProblem(new FileInLibraryNotFoundProblem(swcFile.getAbsolutePath(), CATALOG_XML));
                     return;
                 }                
-                catalogReader = new StAXCatalogReader(new BufferedInputStream(catalogInputStream), swc);
-                catalogReader.parse();
-                catalogReader.close();
-                catalogReader = null;
+                try
+                {
+                    catalogReader = new StAXCatalogReader(new BufferedInputStream(catalogInputStream), swc);
+                    catalogReader.parse();
+                    catalogReader.close();
+                    catalogReader = null;
+                }
+                finally
+                {
+                    // Closing the StAX parser doesn't close its stream.
+                    catalogInputStream.close();
+                }
             }
             catch (Exception e)
             {
@@ -115,7 +124,7 @@ public class SWCReader implements ISWCReader
             try
             {
                 //might not exist, so wrap in a try catch
-                final InputStream ditaInputStream = getInputStream(zipFile, DITA_MANIFEST);
+                final InputStream ditaInputStream = archive.getInputStream(DITA_MANIFEST);
                 if(ditaInputStream != null)
                 {
                     try
@@ -137,7 +146,14 @@ public class SWCReader implements ISWCReader
             
             // The swc is an considered an ANE if it contains a 
             // META-INF/AIR/extension.xml file.
-            swc.setIsANE(zipFile.getEntry(ANE_EXTENSION_XML) != null);
+            try
+            {
+                swc.setIsANE(archive.hasEntry(ANE_EXTENSION_XML));
+            }
+            catch (IOException e)
+            {
+                // The catalog was read, so this can't happen.
+            }
             
         }
         finally
@@ -146,9 +162,6 @@ public class SWCReader implements ISWCReader
             {
                 if (catalogReader != null)
                     catalogReader.close();
-                
-                if (zipFile != null)
-                    zipFile.close();
             }
             catch (Exception e)
             {
@@ -0,0 +1,149 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package f;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.apache.royale.compiler.clients.COMPC;
+import org.apache.royale.compiler.problems.ICompilerProblem;
+import org.apache.royale.swf.ISWF;
+import org.apache.royale.swf.SWFFrame;
+import org.apache.royale.swf.io.SWFReader;
+import org.apache.royale.swf.tags.DoABCTag;
+import org.apache.royale.swf.tags.ITag;
+import org.apache.royale.utils.EnvProperties;
+import org.junit.Test;
+
+/**
+ * JUnit tests that compile SWCs of the Flex SDK with and without
+ * <code>-parallel-code-generation</code> and check that the ABC is the same.
+ */
+public class SDKSWCParallelCodeGenTests
+{
+    private static EnvProperties env = EnvProperties.initiate();
+
+    private void compareSWC(String projectName, String... extraArgs) throws IOException
+    {
+        assertNotNull("FLEX_HOME not set in unittest.properties", env.SDK);
+        assertNotNull("PLAYERGLOBAL_HOME not set in unittest.properties", env.FPSDK);
+
+        System.setProperty("royalelib", env.SDK + "/frameworks");
+
+        final List<byte[]> serial = getABCs(compileSWC(projectName, false, extraArgs));
+        final List<byte[]> parallel = getABCs(compileSWC(projectName, true, extraArgs));
+
+        assertThat(parallel.size(), is(serial.size()));
+        for (int i = 0; i < serial.size(); i++)
+            assertArrayEquals("ABC " + i + " of " + projectName, serial.get(i), parallel.get(i));
+    }
+
+    private File compileSWC(String projectName, boolean parallel, String... extraArgs) throws IOException
+    {
+        final File output = File.createTempFile(projectName + (parallel ? "_parallel" : "_serial"), ".swc");
+        output.deleteOnExit();
+
+        final List<String> args = new ArrayList<String>();
+        args.add("-load-config+=" + env.SDK + "/frameworks/projects/" + projectName + "/compile-config.xml");
+        args.add("+env.PLAYERGLOBAL_HOME=" + env.FPSDK);
+        args.add("+playerglobal.version=" + env.FPVER);
+        args.add("-parallel-code-generation=" + parallel);
+        args.add("-output=" + output.getAbsolutePath());
+        for (String arg : extraArgs)
+            args.add(arg);
+
+        final COMPC compc = new COMPC();
+        compc.mainNoExit(args.toArray(new String[args.size()]));
+
+        final List<ICompilerProblem> problems = new ArrayList<ICompilerProblem>();
+        for (ICompilerProblem problem : compc.getProblems().getFilteredProblems())
+            problems.add(problem);
+        assertThat(problems.size(), is(0));
+        return output;
+    }
+
+    /**
+     * @return The ABC of the DoABC tags of the library SWF of a SWC, in order.
+     */
+    private static List<byte[]> getABCs(File swc) throws IOException
+    {
+        final List<byte[]> result = new ArrayList<byte[]>();
+        final ZipFile zipFile = new ZipFile(swc);
+        try
+        {
+            final ZipEntry entry = zipFile.getEntry("library.swf");
+            assertNotNull("library.swf not found in " + swc, entry);
+            final InputStream input = zipFile.getInputStream(entry);
+            final SWFReader reader = new SWFReader();
+            try
+            {
+                final ISWF swf = reader.readFrom(input, swc.getAbsolutePath());
+                for (int i = 0; i < swf.getFrameCount(); i++)
+                {
+                    final SWFFrame frame = swf.getFrameAt(i);
+                    for (ITag tag : frame)
+                    {
+                        if (tag instanceof DoABCTag)
+                            result.add(((DoABCTag)tag).getABCData());
+                    }
+                }
+            }
+            finally
+            {
+                reader.close();
+            }
+        }
+        finally
+        {
+            zipFile.close();
+        }
+        return result;
+    }
+
+    @Test
+    public void frameworkSWC() throws IOException
+    {
+        compareSWC("framework",
+                   "-load-config+=" + env.SDK + "/frameworks/projects/framework/framework-config.xml");
+    }
+
+    @Test
+    public void rpcSWC() throws IOException
+    {
+        compareSWC("rpc");
+    }
+
+    @Test
+    public void sparkSWC() throws IOException
+    {
+        compareSWC("spark",
+                   "-ignore-problems=org.apache.royale.compiler.problems.DuplicateSkinStateProblem");
+    }
+}
@@ -0,0 +1,237 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+
+
+package org.apache.royale.abc;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * JUnit tests for {@link Pool}, {@link IntPool}, {@link LongPool} and
+ * {@link DoublePool}, and for the sizing of the pools of linked ABCs.
+ * Positions must be the same as with the boxed {@code Pool}s the emitter used
+ * before.
+ */
+public class ConstantPoolTests
+{
+    @Test
+    public void Pool_entryOrder()
+    {
+        final Pool<String> withZero = new Pool<String>(Pool.DefaultType.HasDefaultZero);
+        assertEquals(0, withZero.getNominalSize());
+        assertEquals(1, withZero.add("a"));
+        assertEquals(2, withZero.add("b"));
+        assertEquals(1, withZero.add("a"));
+        assertEquals(0, withZero.add(null));
+        assertEquals(2, withZero.id("b"));
+        assertEquals(Arrays.asList("a", "b"), withZero.getValues());
+        assertEquals(3, withZero.getNominalSize());
+
+        final Pool<String> withoutZero = new Pool<String>(Pool.DefaultType.NoDefaultZero);
+        assertEquals(0, withoutZero.add("a"));
+        assertEquals(1, withoutZero.add("b"));
+        assertEquals(0, withoutZero.add("a"));
+        assertEquals(2, withoutZero.size());
+    }
+
+    @Test
+    public void IntPool_entryOrder()
+    {
+        final IntPool pool = new IntPool();
+        assertEquals(1, pool.size());
+        assertEquals(0, pool.getNominalSize());
+        assertEquals(1, pool.add(5));
+        assertEquals(2, pool.add(7));
+        assertEquals(1, pool.add(5));
+        // 0 is a value like any other, not the default zero entry.
+        assertEquals(3, pool.add(0));
+        assertEquals(2, pool.id(7));
+        assertArrayEquals(new int[] {5, 7, 0}, pool.getValues());
+        assertEquals(4, pool.getNominalSize());
+    }
+
+    @Test
+    public void IntPool_32BitEdges()
+    {
+        final int[] values = {Integer.MIN_VALUE, Integer.MAX_VALUE, -1, 1, Integer.MIN_VALUE + 1, Integer.MAX_VALUE - 1};
+        final IntPool pool = new IntPool();
+        for (int i = 0; i < values.length; i++)
+            assertEquals(i + 1, pool.add(values[i]));
+        for (int i = 0; i < values.length; i++)
+        {
+            assertEquals(i + 1, pool.add(values[i]));
+            assertEquals(i + 1, pool.id(values[i]));
+        }
+        assertArrayEquals(values, pool.getValues());
+    }
+
+    @Test
+    public void LongPool_uintEdges()
+    {
+        final long[] values = {0xFFFFFFFFL, 0x80000000L, 0x7FFFFFFFL, -1L, Long.MIN_VALUE};
+        final LongPool pool = new LongPool();
+        for (int i = 0; i < values.length; i++)
+            assertEquals(i + 1, pool.add(values[i]));
+        for (int i = 0; i < values.length; i++)
+            assertEquals(i + 1, pool.id(values[i]));
+        assertArrayEquals(values, pool.getValues());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void IntPool_unknownValue()
+    {
+        final IntPool pool = new IntPool();
+        pool.add(1);
+        pool.id(-1);
+    }
+
+    @Test
+    public void DoublePool_signedZeroes()
+    {
+        final DoublePool pool = new DoublePool();
+        final int positive = pool.add(0.0);
+        final int negative = pool.add(-0.0);
+        assertFalse(positive == negative);
+        // Double.equals() tells the zeroes apart too.
+        assertFalse(Double.valueOf(0.0).equals(Double.valueOf(-0.0)));
+        assertEquals(positive, pool.id(0.0));
+        assertEquals(negative, pool.id(-0.0));
+
+        final double[] values = pool.getValues();
+        assertEquals(Double.doubleToRawLongBits(0.0), Double.doubleToRawLongBits(values[0]));
+        assertEquals(Double.doubleToRawLongBits(-0.0), Double.doubleToRawLongBits(values[1]));
+    }
+
+    @Test
+    public void DoublePool_NaN()
+    {
+        final double otherNaN = Double.longBitsToDouble(0x7FF0000000000001L);
+        assertTrue(Double.isNaN(otherNaN));
+        assertFalse(Double.doubleToRawLongBits(Double.NaN) == Double.doubleToRawLongBits(otherNaN));
+        // Double.equals() treats all NaNs as the same value.
+        assertTrue(Double.valueOf(Double.NaN).equals(Double.valueOf(otherNaN)));
+
+        final DoublePool pool = new DoublePool();
+        assertEquals(1, pool.add(Double.NaN));
+        assertEquals(1, pool.add(otherNaN));
+        assertEquals(2, pool.add(Double.POSITIVE_INFINITY));
+        assertEquals(1, pool.id(otherNaN));
+        assertEquals(3, pool.size());
+        assertTrue(Double.isNaN(pool.getValues()[0]));
+    }
+
+    @Test
+    public void Pools_keepPositionsWhenGrowing()
+    {
+        final int n = 10000;
+        final IntPool ints = new IntPool(4);
+        final DoublePool doubles = new DoublePool();
+        final Pool<String> strings = new Pool<String>(Pool.DefaultType.HasDefaultZero, 4);
+        for (int i = 0; i < n; i++)
+        {
+            assertEquals(i + 1, ints.add(i * 31));
+            assertEquals(i + 1, doubles.add(i / 3.0));
+            assertEquals(i + 1, strings.add("s" + i));
+            if (i == n / 2)
+            {
+                ints.ensureCapacity(n * 2);
+                doubles.ensureCapacity(n * 2);
+                strings.ensureCapacity(n * 2);
+            }
+        }
+        for (int i = 0; i < n; i++)
+        {
+            assertEquals(i + 1, ints.id(i * 31));
+            assertEquals(i + 1, doubles.id(i / 3.0));
+            assertEquals(i + 1, strings.id("s" + i));
+        }
+    }
+
+    @Test
+    public void PoolSizes_max()
+    {
+        final ABCParser.PoolSizes a = new ABCParser.PoolSizes();
+        a.ints = 3;
+        a.uints = 10;
+        a.doubles = 0;
+        a.strings = 7;
+        final ABCParser.PoolSizes b = new ABCParser.PoolSizes();
+        b.ints = 5;
+        b.uints = 2;
+        b.doubles = 1;
+        b.strings = 7;
+        a.max(b);
+        assertEquals(5, a.ints);
+        assertEquals(10, a.uints);
+        assertEquals(1, a.doubles);
+        assertEquals(7, a.strings);
+        assertEquals(2, b.uints);
+    }
+
+    private static byte[] emitABC(int[] ints, long[] uints, double[] doubles) throws Exception
+    {
+        final ABCEmitter emitter = new ABCEmitter();
+        emitter.visit(ABCConstants.VERSION_ABC_MAJOR_FP10, ABCConstants.VERSION_ABC_MINOR_FP10);
+        for (final int i : ints)
+            emitter.visitPooledInt(i);
+        for (final long l : uints)
+            emitter.visitPooledUInt(l);
+        for (final double d : doubles)
+            emitter.visitPooledDouble(d);
+        emitter.visitEnd();
+        return emitter.emit();
+    }
+
+    /**
+     * The linker sizes its pools for the largest input, and they grow to hold
+     * the entries of all the inputs.
+     */
+    @Test
+    public void ABCLinker_linksMoreEntriesThanLargestInput() throws Exception
+    {
+        final byte[] first = emitABC(new int[] {1, 2, 3, 4}, new long[] {0xFFFFFFFFL}, new double[] {0.5, -0.0});
+        final byte[] second = emitABC(new int[] {3, 4, 5, 6, 7, 8}, new long[] {0xFFFFFFFFL, 9}, new double[] {0.0});
+
+        final ABCParser.PoolSizes largest = ABCParser.readPoolSizes(first);
+        assertEquals(4, largest.ints);
+        assertEquals(1, largest.uints);
+        assertEquals(2, largest.doubles);
+        largest.max(ABCParser.readPoolSizes(second));
+        assertEquals(6, largest.ints);
+        assertEquals(2, largest.uints);
+        assertEquals(2, largest.doubles);
+
+        final List<byte[]> abcs = Arrays.asList(first, second);
+        final byte[] linked = ABCLinker.linkABC(abcs, ABCConstants.VERSION_ABC_MAJOR_FP10,
+                ABCConstants.VERSION_ABC_MINOR_FP10, new ABCLinker.ABCLinkerSettings());
+        final ABCParser.PoolSizes merged = ABCParser.readPoolSizes(linked);
+        assertEquals(8, merged.ints);
+        assertEquals(2, merged.uints);
+        assertEquals(3, merged.doubles);
+    }
+}
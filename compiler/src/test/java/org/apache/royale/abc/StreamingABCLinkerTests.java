@@ -0,0 +1,259 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+
+package org.apache.royale.abc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.royale.abc.print.ABCDumpVisitor;
+import org.apache.royale.compiler.internal.projects.RoyaleProject;
+import org.apache.royale.compiler.internal.workspaces.Workspace;
+import org.apache.royale.compiler.units.ICompilationUnit;
+import org.apache.royale.swf.ISWF;
+import org.apache.royale.swf.SWFFrame;
+import org.apache.royale.swf.io.SWFReader;
+import org.apache.royale.swf.tags.DoABCTag;
+import org.apache.royale.swf.tags.ITag;
+import org.apache.royale.utils.FilenameNormalization;
+import org.apache.royale.utils.TestAdapterFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * JUnit tests for {@link StreamingABCLinker}. The ABCs linked by rewriting
+ * their bytes must be the same as the ones linked by the visitors of
+ * {@link ABCLinker}.
+ */
+public class StreamingABCLinkerTests
+{
+    private File sourceDirectory;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        sourceDirectory = File.createTempFile(getClass().getSimpleName(), "",
+                new File(TestAdapterFactory.getTestAdapter().getTempDir()));
+        assertTrue(sourceDirectory.delete() && sourceDirectory.mkdir());
+    }
+
+    @After
+    public void tearDown() throws IOException
+    {
+        FileUtils.deleteDirectory(sourceDirectory);
+    }
+
+    private String writeFile(String name, String source) throws IOException
+    {
+        final File file = new File(sourceDirectory, name + ".as");
+        final Writer out = new FileWriter(file);
+        try
+        {
+            out.write(source);
+        }
+        finally
+        {
+            out.close();
+        }
+        return FilenameNormalization.normalize(file.getAbsolutePath());
+    }
+
+    /**
+     * Compile some classes, each to an ABC of its own.
+     */
+    private List<byte[]> compile(String... paths) throws InterruptedException
+    {
+        final Workspace workspace = new Workspace();
+        final RoyaleProject project = new RoyaleProject(workspace);
+        try
+        {
+            project.setSourcePath(Collections.singletonList(sourceDirectory));
+            project.setLibraries(Collections.singletonList(TestAdapterFactory.getTestAdapter().getPlayerglobal()));
+            final List<byte[]> abcs = new ArrayList<byte[]>();
+            for (String path : paths)
+            {
+                final Collection<ICompilationUnit> units = workspace.getCompilationUnits(path, project);
+                assertEquals(1, units.size());
+                final byte[] abc = units.iterator().next().getABCBytesRequest().get().getABCBytes();
+                assertNotNull(abc);
+                abcs.add(abc);
+            }
+            return abcs;
+        }
+        finally
+        {
+            project.delete();
+            workspace.close();
+        }
+    }
+
+    /**
+     * Read the ABCs of the library of a SWC.
+     */
+    private static List<byte[]> readLibraryABCs(File swc) throws IOException
+    {
+        final List<byte[]> abcs = new ArrayList<byte[]>();
+        final ZipFile zipFile = new ZipFile(swc);
+        try
+        {
+            final ZipEntry entry = zipFile.getEntry("library.swf");
+            assertNotNull(entry);
+            final InputStream in = zipFile.getInputStream(entry);
+            final SWFReader reader = new SWFReader();
+            try
+            {
+                final ISWF swf = reader.readFrom(in, swc.getPath());
+                for (int i = 0; i < swf.getFrameCount(); i++)
+                {
+                    final SWFFrame frame = swf.getFrameAt(i);
+                    for (ITag tag : frame)
+                    {
+                        if (tag instanceof DoABCTag)
+                            abcs.add(((DoABCTag)tag).getABCData());
+                    }
+                }
+            }
+            finally
+            {
+                reader.close();
+                in.close();
+            }
+        }
+        finally
+        {
+            zipFile.close();
+        }
+        assertFalse(abcs.isEmpty());
+        return abcs;
+    }
+
+    private static String dump(byte[] abc) throws Exception
+    {
+        final StringWriter out = new StringWriter();
+        new ABCParser(abc).parseABC(new ABCDumpVisitor(new PrintWriter(out), false));
+        return out.toString();
+    }
+
+    private static byte[] link(List<byte[]> abcs, boolean streaming, boolean stripDebug) throws Exception
+    {
+        final ABCLinker.ABCLinkerSettings settings = new ABCLinker.ABCLinkerSettings();
+        settings.setStreaming(streaming);
+        settings.setStripDebugOpcodes(stripDebug);
+        return ABCLinker.linkABC(abcs, ABCConstants.VERSION_ABC_MAJOR_FP10, ABCConstants.VERSION_ABC_MINOR_FP10, settings);
+    }
+
+    /**
+     * Link the ABCs both ways, and check that the linked ABCs have the same
+     * contents.
+     * 
+     * @return the dump of the linked ABC.
+     */
+    private static String assertLinkedTheSame(List<byte[]> abcs, boolean stripDebug) throws Exception
+    {
+        // Call the streaming linker itself, as ABCLinker falls back on the
+        // visitors when it returns null.
+        final byte[] streamed = new StreamingABCLinker(ABCConstants.VERSION_ABC_MAJOR_FP10,
+                ABCConstants.VERSION_ABC_MINOR_FP10, stripDebug, false, null, false, false).link(abcs);
+        assertNotNull(streamed);
+        final String expected = dump(link(abcs, false, stripDebug));
+        assertEquals(expected, dump(streamed));
+        assertEquals(expected, dump(link(abcs, true, stripDebug)));
+        return expected;
+    }
+
+    @Test
+    public void StreamingABCLinker_isOffByDefault() throws Exception
+    {
+        final List<byte[]> abcs = readLibraryABCs(TestAdapterFactory.getTestAdapter().getPlayerglobal());
+        final ABCLinker.ABCLinkerSettings settings = new ABCLinker.ABCLinkerSettings();
+        final byte[] linked = ABCLinker.linkABC(abcs, ABCConstants.VERSION_ABC_MAJOR_FP10,
+                ABCConstants.VERSION_ABC_MINOR_FP10, settings);
+        assertEquals(dump(link(abcs, false, false)), dump(linked));
+    }
+
+    @Test
+    public void StreamingABCLinker_linksLibraryABCs() throws Exception
+    {
+        final List<byte[]> abcs = readLibraryABCs(TestAdapterFactory.getTestAdapter().getPlayerglobal());
+        assertLinkedTheSame(abcs, false);
+        assertLinkedTheSame(abcs, true);
+    }
+
+    @Test
+    public void StreamingABCLinker_relocatesBranchesAndExceptions() throws Exception
+    {
+        // Both classes use some of the same strings, names and numbers, in
+        // a different order, so the pool indices of the second one are
+        // remapped. The finally clause is compiled to a lookupswitch.
+        final String first = writeFile("First",
+                "package {\n" +
+                "public class First {\n" +
+                "  public function pick(n:int):String {\n" +
+                "    switch (n) { case 0: return 'zero'; case 1: return 'one'; default: return 'many'; }\n" +
+                "  }\n" +
+                "  public function sum(limit:int):Number {\n" +
+                "    var result:Number = 0.5;\n" +
+                "    for (var i:int = 0; i < limit; i++) { if (i % 2 == 0) result += i; else result -= 1.25; }\n" +
+                "    return result;\n" +
+                "  }\n" +
+                "}\n" +
+                "}\n");
+        final String second = writeFile("Second",
+                "package {\n" +
+                "public class Second extends First {\n" +
+                "  public function guard(o:Object):int {\n" +
+                "    try { return int(o.value) + 100000; }\n" +
+                "    catch (e:TypeError) { return -1; }\n" +
+                "    catch (e:Error) { return -2; }\n" +
+                "    finally { trace('many', 1.25, 4294967295); }\n" +
+                "    return 0;\n" +
+                "  }\n" +
+                "}\n" +
+                "}\n");
+        final List<byte[]> abcs = compile(first, second);
+
+        final String withDebug = assertLinkedTheSame(abcs, false);
+        assertTrue(withDebug.contains("lookupswitch"));
+        assertTrue(withDebug.contains("exception"));
+        assertTrue(withDebug.contains("debugline"));
+
+        final String withoutDebug = assertLinkedTheSame(abcs, true);
+        assertTrue(withoutDebug.contains("lookupswitch"));
+        assertFalse(withoutDebug.contains("debugline"));
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+
+package org.apache.royale.abc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.royale.abc.semantics.ClassInfo;
+import org.apache.royale.abc.semantics.InstanceInfo;
+import org.apache.royale.abc.visitors.IClassVisitor;
+import org.apache.royale.abc.visitors.NilABCVisitor;
+import org.apache.royale.compiler.internal.projects.RoyaleProject;
+import org.apache.royale.compiler.internal.workspaces.Workspace;
+import org.apache.royale.compiler.units.ICompilationUnit;
+import org.apache.royale.utils.FilenameNormalization;
+import org.apache.royale.utils.TestAdapterFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * JUnit tests for {@link UnreachableScriptStripper}.
+ */
+public class UnreachableScriptStripperTests
+{
+    private File sourceDirectory;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        sourceDirectory = File.createTempFile(getClass().getSimpleName(), "",
+                new File(TestAdapterFactory.getTestAdapter().getTempDir()));
+        assertTrue(sourceDirectory.delete() && sourceDirectory.mkdir());
+    }
+
+    @After
+    public void tearDown() throws IOException
+    {
+        FileUtils.deleteDirectory(sourceDirectory);
+    }
+
+    private String writeClass(String name, String metadata, String body) throws IOException
+    {
+        final File file = new File(sourceDirectory, name + ".as");
+        final Writer out = new FileWriter(file);
+        try
+        {
+            out.write("package {\n" + metadata + "\npublic class " + name + " {\n" + body + "\n}\n}\n");
+        }
+        finally
+        {
+            out.close();
+        }
+        return FilenameNormalization.normalize(file.getAbsolutePath());
+    }
+
+    /**
+     * Compile some classes and link them into one ABC block, with a script
+     * per class, in the order of the classes. The last script is the one
+     * the AVM runs when the block is loaded.
+     */
+    private byte[] compileAndLink(String... paths) throws Exception
+    {
+        final Workspace workspace = new Workspace();
+        final RoyaleProject project = new RoyaleProject(workspace);
+        try
+        {
+            project.setSourcePath(Collections.singletonList(sourceDirectory));
+            project.setLibraries(Collections.singletonList(TestAdapterFactory.getTestAdapter().getPlayerglobal()));
+            final List<byte[]> abcs = new ArrayList<byte[]>();
+            for (String path : paths)
+            {
+                final Collection<ICompilationUnit> units = workspace.getCompilationUnits(path, project);
+                assertEquals(1, units.size());
+                final byte[] abc = units.iterator().next().getABCBytesRequest().get().getABCBytes();
+                assertNotNull(abc);
+                abcs.add(abc);
+            }
+            return ABCLinker.linkABC(abcs, ABCConstants.VERSION_ABC_MAJOR_FP10,
+                    ABCConstants.VERSION_ABC_MINOR_FP10, new ABCLinker.ABCLinkerSettings());
+        }
+        finally
+        {
+            project.delete();
+            workspace.close();
+        }
+    }
+
+    private static Set<String> getClassNames(byte[] abc)
+    {
+        final Set<String> result = new TreeSet<String>();
+        new ABCParser(abc).parseABC(new NilABCVisitor()
+        {
+            @Override
+            public IClassVisitor visitClass(InstanceInfo iinfo, ClassInfo cinfo)
+            {
+                result.add(iinfo.name.getBaseName());
+                return super.visitClass(iinfo, cinfo);
+            }
+        });
+        return result;
+    }
+
+    private byte[] compileProgram() throws Exception
+    {
+        return compileAndLink(
+                writeClass("Used", "", ""),
+                writeClass("Unused", "", ""),
+                writeClass("Kept", "", ""),
+                writeClass("Tagged", "[Mixin]", ""),
+                writeClass("Main", "", "public var used:Used;"));
+    }
+
+    @Test
+    public void UnreachableScriptStripper_removesUnreferencedScripts() throws Exception
+    {
+        final UnreachableScriptStripper stripper = new UnreachableScriptStripper();
+        stripper.addABC(compileProgram());
+        final List<byte[]> stripped = stripper.strip();
+
+        assertEquals(1, stripped.size());
+        assertEquals(3, stripper.getStrippedScriptCount());
+        assertEquals(new TreeSet<String>(Arrays.asList("Main", "Used")), getClassNames(stripped.get(0)));
+    }
+
+    @Test
+    public void UnreachableScriptStripper_keepsRoots() throws Exception
+    {
+        final UnreachableScriptStripper stripper = new UnreachableScriptStripper();
+        stripper.addABC(compileProgram());
+        stripper.addRoot("Kept");
+        stripper.addRootMetadata("Mixin");
+        final List<byte[]> stripped = stripper.strip();
+
+        assertEquals(1, stripper.getStrippedScriptCount());
+        assertEquals(new TreeSet<String>(Arrays.asList("Kept", "Main", "Tagged", "Used")),
+                     getClassNames(stripped.get(0)));
+    }
+}
@@ -0,0 +1,274 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+
+package org.apache.royale.abc.optimize;
+
+import static org.apache.royale.abc.ABCConstants.*;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Vector;
+
+import org.apache.royale.abc.graph.IBasicBlock;
+import org.apache.royale.abc.semantics.ExceptionInfo;
+import org.apache.royale.abc.semantics.Instruction;
+import org.apache.royale.abc.semantics.Label;
+import org.apache.royale.abc.semantics.MethodBodyInfo;
+import org.apache.royale.abc.semantics.MethodInfo;
+import org.apache.royale.abc.semantics.Name;
+import org.apache.royale.abc.visitors.NilMethodBodyVisitor;
+import org.junit.Test;
+
+/**
+ * JUnit tests for {@link DataFlowOptimizer}.
+ */
+public class DataFlowOptimizerTests
+{
+    /**
+     * @param localCount the number of local registers the method declares,
+     * including "this".
+     */
+    private static MethodBodyInfo newMethodBody(int localCount)
+    {
+        final MethodInfo mi = new MethodInfo();
+        mi.setParamTypes(new Vector<Name>());
+        final MethodBodyInfo mbi = new MethodBodyInfo();
+        mbi.setMethodInfo(mi);
+        mbi.max_local = localCount;
+        return mbi;
+    }
+
+    /**
+     * Optimize a method body.
+     * 
+     * @return its instructions, in the order of its blocks.
+     */
+    private static String optimize(MethodBodyInfo mbi)
+    {
+        new DataFlowOptimizer(mbi, new NilMethodBodyVisitor()).visitEnd();
+
+        final StringBuilder result = new StringBuilder();
+        for (IBasicBlock b : mbi.getCfg().getBlocksInEntryOrder())
+        {
+            for (Instruction insn : b.getInstructions())
+            {
+                if (result.length() > 0)
+                    result.append(' ');
+                result.append(toString(insn));
+            }
+        }
+        return result.toString();
+    }
+
+    /**
+     * Spell local register accesses the same way, whether or not they use
+     * the short forms.
+     */
+    private static String toString(Instruction insn)
+    {
+        final int opcode = insn.getOpcode();
+        if (opcode >= OP_getlocal0 && opcode <= OP_getlocal3)
+            return "getlocal(" + (opcode - OP_getlocal0) + ")";
+        if (opcode >= OP_setlocal0 && opcode <= OP_setlocal3)
+            return "setlocal(" + (opcode - OP_setlocal0) + ")";
+        if (opcode == OP_hasnext2)
+            return "hasnext2(" + insn.getOperand(0) + "," + insn.getOperand(1) + ")";
+        if (insn.isImmediate())
+            return insn.toString();
+        return Instruction.decodeOp(opcode);
+    }
+
+    @Test
+    public void DataFlowOptimizer_propagatesCopiesWithinBlocks()
+    {
+        final MethodBodyInfo mbi = newMethodBody(3);
+        final Label join = new Label();
+        mbi.insn(OP_pushbyte, 5);
+        mbi.insn(OP_setlocal, 1);
+        mbi.insn(OP_getlocal, 1);
+        mbi.insn(OP_setlocal, 2);
+        mbi.insn(OP_getlocal, 2);
+        mbi.insn(OP_iftrue, join);
+        mbi.insn(OP_pushbyte, 7);
+        mbi.insn(OP_setlocal, 2);
+        mbi.labelNext(join);
+        mbi.insn(OP_getlocal, 2);
+        mbi.insn(OP_returnvalue);
+
+        // Register 2 holds a copy of register 1 up to the branch, but not on
+        // every path to the join, where it is read as is. No constants are
+        // propagated.
+        assertEquals("pushbyte(5) setlocal(1) getlocal(1) setlocal(2) getlocal(1) iftrue " +
+                     "pushbyte(7) setlocal(2) " +
+                     "getlocal(2) returnvalue",
+                     optimize(mbi));
+        assertEquals(3, mbi.max_local);
+    }
+
+    @Test
+    public void DataFlowOptimizer_killEndsCopy()
+    {
+        final MethodBodyInfo mbi = newMethodBody(3);
+        mbi.insn(OP_pushbyte, 0);
+        mbi.insn(OP_setlocal, 1);
+        mbi.insn(OP_inclocal_i, 1);
+        mbi.insn(OP_getlocal, 1);
+        mbi.insn(OP_setlocal, 2);
+        mbi.insn(OP_kill, 1);
+        mbi.insn(OP_getlocal, 2);
+        mbi.insn(OP_returnvalue);
+
+        // The kill writes register 1 while register 2 is live, so they
+        // can't share a number either.
+        assertEquals("pushbyte(0) setlocal(1) inclocal_i(1) getlocal(1) setlocal(2) kill(1) getlocal(2) returnvalue",
+                     optimize(mbi));
+        assertEquals(3, mbi.max_local);
+    }
+
+    @Test
+    public void DataFlowOptimizer_renumbersInclocal()
+    {
+        final MethodBodyInfo mbi = newMethodBody(3);
+        mbi.insn(OP_pushbyte, 0);
+        mbi.insn(OP_setlocal, 2);
+        mbi.insn(OP_inclocal_i, 2);
+        mbi.insn(OP_getlocal, 2);
+        mbi.insn(OP_returnvalue);
+
+        assertEquals("pushbyte(0) setlocal(1) inclocal_i(1) getlocal(1) returnvalue",
+                     optimize(mbi));
+        assertEquals(2, mbi.max_local);
+    }
+
+    @Test
+    public void DataFlowOptimizer_renumbersHasnext2Registers()
+    {
+        final MethodBodyInfo mbi = newMethodBody(4);
+        final Label body = new Label();
+        final Label check = new Label();
+        mbi.insn(OP_getlocal0);
+        mbi.insn(OP_setlocal, 2);
+        mbi.insn(OP_pushbyte, 0);
+        mbi.insn(OP_setlocal, 3);
+        mbi.insn(OP_jump, check);
+        mbi.labelNext(body);
+        mbi.insn(OP_getlocal, 2);
+        mbi.insn(OP_getlocal, 3);
+        mbi.insn(OP_nextname);
+        mbi.insn(OP_pop);
+        mbi.labelNext(check);
+        mbi.insn(OP_hasnext2, new Object[] {2, 3});
+        mbi.insn(OP_iftrue, body);
+        mbi.insn(OP_returnvoid);
+
+        // The object and index registers are live at the same time, so they
+        // get different numbers.
+        assertEquals("getlocal(0) setlocal(1) pushbyte(0) setlocal(2) jump " +
+                     "getlocal(1) getlocal(2) nextname pop " +
+                     "hasnext2(1,2) iftrue " +
+                     "returnvoid",
+                     optimize(mbi));
+        assertEquals(3, mbi.max_local);
+    }
+
+    /**
+     * @return the opcodes of a method body, in the order of its blocks.
+     */
+    private static List<Integer> getOpcodes(MethodBodyInfo mbi)
+    {
+        final List<Integer> result = new ArrayList<Integer>();
+        for (IBasicBlock b : mbi.getCfg().getBlocksInEntryOrder())
+        {
+            for (Instruction insn : b.getInstructions())
+                result.add(insn.getOpcode());
+        }
+        return result;
+    }
+
+    @Test
+    public void DataFlowOptimizer_usesShortFormsForRenumberedRegisters()
+    {
+        final MethodBodyInfo mbi = newMethodBody(4);
+        mbi.insn(OP_pushbyte, 0);
+        mbi.insn(OP_setlocal, 3);
+        mbi.insn(OP_getlocal, 3);
+        mbi.insn(OP_returnvalue);
+
+        assertEquals("pushbyte(0) setlocal(1) getlocal(1) returnvalue",
+                     optimize(mbi));
+        assertEquals(Arrays.asList(OP_pushbyte, OP_setlocal1, OP_getlocal1, OP_returnvalue),
+                     getOpcodes(mbi));
+    }
+
+    @Test
+    public void DataFlowOptimizer_usesShortFormsForPropagatedCopies()
+    {
+        final MethodBodyInfo mbi = newMethodBody(2);
+        mbi.insn(OP_getlocal0);
+        mbi.insn(OP_setlocal, 1);
+        mbi.insn(OP_getlocal, 1);
+        mbi.insn(OP_returnvalue);
+
+        optimize(mbi);
+        final List<Integer> opcodes = getOpcodes(mbi);
+        assertEquals(OP_getlocal0, opcodes.get(opcodes.size() - 2).intValue());
+        assertFalse(opcodes.contains(OP_getlocal));
+    }
+
+    @Test
+    public void DataFlowOptimizer_keepsRegistersOfMethodsWithExceptionHandlers()
+    {
+        final MethodBodyInfo mbi = newMethodBody(3);
+        final Label from = new Label();
+        final Label to = new Label();
+        final Label target = new Label();
+        mbi.labelNext(from);
+        mbi.insn(OP_pushbyte, 0);
+        mbi.insn(OP_setlocal, 2);
+        mbi.insn(OP_getlocal, 2);
+        mbi.labelNext(to);
+        mbi.insn(OP_returnvalue);
+        mbi.labelNext(target);
+        mbi.insn(OP_returnvalue);
+        mbi.addExceptionInfo(new ExceptionInfo(from, to, target, null, null));
+
+        // Without the exception edges, register 2 would become register 1.
+        assertEquals("pushbyte(0) setlocal(2) getlocal(2) returnvalue returnvalue",
+                     optimize(mbi));
+        assertEquals(3, mbi.max_local);
+    }
+
+    @Test
+    public void DataFlowOptimizer_removesRedundantConversions()
+    {
+        final MethodBodyInfo mbi = newMethodBody(1);
+        mbi.insn(OP_pushbyte, 1);
+        mbi.insn(OP_convert_i);
+        mbi.insn(OP_pushstring, "s");
+        mbi.insn(OP_coerce_s);
+        mbi.insn(OP_add);
+        mbi.insn(OP_returnvalue);
+
+        assertEquals("pushbyte(1) pushstring add returnvalue", optimize(mbi));
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+
+package org.apache.royale.compiler.internal.caches;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Collection;
+import java.util.Collections;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.royale.compiler.internal.projects.RoyaleProject;
+import org.apache.royale.compiler.internal.workspaces.Workspace;
+import org.apache.royale.compiler.units.ICompilationUnit;
+import org.apache.royale.compiler.units.requests.IABCBytesRequestResult;
+import org.apache.royale.utils.FilenameNormalization;
+import org.apache.royale.utils.TestAdapterFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * JUnit tests for {@link CompilationUnitDiskCache}.
+ */
+public class CompilationUnitDiskCacheTests
+{
+    private File sourceDirectory;
+    private File cacheDirectory;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        final File tempDir = new File(TestAdapterFactory.getTestAdapter().getTempDir());
+        sourceDirectory = File.createTempFile(getClass().getSimpleName(), "", tempDir);
+        assertTrue(sourceDirectory.delete() && sourceDirectory.mkdir());
+        cacheDirectory = File.createTempFile(getClass().getSimpleName(), "", tempDir);
+        assertTrue(cacheDirectory.delete() && cacheDirectory.mkdir());
+    }
+
+    @After
+    public void tearDown() throws IOException
+    {
+        FileUtils.deleteDirectory(sourceDirectory);
+        FileUtils.deleteDirectory(cacheDirectory);
+    }
+
+    private String writeClass(String name, String base, String body) throws IOException
+    {
+        final File file = new File(sourceDirectory, name + ".as");
+        final Writer out = new FileWriter(file);
+        try
+        {
+            out.write("package {\npublic class " + name +
+                      (base != null ? " extends " + base : "") + " {\n" + body + "\n}\n}\n");
+        }
+        finally
+        {
+            out.close();
+        }
+        return FilenameNormalization.normalize(file.getAbsolutePath());
+    }
+
+    /**
+     * Build the ABC of a file in a fresh workspace, as a new compiler
+     * process would.
+     */
+    private IABCBytesRequestResult build(String path, CompilationUnitDiskCache cache) throws InterruptedException
+    {
+        final Workspace workspace = new Workspace();
+        final RoyaleProject project = new RoyaleProject(workspace);
+        try
+        {
+            project.setSourcePath(Collections.singletonList(sourceDirectory));
+            project.setLibraries(Collections.singletonList(TestAdapterFactory.getTestAdapter().getPlayerglobal()));
+            project.setCompilationUnitDiskCache(cache);
+            final Collection<ICompilationUnit> units = workspace.getCompilationUnits(path, project);
+            assertEquals(1, units.size());
+            return units.iterator().next().getABCBytesRequest().get();
+        }
+        finally
+        {
+            project.delete();
+            workspace.close();
+        }
+    }
+
+    @Test
+    public void CompilationUnitDiskCache_reusesUnchangedEntry() throws Exception
+    {
+        writeClass("A", null, "public function foo():void {}");
+        final String path = writeClass("B", "A", "override public function foo():void {}");
+
+        final CompilationUnitDiskCache first = new CompilationUnitDiskCache(cacheDirectory, "test");
+        assertEquals(0, build(path, first).getProblems().length);
+        assertEquals(1, first.getStoreCount());
+
+        final CompilationUnitDiskCache second = new CompilationUnitDiskCache(cacheDirectory, "test");
+        assertEquals(0, build(path, second).getProblems().length);
+        assertEquals(1, second.getHitCount());
+    }
+
+    @Test
+    public void CompilationUnitDiskCache_grandSuperclassChangeInvalidatesEntry() throws Exception
+    {
+        writeClass("A", null, "public function foo():void {}");
+        writeClass("B", "A", "");
+        final String path = writeClass("C", "B", "override public function foo():void {}");
+
+        final CompilationUnitDiskCache first = new CompilationUnitDiskCache(cacheDirectory, "test");
+        assertEquals(0, build(path, first).getProblems().length);
+        assertEquals(1, first.getStoreCount());
+
+        // C only names B, but its override of foo() is checked against A.
+        writeClass("A", null, "");
+
+        final CompilationUnitDiskCache second = new CompilationUnitDiskCache(cacheDirectory, "test");
+        final IABCBytesRequestResult result = build(path, second);
+        assertEquals(0, second.getHitCount());
+        assertTrue(result.getProblems().length > 0);
+    }
+}
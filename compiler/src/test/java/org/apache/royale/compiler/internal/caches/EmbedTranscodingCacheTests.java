@@ -0,0 +1,233 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+
+
+package org.apache.royale.compiler.internal.caches;
+
+import static org.junit.Assert.*;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import javax.imageio.ImageIO;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.royale.compiler.common.ISourceLocation;
+import org.apache.royale.compiler.common.SourceLocation;
+import org.apache.royale.compiler.internal.embedding.EmbedData;
+import org.apache.royale.compiler.internal.embedding.transcoders.TranscoderBase;
+import org.apache.royale.compiler.internal.projects.RoyaleProject;
+import org.apache.royale.compiler.internal.workspaces.Workspace;
+import org.apache.royale.compiler.problems.ICompilerProblem;
+import org.apache.royale.swf.tags.DefineBitsTag;
+import org.apache.royale.swf.tags.DefineSoundTag;
+import org.apache.royale.swf.tags.ICharacterTag;
+import org.apache.royale.swf.tags.ITag;
+import org.apache.royale.utils.TestAdapterFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * JUnit tests for {@link EmbedTranscodingCache}, through the transcoders
+ * that use it.
+ */
+public class EmbedTranscodingCacheTests
+{
+    private File sourceDirectory;
+    private File cacheDirectory;
+    private Workspace workspace;
+    private RoyaleProject project;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        final File tempDir = new File(TestAdapterFactory.getTestAdapter().getTempDir());
+        sourceDirectory = File.createTempFile(getClass().getSimpleName(), "", tempDir);
+        assertTrue(sourceDirectory.delete() && sourceDirectory.mkdir());
+        cacheDirectory = File.createTempFile(getClass().getSimpleName(), "", tempDir);
+        assertTrue(cacheDirectory.delete() && cacheDirectory.mkdir());
+
+        workspace = new Workspace();
+        workspace.setEmbedCacheDirectory(cacheDirectory);
+        project = new RoyaleProject(workspace);
+        project.setSourcePath(Collections.singletonList(sourceDirectory));
+    }
+
+    @After
+    public void tearDown() throws IOException
+    {
+        project.delete();
+        workspace.close();
+        FileUtils.deleteDirectory(sourceDirectory);
+        FileUtils.deleteDirectory(cacheDirectory);
+    }
+
+    private void writePNG(String name) throws IOException
+    {
+        final BufferedImage image = new BufferedImage(8, 8, BufferedImage.TYPE_INT_ARGB);
+        for (int y = 0; y < 8; y++)
+        {
+            for (int x = 0; x < 8; x++)
+                image.setRGB(x, y, (x * 32) << 24 | (y * 32) << 8 | 0xFF);
+        }
+        assertTrue(ImageIO.write(image, "png", new File(sourceDirectory, name)));
+    }
+
+    /**
+     * Write a few MPEG 1 layer III frames at 128 kbps and 44.1 kHz, enough for
+     * the sound transcoder to count them.
+     */
+    private void writeMP3(String name) throws IOException
+    {
+        final int frameLength = 144 * 128000 / 44100;
+        final byte[] bytes = new byte[3 * frameLength];
+        for (int frame = 0; frame < 3; frame++)
+        {
+            final int start = frame * frameLength;
+            bytes[start] = (byte)0xFF;
+            bytes[start + 1] = (byte)0xFB;
+            bytes[start + 2] = (byte)0x90;
+            bytes[start + 3] = (byte)0x44;
+        }
+        FileUtils.writeByteArrayToFile(new File(sourceDirectory, name), bytes);
+    }
+
+    /**
+     * Transcode an asset the way the embed of a class would.
+     * 
+     * @param className The class with the embed.
+     * @param attributes Names and values of the embed attributes.
+     * @param tags The additional tags of the asset are added to this list.
+     * @return The assets by symbol name.
+     */
+    private Map<String, ICharacterTag> transcode(String className, List<ITag> tags, String... attributes)
+    {
+        final List<ICompilerProblem> problems = new ArrayList<ICompilerProblem>();
+        final String containingFile = new File(sourceDirectory, className + ".as").getAbsolutePath();
+        final ISourceLocation location = new SourceLocation(containingFile, 0, 0, 0, 0);
+        final EmbedData data = new EmbedData(containingFile, className);
+        for (int i = 0; i < attributes.length; i += 2)
+            assertFalse(data.addAttribute(project, location, attributes[i], attributes[i + 1], problems));
+        assertTrue(problems.toString(), data.createTranscoder(project, location, problems));
+
+        final Map<String, ICharacterTag> assets = ((TranscoderBase)data.getTranscoder()).getTags(tags, problems);
+        assertTrue(problems.toString(), problems.isEmpty());
+        assertNotNull(assets);
+        return assets;
+    }
+
+    private File[] getEntries()
+    {
+        return cacheDirectory.listFiles(new FileFilter()
+        {
+            @Override
+            public boolean accept(File file)
+            {
+                return file.getName().endsWith(".rembed");
+            }
+        });
+    }
+
+    /**
+     * Transcode an asset twice, and check that the second time it comes from
+     * the entry stored the first time.
+     */
+    private void assertRoundTrip(String... attributes)
+    {
+        final List<ITag> transcodedTags = new ArrayList<ITag>();
+        final Map<String, ICharacterTag> transcoded = transcode("First", transcodedTags, attributes);
+        final File[] entries = getEntries();
+        assertEquals(1, entries.length);
+
+        // An entry is only written when the asset is transcoded, so the
+        // entry keeps this time if the next lookup hits.
+        assertTrue(entries[0].setLastModified(1000L));
+        final List<ITag> loadedTags = new ArrayList<ITag>();
+        final Map<String, ICharacterTag> loaded = transcode("First", loadedTags, attributes);
+        assertEquals(1, getEntries().length);
+        assertEquals(1000L, entries[0].lastModified());
+
+        assertEquals(describe(transcodedTags), describe(loadedTags));
+        assertEquals(transcoded.keySet(), loaded.keySet());
+        for (String name : transcoded.keySet())
+            assertEquals(transcoded.get(name).getClass(), loaded.get(name).getClass());
+    }
+
+    private static List<String> describe(List<ITag> tags)
+    {
+        final List<String> result = new ArrayList<String>();
+        for (ITag tag : tags)
+            result.add(tag.getClass().getSimpleName());
+        return result;
+    }
+
+    @Test
+    public void EmbedTranscodingCache_scaledImage() throws IOException
+    {
+        writePNG("image.png");
+        assertRoundTrip("source", "image.png",
+                "scaleGridTop", "2", "scaleGridBottom", "6",
+                "scaleGridLeft", "2", "scaleGridRight", "6");
+    }
+
+    @Test
+    public void EmbedTranscodingCache_jpegWithQuality() throws IOException
+    {
+        writePNG("image.png");
+        assertRoundTrip("source", "image.png", "quality", "80");
+
+        final Map<String, ICharacterTag> assets = transcode("First", new ArrayList<ITag>(), "source", "image.png", "quality", "80");
+        final DefineBitsTag image = (DefineBitsTag)assets.get("First");
+        assertTrue(image.getImageData().length > 0);
+
+        // A different quality is a different entry.
+        transcode("First", new ArrayList<ITag>(), "source", "image.png", "quality", "20");
+        assertEquals(2, getEntries().length);
+    }
+
+    @Test
+    public void EmbedTranscodingCache_sound() throws IOException
+    {
+        writeMP3("sound.mp3");
+        assertRoundTrip("source", "sound.mp3");
+
+        final DefineSoundTag transcoded = (DefineSoundTag)transcode("First", new ArrayList<ITag>(), "source", "sound.mp3").get("First");
+        assertEquals(3 * 1152, transcoded.getSoundSampleCount());
+    }
+
+    @Test
+    public void EmbedTranscodingCache_symbolRenamed() throws IOException
+    {
+        writePNG("image.png");
+        final Map<String, ICharacterTag> first = transcode("First", new ArrayList<ITag>(), "source", "image.png", "smoothing", "true");
+        assertEquals(Collections.singleton("First"), first.keySet());
+
+        final Map<String, ICharacterTag> second = transcode("Second", new ArrayList<ITag>(), "source", "image.png", "smoothing", "true");
+        assertEquals(1, getEntries().length);
+        assertEquals(Collections.singleton("Second"), second.keySet());
+    }
+}
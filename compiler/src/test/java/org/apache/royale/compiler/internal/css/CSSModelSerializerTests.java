@@ -0,0 +1,108 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+
+package org.apache.royale.compiler.internal.css;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.antlr.runtime.ANTLRStringStream;
+import org.apache.royale.compiler.css.ICSSProperty;
+import org.apache.royale.compiler.css.ICSSRule;
+import org.apache.royale.compiler.problems.ICompilerProblem;
+import org.junit.Test;
+
+/**
+ * JUnit tests for {@link CSSModelSerializer}.
+ */
+public class CSSModelSerializerTests
+{
+    private static final String EOL = "\n";
+
+    private static CSSDocument parse(String code)
+    {
+        final List<ICompilerProblem> problems = new ArrayList<ICompilerProblem>();
+        final CSSDocument css = CSSDocument.parse(new ANTLRStringStream(code), problems);
+        assertTrue("problems", problems.isEmpty());
+        return css;
+    }
+
+    private static CSSDocument roundTrip(CSSDocument css) throws IOException
+    {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(bytes);
+        CSSModelSerializer.write(css, out);
+        out.flush();
+        return CSSModelSerializer.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+    }
+
+    @Test
+    public void CSSModelSerializer_roundTrip() throws IOException
+    {
+        final String code =
+                "@namespace s \"library://ns.adobe.com/flex/spark\";" + EOL +
+                "@font-face { src: url(\"a.ttf\") format(\"truetype\"); fontFamily: myFont; }" + EOL +
+                "s|Button.big:up, .other Label { color: #FF0000; fontSize: 12px; fontFamily: \"Arial\", myFont; }" + EOL +
+                "@media screen and (application-dpi: 240) { global { skinClass: ClassReference(\"a.Skin\"); backgroundColor: rgb(1, 2, 3); } }";
+        final CSSDocument css = parse(code);
+        final CSSDocument copy = roundTrip(css);
+
+        assertThat("toString()", copy.toString(), is(css.toString()));
+        assertThat("toStringTree()", copy.toStringTree(), is(css.toStringTree()));
+        assertThat("rules", copy.getRules().size(), is(css.getRules().size()));
+        for (int i = 0; i < css.getRules().size(); i++)
+        {
+            final ICSSRule rule = css.getRules().get(i);
+            final ICSSRule copiedRule = copy.getRules().get(i);
+            assertThat("rule line", copiedRule.getLine(), is(rule.getLine()));
+            assertThat("rule column", copiedRule.getColumn(), is(rule.getColumn()));
+            assertThat("rule start", copiedRule.getStart(), is(rule.getStart()));
+            for (int j = 0; j < rule.getProperties().size(); j++)
+            {
+                final ICSSProperty property = rule.getProperties().get(j);
+                final ICSSProperty copiedProperty = copiedRule.getProperties().get(j);
+                assertThat("property name", copiedProperty.getName(), is(property.getName()));
+                assertThat("property value", copiedProperty.getValue().toString(), is(property.getValue().toString()));
+                assertThat("property line", copiedProperty.getLine(), is(property.getLine()));
+            }
+        }
+        assertThat("font faces", copy.getFontFaces().size(), is(1));
+        assertThat("font family", copy.getFontFaces().get(0).getFontFamily(), is(css.getFontFaces().get(0).getFontFamily()));
+        assertThat("namespace", copy.getNamespaceDefinition("s").getURI(), is("library://ns.adobe.com/flex/spark"));
+    }
+
+    @Test
+    public void CSSModelSerializer_empty() throws IOException
+    {
+        final CSSDocument css = parse("");
+        final CSSDocument copy = roundTrip(css);
+        assertThat("toString()", copy.toString(), is(css.toString()));
+        assertThat("rules", copy.getRules().size(), is(0));
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+
+
+package org.apache.royale.compiler.internal.css.codegen;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.antlr.runtime.ANTLRStringStream;
+import org.apache.royale.compiler.css.ICSSRule;
+import org.apache.royale.compiler.css.ICSSSelector;
+import org.apache.royale.compiler.internal.css.CSSDocument;
+import org.apache.royale.compiler.internal.css.CSSManager;
+import org.apache.royale.compiler.internal.projects.RoyaleProject;
+import org.apache.royale.compiler.internal.workspaces.Workspace;
+import org.apache.royale.compiler.problems.ICompilerProblem;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * JUnit tests for the reuse of style data classes through
+ * {@link CSSCompilationSession#getStyleDataKey} and {@link CSSManager}.
+ */
+public class CSSCompilationSessionTests
+{
+    private static final String CSS =
+            "Button { color: #FF0000; }\n" +
+            ".big { fontSize: 12px; }\n";
+
+    private Workspace workspace;
+    private RoyaleProject project;
+
+    @Before
+    public void setUp()
+    {
+        workspace = new Workspace();
+        project = new RoyaleProject(workspace);
+    }
+
+    @After
+    public void tearDown()
+    {
+        project.delete();
+        workspace.close();
+    }
+
+    private static CSSDocument parse(String code)
+    {
+        final List<ICompilerProblem> problems = new ArrayList<ICompilerProblem>();
+        final CSSDocument css = CSSDocument.parse(new ANTLRStringStream(code), problems);
+        assertTrue(problems.toString(), problems.isEmpty());
+        return css;
+    }
+
+    /**
+     * Create a session for a document with the given rules activated, and
+     * the type selectors resolved to the "a" package.
+     */
+    private static CSSCompilationSession createSession(CSSDocument css, int... activatedRules)
+    {
+        final CSSCompilationSession session = new CSSCompilationSession();
+        session.cssDocuments.add(css);
+        for (final int i : activatedRules)
+        {
+            final ICSSRule rule = css.getRules().get(i);
+            session.activatedRules.add(rule);
+            for (final ICSSSelector selector : rule.getSelectorGroup())
+            {
+                if (selector.getElementName() != null)
+                    session.resolvedSelectors.put(selector, "a." + selector.getElementName());
+            }
+        }
+        return session;
+    }
+
+    @Test
+    public void CSSCompilationSession_sameStyleData()
+    {
+        final String key = createSession(parse(CSS), 0).getStyleDataKey(project);
+        assertEquals(key, createSession(parse(CSS), 0).getStyleDataKey(project));
+    }
+
+    @Test
+    public void CSSCompilationSession_changedRule()
+    {
+        final String key = createSession(parse(CSS), 0).getStyleDataKey(project);
+        final String changed = CSS.replace("#FF0000", "#00FF00");
+        assertFalse(key.equals(createSession(parse(changed), 0).getStyleDataKey(project)));
+    }
+
+    @Test
+    public void CSSCompilationSession_activatedSelector()
+    {
+        final CSSDocument css = parse(CSS);
+        final String key = createSession(css, 0).getStyleDataKey(project);
+        assertFalse(key.equals(createSession(css, 0, 1).getStyleDataKey(project)));
+    }
+
+    @Test
+    public void CSSCompilationSession_resolvedSelector()
+    {
+        final CSSDocument css = parse(CSS);
+        final CSSCompilationSession session = createSession(css, 0);
+        final String key = session.getStyleDataKey(project);
+        session.resolvedSelectors.put(css.getRules().get(0).getSelectorGroup().get(0), "b.Button");
+        assertFalse(key.equals(session.getStyleDataKey(project)));
+    }
+
+    @Test
+    public void CSSManager_styleData()
+    {
+        final CSSManager cssManager = project.getCSSManager();
+        final String key = createSession(parse(CSS), 0).getStyleDataKey(project);
+        final byte[] abc = {1, 2, 3};
+        cssManager.setStyleDataABC("_Main_Styles", key, abc);
+        assertTrue(Arrays.equals(abc, cssManager.getStyleDataABC("_Main_Styles", key)));
+        assertNull(cssManager.getStyleDataABC("_Other_Styles", key));
+
+        final String changed = CSS.replace("12px", "14px");
+        assertNull(cssManager.getStyleDataABC("_Main_Styles",
+                createSession(parse(changed), 0, 1).getStyleDataKey(project)));
+
+        cssManager.clean();
+        assertNull(cssManager.getStyleDataABC("_Main_Styles", key));
+    }
+}
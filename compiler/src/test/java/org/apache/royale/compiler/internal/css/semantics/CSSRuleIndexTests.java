@@ -0,0 +1,201 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+
+
+package org.apache.royale.compiler.internal.css.semantics;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.antlr.runtime.ANTLRStringStream;
+import org.apache.royale.compiler.css.ICSSRule;
+import org.apache.royale.compiler.internal.css.CSSDocument;
+import org.apache.royale.compiler.internal.css.codegen.CSSCompilationSession;
+import org.apache.royale.compiler.internal.projects.RoyaleProject;
+import org.apache.royale.compiler.internal.workspaces.Workspace;
+import org.apache.royale.compiler.problems.ICompilerProblem;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * JUnit tests for {@link CSSRuleIndex}. The rules it matches are compared
+ * with the rules that {@link CSSSemanticAnalyzer#getMatchedRules} filters
+ * from the whole document.
+ */
+public class CSSRuleIndexTests
+{
+    /**
+     * Type selectors that don't resolve in the XHTML namespace resolve to
+     * their element names, so no manifest is needed.
+     */
+    private static final String CSS =
+            "@namespace \"http://www.w3.org/1999/xhtml\";\n" +
+            "Button { fontSize: 0; }\n" +
+            "global { fontSize: 1; }\n" +
+            "* { fontSize: 2; }\n" +
+            ".highlight { fontSize: 3; }\n" +
+            "Label, .other { fontSize: 4; }\n" +
+            ".opt_a-b-Panel_big { fontSize: 5; }\n" +
+            "Label, .opt_a-b-Panel_big { fontSize: 6; }\n" +
+            "Panel Button { fontSize: 7; }\n" +
+            "Panel, Label { fontSize: 8; }\n";
+
+    private static final String FLEX3_CSS =
+            "Button { fontSize: 0; }\n" +
+            "global { fontSize: 1; }\n" +
+            ".highlight { fontSize: 2; }\n" +
+            "Button, Label { fontSize: 3; }\n" +
+            "Button.big { fontSize: 4; }\n" +
+            "Panel Button { fontSize: 5; }\n" +
+            "Button, Panel Label { fontSize: 6; }\n" +
+            "Button:up { fontSize: 7; }\n" +
+            "Label, global { fontSize: 8; }\n";
+
+    private Workspace workspace;
+    private RoyaleProject project;
+
+    @Before
+    public void setUp()
+    {
+        workspace = new Workspace();
+        project = new RoyaleProject(workspace);
+    }
+
+    @After
+    public void tearDown()
+    {
+        project.delete();
+        workspace.close();
+    }
+
+    private static CSSDocument parse(String code)
+    {
+        final List<ICompilerProblem> problems = new ArrayList<ICompilerProblem>();
+        final CSSDocument css = CSSDocument.parse(new ANTLRStringStream(code), problems);
+        assertTrue(problems.toString(), problems.isEmpty());
+        return css;
+    }
+
+    /**
+     * Match the QNames against the document with one {@link CSSRuleIndex.Matches},
+     * and check after each call that the matched rules are the expected ones,
+     * and the ones that the old predicates match for all the QNames so far.
+     * 
+     * @param css CSS document.
+     * @param qnames QNames to match in each call.
+     * @param expected Positions of the rules expected after each call.
+     */
+    @SuppressWarnings("deprecation")
+    private void assertMatches(CSSDocument css, String[][] qnames, int[][] expected)
+    {
+        final boolean isFlex3CSS = project.getCSSManager().isFlex3CSS();
+        final CSSRuleIndex index = new CSSRuleIndex(project, css, isFlex3CSS);
+        final CSSRuleIndex.Matches matches = new CSSRuleIndex.Matches();
+        final Set<String> allQNames = new HashSet<String>();
+        for (int i = 0; i < qnames.length; i++)
+        {
+            allQNames.addAll(Arrays.asList(qnames[i]));
+            final ImmutableSet<ICSSRule> matched = index.match(matches, Arrays.asList(qnames[i]));
+
+            final List<ICompilerProblem> problems = new ArrayList<ICompilerProblem>();
+            final ImmutableSet<ICSSRule> old = CSSSemanticAnalyzer.getMatchedRules(
+                    new CSSCompilationSession(), project, css, ImmutableSet.copyOf(allQNames), problems);
+            assertEquals("call " + i, old, matched);
+            assertEquals("call " + i, new ArrayList<ICSSRule>(old), new ArrayList<ICSSRule>(matched));
+
+            final List<ICSSRule> rules = new ArrayList<ICSSRule>();
+            for (final int position : expected[i])
+                rules.add(css.getRules().get(position));
+            assertEquals("call " + i, rules, new ArrayList<ICSSRule>(matched));
+        }
+    }
+
+    @Test
+    public void CSSRuleIndex_wildcardSelectors()
+    {
+        assertMatches(parse(CSS),
+                new String[][] {{}},
+                new int[][] {{1, 2, 3, 4}});
+    }
+
+    @Test
+    public void CSSRuleIndex_typeSelectors()
+    {
+        assertMatches(parse(CSS),
+                new String[][] {{"Button", "Label"}},
+                new int[][] {{0, 1, 2, 3, 4, 6, 7, 8}});
+    }
+
+    @Test
+    public void CSSRuleIndex_optionalClassSelectors()
+    {
+        assertMatches(parse(CSS),
+                new String[][] {{"Panel"}, {"a.b.Panel"}},
+                new int[][] {{1, 2, 3, 4, 8}, {1, 2, 3, 4, 5, 6, 8}});
+    }
+
+    @Test
+    public void CSSRuleIndex_incrementalMatches()
+    {
+        assertMatches(parse(CSS),
+                new String[][] {{}, {"Label"}, {"Label"}, {"a.b.Panel", "Button"}, {}},
+                new int[][] {
+                        {1, 2, 3, 4},
+                        {1, 2, 3, 4, 6, 8},
+                        {1, 2, 3, 4, 6, 8},
+                        {0, 1, 2, 3, 4, 5, 6, 7, 8},
+                        {0, 1, 2, 3, 4, 5, 6, 7, 8}});
+    }
+
+    @Test
+    public void CSSRuleIndex_flex3GlobalAndClassSelectors()
+    {
+        project.setCompatibilityVersion(3, 0, 0);
+        assertMatches(parse(FLEX3_CSS),
+                new String[][] {{}},
+                new int[][] {{1, 2}});
+    }
+
+    @Test
+    public void CSSRuleIndex_flex3SeveralNames()
+    {
+        project.setCompatibilityVersion(3, 0, 0);
+        assertMatches(parse(FLEX3_CSS),
+                new String[][] {{"a.Button"}, {"b.Label"}},
+                new int[][] {{0, 1, 2, 4}, {0, 1, 2, 3, 4, 8}});
+    }
+
+    @Test
+    public void CSSRuleIndex_flex3AdvancedSelectors()
+    {
+        project.setCompatibilityVersion(3, 0, 0);
+        assertMatches(parse(FLEX3_CSS),
+                new String[][] {{"a.Button", "b.Label", "c.Panel"}},
+                new int[][] {{0, 1, 2, 3, 4, 8}});
+    }
+}
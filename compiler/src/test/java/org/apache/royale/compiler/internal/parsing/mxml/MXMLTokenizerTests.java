@@ -22,11 +22,18 @@ package org.apache.royale.compiler.internal.parsing.mxml;
 import static org.junit.Assert.*;
 import static org.hamcrest.core.Is.is;
 
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
 import java.io.Reader;
 import java.io.StringReader;
+import java.io.Writer;
 import java.util.List;
 
 import org.apache.commons.io.IOUtils;
+import org.apache.royale.compiler.filespecs.FileSpecification;
+import org.apache.royale.compiler.internal.parsing.CharArraySequence;
 import org.apache.royale.compiler.parsing.MXMLTokenTypes;
 import org.junit.Ignore;
 import org.junit.Test;
@@ -820,4 +827,72 @@ public class MXMLTokenizerTests
 	    assertThat("7 type", tokens[7].getType(), is(MXMLTokenTypes.TOKEN_TAG_END));
 	    assertThat("7 text", tokens[7].getText(), is(">"));
 	}
+	
+	/*
+	 * A file is lexed in place into the same tokens as from a reader,
+	 * including when it is longer than the tokenizer's buffer.
+	 */
+	@Test
+	public void fileSpecification() throws IOException
+	{
+		StringBuilder code = new StringBuilder("<a>");
+		for (int i = 0; i < 2000; i++)
+			code.append("<b c='").append(i).append("'>text</b>");
+		code.append("</a>");
+		
+		File file = File.createTempFile(getClass().getSimpleName(), ".mxml");
+		file.deleteOnExit();
+		Writer out = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+		out.write(code.toString());
+		out.close();
+		
+		MXMLTokenizer tokenizer = new MXMLTokenizer();
+		List<MXMLToken> tokens = tokenizer.parseTokens(new FileSpecification(file.getPath()));
+		IOUtils.closeQuietly(tokenizer);
+		MXMLToken[] expected = lex(code.toString());
+		
+		assertThat("count", tokens.size(), is(expected.length));
+		for (int i = 0; i < expected.length; i++)
+		{
+			assertThat(i + " type", tokens.get(i).getType(), is(expected[i].getType()));
+			assertThat(i + " text", tokens.get(i).getText(), is(expected[i].getText()));
+			assertThat(i + " start", tokens.get(i).getStart(), is(expected[i].getStart()));
+		}
+	}
+	
+	/*
+	 * Attribute values lexed from a file are views of the file's characters,
+	 * and keep their text when the tokenizer goes on to lex something else.
+	 */
+	@Test
+	public void fileSpecificationStrings() throws IOException
+	{
+		String code = "<a b=\"1\" c='two'/><d e=\"3";
+		
+		File file = File.createTempFile(getClass().getSimpleName(), ".mxml");
+		file.deleteOnExit();
+		Writer out = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+		out.write(code);
+		out.close();
+		
+		MXMLTokenizer tokenizer = new MXMLTokenizer();
+		List<MXMLToken> tokens = tokenizer.parseTokens(new FileSpecification(file.getPath()));
+		tokenizer.parseTokens(new StringReader("<x y='overwritten'/>"));
+		IOUtils.closeQuietly(tokenizer);
+		MXMLToken[] expected = lex(code);
+		
+		assertThat("count", tokens.size(), is(expected.length));
+		int strings = 0;
+		for (int i = 0; i < expected.length; i++)
+		{
+			assertThat(i + " text", tokens.get(i).getText(), is(expected[i].getText()));
+			assertThat(i + " end", tokens.get(i).getEnd(), is(expected[i].getEnd()));
+			if (expected[i].getType() == MXMLTokenTypes.TOKEN_STRING)
+			{
+				assertTrue(i + " shared", tokens.get(i).getCharSequence() instanceof CharArraySequence);
+				strings++;
+			}
+		}
+		assertThat("strings", strings, is(3));
+	}
 }
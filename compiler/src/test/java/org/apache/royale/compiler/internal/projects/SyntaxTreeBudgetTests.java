@@ -0,0 +1,129 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+
+package org.apache.royale.compiler.internal.projects;
+
+import static org.junit.Assert.assertEquals;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import org.apache.royale.compiler.internal.tree.as.ContainerNode;
+import org.apache.royale.compiler.internal.tree.as.IdentifierNode;
+import org.apache.royale.compiler.units.ICompilationUnit;
+import org.junit.Test;
+
+/**
+ * JUnit tests for {@link SyntaxTreeBudget}.
+ */
+public class SyntaxTreeBudgetTests
+{
+    /**
+     * The budget only uses compilation units as keys.
+     */
+    private static ICompilationUnit newUnit(final String name)
+    {
+        return (ICompilationUnit)Proxy.newProxyInstance(ICompilationUnit.class.getClassLoader(),
+                new Class<?>[] {ICompilationUnit.class}, new InvocationHandler()
+                {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args)
+                    {
+                        if (method.getName().equals("equals"))
+                            return proxy == args[0];
+                        if (method.getName().equals("hashCode"))
+                            return System.identityHashCode(proxy);
+                        if (method.getName().equals("toString"))
+                            return name;
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+    private static ContainerNode newTree(int identifierCount)
+    {
+        final ContainerNode tree = new ContainerNode();
+        for (int i = 0; i < identifierCount; i++)
+            tree.addItem(new IdentifierNode("i" + i));
+        return tree;
+    }
+
+    @Test
+    public void SyntaxTreeBudget_evictsReleasedTreesInReleaseOrder()
+    {
+        final long treeBytes = SyntaxTreeBudget.estimateBytes(newTree(9));
+        final SyntaxTreeBudget budget = new SyntaxTreeBudget(3 * treeBytes);
+        final ICompilationUnit a = newUnit("a");
+        final ICompilationUnit b = newUnit("b");
+        final ICompilationUnit c = newUnit("c");
+        final ICompilationUnit d = newUnit("d");
+
+        // Trees the build still needs are kept over the budget.
+        budget.retain(a, newTree(9));
+        budget.retain(b, newTree(9));
+        budget.retain(c, newTree(9));
+        budget.retain(d, newTree(9));
+        assertEquals(4 * treeBytes, budget.getRetainedBytes());
+        assertEquals(0, budget.getEvictionCount());
+
+        budget.release(b);
+        assertEquals(1, budget.getEvictionCount());
+        assertEquals(3 * treeBytes, budget.getRetainedBytes());
+
+        budget.release(a);
+        budget.release(c);
+        assertEquals(1, budget.getEvictionCount());
+
+        // Building b again pushes out a, which was released first.
+        budget.retain(b, newTree(9));
+        assertEquals(1, budget.getRebuildCount());
+        assertEquals(2, budget.getEvictionCount());
+        assertEquals(3 * treeBytes, budget.getRetainedBytes());
+        assertEquals(4 * treeBytes, budget.getPeakRetainedBytes());
+
+        // a is no longer retained, so retaining it again is a rebuild too.
+        budget.retain(a, newTree(9));
+        assertEquals(2, budget.getRebuildCount());
+        assertEquals(3, budget.getEvictionCount());
+        assertEquals(3 * treeBytes, budget.getRetainedBytes());
+    }
+
+    @Test
+    public void SyntaxTreeBudget_releaseEstimatesTheTreeAgain()
+    {
+        final SyntaxTreeBudget budget = new SyntaxTreeBudget(Long.MAX_VALUE);
+        final ICompilationUnit unit = newUnit("unit");
+        final ContainerNode tree = newTree(1);
+        budget.retain(unit, tree);
+        assertEquals(SyntaxTreeBudget.estimateBytes(tree), budget.getRetainedBytes());
+
+        // Function bodies are parsed after the tree is retained.
+        tree.addItem(new IdentifierNode("body"));
+        budget.release(unit);
+        assertEquals(SyntaxTreeBudget.estimateBytes(newTree(2)), budget.getRetainedBytes());
+
+        budget.remove(unit);
+        assertEquals(0, budget.getRetainedBytes());
+        budget.release(unit);
+        assertEquals(0, budget.getRetainedBytes());
+        assertEquals(0, budget.getRebuildCount());
+    }
+}
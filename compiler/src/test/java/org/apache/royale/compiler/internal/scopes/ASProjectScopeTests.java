@@ -0,0 +1,267 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+
+
+package org.apache.royale.compiler.internal.scopes;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.royale.compiler.definitions.IDefinition;
+import org.apache.royale.compiler.internal.definitions.ClassDefinition;
+import org.apache.royale.compiler.internal.definitions.NamespaceDefinition;
+import org.apache.royale.compiler.internal.projects.RoyaleProject;
+import org.apache.royale.compiler.internal.workspaces.Workspace;
+import org.apache.royale.compiler.scopes.IDefinitionSet;
+import org.apache.royale.compiler.units.ICompilationUnit;
+import org.apache.royale.utils.FilenameNormalization;
+import org.apache.royale.utils.TestAdapterFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * JUnit tests for the lookups of {@link ASProjectScope} that don't take the
+ * read lock. Readers look up names while a writer adds and removes
+ * definitions, and must only ever see what a serial lookup could have seen
+ * before or after each write.
+ */
+public class ASProjectScopeTests
+{
+    private static final int READERS = 4;
+
+    private Workspace workspace;
+    private RoyaleProject project;
+    private File sourceDirectory;
+    private ASFileScope fileScope;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        sourceDirectory = File.createTempFile(getClass().getSimpleName(), "",
+                new File(TestAdapterFactory.getTestAdapter().getTempDir()));
+        assertTrue(sourceDirectory.delete() && sourceDirectory.mkdir());
+
+        workspace = new Workspace();
+        project = new RoyaleProject(workspace);
+        project.setSourcePath(Collections.singletonList(sourceDirectory));
+
+        // The test definitions belong to the compilation unit of this file.
+        final File file = new File(sourceDirectory, "Main.as");
+        final Writer out = new FileWriter(file);
+        try
+        {
+            out.write("package {\npublic class Main {\n}\n}\n");
+        }
+        finally
+        {
+            out.close();
+        }
+        final String path = FilenameNormalization.normalize(file.getAbsolutePath());
+        final Collection<ICompilationUnit> units = workspace.getCompilationUnits(path, project);
+        assertEquals(1, units.size());
+        fileScope = (ASFileScope)units.iterator().next().getFileScopeRequest().get().getScopes()[0];
+    }
+
+    @After
+    public void tearDown()
+    {
+        project.delete();
+        workspace.close();
+        for (File file : sourceDirectory.listFiles())
+            file.delete();
+        sourceDirectory.delete();
+    }
+
+    private IDefinition createDefinition(String name)
+    {
+        final ClassDefinition definition = new ClassDefinition(name,
+                NamespaceDefinition.createPackagePublicNamespaceDefinition(""));
+        definition.setContainingScope(fileScope);
+        return definition;
+    }
+
+    /**
+     * @return the only definition of a name, or null if there is none.
+     * @throws AssertionError if the name has more than one definition.
+     */
+    private static IDefinition getOnlyDefinition(ASProjectScope scope, String name)
+    {
+        final IDefinitionSet definitionSet = scope.getLocalDefinitionSetByName(name);
+        if (definitionSet == null || definitionSet.getSize() == 0)
+            return null;
+        assertEquals(name, 1, definitionSet.getSize());
+        return definitionSet.getDefinition(0);
+    }
+
+    /**
+     * Run readers until the writer returns, and rethrow the first failure of
+     * any of them.
+     */
+    private static void runConcurrently(Runnable writer, final Runnable reader) throws Throwable
+    {
+        final AtomicBoolean done = new AtomicBoolean();
+        final Queue<Throwable> failures = new ConcurrentLinkedQueue<Throwable>();
+        final List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < READERS; i++)
+        {
+            final Thread thread = new Thread(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        while (!done.get())
+                            reader.run();
+                    }
+                    catch (Throwable e)
+                    {
+                        failures.add(e);
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+
+        try
+        {
+            writer.run();
+        }
+        finally
+        {
+            done.set(true);
+            for (Thread thread : threads)
+                thread.join();
+        }
+        if (!failures.isEmpty())
+            throw failures.peek();
+    }
+
+    @Test
+    public void ASProjectScope_lookupsDuringAddAndRemove() throws Throwable
+    {
+        final ASProjectScope scope = project.getScope();
+        final IDefinition[] stable = new IDefinition[50];
+        for (int i = 0; i < stable.length; i++)
+        {
+            stable[i] = createDefinition("Stable" + i);
+            scope.addDefinition(stable[i]);
+            assertTrue(getOnlyDefinition(scope, "Stable" + i) == stable[i]);
+        }
+        final IDefinition[] added = new IDefinition[200];
+        for (int i = 0; i < added.length; i++)
+            added[i] = createDefinition("Added" + i);
+
+        runConcurrently(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                // Adding and removing many names grows the store, so the
+                // readers also look up while it is rehashed.
+                for (int round = 0; round < 100; round++)
+                {
+                    for (IDefinition definition : added)
+                        scope.addDefinition(definition);
+                    for (IDefinition definition : added)
+                        scope.removeDefinition(definition);
+                }
+            }
+        }, new Runnable()
+        {
+            private int next;
+
+            @Override
+            public void run()
+            {
+                for (int i = 0; i < stable.length; i++)
+                    assertTrue("Stable" + i, getOnlyDefinition(scope, "Stable" + i) == stable[i]);
+                final int i = next++ % added.length;
+                final IDefinition definition = getOnlyDefinition(scope, "Added" + i);
+                assertTrue("Added" + i, definition == null || definition == added[i]);
+            }
+        });
+
+        for (int i = 0; i < stable.length; i++)
+            assertTrue(getOnlyDefinition(scope, "Stable" + i) == stable[i]);
+        for (int i = 0; i < added.length; i++)
+            assertNull(getOnlyDefinition(scope, "Added" + i));
+    }
+
+    @Test
+    public void ASProjectScope_shadowedDefinitionIsNeverMissing() throws Throwable
+    {
+        final ASProjectScope scope = project.getScope();
+        final IDefinition first = createDefinition("Shadowed");
+        final IDefinition second = createDefinition("Shadowed");
+        scope.addDefinition(first);
+        // Both are in the same compilation unit, so the visible definition
+        // shadows the new one.
+        scope.addDefinition(second);
+        assertTrue(getOnlyDefinition(scope, "Shadowed") == first);
+        assertEquals(Collections.singleton(second), scope.getShadowedDefinitions(first));
+
+        runConcurrently(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                IDefinition visible = first;
+                IDefinition shadowed = second;
+                for (int round = 0; round < 10000; round++)
+                {
+                    // The shadowed definition takes the place of the removed
+                    // one, which is then shadowed by it when added again.
+                    scope.removeDefinition(visible);
+                    assertTrue(getOnlyDefinition(scope, "Shadowed") == shadowed);
+                    scope.addDefinition(visible);
+                    final IDefinition swap = visible;
+                    visible = shadowed;
+                    shadowed = swap;
+                }
+            }
+        }, new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                final IDefinition definition = getOnlyDefinition(scope, "Shadowed");
+                assertTrue(definition == first || definition == second);
+            }
+        });
+
+        assertTrue(getOnlyDefinition(scope, "Shadowed") == first);
+    }
+}
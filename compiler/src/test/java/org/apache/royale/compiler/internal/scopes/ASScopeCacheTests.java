@@ -0,0 +1,192 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+
+package org.apache.royale.compiler.internal.scopes;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.royale.compiler.common.DependencyType;
+import org.apache.royale.compiler.definitions.IDefinition;
+import org.apache.royale.compiler.filespecs.FileSpecification;
+import org.apache.royale.compiler.internal.projects.RoyaleProject;
+import org.apache.royale.compiler.internal.workspaces.Workspace;
+import org.apache.royale.compiler.units.ICompilationUnit;
+import org.apache.royale.utils.FilenameNormalization;
+import org.apache.royale.utils.TestAdapterFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.cache.CacheStats;
+
+/**
+ * JUnit tests for {@link ASScopeCache}.
+ */
+public class ASScopeCacheTests
+{
+    private Workspace workspace;
+    private RoyaleProject project;
+    private File sourceDirectory;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        sourceDirectory = File.createTempFile(getClass().getSimpleName(), "",
+                new File(TestAdapterFactory.getTestAdapter().getTempDir()));
+        assertTrue(sourceDirectory.delete() && sourceDirectory.mkdir());
+
+        workspace = new Workspace();
+        project = new RoyaleProject(workspace);
+        project.setSourcePath(Collections.singletonList(sourceDirectory));
+    }
+
+    @After
+    public void tearDown()
+    {
+        project.delete();
+        workspace.close();
+        for (File file : sourceDirectory.listFiles())
+            file.delete();
+        sourceDirectory.delete();
+    }
+
+    private String writeClass(String name, String body) throws IOException
+    {
+        final File file = new File(sourceDirectory, name + ".as");
+        final Writer out = new FileWriter(file);
+        try
+        {
+            out.write("package {\npublic class " + name + " {\n" + body + "\n}\n}\n");
+        }
+        finally
+        {
+            out.close();
+        }
+        return FilenameNormalization.normalize(file.getAbsolutePath());
+    }
+
+    private ASFileScope getFileScope(String path) throws InterruptedException
+    {
+        final Collection<ICompilationUnit> units = workspace.getCompilationUnits(path, project);
+        assertEquals(1, units.size());
+        return (ASFileScope)units.iterator().next().getFileScopeRequest().get().getScopes()[0];
+    }
+
+    @Test
+    public void ASScopeCache_cachesLookups() throws Exception
+    {
+        writeClass("B", "");
+        final ASFileScope scope = getFileScope(writeClass("A", "public var b:B;"));
+
+        final IDefinition first = project.getCacheForScope(scope).findProperty("B", DependencyType.SIGNATURE, true);
+        assertNotNull(first);
+        final IDefinition second = project.getCacheForScope(scope).findProperty("B", DependencyType.SIGNATURE, true);
+        assertTrue(first == second);
+        assertTrue(project.getScopeResolutionCache().getCacheStats().get("findProperty").hitCount() > 0);
+    }
+
+    @Test
+    public void ASScopeCache_lookupsAreBoundedPerScope() throws Exception
+    {
+        project.setScopeCacheMaximumSize(1);
+        writeClass("B", "");
+        writeClass("C", "");
+        final ASFileScope scope = getFileScope(writeClass("A", "public var b:B;\npublic var c:C;"));
+
+        final ASScopeCache cache = project.getCacheForScope(scope);
+        assertNotNull(cache.findProperty("B", DependencyType.SIGNATURE, true));
+        assertNotNull(cache.findProperty("C", DependencyType.SIGNATURE, true));
+        final CacheStats stats = project.getScopeResolutionCache().getCacheStats().get("findProperty");
+        assertTrue(stats.evictionCount() >= 1);
+
+        // "B" was evicted, so it is resolved again.
+        assertNotNull(cache.findProperty("B", DependencyType.SIGNATURE, true));
+        assertTrue(project.getScopeResolutionCache().getCacheStats().get("findProperty").missCount() > stats.missCount());
+    }
+
+    @Test
+    public void ASScopeCache_scopeCachesAreBoundedPerProject() throws Exception
+    {
+        project.setScopeCacheMaximumScopes(2);
+        assertEquals(2, project.getScopeCacheMaximumScopes());
+
+        final List<ASFileScope> scopes = new ArrayList<ASFileScope>();
+        for (int i = 0; i < 4; i++)
+            scopes.add(getFileScope(writeClass("C" + i, "")));
+        for (ASFileScope scope : scopes)
+            assertNotNull(project.getCacheForScope(scope));
+
+        final CacheStats stats = project.getScopeCacheStats();
+        assertTrue(stats.loadCount() >= 4);
+        assertTrue(stats.evictionCount() >= 2);
+        assertTrue(stats.loadCount() - stats.evictionCount() <= 2);
+    }
+
+    @Test
+    public void ASScopeCache_removedFileScopeIsCollected() throws Exception
+    {
+        writeClass("B", "");
+        final String path = writeClass("A", "public var b:B;");
+
+        WeakReference<ASFileScope> scopeReference = lookUpInFileScope(path);
+        assertNotNull(scopeReference.get());
+
+        assertTrue(new File(path).delete());
+        workspace.fileRemoved(new FileSpecification(path));
+
+        // The cached lookups of the scope must not keep it alive.
+        final List<byte[]> garbage = new ArrayList<byte[]>();
+        for (int i = 0; i < 50 && scopeReference.get() != null; i++)
+        {
+            garbage.add(new byte[1024 * 1024]);
+            if (garbage.size() > 8)
+                garbage.clear();
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertNull(scopeReference.get());
+    }
+
+    /**
+     * Fill the lookups of the file scope of a file, without keeping a
+     * reference to the scope on the stack of the caller.
+     */
+    private WeakReference<ASFileScope> lookUpInFileScope(String path) throws InterruptedException
+    {
+        final ASFileScope scope = getFileScope(path);
+        final ASScopeCache cache = project.getCacheForScope(scope);
+        assertNotNull(cache.findProperty("B", DependencyType.SIGNATURE, true));
+        assertNotNull(cache.getNamespaceSetForName("B"));
+        return new WeakReference<ASFileScope>(scope);
+    }
+}
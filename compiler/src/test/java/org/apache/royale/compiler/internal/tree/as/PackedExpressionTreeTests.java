@@ -0,0 +1,140 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.compiler.internal.tree.as;
+
+import static org.junit.Assert.*;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.royale.compiler.common.SourceLocation;
+import org.apache.royale.compiler.internal.parsing.as.BaseASParser;
+import org.apache.royale.compiler.internal.workspaces.Workspace;
+import org.apache.royale.compiler.problems.ICompilerProblem;
+import org.apache.royale.compiler.tree.ASTNodeID;
+import org.apache.royale.compiler.tree.as.IASNode;
+import org.apache.royale.compiler.tree.as.IExpressionNode;
+import org.junit.Test;
+
+/**
+ * JUnit tests for {@link PackedExpressionTree}.
+ */
+public class PackedExpressionTreeTests
+{
+    private static IExpressionNode parse(String code)
+    {
+        final Workspace workspace = new Workspace();
+        try
+        {
+            final List<ICompilerProblem> problems = new ArrayList<ICompilerProblem>();
+            final IExpressionNode result = BaseASParser.parseExpression(workspace, new StringReader(code),
+                    problems, BaseASParser.EMPTY_CONFIGURATION, new SourceLocation("test.as", 0, 0, 0, 0));
+            assertTrue(problems.toString(), problems.isEmpty());
+            return result;
+        }
+        finally
+        {
+            workspace.close();
+        }
+    }
+
+    private static void assertSameTree(IASNode expected, IASNode actual)
+    {
+        assertEquals(expected.getNodeID(), actual.getNodeID());
+        assertEquals(expected.isTerminal(), actual.isTerminal());
+        assertEquals(expected.getStart(), actual.getStart());
+        assertEquals(expected.getEnd(), actual.getEnd());
+        assertEquals(expected.getAbsoluteStart(), actual.getAbsoluteStart());
+        assertEquals(expected.getAbsoluteEnd(), actual.getAbsoluteEnd());
+        assertEquals(expected.getLine(), actual.getLine());
+        assertEquals(expected.getColumn(), actual.getColumn());
+        assertEquals(expected.getSourcePath(), actual.getSourcePath());
+        assertEquals(expected.getChildCount(), actual.getChildCount());
+        for (int i = 0; i < expected.getChildCount(); i++)
+        {
+            final IASNode expectedChild = expected.getChild(i);
+            final IASNode actualChild = actual.getChild(i);
+            if (expectedChild == null)
+            {
+                assertNull(actualChild);
+                continue;
+            }
+            assertEquals(actual, actualChild.getParent());
+            assertSameTree(expectedChild, actualChild);
+        }
+    }
+
+    @Test
+    public void sameTree()
+    {
+        final IExpressionNode expression = parse("a.b(c, 1 + d * 2)[\"e\"] || !f");
+        final PackedExpressionTree tree = PackedExpressionTree.pack(expression);
+        assertSameTree(expression, tree.getRoot());
+        assertNull(tree.getRoot().getParent());
+    }
+
+    @Test
+    public void breadthFirstOrder()
+    {
+        final PackedExpressionTree tree = PackedExpressionTree.pack(parse("a + b * c"));
+        assertEquals(5, tree.getNodeCount());
+        assertEquals(ASTNodeID.Op_AddID, tree.getNodeID(0));
+        assertEquals(1, tree.getChild(0, 0));
+        assertEquals(2, tree.getChild(0, 1));
+        assertEquals(ASTNodeID.Op_MultiplyID, tree.getNodeID(2));
+        assertEquals(2, tree.getParent(3));
+        assertEquals(2, tree.getParent(4));
+    }
+
+    @Test
+    public void texts()
+    {
+        final PackedExpressionTree tree = PackedExpressionTree.pack(parse("x + 'y' + x"));
+        final List<String> texts = new ArrayList<String>();
+        for (int node = 0; node < tree.getNodeCount(); node++)
+        {
+            if (tree.getText(node) != null)
+                texts.add(tree.getText(node));
+        }
+        assertEquals(3, texts.size());
+        assertTrue(texts.contains("x"));
+        assertTrue(texts.contains("'y'") || texts.contains("y"));
+    }
+
+    @Test
+    public void terminals()
+    {
+        final PackedExpressionTree tree = PackedExpressionTree.pack(parse("a + b"));
+        assertFalse(tree.isTerminal(0));
+        assertTrue(tree.isTerminal(1));
+        assertTrue(tree.getRoot().getChild(1).isTerminal());
+    }
+
+    @Test
+    public void containingNode()
+    {
+        final IExpressionNode expression = parse("foo + bar");
+        final PackedExpressionTree tree = PackedExpressionTree.pack(expression);
+        final IASNode node = tree.getRoot().getContainingNode(8);
+        assertEquals(ASTNodeID.IdentifierID, node.getNodeID());
+        assertEquals(expression.getContainingNode(8).getAbsoluteStart(), node.getAbsoluteStart());
+    }
+}
@@ -56,6 +56,8 @@ public class MXMLNodeBaseTests
 	
 	protected String[] errorFilters;
 	
+	protected boolean parallelTreeBuilding;
+	
  	protected String[] getTemplate()
 	{
  		// Tests of nodes for class-definition-level tags like <Declarations>,
@@ -118,6 +120,7 @@ public class MXMLNodeBaseTests
 	{
 		project = new RoyaleProject(workspace);
 		RoyaleProjectConfigurator.configure(project);
+		project.setUseParallelMXMLTreeBuilding(parallelTreeBuilding);
 
 		ITestAdapter testAdapter = TestAdapterFactory.getTestAdapter();
 		String tempDir = testAdapter.getTempDir();
@@ -215,6 +218,7 @@ public class MXMLNodeBaseTests
 		}
 		
 		errorFilters = null;
+		parallelTreeBuilding = false;
 		return fileNode;
 	}
     
@@ -166,4 +166,19 @@ public class MXMLStringNodeTests extends MXMLExpressionNodeBaseTests
 		assertThat("databinding node child count", node.getExpressionNode().getChildCount(), is(1));
 		assertThat("identifier node", node.getExpressionNode().getChild(0).getNodeID(), is(ASTNodeID.MemberAccessExpressionID));
 	}
+	
+	@Test
+	public void MXMLStringNode_with_databinding_parallel()
+	{
+		String[] code = new String[]
+		{
+		    "<fx:String>{a.b}</fx:String>"
+		};
+		parallelTreeBuilding = true;
+		IMXMLStringNode node = getMXMLStringNode(code);
+		assertThat("databinding node", node.getExpressionNode().getNodeID(), is(ASTNodeID.MXMLDataBindingID));
+		testExpressionLocation(node, 11, 16);
+		assertThat("databinding node child count", node.getExpressionNode().getChildCount(), is(1));
+		assertThat("identifier node", node.getExpressionNode().getChild(0).getNodeID(), is(ASTNodeID.MemberAccessExpressionID));
+	}
 }
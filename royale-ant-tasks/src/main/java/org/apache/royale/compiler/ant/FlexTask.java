@@ -19,13 +19,21 @@
 
 package org.apache.royale.compiler.ant;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.lang.reflect.Method;
+import java.net.InetAddress;
 import java.net.MalformedURLException;
+import java.net.Socket;
 import java.net.URL;
 import java.net.URLClassLoader;
+import java.nio.file.Files;
 import java.util.List;
 
 import org.apache.tools.ant.BuildException;
@@ -48,6 +56,9 @@ public abstract class FlexTask extends Java
     protected static OptionSpec RUNTIME_SHARED_LIBRARY_PATH =
     	new OptionSpec("runtime-shared-library-path", "rslp");
 
+    private static final int COMPILE_SERVER_PROTOCOL_VERSION = 2;
+    private static final int COMPILE_SERVER_STATUS_ACCEPTED = 0;
+
     /**
      * Constructor.
      * 
@@ -119,6 +130,16 @@ public abstract class FlexTask extends Java
      * fork attribute
      */
     protected boolean fork;
+
+    /**
+     * compileServerPort attribute
+     */
+    protected int compileServerPort = -1;
+
+    /**
+     * compileServerTokenFile attribute
+     */
+    protected File compileServerTokenFile = null;
     
     private ClassLoader originalContextClassLoader;
 
@@ -157,6 +178,31 @@ public abstract class FlexTask extends Java
         this.fork = f;
     }
 
+    /**
+     * Sets the port of a running compile server
+     * (org.apache.royale.compiler.clients.CompileServer).
+     * If the server can not be reached or rejects the request,
+     * the task runs as if the attribute was not set.
+     *
+     * @param port the loopback port the compile server listens on.
+     */
+    public void setCompileServerPort(int port)
+    {
+        this.compileServerPort = port;
+    }
+
+    /**
+     * Sets the file the compile server wrote its token to.
+     * Defaults to the file the server writes for the compileServerPort
+     * when it is started without a -token-file option.
+     *
+     * @param file the token file.
+     */
+    public void setCompileServerTokenFile(File file)
+    {
+        this.compileServerTokenFile = file;
+    }
+
     /*=======================================================================*
      *  Dynamic Attributes                                                   *
      *=======================================================================*/
@@ -257,12 +303,98 @@ public abstract class FlexTask extends Java
         
         prepareCommandline();
 
+        if (compileServerPort != -1 && executeOnCompileServer())
+            return;
+
         if (fork)
             executeOutOfProcess();
         else
             executeInProcess();
     }
 
+    /**
+     * Executes the task on a compile server.
+     * 
+     * @return false if the compile server could not run the task
+     * and it has to be run locally.
+     */
+    private boolean executeOnCompileServer() throws BuildException
+    {
+        log("FlexTask.execute on compile server: " + cmdline, Project.MSG_DEBUG);
+
+        String[] args = cmdline.getArguments();
+        int exitCode;
+        String output;
+        Socket socket = null;
+        try
+        {
+            File tokenFile = compileServerTokenFile;
+            if (tokenFile == null)
+            {
+                // The default of CompileServer.getDefaultTokenFile().
+                tokenFile = new File(new File(System.getProperty("user.home"), ".royale"),
+                                     "compile-server-" + compileServerPort + ".token");
+            }
+            String token = new String(Files.readAllBytes(tokenFile.toPath()), "UTF-8").trim();
+
+            socket = new Socket(InetAddress.getLoopbackAddress(), compileServerPort);
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            out.writeInt(COMPILE_SERVER_PROTOCOL_VERSION);
+            out.writeUTF(token);
+            out.writeUTF(new File("").getAbsolutePath());
+            out.writeUTF(taskName);
+            out.writeInt(args.length);
+            for (String arg : args)
+                out.writeUTF(arg);
+            out.flush();
+
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            if (in.readInt() != COMPILE_SERVER_STATUS_ACCEPTED)
+            {
+                log("Compile server rejected the request: " + in.readUTF(), Project.MSG_WARN);
+                return false;
+            }
+            exitCode = in.readInt();
+            byte[] bytes = new byte[in.readInt()];
+            in.readFully(bytes);
+            output = new String(bytes, "UTF-8");
+        }
+        catch (IOException e)
+        {
+            log("Compile server not available: " + e.getMessage(), Project.MSG_WARN);
+            return false;
+        }
+        finally
+        {
+            if (socket != null)
+            {
+                try
+                {
+                    socket.close();
+                }
+                catch (IOException e)
+                {
+                    // Ignore.
+                }
+            }
+        }
+
+        log(output);
+
+        try
+        {
+            // The exit codes are the ones of the tool class.
+            if (isFatalFailure(resolveClass(toolClassName), exitCode))
+                throw new BuildException(taskName + " task failed");
+        }
+        finally
+        {
+            if (originalContextClassLoader != null)
+                Thread.currentThread().setContextClassLoader(originalContextClassLoader);
+        }
+        return true;
+    }
+
     /**
      * Executes the task in a separate VM
      */
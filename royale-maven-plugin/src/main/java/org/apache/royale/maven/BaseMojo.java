@@ -19,6 +19,7 @@
 
 package org.apache.royale.maven;
 
+import org.apache.royale.maven.utils.CompileServerClient;
 import org.apache.royale.maven.utils.DependencyHelper;
 import org.apache.flex.tools.FlexTool;
 import org.apache.flex.tools.FlexToolGroup;
@@ -101,6 +102,24 @@ public abstract class BaseMojo
     @Parameter
     private String additionalCompilerOptions = null;
 
+    /**
+     * Port of a running compile server
+     * (org.apache.royale.compiler.clients.CompileServer). If set, mxmlc and
+     * compc builds are sent to the server, which keeps the workspace and its
+     * SWC caches alive between builds. If the server is not reachable, the
+     * build runs in-process.
+     */
+    @Parameter(property = "royale.compileServerPort")
+    private Integer compileServerPort = null;
+
+    /**
+     * Token file written by the compile server. Defaults to the file the
+     * server writes for {@code compileServerPort} when it is started without
+     * a -token-file option.
+     */
+    @Parameter(property = "royale.compileServerTokenFile")
+    private File compileServerTokenFile = null;
+
     @Component
     private ProjectDependenciesResolver projectDependenciesResolver;
 
@@ -369,6 +388,24 @@ public abstract class BaseMojo
             }
         }
 
+        String[] args = getCompilerArgs(configFile).toArray(new String[0]);
+
+        // Try the compile server first, if one is configured.
+        if(compileServerPort != null && "Royale".equals(getToolGroupName()) &&
+                (FlexTool.FLEX_TOOL_MXMLC.equals(getFlexTool()) || FlexTool.FLEX_TOOL_COMPC.equals(getFlexTool()))) {
+            File tokenFile = (compileServerTokenFile != null) ? compileServerTokenFile :
+                    CompileServerClient.getDefaultTokenFile(compileServerPort);
+            CompileServerClient client = new CompileServerClient(compileServerPort, tokenFile);
+            getLog().info("Sending " + getFlexTool() + " to compile server on port " + compileServerPort + " with args: " + Arrays.toString(args));
+            CompileServerClient.Result result = client.compile(getFlexTool(), args);
+            if(result != null) {
+                getLog().info(result.getOutput());
+                handleExitCode(result.getExitCode());
+                return;
+            }
+            getLog().warn("Compile server not used: " + client.getLastFailure());
+        }
+
         // Get the tool group.
         FlexToolRegistry toolRegistry = new FlexToolRegistry();
         FlexToolGroup toolGroup = toolRegistry.getToolGroup(getToolGroupName());
@@ -378,7 +415,6 @@ public abstract class BaseMojo
 
         // Get an instance of the compiler and run the build.
         FlexTool tool = toolGroup.getFlexTool(getFlexTool());
-        String[] args = getCompilerArgs(configFile).toArray(new String[0]);
         getLog().info("Executing " + getFlexTool() + " in tool group " + getToolGroupName() + " with args: " + Arrays.toString(args));
         int exitCode = tool.execute(args);
         handleExitCode(exitCode);
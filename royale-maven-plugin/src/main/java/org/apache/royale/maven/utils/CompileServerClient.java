@@ -0,0 +1,135 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.royale.maven.utils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.file.Files;
+
+/**
+ * Client for the resident compile server started with
+ * {@code org.apache.royale.compiler.clients.CompileServer}. It only speaks the
+ * wire protocol, so the plugin does not need the compiler on its classpath.
+ * Every request presents the token the server wrote to its token file.
+ */
+public class CompileServerClient {
+
+    private static final int PROTOCOL_VERSION = 2;
+    private static final int STATUS_ACCEPTED = 0;
+
+    /**
+     * Result of a build run by the compile server.
+     */
+    public static class Result {
+        private final int exitCode;
+        private final String output;
+
+        Result(int exitCode, String output) {
+            this.exitCode = exitCode;
+            this.output = output;
+        }
+
+        public int getExitCode() {
+            return exitCode;
+        }
+
+        public String getOutput() {
+            return output;
+        }
+    }
+
+    /**
+     * Get the token file a server listening on a port writes by default, as
+     * {@code CompileServer.getDefaultTokenFile} does.
+     */
+    public static File getDefaultTokenFile(int port) {
+        return new File(new File(System.getProperty("user.home"), ".royale"),
+                "compile-server-" + port + ".token");
+    }
+
+    private final int port;
+    private final File tokenFile;
+    private String lastFailure;
+
+    public CompileServerClient(int port, File tokenFile) {
+        this.port = port;
+        this.tokenFile = tokenFile;
+    }
+
+    /**
+     * Ask the compile server to run a tool.
+     *
+     * @param tool the tool name, "mxmlc" or "compc".
+     * @param args the compiler arguments.
+     * @return the result of the build, or null if the server is not running or
+     * rejected the request. In that case {@link #getLastFailure()} explains why
+     * and the caller should compile in-process.
+     */
+    public Result compile(String tool, String[] args) {
+        lastFailure = null;
+        Socket socket = null;
+        try {
+            String token = new String(Files.readAllBytes(tokenFile.toPath()), "UTF-8").trim();
+            socket = new Socket(InetAddress.getLoopbackAddress(), port);
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            out.writeInt(PROTOCOL_VERSION);
+            out.writeUTF(token);
+            out.writeUTF(new File("").getAbsolutePath());
+            out.writeUTF(tool);
+            out.writeInt(args.length);
+            for (String arg : args) {
+                out.writeUTF(arg);
+            }
+            out.flush();
+
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            if (in.readInt() != STATUS_ACCEPTED) {
+                lastFailure = in.readUTF();
+                return null;
+            }
+            int exitCode = in.readInt();
+            byte[] output = new byte[in.readInt()];
+            in.readFully(output);
+            return new Result(exitCode, new String(output, "UTF-8"));
+        } catch (IOException e) {
+            lastFailure = e.toString();
+            return null;
+        } finally {
+            if (socket != null) {
+                try {
+                    socket.close();
+                } catch (IOException e) {
+                    // Ignore.
+                }
+            }
+        }
+    }
+
+    public String getLastFailure() {
+        return lastFailure;
+    }
+
+}